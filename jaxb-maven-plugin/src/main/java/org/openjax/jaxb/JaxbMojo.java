@@ -17,19 +17,28 @@
 package org.openjax.jaxb;
 
 import java.io.File;
-import java.io.FileWriter;
+import java.io.IOException;
 import java.net.URI;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 import javax.xml.bind.JAXBException;
+import javax.xml.namespace.QName;
 
 import org.apache.maven.artifact.handler.ArtifactHandler;
 import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.model.Resource;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugin.descriptor.PluginDescriptor;
@@ -38,23 +47,94 @@ import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.openjax.jaxb.xjc.BuildCache;
+import org.openjax.jaxb.xjc.CatalogIndex;
+import org.openjax.jaxb.xjc.CompileReport;
+import org.openjax.jaxb.xjc.ContextBudget;
+import org.openjax.jaxb.xjc.ContextReport;
+import org.openjax.jaxb.xjc.EpisodeCache;
+import org.openjax.jaxb.xjc.SchemaCache;
 import org.openjax.jaxb.xjc.XJCompiler;
 import org.openjax.maven.mojo.FilterParameter;
 import org.openjax.maven.mojo.FilterType;
 import org.openjax.maven.mojo.GeneratorMojo;
 import org.openjax.maven.mojo.MojoUtil;
 import org.openjax.xml.sax.XmlPreviewParser;
+import org.xml.sax.SAXException;
 
 /**
  * Mojo that creates compile-scope Java source or binaries from XML schema(s) by invoking the JAXB XJC binding compiler.
  */
-@Mojo(name = "xjc", defaultPhase = LifecyclePhase.GENERATE_SOURCES, requiresDependencyResolution = ResolutionScope.TEST)
+@Mojo(name = "xjc", defaultPhase = LifecyclePhase.GENERATE_SOURCES, requiresDependencyResolution = ResolutionScope.TEST, threadSafe = true)
 @Execute(goal = "xjc")
 public class JaxbMojo extends GeneratorMojo {
   /** Turn on debug mode. */
   @Parameter(property = "debug")
   private boolean debug = false;
 
+  /**
+   * Generate primitive types ({@code int} and {@code long}) for integer properties whose facets prove that the value fits, and
+   * primitive arrays for lists of numbers, instead of {@code BigInteger} and {@code List} of boxed values.
+   */
+  @Parameter(property = "primitives")
+  private boolean primitives = false;
+
+  /**
+   * Generate {@code xs:base64Binary} properties as {@code BinaryContent}, which is held off the heap (in a direct buffer or a spill
+   * file), and is decoded and encoded as a stream by the StAX readers and writers generated with {@code stax}.
+   */
+  @Parameter(property = "binaryContent")
+  private boolean binaryContent = false;
+
+  /**
+   * Generate {@code xs:dateTime}, {@code xs:date} and {@code xs:time} properties as {@code OffsetDateTime}, {@code LocalDate} and
+   * {@code OffsetTime} (instead of {@code XMLGregorianCalendar}), which are parsed straight from the text by bundled adapters.
+   */
+  @Parameter(property = "javaTime")
+  private boolean javaTime = false;
+
+  /**
+   * Generate a static StAX reader and writer for each generated class whose content can be bound without the JAXB runtime, with
+   * which {@code JaxbUtil.parseStax} reads documents instead of the JAXB runtime.
+   */
+  @Parameter(property = "stax")
+  private boolean stax = false;
+
+  /**
+   * Make the StAX writers generated with {@code stax} splice the cached fragments of nested instances, when writing with
+   * {@code JaxbUtil.toXmlString(Object,FragmentCache)}.
+   */
+  @Parameter(property = "fragments")
+  private boolean fragments = false;
+
+  /**
+   * Generate a {@code reset()} method for each generated class, so that an instance (with its nested instances and lists) can be
+   * reused across unmarshals with {@code JaxbUtil.parseInto}.
+   */
+  @Parameter(property = "reuse")
+  private boolean reuse = false;
+
+  /**
+   * Generate immutable classes, with builders, unmodifiable lists, {@code equals} and a cached {@code hashCode}, which can be shared
+   * across threads without defensive copies.
+   */
+  @Parameter(property = "immutable")
+  private boolean immutable = false;
+
+  /**
+   * Generate a {@code jaxb.index}, and GraalVM native-image {@code reflect-config.json} and {@code resource-config.json}, for each
+   * generated package. The files are added to the resources of the project.
+   */
+  @Parameter(property = "nativeImage")
+  private boolean nativeImage = false;
+
+  /**
+   * The root elements of the generated classes, as {@code {namespace}localName} (or {@code localName} to match any namespace). If
+   * specified, only the classes, enums and elements that are reachable from these elements are generated.
+   */
+  @Parameter(property = "rootElements")
+  private List<String> rootElements;
+
   /** Generated files will be in read-only mode. */
   @Parameter(property = "readOnly")
   private boolean readOnly = false;
@@ -247,67 +327,130 @@ public class JaxbMojo extends GeneratorMojo {
   @Parameter(property = "bindings")
   private List<String> bindings;
 
+  /**
+   * Directory of the persistent cache of remote schemas (such as {@code ${settings.localRepository}/.cache/jaxb/schemas}). If
+   * specified, remote schemas, and the remote schemas they import or include, are fetched into this cache and revalidated with the
+   * server (via {@code ETag} and {@code Last-Modified}) at most once a day, and in offline mode ({@code mvn -o}) are served from this
+   * cache only. If not specified, remote schemas are fetched by XJC on each build.
+   */
+  @Parameter(property = "schemaCacheDir")
+  private File schemaCacheDir;
+
+  /**
+   * Directory of the content-addressed build cache. If specified, the output of XJC is cached by the hash of the normalized inputs of
+   * the compilation (options, schemas, bindings, catalogs and plugin jars), and is unpacked from the cache, instead of running XJC,
+   * when the inputs are unchanged.
+   */
+  @Parameter(property = "buildCacheDir")
+  private File buildCacheDir;
+
+  /**
+   * URL of a remote build cache, which serves entries of the build cache at {@code <buildCacheUrl>/<key>.zip}. Entries that are not
+   * in {@code buildCacheDir} are fetched from the remote build cache, unless in offline mode.
+   */
+  @Parameter(property = "buildCacheUrl")
+  private URL buildCacheUrl;
+
+  /** Push new entries of the build cache to the remote build cache (via {@code PUT}). */
+  @Parameter(property = "buildCachePush")
+  private boolean buildCachePush = false;
+
+  /**
+   * Directory of the cache of compiled schema libraries. If specified, the namespaces that the schemas import from other schemas (such
+   * as {@code xml.xsd}, XLink, or in-house core types) are compiled once into an episode and its sources, which later compilations bind
+   * against via {@code -b}, instead of generating the classes of the libraries again.
+   */
+  @Parameter(property = "episodeCacheDir")
+  private File episodeCacheDir;
+
+  /**
+   * Additional XJC plugins to activate, by option name (without the leading {@code -}, e.g. {@code Xequals}). Each plugin must be
+   * declared by a jar on the execution classpath, such as a dependency of this plugin.
+   */
+  @Parameter(property = "plugins")
+  private List<String> plugins;
+
+  /**
+   * Budgets of the initialization of the {@code JAXBContext} of each generated package. If specified, the generated sources are
+   * compiled, the creation time, loaded classes and retained heap of the {@code JAXBContext} of each package are measured (and
+   * reported in {@code target/jaxb/<executionId>-context.json}), and the build fails if a budget is exceeded. The budgets that are
+   * not specified are unbounded:
+   *
+   * <pre>
+   * {@code
+   * <configuration>
+   *   ...
+   *   <contextBudget>
+   *     <maxTime>500</maxTime> <!-- milliseconds -->
+   *     <maxClasses>2000</maxClasses>
+   *     <maxHeap>16777216</maxHeap> <!-- bytes -->
+   *   </contextBudget>
+   * </configuration>
+   * }
+   * </pre>
+   */
+  @Parameter(property = "contextBudget")
+  private ContextBudget contextBudget;
+
   private static final ArtifactHandler artifactHandler = new DefaultArtifactHandler("jar");
 
-  @Override
-  public void execute(final Configuration configuration) throws MojoExecutionException, MojoFailureException {
-    File masterCatalog = null;
-    final XJCompiler.Command command = new XJCompiler.Command();
+  /**
+   * Returns the TR9401 catalog fragment of the schema at the specified {@link URL}. Fragments are cached in {@code cacheDir} by the
+   * SHA-256 hash of the schema's location and of the content of the schemas it transitively imports or includes (which the preview
+   * follows), so a schema is previewed again only if it, or a schema it depends on, has changed.
+   *
+   * @param url The {@link URL} of the schema.
+   * @param source The {@link URL} from which the content of the schema is to be read.
+   * @param cacheDir The directory of the fragment cache.
+   * @return The TR9401 catalog fragment of the schema at the specified {@link URL}.
+   * @throws IOException If an I/O error has occurred.
+   * @throws SAXException If a parse error has occurred.
+   */
+  private static String preview(final URL url, final URL source, final File cacheDir) throws IOException, SAXException {
+    final MessageDigest digest = SchemaCache.newDigest();
+    digest.update(url.toString().getBytes(StandardCharsets.UTF_8));
+    digest.update((byte)'\n');
+    SchemaCache.update(digest, source);
+    final File fragment = new File(cacheDir, SchemaCache.toHex(digest.digest()) + ".cat");
+    if (fragment.exists())
+      return new String(Files.readAllBytes(fragment.toPath()), StandardCharsets.UTF_8);
+
+    final String tr9401 = XmlPreviewParser.parse(source).getCatalog().toTR9401();
+    if (!cacheDir.exists() && !cacheDir.mkdirs() && !cacheDir.exists())
+      throw new IOException("Unable to create directory: " + cacheDir.getAbsolutePath());
+
+    final File temp = File.createTempFile(fragment.getName(), ".tmp", cacheDir);
+    Files.write(temp.toPath(), tr9401.getBytes(StandardCharsets.UTF_8));
+    Files.move(temp.toPath(), fragment.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    return tr9401;
+  }
+
+  private static <T>T get(final Future<T> future) throws IOException, SAXException, InterruptedException {
     try {
-      command.setDebug(debug);
-      command.setReadOnly(readOnly);
-      command.setNoHeader(noHeader);
-      command.setExplicitAnnotation(explicitAnnotation);
-      command.setDisableXmlSecurity(disableXmlSecurity);
-      command.setContentForWildcard(contentForWildcard);
-      command.setAutoNameResolution(autoNameResolution);
-      command.setTestClassNameAllocator(testClassNameAllocator);
-      command.setJavaModule(javaModule);
-      command.setHttpProxyFile(httpProxyFile);
-      command.setHttpProxy(httpProxy);
-      command.setAddGeneratedAnnotation(addGeneratedAnnotation);
-      command.setEnableIntrospection(enableIntrospection);
-      command.setExtension(extension);
-      command.setLaxSchemaValidation(laxSchemaValidation);
-      command.setNoGeneratedHeaderComments(noGeneratedHeaderComments);
-      command.setNoPackageLevelAnnotations(noPackageLevelAnnotations);
-      command.setQuiet(quiet);
-      if (targetVersion != null)
-        command.setTargetVersion(XJCompiler.Command.TargetVersion.fromString(targetVersion));
-
-      if (sourceType != null)
-        command.setSourceType(XJCompiler.Command.SourceType.fromString(sourceType));
-
-      command.setVerbose(verbose);
-      command.setEncoding(encoding);
-      command.setPackageName(packageName);
-      command.setDestDir(configuration.getDestDir());
-      command.setOverwrite(configuration.getOverwrite());
-      command.setGenerateEpisode(generateEpisode);
-
-      masterCatalog = Files.createTempFile("catalog", ".cat").toFile();
-      if (catalog != null)
-        Files.copy(catalog.toPath(), masterCatalog.toPath(), StandardCopyOption.REPLACE_EXISTING);
-
-      final LinkedHashSet<URI> uris = new LinkedHashSet<>();
-      try (final FileWriter out = new FileWriter(masterCatalog)) {
-        if (schemas.size() > 0) {
-          for (final String schema : new LinkedHashSet<>(schemas)) { // [S]
-            final URL url = new URL(schema);
-            uris.add(url.toURI());
-            out.write(XmlPreviewParser.parse(url).getCatalog().toTR9401());
-          }
-        }
-      }
+      return future.get();
+    }
+    catch (final ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof IOException)
+        throw (IOException)cause;
+
+      if (cause instanceof SAXException)
+        throw (SAXException)cause;
 
-      command.setCatalog(masterCatalog);
+      if (cause instanceof RuntimeException)
+        throw (RuntimeException)cause;
 
-      command.setSchemas(uris);
-      if (bindings != null && bindings.size() > 0)
-        command.setXJBs(new LinkedHashSet<>(bindings).stream().map(URI::create).collect(Collectors.toCollection(LinkedHashSet::new)));
+      throw new IllegalStateException(cause);
+    }
+  }
 
-      command.addClasspath(MojoUtil.getExecutionClasspath(getProject(), getExecution(), (PluginDescriptor)this.getPluginContext().get("pluginDescriptor"), getSession().getLocalRepository(), artifactHandler));
-      XJCompiler.compile(command);
+  @Override
+  public void execute(final Configuration configuration) throws MojoExecutionException, MojoFailureException {
+    try {
+      compile(newCommand(configuration), configuration);
+    }
+    catch (final MojoFailureException e) {
+      throw e;
     }
     catch (final JAXBException e) {
       throw new MojoExecutionException(e.getClass().getSimpleName() + ": " + e.getMessage(), e);
@@ -315,9 +458,162 @@ public class JaxbMojo extends GeneratorMojo {
     catch (final Exception e) {
       throw new MojoFailureException(e.getClass().getSimpleName() + ": " + e.getMessage(), e);
     }
-    finally {
-      if (!command.getDebug() && masterCatalog != null)
-        masterCatalog.delete();
+  }
+
+  /**
+   * Returns a new {@link XJCompiler.Command} for the parameters of this mojo.
+   *
+   * @param configuration The {@link Configuration} of the execution.
+   * @return A new {@link XJCompiler.Command} for the parameters of this mojo.
+   * @throws Exception If the schemas cannot be previewed, or if the classpath cannot be resolved.
+   */
+  XJCompiler.Command newCommand(final Configuration configuration) throws Exception {
+    final XJCompiler.Command command = new XJCompiler.Command();
+    command.setDebug(debug);
+    command.setPrimitives(primitives);
+    command.setBinaryContent(binaryContent);
+    command.setJavaTime(javaTime);
+    command.setStax(stax);
+    command.setFragments(fragments);
+    command.setReuse(reuse);
+    command.setImmutable(immutable);
+    command.setNativeImage(nativeImage);
+    if (rootElements != null && rootElements.size() > 0)
+      command.setRootElements(rootElements.stream().map(QName::valueOf).collect(Collectors.toCollection(LinkedHashSet::new)));
+
+    command.setReadOnly(readOnly);
+    command.setNoHeader(noHeader);
+    command.setExplicitAnnotation(explicitAnnotation);
+    command.setDisableXmlSecurity(disableXmlSecurity);
+    command.setContentForWildcard(contentForWildcard);
+    command.setAutoNameResolution(autoNameResolution);
+    command.setTestClassNameAllocator(testClassNameAllocator);
+    command.setJavaModule(javaModule);
+    command.setHttpProxyFile(httpProxyFile);
+    command.setHttpProxy(httpProxy);
+    command.setAddGeneratedAnnotation(addGeneratedAnnotation);
+    command.setEnableIntrospection(enableIntrospection);
+    command.setExtension(extension);
+    command.setLaxSchemaValidation(laxSchemaValidation);
+    command.setNoGeneratedHeaderComments(noGeneratedHeaderComments);
+    command.setNoPackageLevelAnnotations(noPackageLevelAnnotations);
+    command.setQuiet(quiet);
+    if (targetVersion != null)
+      command.setTargetVersion(XJCompiler.Command.TargetVersion.fromString(targetVersion));
+
+    if (sourceType != null)
+      command.setSourceType(XJCompiler.Command.SourceType.fromString(sourceType));
+
+    command.setVerbose(verbose);
+    command.setEncoding(encoding);
+    command.setPackageName(packageName);
+    command.setDestDir(configuration.getDestDir());
+    command.setOverwrite(configuration.getOverwrite());
+    command.setGenerateEpisode(generateEpisode);
+    if (plugins != null && plugins.size() > 0)
+      command.setPlugins(new LinkedHashSet<>(plugins));
+
+    command.setPluginIndex(new File(getProject().getBuild().getDirectory(), "jaxb" + File.separator + "plugins.idx"));
+
+    final SchemaCache schemaCache;
+    if (schemaCacheDir != null) {
+      schemaCache = new SchemaCache(schemaCacheDir);
+      schemaCache.setOffline(getOffline());
+      command.setSchemaCache(schemaCache);
+    }
+    else {
+      schemaCache = null;
+    }
+
+    if (buildCacheDir != null) {
+      final BuildCache buildCache = new BuildCache(buildCacheDir);
+      buildCache.setRemote(buildCacheUrl);
+      buildCache.setPush(buildCachePush);
+      buildCache.setOffline(getOffline());
+      command.setBuildCache(buildCache);
     }
+
+    if (episodeCacheDir != null)
+      command.setEpisodeCache(new EpisodeCache(episodeCacheDir));
+
+    // The schemas are previewed in parallel, and their catalog fragments are merged into an in-memory
+    // index in the order of the schemas, so that the first entry for an identifier wins
+    final LinkedHashSet<URI> uris = new LinkedHashSet<>();
+    if (schemas.size() > 0) {
+      final File fragmentCacheDir = new File(getProject().getBuild().getDirectory(), "jaxb" + File.separator + "catalog");
+      final LinkedHashSet<String> distinct = new LinkedHashSet<>(schemas);
+      final ArrayList<Future<String>> fragments = new ArrayList<>(distinct.size());
+      final ExecutorService executor = Executors.newFixedThreadPool(Math.min(distinct.size(), Runtime.getRuntime().availableProcessors()));
+      try {
+        for (final String schema : distinct) { // [S]
+          final URL url = new URL(schema);
+          final URI uri = url.toURI();
+          uris.add(uri);
+          fragments.add(executor.submit(() -> preview(url, schemaCache != null && SchemaCache.isRemote(url) ? schemaCache.prefetch(uri).get(uri).toURI().toURL() : url, fragmentCacheDir)));
+        }
+
+        final CatalogIndex index = new CatalogIndex();
+        for (int i = 0, i$ = fragments.size(); i < i$; ++i) // [RA]
+          index.putTR9401(get(fragments.get(i)));
+
+        command.setCatalogIndex(index);
+      }
+      finally {
+        executor.shutdownNow();
+      }
+    }
+
+    command.setCatalog(catalog);
+
+    command.setSchemas(uris);
+    if (bindings != null && bindings.size() > 0)
+      command.setXJBs(new LinkedHashSet<>(bindings).stream().map(URI::create).collect(Collectors.toCollection(LinkedHashSet::new)));
+
+    command.addClasspath(MojoUtil.getExecutionClasspath(getProject(), getExecution(), (PluginDescriptor)this.getPluginContext().get("pluginDescriptor"), getSession().getLocalRepository(), artifactHandler));
+    return command;
+  }
+
+  /**
+   * Compiles the specified {@link XJCompiler.Command}, adds the generated resources to the project, and writes the report of the
+   * compilation. If {@code contextBudget} is specified, checks the {@code JAXBContext} of each generated package against it.
+   *
+   * @param command The {@link XJCompiler.Command}.
+   * @param configuration The {@link Configuration} of the execution.
+   * @throws IOException If an I/O error has occurred.
+   * @throws JAXBException If XJC has failed, or if the {@code JAXBContext} of a generated package cannot be created.
+   * @throws MojoFailureException If the {@code JAXBContext} of a generated package exceeds the {@code contextBudget}.
+   */
+  void compile(final XJCompiler.Command command, final Configuration configuration) throws IOException, JAXBException, MojoFailureException {
+    final CompileReport report = XJCompiler.compile(command);
+    if (nativeImage) {
+      final Resource resource = new Resource();
+      resource.setDirectory(configuration.getDestDir().getAbsolutePath());
+      resource.addInclude("**/jaxb.index");
+      resource.addInclude("META-INF/native-image/**");
+      if (isInTestPhase())
+        getProject().addTestResource(resource);
+      else
+        getProject().addResource(resource);
+    }
+
+    if (getLog().isInfoEnabled())
+      getLog().info("XJC: " + report);
+
+    final File jaxbDir = new File(getProject().getBuild().getDirectory(), "jaxb");
+    final File reportFile = new File(jaxbDir, getExecution().getExecutionId() + "-report.json");
+    if (reportFile.getParentFile().exists() || reportFile.getParentFile().mkdirs())
+      Files.write(reportFile.toPath(), report.toJson().getBytes(StandardCharsets.UTF_8));
+
+    if (contextBudget == null)
+      return;
+
+    final ContextReport contextReport = contextBudget.check(configuration.getDestDir(), command.getClasspath(), new File(jaxbDir, getExecution().getExecutionId() + "-context"));
+    if (getLog().isInfoEnabled())
+      getLog().info("JAXBContext: " + contextReport);
+
+    Files.write(new File(jaxbDir, getExecution().getExecutionId() + "-context.json").toPath(), contextReport.toJson().getBytes(StandardCharsets.UTF_8));
+    final List<String> exceeded = contextReport.getExceeded();
+    if (exceeded.size() > 0)
+      throw new MojoFailureException("JAXBContext budget exceeded:\n  " + String.join("\n  ", exceeded));
   }
 }
\ No newline at end of file
@@ -0,0 +1,53 @@
+/* Copyright (c) 2017 OpenJAX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.openjax.jaxb;
+
+import javax.xml.bind.JAXBException;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.openjax.jaxb.xjc.SchemaWatcher;
+import org.openjax.jaxb.xjc.XJCompiler;
+
+/**
+ * Mojo that compiles the schemas like the {@code xjc} goal, and then watches the schemas and bindings (and the local schemas they
+ * import or include), and compiles them again whenever they change, until the build is interrupted (e.g. with {@code Ctrl-C}).
+ */
+@Mojo(name = "watch", requiresDependencyResolution = ResolutionScope.TEST, threadSafe = true)
+public class JaxbWatchMojo extends JaxbMojo {
+  @Override
+  public void execute(final Configuration configuration) throws MojoExecutionException, MojoFailureException {
+    try {
+      final XJCompiler.Command command = newCommand(configuration);
+      compile(command, configuration);
+      try (final SchemaWatcher watcher = new SchemaWatcher(command, report -> {
+        if (getLog().isInfoEnabled())
+          getLog().info("XJC: " + report);
+      })) {
+        watcher.watch();
+      }
+    }
+    catch (final JAXBException e) {
+      throw new MojoExecutionException(e.getClass().getSimpleName() + ": " + e.getMessage(), e);
+    }
+    catch (final Exception e) {
+      throw new MojoFailureException(e.getClass().getSimpleName() + ": " + e.getMessage(), e);
+    }
+  }
+}
@@ -0,0 +1,167 @@
+/* Copyright (c) 2017 OpenJAX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.openjax.jaxb.xjc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A report of an {@link XJCompiler#compileAll(java.util.Collection,int)} invocation, with the {@link Result} of each
+ * {@link XJCompiler.Command}, and the wall-clock time of the batch.
+ */
+public class BatchReport {
+  /** The result of the compilation of a {@link XJCompiler.Command} of the batch. */
+  public static final class Result {
+    private final XJCompiler.Command command;
+    private final CompileReport report;
+    private final Exception exception;
+    private final long time;
+
+    Result(final XJCompiler.Command command, final CompileReport report, final Exception exception, final long time) {
+      this.command = command;
+      this.report = report;
+      this.exception = exception;
+      this.time = time;
+    }
+
+    /**
+     * @return The {@link XJCompiler.Command}.
+     */
+    public XJCompiler.Command getCommand() {
+      return command;
+    }
+
+    /**
+     * @return The {@link CompileReport} of the compilation, or {@code null} if the compilation failed.
+     */
+    public CompileReport getReport() {
+      return report;
+    }
+
+    /**
+     * @return The exception with which the compilation failed, or {@code null} if the compilation succeeded.
+     */
+    public Exception getException() {
+      return exception;
+    }
+
+    /**
+     * @return The time spent in the compilation, in nanoseconds.
+     */
+    public long getTime() {
+      return time;
+    }
+  }
+
+  private final ArrayList<Result> results;
+  private final long time;
+
+  BatchReport(final ArrayList<Result> results, final long time) {
+    this.results = results;
+    this.time = time;
+  }
+
+  /**
+   * @return The results of the commands, in the order of the commands.
+   */
+  public List<Result> getResults() {
+    return Collections.unmodifiableList(results);
+  }
+
+  /**
+   * @return The number of commands that failed.
+   */
+  public int getFailed() {
+    int failed = 0;
+    for (int i = 0, i$ = results.size(); i < i$; ++i) // [RA]
+      if (results.get(i).exception != null)
+        ++failed;
+
+    return failed;
+  }
+
+  /**
+   * @return The wall-clock time of the batch, in nanoseconds.
+   */
+  public long getTime() {
+    return time;
+  }
+
+  /**
+   * @return The sum of the times of the compilations of the batch, in nanoseconds.
+   */
+  public long getSerialTime() {
+    long serialTime = 0;
+    for (int i = 0, i$ = results.size(); i < i$; ++i) // [RA]
+      serialTime += results.get(i).time;
+
+    return serialTime;
+  }
+
+  /**
+   * @return This report in JSON format.
+   */
+  public String toJson() {
+    final StringBuilder b = new StringBuilder("{\n");
+    b.append("  \"commands\": ").append(results.size()).append(",\n");
+    b.append("  \"failed\": ").append(getFailed()).append(",\n");
+    b.append("  \"timeMs\": ").append(time / 1000000).append(",\n");
+    b.append("  \"serialTimeMs\": ").append(getSerialTime() / 1000000).append(",\n");
+    b.append("  \"results\": [");
+    for (int i = 0, i$ = results.size(); i < i$; ++i) { // [RA]
+      final Result result = results.get(i);
+      if (i > 0)
+        b.append(',');
+
+      b.append("\n    {\"timeMs\": ").append(result.time / 1000000);
+      if (result.exception != null)
+        b.append(", \"error\": \"").append(escape(String.valueOf(result.exception.getMessage()))).append('"');
+      else
+        b.append(", \"written\": ").append(result.report.getWritten()).append(", \"unchanged\": ").append(result.report.getUnchanged()).append(", \"diagnostics\": ").append(result.report.getDiagnostics().size());
+
+      b.append('}');
+    }
+
+    return b.append("\n  ]\n}\n").toString();
+  }
+
+  private static String escape(final String value) {
+    final StringBuilder b = new StringBuilder(value.length());
+    for (int i = 0, i$ = value.length(); i < i$; ++i) { // [N]
+      final char ch = value.charAt(i);
+      if (ch == '"' || ch == '\\')
+        b.append('\\').append(ch);
+      else if (ch == '\n')
+        b.append("\\n");
+      else if (ch < ' ')
+        b.append(' ');
+      else
+        b.append(ch);
+    }
+
+    return b.toString();
+  }
+
+  /**
+   * @return A one-line summary of this report.
+   */
+  @Override
+  public String toString() {
+    return results.size() + " commands (" + getFailed() + " failed) in " + time / 1000000 + " ms (" + getSerialTime() / 1000000 + " ms serial)";
+  }
+}
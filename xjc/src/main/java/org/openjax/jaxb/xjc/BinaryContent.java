@@ -0,0 +1,429 @@
+/* Copyright (c) 2017 OpenJAX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.openjax.jaxb.xjc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import javax.xml.bind.annotation.adapters.XmlAdapter;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Binary content of an {@code xs:base64Binary} element, which is held off the heap: in a direct {@link ByteBuffer} if it is no longer
+ * than the {@linkplain #setThreshold(int) threshold}, or else in a spill file (which can be {@linkplain #map() memory-mapped}).
+ * <p>
+ * The {@code -XbinaryContent} plugin generates the {@code xs:base64Binary} element properties as {@link BinaryContent}, which the
+ * static StAX readers of the {@code -Xstax} plugin decode {@linkplain #read(XMLStreamReader) straight from the reader}, and the StAX
+ * writers encode {@linkplain #write(XMLStreamWriter) straight to the writer}, so that the heap used by the content is independent of
+ * its size. The JAXB runtime binds the content via the {@link Adapter}, which decodes it into a {@code byte[]} first.
+ * <p>
+ * The spill file of the content is deleted when the content is {@linkplain #close() closed}.
+ */
+public class BinaryContent implements Closeable {
+  /** An {@link XmlAdapter} with which the JAXB runtime binds {@code xs:base64Binary} as {@link BinaryContent}. */
+  public static final class Adapter extends XmlAdapter<byte[],BinaryContent> {
+    @Override
+    public BinaryContent unmarshal(final byte[] v) throws IOException {
+      return v == null ? null : of(new ByteArrayInputStream(v));
+    }
+
+    @Override
+    public byte[] marshal(final BinaryContent v) throws IOException {
+      return v == null ? null : v.toByteArray();
+    }
+  }
+
+  private static final char[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+  private static final byte[] SEXTETS = new byte[128];
+
+  static {
+    Arrays.fill(SEXTETS, (byte)-1);
+    for (int i = 0; i < ALPHABET.length; ++i) // [A]
+      SEXTETS[ALPHABET[i]] = (byte)i;
+  }
+
+  private static volatile int threshold = 1 << 20;
+  private static volatile File directory;
+
+  /**
+   * @return The maximum length of content that is held in a direct {@link ByteBuffer}, beyond which content is spilled to a file.
+   */
+  public static int getThreshold() {
+    return threshold;
+  }
+
+  /**
+   * Sets the maximum length of content that is held in a direct {@link ByteBuffer}, beyond which content is spilled to a file. The
+   * default is 1 MiB.
+   *
+   * @param threshold The maximum length of content that is held in a direct {@link ByteBuffer}, or {@code 0} to spill all content.
+   * @throws IllegalArgumentException If {@code threshold} is negative.
+   */
+  public static void setThreshold(final int threshold) {
+    if (threshold < 0)
+      throw new IllegalArgumentException("threshold (" + threshold + ") must be non-negative");
+
+    BinaryContent.threshold = threshold;
+  }
+
+  /**
+   * @return The directory of the spill files, or {@code null} for the default temporary-file directory.
+   */
+  public static File getDirectory() {
+    return directory;
+  }
+
+  /**
+   * Sets the directory of the spill files.
+   *
+   * @param directory The directory of the spill files, or {@code null} for the default temporary-file directory.
+   */
+  public static void setDirectory(final File directory) {
+    BinaryContent.directory = directory;
+  }
+
+  /** The destination of decoded bytes, which moves from a direct buffer to a spill file when the threshold is exceeded. */
+  private static final class Sink {
+    private final int threshold = BinaryContent.threshold;
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(Math.min(threshold, 8192));
+    private File file;
+    private FileChannel channel;
+    private long length;
+
+    private void write(final byte[] bytes, final int len) throws IOException {
+      length += len;
+      if (channel == null) {
+        if (buffer.remaining() >= len) {
+          buffer.put(bytes, 0, len);
+          return;
+        }
+
+        if (length <= threshold) {
+          final ByteBuffer grown = ByteBuffer.allocateDirect((int)Math.min(threshold, Math.max(length, (long)buffer.capacity() << 1)));
+          buffer.flip();
+          buffer = grown.put(buffer).put(bytes, 0, len);
+          return;
+        }
+
+        file = File.createTempFile("jaxb", ".bin", directory);
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+        buffer.flip();
+        while (buffer.hasRemaining()) // [X]
+          channel.write(buffer);
+
+        buffer = null;
+      }
+
+      final ByteBuffer wrapped = ByteBuffer.wrap(bytes, 0, len);
+      while (wrapped.hasRemaining()) // [X]
+        channel.write(wrapped);
+    }
+
+    private BinaryContent finish() throws IOException {
+      if (channel == null) {
+        buffer.flip();
+        return new BinaryContent(buffer.asReadOnlyBuffer(), null, length);
+      }
+
+      channel.close();
+      return new BinaryContent(null, file, length);
+    }
+
+    private void discard() {
+      if (channel != null) {
+        try {
+          channel.close();
+        }
+        catch (final IOException e) {
+        }
+
+        file.delete();
+      }
+    }
+  }
+
+  /** An incremental base64 decoder, which ignores whitespace. */
+  private static final class Decoder {
+    private final Sink sink = new Sink();
+    private final byte[] bytes = new byte[8190];
+    private int count;
+    private int quantum;
+    private int sextets;
+    private int padding;
+
+    private void decode(final char[] chars, final int off, final int len) throws IOException, XMLStreamException {
+      for (int i = off, i$ = off + len; i < i$; ++i) { // [A]
+        final char ch = chars[i];
+        if (ch == ' ' || ch == '\t' || ch == '\r' || ch == '\n')
+          continue;
+
+        if (ch == '=') {
+          ++padding;
+          quantum <<= 6;
+        }
+        else if (padding > 0 || ch >= 128 || SEXTETS[ch] < 0) {
+          throw new XMLStreamException("Illegal base64 character: '" + ch + "'");
+        }
+        else {
+          quantum = quantum << 6 | SEXTETS[ch];
+        }
+
+        if (++sextets == 4) {
+          bytes[count++] = (byte)(quantum >> 16);
+          if (padding < 2)
+            bytes[count++] = (byte)(quantum >> 8);
+
+          if (padding < 1)
+            bytes[count++] = (byte)quantum;
+
+          sextets = 0;
+          quantum = 0;
+          if (count > bytes.length - 3) {
+            sink.write(bytes, count);
+            count = 0;
+          }
+        }
+      }
+    }
+
+    private BinaryContent finish() throws IOException, XMLStreamException {
+      if (sextets != 0)
+        throw new XMLStreamException("Truncated base64 content");
+
+      sink.write(bytes, count);
+      return sink.finish();
+    }
+  }
+
+  /**
+   * Reads the base64 text of the element at which the specified reader is positioned as {@link BinaryContent}, and leaves the reader
+   * at the end of the element. The text is decoded as it is read, so that only a chunk of it is held on the heap at any time.
+   *
+   * @param reader The {@link XMLStreamReader}, positioned at the start of the element.
+   * @return The {@link BinaryContent} of the element.
+   * @throws XMLStreamException If an error has occurred while reading, if the element has child elements, or if its text is not
+   *           valid base64.
+   */
+  public static BinaryContent read(final XMLStreamReader reader) throws XMLStreamException {
+    final Decoder decoder = new Decoder();
+    final char[] chars = new char[8192];
+    try {
+      for (int event; (event = reader.next()) != XMLStreamConstants.END_ELEMENT;) { // [X]
+        if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA || event == XMLStreamConstants.SPACE) {
+          for (int start = 0, count; (count = reader.getTextCharacters(start, chars, 0, chars.length)) > 0; start += count) // [X]
+            decoder.decode(chars, 0, count);
+        }
+        else if (event == XMLStreamConstants.START_ELEMENT || event == XMLStreamConstants.END_DOCUMENT) {
+          throw new XMLStreamException("Unexpected event in base64 content: " + event, reader.getLocation());
+        }
+      }
+
+      return decoder.finish();
+    }
+    catch (final IOException e) {
+      decoder.sink.discard();
+      throw new XMLStreamException(e);
+    }
+    catch (final XMLStreamException | RuntimeException e) {
+      decoder.sink.discard();
+      throw e;
+    }
+  }
+
+  /**
+   * Returns {@link BinaryContent} of the bytes of the specified {@link InputStream}.
+   *
+   * @param in The {@link InputStream}.
+   * @return {@link BinaryContent} of the bytes of the specified {@link InputStream}.
+   * @throws IOException If an I/O error has occurred.
+   */
+  public static BinaryContent of(final InputStream in) throws IOException {
+    final Sink sink = new Sink();
+    final byte[] bytes = new byte[8192];
+    try {
+      for (int count; (count = in.read(bytes)) != -1;) // [X]
+        sink.write(bytes, count);
+
+      return sink.finish();
+    }
+    catch (final IOException | RuntimeException e) {
+      sink.discard();
+      throw e;
+    }
+  }
+
+  private final ByteBuffer buffer;
+  private final File file;
+  private final long length;
+
+  private BinaryContent(final ByteBuffer buffer, final File file, final long length) {
+    this.buffer = buffer;
+    this.file = file;
+    this.length = length;
+  }
+
+  /**
+   * @return The number of bytes of the content.
+   */
+  public long getLength() {
+    return length;
+  }
+
+  /**
+   * @return The spill file of the content, or {@code null} if the content is held in a direct {@link ByteBuffer}.
+   */
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * Returns a new {@link InputStream} of the content, which reads the content lazily.
+   *
+   * @return A new {@link InputStream} of the content.
+   * @throws IOException If an I/O error has occurred.
+   */
+  public InputStream openStream() throws IOException {
+    if (file != null)
+      return Files.newInputStream(file.toPath());
+
+    final ByteBuffer buffer = this.buffer.duplicate();
+    return new InputStream() {
+      @Override
+      public int read() {
+        return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+      }
+
+      @Override
+      public int read(final byte[] b, final int off, final int len) {
+        if (len == 0)
+          return 0;
+
+        if (!buffer.hasRemaining())
+          return -1;
+
+        final int count = Math.min(len, buffer.remaining());
+        buffer.get(b, off, count);
+        return count;
+      }
+
+      @Override
+      public int available() {
+        return buffer.remaining();
+      }
+    };
+  }
+
+  /**
+   * Returns a read-only {@link ByteBuffer} of the content: the direct {@link ByteBuffer} of the content, or a memory-mapped region of
+   * its spill file.
+   *
+   * @return A read-only {@link ByteBuffer} of the content.
+   * @throws IOException If an I/O error has occurred.
+   */
+  public ByteBuffer map() throws IOException {
+    if (file == null)
+      return buffer.duplicate();
+
+    try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+    }
+  }
+
+  /**
+   * Returns the content as a {@code byte[]}, on the heap.
+   *
+   * @return The content as a {@code byte[]}.
+   * @throws IOException If an I/O error has occurred.
+   * @throws IllegalStateException If the content is too long for a {@code byte[]}.
+   */
+  public byte[] toByteArray() throws IOException {
+    if (length > Integer.MAX_VALUE - 8)
+      throw new IllegalStateException("Content of " + length + " bytes is too long for a byte[]");
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream((int)length);
+    try (final InputStream in = openStream()) {
+      final byte[] bytes = new byte[8192];
+      for (int count; (count = in.read(bytes)) != -1;) // [X]
+        out.write(bytes, 0, count);
+    }
+
+    return out.toByteArray();
+  }
+
+  /**
+   * Writes the content to the specified writer as base64 text. The content is encoded as it is read, so that only a chunk of it is
+   * held on the heap at any time.
+   *
+   * @param writer The {@link XMLStreamWriter}.
+   * @throws XMLStreamException If an error has occurred while writing, or while reading the content.
+   */
+  public void write(final XMLStreamWriter writer) throws XMLStreamException {
+    final byte[] bytes = new byte[6144];
+    final char[] chars = new char[8192];
+    try (final InputStream in = openStream()) {
+      int count = 0;
+      for (int read; (read = in.read(bytes, count, bytes.length - count)) != -1 || count > 0;) { // [X]
+        if (read > 0)
+          count += read;
+
+        // Only whole groups of 3 bytes are encoded, until the content ends
+        final int whole = read == -1 ? count : count - count % 3;
+        if (whole == 0)
+          continue;
+
+        int n = 0;
+        for (int i = 0; i < whole; i += 3) { // [A]
+          final int b0 = bytes[i] & 0xff;
+          final int b1 = i + 1 < whole ? bytes[i + 1] & 0xff : 0;
+          final int b2 = i + 2 < whole ? bytes[i + 2] & 0xff : 0;
+          chars[n++] = ALPHABET[b0 >> 2];
+          chars[n++] = ALPHABET[(b0 & 0x03) << 4 | b1 >> 4];
+          chars[n++] = i + 1 < whole ? ALPHABET[(b1 & 0x0f) << 2 | b2 >> 6] : '=';
+          chars[n++] = i + 2 < whole ? ALPHABET[b2 & 0x3f] : '=';
+        }
+
+        writer.writeCharacters(chars, 0, n);
+        System.arraycopy(bytes, whole, bytes, 0, count - whole);
+        count -= whole;
+      }
+    }
+    catch (final IOException e) {
+      throw new XMLStreamException(e);
+    }
+  }
+
+  /**
+   * Deletes the spill file of the content, if any. The content is not readable after it is closed.
+   */
+  @Override
+  public void close() {
+    if (file != null)
+      file.delete();
+  }
+}
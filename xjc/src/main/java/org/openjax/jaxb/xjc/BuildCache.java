@@ -0,0 +1,260 @@
+/* Copyright (c) 2017 OpenJAX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.openjax.jaxb.xjc;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A content-addressed cache of the output of XJC, which is shared by workspaces via a local directory and, optionally, a remote
+ * HTTP server.
+ * <p>
+ * An entry is the zip of the files that XJC generated (i.e. the sources, the episode, and the resources of plugins), and is addressed
+ * by a key that is the SHA-256 hash of the normalized inputs of the compilation: the options, the content of the schemas, bindings
+ * and catalogs, and the XJC and plugin jars. Entries are stored at {@code <dir>/<key[0..2]>/<key>.zip}. A remote cache is a server
+ * that serves an entry at {@code <remote>/<key>.zip} in response to {@code GET}, and stores it in response to {@code PUT}.
+ * <p>
+ * Entries are never modified, so they are written atomically, and may be shared by concurrent builds. In {@link #getOffline()
+ * offline} mode, the remote cache is not contacted.
+ */
+public class BuildCache {
+  private static final Logger logger = LoggerFactory.getLogger(BuildCache.class);
+
+  private final File dir;
+  private URL remote;
+  private boolean push;
+  private boolean offline;
+
+  /**
+   * Creates a new {@link BuildCache} in the specified directory.
+   *
+   * @param dir The directory of the cache.
+   * @throws NullPointerException If {@code dir} is null.
+   */
+  public BuildCache(final File dir) {
+    if (dir == null)
+      throw new NullPointerException("dir == null");
+
+    this.dir = dir;
+  }
+
+  public File getDir() {
+    return dir;
+  }
+
+  public URL getRemote() {
+    return remote;
+  }
+
+  public void setRemote(final URL remote) {
+    this.remote = remote;
+  }
+
+  public boolean getPush() {
+    return push;
+  }
+
+  public void setPush(final boolean push) {
+    this.push = push;
+  }
+
+  public boolean getOffline() {
+    return offline;
+  }
+
+  public void setOffline(final boolean offline) {
+    this.offline = offline;
+  }
+
+  File toFile(final String key) {
+    return new File(dir, key.substring(0, 2) + File.separator + key + ".zip");
+  }
+
+  /**
+   * Unpacks the entry of the specified key into the specified directory, fetching it from the remote cache if it is not in the local
+   * cache.
+   *
+   * @param key The key of the entry.
+   * @param target The directory into which the entry is to be unpacked.
+   * @return Whether the entry of the specified key was found.
+   * @throws IOException If an I/O error has occurred.
+   */
+  public boolean get(final String key, final File target) throws IOException {
+    final File file = toFile(key);
+    if (!file.exists() && (remote == null || offline || !fetch(key, file)))
+      return false;
+
+    try (final ZipInputStream in = new ZipInputStream(Files.newInputStream(file.toPath()))) {
+      final Path root = target.toPath().normalize();
+      for (ZipEntry entry; (entry = in.getNextEntry()) != null;) { // [X]
+        final Path path = root.resolve(entry.getName()).normalize();
+        if (!path.startsWith(root))
+          throw new IOException("Illegal entry " + entry.getName() + " in " + file.getAbsolutePath());
+
+        Files.createDirectories(path.getParent());
+        Files.copy(in, path, StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+
+    if (logger.isDebugEnabled())
+      logger.debug("Build cache hit: " + key);
+
+    return true;
+  }
+
+  /**
+   * Stores the files in the specified directory as the entry of the specified key, and pushes the entry to the remote cache if
+   * {@link #getPush() push} is enabled.
+   *
+   * @param key The key of the entry.
+   * @param source The directory of the files of the entry.
+   * @throws IOException If an I/O error has occurred.
+   */
+  public void put(final String key, final File source) throws IOException {
+    final File file = toFile(key);
+    final File parent = file.getParentFile();
+    if (!parent.exists() && !parent.mkdirs() && !parent.exists())
+      throw new IOException("Unable to create directory: " + parent.getAbsolutePath());
+
+    // The entries are sorted, so that the zip of equal outputs is equal
+    final Path root = source.toPath();
+    final TreeSet<String> names = new TreeSet<>();
+    try (final Stream<Path> paths = Files.walk(root)) {
+      for (final Iterator<Path> i = paths.filter(Files::isRegularFile).iterator(); i.hasNext();) // [I]
+        names.add(root.relativize(i.next()).toString().replace(File.separatorChar, '/'));
+    }
+
+    final Path temp = Files.createTempFile(parent.toPath(), file.getName(), ".tmp");
+    try {
+      try (final ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(temp))) {
+        for (final String name : names) { // [S]
+          final ZipEntry entry = new ZipEntry(name);
+          entry.setTime(0);
+          out.putNextEntry(entry);
+          Files.copy(root.resolve(name), out);
+          out.closeEntry();
+        }
+      }
+
+      move(temp, file.toPath());
+    }
+    finally {
+      Files.deleteIfExists(temp);
+    }
+
+    if (push && remote != null && !offline) {
+      try {
+        send(key, file);
+      }
+      catch (final IOException e) {
+        if (logger.isWarnEnabled())
+          logger.warn("Unable to push " + key + " to " + remote + ": " + e.getMessage());
+      }
+    }
+  }
+
+  private URL toURL(final String key) throws IOException {
+    final String base = remote.toString();
+    return new URL(base.endsWith("/") ? base + key + ".zip" : base + "/" + key + ".zip");
+  }
+
+  private boolean fetch(final String key, final File file) throws IOException {
+    final HttpURLConnection connection = (HttpURLConnection)toURL(key).openConnection();
+    try {
+      final int code = connection.getResponseCode();
+      if (code == HttpURLConnection.HTTP_NOT_FOUND)
+        return false;
+
+      if (code != HttpURLConnection.HTTP_OK) {
+        if (logger.isWarnEnabled())
+          logger.warn("Remote build cache returned " + code + " for " + key);
+
+        return false;
+      }
+
+      final File parent = file.getParentFile();
+      if (!parent.exists() && !parent.mkdirs() && !parent.exists())
+        throw new IOException("Unable to create directory: " + parent.getAbsolutePath());
+
+      final Path temp = Files.createTempFile(parent.toPath(), file.getName(), ".tmp");
+      try (final InputStream in = connection.getInputStream()) {
+        Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+        move(temp, file.toPath());
+      }
+      finally {
+        Files.deleteIfExists(temp);
+      }
+
+      return true;
+    }
+    catch (final IOException e) {
+      if (logger.isWarnEnabled())
+        logger.warn("Unable to fetch " + key + " from " + remote + ": " + e.getMessage());
+
+      return false;
+    }
+    finally {
+      connection.disconnect();
+    }
+  }
+
+  private void send(final String key, final File file) throws IOException {
+    final HttpURLConnection connection = (HttpURLConnection)toURL(key).openConnection();
+    try {
+      connection.setRequestMethod("PUT");
+      connection.setDoOutput(true);
+      connection.setFixedLengthStreamingMode(file.length());
+      connection.setRequestProperty("Content-Type", "application/zip");
+      try (final OutputStream out = connection.getOutputStream()) {
+        Files.copy(file.toPath(), out);
+      }
+
+      final int code = connection.getResponseCode();
+      if (code / 100 != 2)
+        throw new IOException("Server returned " + code);
+    }
+    finally {
+      connection.disconnect();
+    }
+  }
+
+  private static void move(final Path source, final Path target) throws IOException {
+    try {
+      Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    catch (final AtomicMoveNotSupportedException e) {
+      Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+}
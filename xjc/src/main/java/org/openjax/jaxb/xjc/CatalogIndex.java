@@ -0,0 +1,156 @@
+/* Copyright (c) 2017 OpenJAX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.openjax.jaxb.xjc;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An in-memory index of catalog entries, hashed by entry type and identifier. Entries are added from TR9401 catalog fragments or
+ * individually, and the first entry for an identifier wins (as it does in a catalog file). The index is rendered in the OASIS XML
+ * Catalog format, which is supported by the catalog resolvers of all JDKs.
+ */
+public class CatalogIndex {
+  /** The type of a catalog entry. */
+  public enum Type {
+    PUBLIC("public", "publicId", "uri"),
+    SYSTEM("system", "systemId", "uri"),
+    REWRITE_SYSTEM("rewriteSystem", "systemIdStartString", "rewritePrefix"),
+    URI("uri", "name", "uri");
+
+    private final String element;
+    private final String idAttribute;
+    private final String uriAttribute;
+
+    Type(final String element, final String idAttribute, final String uriAttribute) {
+      this.element = element;
+      this.idAttribute = idAttribute;
+      this.uriAttribute = uriAttribute;
+    }
+  }
+
+  private final EnumMap<Type,LinkedHashMap<String,String>> entries = new EnumMap<>(Type.class);
+
+  /**
+   * Adds an entry to this index, unless an entry of the same {@code type} and {@code id} is already present.
+   *
+   * @param type The {@link Type} of the entry.
+   * @param id The identifier of the entry.
+   * @param uri The URI to which the entry resolves.
+   * @return {@code true} if the entry was added.
+   */
+  public boolean put(final Type type, final String id, final String uri) {
+    return entries.computeIfAbsent(type, k -> new LinkedHashMap<>()).putIfAbsent(id, uri) == null;
+  }
+
+  /**
+   * Returns the URI to which the entry of the specified {@code type} and {@code id} resolves, or {@code null} if no such entry exists.
+   *
+   * @param type The {@link Type} of the entry.
+   * @param id The identifier of the entry.
+   * @return The URI to which the entry of the specified {@code type} and {@code id} resolves, or {@code null} if no such entry exists.
+   */
+  public String get(final Type type, final String id) {
+    final LinkedHashMap<String,String> map = entries.get(type);
+    return map == null ? null : map.get(id);
+  }
+
+  /**
+   * Adds the entries of this index to the specified {@link CatalogIndex}.
+   *
+   * @param index The {@link CatalogIndex} to which the entries of this index are to be added.
+   */
+  public void copyTo(final CatalogIndex index) {
+    for (final Map.Entry<Type,LinkedHashMap<String,String>> entry : entries.entrySet()) // [S]
+      for (final Map.Entry<String,String> e : entry.getValue().entrySet()) // [S]
+        index.put(entry.getKey(), e.getKey(), e.getValue());
+  }
+
+  /**
+   * Adds the {@code PUBLIC}, {@code SYSTEM}, {@code REWRITE_SYSTEM} and {@code URI} entries of the specified TR9401 catalog, which is
+   * expected to have one entry per line, to this index. Comments and entries of other types are ignored.
+   *
+   * @param tr9401 The TR9401 catalog.
+   */
+  public void putTR9401(final String tr9401) {
+    final ArrayList<String> tokens = new ArrayList<>(3);
+    for (final String line : tr9401.split("\\r?\\n")) { // [A]
+      tokens.clear();
+      for (int i = 0, len = line.length(); i < len && tokens.size() < 3;) { // [N]
+        final char ch = line.charAt(i);
+        if (Character.isWhitespace(ch)) {
+          ++i;
+        }
+        else if (ch == '"' || ch == '\'') {
+          final int end = line.indexOf(ch, ++i);
+          if (end == -1)
+            break;
+
+          tokens.add(line.substring(i, end));
+          i = end + 1;
+        }
+        else if (line.startsWith("--", i)) {
+          break;
+        }
+        else {
+          final int start = i;
+          while (++i < len && !Character.isWhitespace(line.charAt(i)));
+          tokens.add(line.substring(start, i));
+        }
+      }
+
+      if (tokens.size() == 3) {
+        try {
+          put(Type.valueOf(tokens.get(0)), tokens.get(1), tokens.get(2));
+        }
+        catch (final IllegalArgumentException e) {
+        }
+      }
+    }
+  }
+
+  /**
+   * @return Whether this index has no entries.
+   */
+  public boolean isEmpty() {
+    for (final LinkedHashMap<String,String> map : entries.values()) // [C]
+      if (map.size() > 0)
+        return false;
+
+    return true;
+  }
+
+  /**
+   * @return The entries of this index in the OASIS XML Catalog format.
+   */
+  public String toXml() {
+    final StringBuilder b = new StringBuilder("<catalog xmlns=\"urn:oasis:names:tc:entity:xmlns:xml:catalog\">\n");
+    for (final Map.Entry<Type,LinkedHashMap<String,String>> entry : entries.entrySet()) { // [S]
+      final Type type = entry.getKey();
+      for (final Map.Entry<String,String> e : entry.getValue().entrySet()) // [S]
+        b.append("  <").append(type.element).append(' ').append(type.idAttribute).append("=\"").append(escape(e.getKey())).append("\" ").append(type.uriAttribute).append("=\"").append(escape(e.getValue())).append("\"/>\n");
+    }
+
+    return b.append("</catalog>\n").toString();
+  }
+
+  private static String escape(final String value) {
+    return value.replace("&", "&amp;").replace("\"", "&quot;").replace("<", "&lt;");
+  }
+}
@@ -0,0 +1,184 @@
+/* Copyright (c) 2017 OpenJAX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+
+package org.openjax.jaxb.xjc;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.TreeSet;
+
+/**
+ * Publishes the files that XJC generated into a staging directory to the destination directory, moving a file into place only if its
+ * content differs from the file that is already on disk, so that the modification time of unchanged files is preserved. The set of
+ * files published by each compilation is recorded in a manifest, which is used upon {@link #close()} to delete the files that were
+ * produced by the previous compilation but are no longer generated.
+ * <p>
+ * The leading {@code //} comment lines of a {@code .java} file (i.e. the prolog with the generation timestamp) are disregarded when
+ * comparing content.
+ */
+public class ChangeAwarePublisher implements Closeable {
+  static final String MANIFEST_DIR = ".xjc";
+
+  private final File destDir;
+  private final File manifest;
+  private final boolean overwrite;
+  private final boolean readOnly;
+  private final TreeSet<String> paths = new TreeSet<>();
+  private int written;
+  private int unchanged;
+  private int deleted;
+  private long bytes;
+
+  /**
+   * Creates a new {@link ChangeAwarePublisher}.
+   *
+   * @param destDir The destination directory.
+   * @param manifestName The name of the manifest that records the files published by this compilation, which must be unique among the
+   *          compilations that share the same {@code destDir}.
+   * @param overwrite If {@code true}, changed files are overwritten and stale files are deleted; otherwise, existing files are never
+   *          modified.
+   * @param readOnly If {@code true}, published files are marked read-only.
+   */
+  public ChangeAwarePublisher(final File destDir, final String manifestName, final boolean overwrite, final boolean readOnly) {
+    this.destDir = destDir;
+    this.manifest = new File(destDir, MANIFEST_DIR + File.separator + manifestName);
+    this.overwrite = overwrite;
+    this.readOnly = readOnly;
+  }
+
+  /**
+   * Publishes the specified staged file to the specified {@code path}. The staged file is moved to the destination directory if it is
+   * new or changed, and is otherwise left in place.
+   *
+   * @param path The {@code '/'}-separated path of the file relative to the destination directory.
+   * @param staged The staged file.
+   * @throws IOException If an I/O error has occurred.
+   */
+  public void publish(final String path, final File staged) throws IOException {
+    paths.add(path);
+    final File file = new File(destDir, path);
+    if (file.exists()) {
+      if (!overwrite || equals(path, staged, file)) {
+        ++unchanged;
+        return;
+      }
+
+      if (!file.canWrite())
+        file.setWritable(true);
+    }
+    else {
+      final File parent = file.getParentFile();
+      if (!parent.exists() && !parent.mkdirs() && !parent.exists())
+        throw new IOException("Unable to create directory: " + parent.getAbsolutePath());
+    }
+
+    final long length = staged.length();
+    Files.move(staged.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    if (readOnly)
+      file.setReadOnly();
+
+    ++written;
+    bytes += length;
+  }
+
+  /**
+   * Deletes the files recorded by the previous compilation that were not published by this compilation, and records the files
+   * published by this compilation in the manifest.
+   *
+   * @throws IOException If an I/O error has occurred.
+   */
+  @Override
+  public void close() throws IOException {
+    if (manifest.exists()) {
+      if (overwrite) {
+        for (final String path : Files.readAllLines(manifest.toPath(), StandardCharsets.UTF_8)) { // [L]
+          if (path.length() > 0 && !paths.contains(path)) {
+            final File file = new File(destDir, path);
+            if (file.exists() && file.delete())
+              ++deleted;
+          }
+        }
+      }
+    }
+    else if (!manifest.getParentFile().exists() && !manifest.getParentFile().mkdirs()) {
+      throw new IOException("Unable to create directory: " + manifest.getParentFile().getAbsolutePath());
+    }
+
+    Files.write(manifest.toPath(), new ArrayList<>(paths), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * @return The number of files that were published because they were new or changed.
+   */
+  public int getWritten() {
+    return written;
+  }
+
+  /**
+   * @return The number of files that were not published because their content did not change.
+   */
+  public int getUnchanged() {
+    return unchanged;
+  }
+
+  /**
+   * @return The number of stale files that were deleted.
+   */
+  public int getDeleted() {
+    return deleted;
+  }
+
+  /**
+   * @return The number of bytes of the files that were published.
+   */
+  public long getBytes() {
+    return bytes;
+  }
+
+  private static int skipProlog(final byte[] b) {
+    int i = 0;
+    while (i + 1 < b.length && b[i] == '/' && b[i + 1] == '/')
+      for (byte ch = 0; i < b.length && ch != '\n'; ch = b[i++]);
+
+    return i;
+  }
+
+  private static boolean equals(final String path, final File staged, final File file) throws IOException {
+    final boolean java = path.endsWith(".java");
+    // Files other than sources are equal only if their lengths are, which spares reading the files that changed
+    if (!java && staged.length() != file.length())
+      return false;
+
+    final byte[] a = Files.readAllBytes(staged.toPath());
+    final byte[] b = Files.readAllBytes(file.toPath());
+    int i = java ? skipProlog(a) : 0;
+    int j = java ? skipProlog(b) : 0;
+    if (a.length - i != b.length - j)
+      return false;
+
+    while (i < a.length)
+      if (a[i++] != b[j++])
+        return false;
+
+    return true;
+  }
+}
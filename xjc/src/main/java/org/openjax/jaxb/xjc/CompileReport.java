@@ -0,0 +1,361 @@
+/* Copyright (c) 2017 OpenJAX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.openjax.jaxb.xjc;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A report of the phases of an {@link XJCompiler#compile(XJCompiler.Command)} invocation, with the time spent in each phase, and the
+ * number of schemas, generated files and bytes written.
+ * <p>
+ * Each phase is also emitted as a JDK Flight Recorder event named {@code org.openjax.jaxb.xjc.CompilePhase}, if JFR is available in
+ * the running JVM. The event type is defined at runtime via {@code jdk.jfr.EventFactory}, so this class does not depend on JFR.
+ */
+public class CompileReport {
+  /** A phase of the compilation. */
+  public static final class Phase {
+    private final String name;
+    private final long start = System.nanoTime();
+    private final Object event;
+    private long time = -1;
+    private long count;
+    private long bytes;
+
+    private Phase(final String name) {
+      this.name = name;
+      this.event = Jfr.begin();
+    }
+
+    private void end() {
+      time = System.nanoTime() - start;
+      Jfr.commit(event, name, count, bytes);
+    }
+
+    /**
+     * @return The name of this phase.
+     */
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * @return The time spent in this phase, in nanoseconds.
+     */
+    public long getTime() {
+      return time;
+    }
+
+    /**
+     * @return The number of items (i.e. schemas or files) that were processed in this phase.
+     */
+    public long getCount() {
+      return count;
+    }
+
+    /**
+     * @return The number of bytes that were written in this phase.
+     */
+    public long getBytes() {
+      return bytes;
+    }
+  }
+
+  private static final class Jfr {
+    private static final Method newEvent;
+    private static final Method begin;
+    private static final Method end;
+    private static final Method shouldCommit;
+    private static final Method set;
+    private static final Method commit;
+    private static final Object factory;
+
+    static {
+      Object f = null;
+      Method n = null, b = null, e = null, s = null, t = null, c = null;
+      try {
+        final Class<?> annotationElement = Class.forName("jdk.jfr.AnnotationElement");
+        final Constructor<?> annotation = annotationElement.getConstructor(Class.class, Object.class);
+        final List<Object> annotations = Arrays.asList(annotation.newInstance(Class.forName("jdk.jfr.Name"), "org.openjax.jaxb.xjc.CompilePhase"), annotation.newInstance(Class.forName("jdk.jfr.Label"), "XJC Compile Phase"), annotation.newInstance(Class.forName("jdk.jfr.Category"), new String[] {"OpenJAX", "JAXB"}));
+        final Constructor<?> valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor").getConstructor(Class.class, String.class);
+        final List<Object> fields = Arrays.asList(valueDescriptor.newInstance(String.class, "phase"), valueDescriptor.newInstance(long.class, "count"), valueDescriptor.newInstance(long.class, "bytes"));
+        final Class<?> eventFactory = Class.forName("jdk.jfr.EventFactory");
+        f = eventFactory.getMethod("create", List.class, List.class).invoke(null, annotations, fields);
+        n = eventFactory.getMethod("newEvent");
+        final Class<?> event = Class.forName("jdk.jfr.Event");
+        b = event.getMethod("begin");
+        e = event.getMethod("end");
+        s = event.getMethod("shouldCommit");
+        t = event.getMethod("set", int.class, Object.class);
+        c = event.getMethod("commit");
+      }
+      catch (final Exception | LinkageError ex) {
+        f = null;
+      }
+
+      factory = f;
+      newEvent = n;
+      begin = b;
+      end = e;
+      shouldCommit = s;
+      set = t;
+      commit = c;
+    }
+
+    private static Object begin() {
+      if (factory == null)
+        return null;
+
+      try {
+        final Object event = newEvent.invoke(factory);
+        begin.invoke(event);
+        return event;
+      }
+      catch (final Exception e) {
+        return null;
+      }
+    }
+
+    private static void commit(final Object event, final String phase, final long count, final long bytes) {
+      if (event == null)
+        return;
+
+      try {
+        end.invoke(event);
+        if ((Boolean)shouldCommit.invoke(event)) {
+          set.invoke(event, 0, phase);
+          set.invoke(event, 1, count);
+          set.invoke(event, 2, bytes);
+          commit.invoke(event);
+        }
+      }
+      catch (final Exception e) {
+      }
+    }
+  }
+
+  private final ArrayList<Phase> phases = new ArrayList<>();
+  private final ArrayList<String> diagnostics = new ArrayList<>();
+  private Phase current;
+  private int schemas;
+  private int bindings;
+  private int pruned;
+  private boolean cacheHit;
+  private int written;
+  private int unchanged;
+  private int deleted;
+  private long bytes;
+
+  /**
+   * Ends the current phase (if any), and begins a new phase with the specified name.
+   *
+   * @param name The name of the phase.
+   */
+  public synchronized void begin(final String name) {
+    end();
+    phases.add(current = new Phase(name));
+  }
+
+  /**
+   * Ends the current phase, if any.
+   */
+  public synchronized void end() {
+    if (current != null) {
+      current.end();
+      current = null;
+    }
+  }
+
+  /**
+   * Adds the specified number of items and bytes to the current phase.
+   *
+   * @param count The number of items (i.e. schemas or files) that were processed.
+   * @param bytes The number of bytes that were written.
+   */
+  public synchronized void add(final long count, final long bytes) {
+    if (current != null) {
+      current.count += count;
+      current.bytes += bytes;
+    }
+  }
+
+  /**
+   * @return The phases of the compilation, in the order they were begun.
+   */
+  public synchronized List<Phase> getPhases() {
+    return Collections.unmodifiableList(new ArrayList<>(phases));
+  }
+
+  /**
+   * @return The total time spent in all phases, in nanoseconds.
+   */
+  public synchronized long getTime() {
+    long time = 0;
+    for (int i = 0, i$ = phases.size(); i < i$; ++i) // [RA]
+      time += Math.max(0, phases.get(i).time);
+
+    return time;
+  }
+
+  /**
+   * @return The errors and warnings that were reported by XJC, in the order they were reported.
+   */
+  public synchronized List<String> getDiagnostics() {
+    return Collections.unmodifiableList(new ArrayList<>(diagnostics));
+  }
+
+  synchronized void addDiagnostic(final String diagnostic) {
+    diagnostics.add(diagnostic);
+  }
+
+  /**
+   * @return The number of schemas that were compiled, including the remote schemas they import or include.
+   */
+  public int getSchemas() {
+    return schemas;
+  }
+
+  void setSchemas(final int schemas) {
+    this.schemas = schemas;
+  }
+
+  /**
+   * @return The number of binding files.
+   */
+  public int getBindings() {
+    return bindings;
+  }
+
+  void setBindings(final int bindings) {
+    this.bindings = bindings;
+  }
+
+  /**
+   * @return The number of classes and enums that were not generated because they are not reachable from the root elements.
+   */
+  public int getPruned() {
+    return pruned;
+  }
+
+  void setPruned(final int pruned) {
+    this.pruned = pruned;
+  }
+
+  /**
+   * @return Whether the output of XJC was unpacked from the build cache, instead of running XJC.
+   */
+  public boolean getCacheHit() {
+    return cacheHit;
+  }
+
+  void setCacheHit(final boolean cacheHit) {
+    this.cacheHit = cacheHit;
+  }
+
+  /**
+   * @return The number of generated files that were written because they were new or changed.
+   */
+  public int getWritten() {
+    return written;
+  }
+
+  /**
+   * @return The number of generated files that were not written because their content did not change.
+   */
+  public int getUnchanged() {
+    return unchanged;
+  }
+
+  /**
+   * @return The number of stale files that were deleted.
+   */
+  public int getDeleted() {
+    return deleted;
+  }
+
+  /**
+   * @return The number of bytes of the generated files that were written.
+   */
+  public long getBytes() {
+    return bytes;
+  }
+
+  void setFiles(final int written, final int unchanged, final int deleted, final long bytes) {
+    this.written = written;
+    this.unchanged = unchanged;
+    this.deleted = deleted;
+    this.bytes = bytes;
+  }
+
+  private static long toMillis(final long nanos) {
+    return nanos / 1000000;
+  }
+
+  /**
+   * @return This report in JSON format.
+   */
+  public synchronized String toJson() {
+    final StringBuilder b = new StringBuilder("{\n");
+    b.append("  \"schemas\": ").append(schemas).append(",\n");
+    b.append("  \"bindings\": ").append(bindings).append(",\n");
+    b.append("  \"pruned\": ").append(pruned).append(",\n");
+    b.append("  \"cacheHit\": ").append(cacheHit).append(",\n");
+    b.append("  \"diagnostics\": ").append(diagnostics.size()).append(",\n");
+    b.append("  \"files\": {\"written\": ").append(written).append(", \"unchanged\": ").append(unchanged).append(", \"deleted\": ").append(deleted).append("},\n");
+    b.append("  \"bytes\": ").append(bytes).append(",\n");
+    b.append("  \"timeMs\": ").append(toMillis(getTime())).append(",\n");
+    b.append("  \"phases\": [");
+    for (int i = 0, i$ = phases.size(); i < i$; ++i) { // [RA]
+      final Phase phase = phases.get(i);
+      if (i > 0)
+        b.append(',');
+
+      b.append("\n    {\"name\": \"").append(phase.name).append("\", \"timeMs\": ").append(toMillis(phase.time)).append(", \"count\": ").append(phase.count).append(", \"bytes\": ").append(phase.bytes).append('}');
+    }
+
+    return b.append("\n  ]\n}\n").toString();
+  }
+
+  /**
+   * @return A one-line summary of this report.
+   */
+  @Override
+  public synchronized String toString() {
+    final StringBuilder b = new StringBuilder();
+    b.append(schemas).append(" schemas, ");
+    if (pruned > 0)
+      b.append(pruned).append(" pruned types, ");
+
+    if (cacheHit)
+      b.append("cached, ");
+
+    b.append(written + unchanged).append(" files (").append(written).append(" written, ").append(unchanged).append(" unchanged, ").append(deleted).append(" deleted, ").append(bytes).append(" bytes) in ").append(toMillis(getTime())).append(" ms [");
+    for (int i = 0, i$ = phases.size(); i < i$; ++i) { // [RA]
+      final Phase phase = phases.get(i);
+      if (i > 0)
+        b.append(", ");
+
+      b.append(phase.name).append(' ').append(toMillis(phase.time)).append(" ms");
+    }
+
+    return b.append(']').toString();
+  }
+}
@@ -0,0 +1,252 @@
+/* Copyright (c) 2017 OpenJAX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.openjax.jaxb.xjc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+
+import org.libj.exec.Processes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Budgets of the initialization of the {@link JAXBContext} of each package of generated sources, which guard services against
+ * schema changes that silently make {@link JAXBContext#newInstance(String)} slower or bigger.
+ * <ul>
+ * <li>{@code maxTime}: The maximum time of the creation of the {@link JAXBContext}, in milliseconds.</li>
+ * <li>{@code maxClasses}: The maximum number of classes loaded by the creation of the {@link JAXBContext}.</li>
+ * <li>{@code maxHeap}: The maximum heap retained by the {@link JAXBContext}, in bytes.</li>
+ * </ul>
+ * All budgets are unbounded by default. The {@link JAXBContext} of each package is created in a JVM of its own, so that the classes
+ * and heap of one package are not shared with, or charged to, another.
+ */
+public class ContextBudget {
+  private static final Logger logger = LoggerFactory.getLogger(ContextBudget.class);
+
+  // Prefix of the line with which the probe JVM reports its measurements
+  private static final String MEASUREMENT = "[CONTEXT] ";
+
+  /** The main class of the JVM in which the {@link JAXBContext} of a package is measured. */
+  static final class Probe {
+    // Holds the JAXBContext, so that the heap it retains is measured
+    private static JAXBContext context;
+
+    private static long getUsedHeap(final MemoryMXBean memory) {
+      for (int i = 0; i < 3; ++i) // [N]
+        memory.gc();
+
+      return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    public static void main(final String[] args) throws JAXBException {
+      final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+      final ClassLoadingMXBean classLoading = ManagementFactory.getClassLoadingMXBean();
+      final long heap = getUsedHeap(memory);
+      final long classes = classLoading.getTotalLoadedClassCount();
+      final long start = System.nanoTime();
+      context = JAXBContext.newInstance(args[0]);
+      final long time = System.nanoTime() - start;
+      final long loaded = classLoading.getTotalLoadedClassCount() - classes;
+      System.out.println(MEASUREMENT + time + " " + loaded + " " + Math.max(0, getUsedHeap(memory) - heap) + " " + context.getClass().getName());
+    }
+  }
+
+  private long maxTime = Long.MAX_VALUE;
+  private long maxClasses = Long.MAX_VALUE;
+  private long maxHeap = Long.MAX_VALUE;
+
+  public long getMaxTime() {
+    return maxTime;
+  }
+
+  public void setMaxTime(final long maxTime) {
+    this.maxTime = maxTime;
+  }
+
+  public long getMaxClasses() {
+    return maxClasses;
+  }
+
+  public void setMaxClasses(final long maxClasses) {
+    this.maxClasses = maxClasses;
+  }
+
+  public long getMaxHeap() {
+    return maxHeap;
+  }
+
+  public void setMaxHeap(final long maxHeap) {
+    this.maxHeap = maxHeap;
+  }
+
+  /**
+   * Compiles the generated sources in the specified directory into the specified work directory, and measures the creation of the
+   * {@link JAXBContext} of each package that has an {@code ObjectFactory} against the budgets.
+   *
+   * @param sourceDir The directory of the generated sources.
+   * @param classpath The classpath of the generated sources, in addition to the JAXB API and runtime.
+   * @param workDir The directory into which the generated sources are compiled, which is cleared first.
+   * @return The {@link ContextReport} of the generated packages.
+   * @throws IOException If an I/O error has occurred.
+   * @throws JAXBException If the generated sources cannot be compiled, or if the {@link JAXBContext} of a package cannot be created.
+   */
+  public ContextReport check(final File sourceDir, final Collection<File> classpath, final File workDir) throws IOException, JAXBException {
+    final LinkedHashSet<File> compileClasspath = new LinkedHashSet<>(classpath);
+    compileClasspath.addAll(XJCompiler.Command.runtime);
+    compile(sourceDir, compileClasspath, workDir);
+
+    final TreeSet<String> packageNames = new TreeSet<>();
+    try (final Stream<Path> paths = Files.walk(workDir.toPath())) {
+      paths.filter(p -> "ObjectFactory.class".equals(p.getFileName().toString())).forEach(p -> packageNames.add(workDir.toPath().relativize(p.getParent()).toString().replace(File.separatorChar, '.')));
+    }
+
+    final LinkedHashSet<File> probeClasspath = new LinkedHashSet<>();
+    probeClasspath.add(workDir);
+    probeClasspath.addAll(compileClasspath);
+    final String cp = XJCompiler.toPath(probeClasspath);
+
+    final ArrayList<ContextReport.Result> results = new ArrayList<>(packageNames.size());
+    for (final String packageName : packageNames) // [S]
+      results.add(measure(packageName, cp));
+
+    return new ContextReport(results);
+  }
+
+  /**
+   * Compiles the generated sources in the specified directory into the specified work directory, which is cleared first, and copies
+   * the {@code jaxb.index} files of the generated packages into it.
+   *
+   * @param sourceDir The directory of the generated sources.
+   * @param classpath The classpath of the generated sources, including the JAXB API and runtime.
+   * @param workDir The directory into which the generated sources are compiled.
+   * @throws IOException If an I/O error has occurred.
+   * @throws JAXBException If no Java compiler is available, or if the generated sources cannot be compiled.
+   */
+  static void compile(final File sourceDir, final LinkedHashSet<File> classpath, final File workDir) throws IOException, JAXBException {
+    final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    if (compiler == null)
+      throw new JAXBException("No Java compiler is available: the generated sources can be compiled only with a JDK");
+
+    if (workDir.exists())
+      XJCompiler.delete(workDir.toPath());
+
+    if (!workDir.mkdirs() && !workDir.exists())
+      throw new IOException("Unable to create directory: " + workDir.getAbsolutePath());
+
+    // The module descriptor is skipped, as the sources are compiled on the classpath
+    final ArrayList<File> sources = new ArrayList<>();
+    final Path sourcePath = sourceDir.toPath();
+    try (final Stream<Path> paths = Files.walk(sourcePath)) {
+      for (final Path path : paths.filter(Files::isRegularFile).collect(Collectors.toList())) { // [L]
+        final String name = path.getFileName().toString();
+        if (name.endsWith(".java")) {
+          if (!"module-info.java".equals(name))
+            sources.add(path.toFile());
+        }
+        else if ("jaxb.index".equals(name)) {
+          final Path target = workDir.toPath().resolve(sourcePath.relativize(path).toString());
+          Files.createDirectories(target.getParent());
+          Files.copy(path, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+      }
+    }
+
+    final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    try (final StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8)) {
+      final ArrayList<String> options = new ArrayList<>();
+      options.add("-d");
+      options.add(workDir.getAbsolutePath());
+      options.add("-cp");
+      options.add(XJCompiler.toPath(classpath));
+      options.add("-proc:none");
+      options.add("-nowarn");
+      if (!compiler.getTask(null, fileManager, diagnostics, options, null, fileManager.getJavaFileObjectsFromFiles(sources)).call()) {
+        final StringBuilder b = new StringBuilder("Unable to compile the generated sources in ").append(sourceDir.getAbsolutePath()).append(':');
+        for (final Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) // [L]
+          if (diagnostic.getKind() == Diagnostic.Kind.ERROR)
+            b.append('\n').append(diagnostic);
+
+        throw new JAXBException(b.toString());
+      }
+    }
+  }
+
+  private ContextReport.Result measure(final String packageName, final String classpath) throws IOException, JAXBException {
+    // The serial collector makes the measurement of the retained heap deterministic
+    final String[] args = {System.getProperty("java.home") + File.separator + "bin" + File.separator + "java", "-XX:+UseSerialGC", "-cp", classpath, Probe.class.getName(), packageName};
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final int exitCode;
+    try {
+      exitCode = Processes.forkSync(null, out, out, true, null, null, args);
+    }
+    catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new JAXBException("Interrupted while measuring the JAXBContext of " + packageName, e);
+    }
+
+    final String output = new String(out.toByteArray(), StandardCharsets.UTF_8);
+    final int index = output.indexOf(MEASUREMENT);
+    if (exitCode != 0 || index < 0)
+      throw new JAXBException("Unable to create the JAXBContext of " + packageName + " (exit code: " + exitCode + "):\n" + output);
+
+    final int end = output.indexOf('\n', index);
+    final String[] values = output.substring(index + MEASUREMENT.length(), end < 0 ? output.length() : end).trim().split(" ");
+    final long time = Long.parseLong(values[0]);
+    final long classes = Long.parseLong(values[1]);
+    final long heap = Long.parseLong(values[2]);
+
+    final ArrayList<String> exceeded = new ArrayList<>();
+    final long timeMs = TimeUnit.NANOSECONDS.toMillis(time);
+    if (timeMs > maxTime)
+      exceeded.add("time of " + timeMs + " ms exceeds maxTime of " + maxTime + " ms");
+
+    if (classes > maxClasses)
+      exceeded.add(classes + " classes exceed maxClasses of " + maxClasses);
+
+    if (heap > maxHeap)
+      exceeded.add("heap of " + heap + " bytes exceeds maxHeap of " + maxHeap + " bytes");
+
+    if (logger.isDebugEnabled())
+      logger.debug("JAXBContext of " + packageName + " (" + values[3] + "): " + timeMs + " ms, " + classes + " classes, " + heap + " bytes");
+
+    return new ContextReport.Result(packageName, time, classes, heap, exceeded);
+  }
+}
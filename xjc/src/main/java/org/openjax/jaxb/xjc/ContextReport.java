@@ -0,0 +1,154 @@
+/* Copyright (c) 2017 OpenJAX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.openjax.jaxb.xjc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A report of a {@link ContextBudget#check(java.io.File,java.util.Collection,java.io.File)} invocation, with the {@link Result} of
+ * the {@code JAXBContext} of each generated package.
+ */
+public class ContextReport {
+  /** The cost of the creation of the {@code JAXBContext} of a generated package. */
+  public static final class Result {
+    private final String packageName;
+    private final long time;
+    private final long classes;
+    private final long heap;
+    private final ArrayList<String> exceeded;
+
+    Result(final String packageName, final long time, final long classes, final long heap, final ArrayList<String> exceeded) {
+      this.packageName = packageName;
+      this.time = time;
+      this.classes = classes;
+      this.heap = heap;
+      this.exceeded = exceeded;
+    }
+
+    /**
+     * @return The name of the package.
+     */
+    public String getPackageName() {
+      return packageName;
+    }
+
+    /**
+     * @return The time of the creation of the {@code JAXBContext}, in nanoseconds.
+     */
+    public long getTime() {
+      return time;
+    }
+
+    /**
+     * @return The number of classes that were loaded by the creation of the {@code JAXBContext}.
+     */
+    public long getClasses() {
+      return classes;
+    }
+
+    /**
+     * @return The heap retained by the {@code JAXBContext}, in bytes.
+     */
+    public long getHeap() {
+      return heap;
+    }
+
+    /**
+     * @return The budgets that the {@code JAXBContext} exceeded, or an empty list if it is within its budgets.
+     */
+    public List<String> getExceeded() {
+      return Collections.unmodifiableList(exceeded);
+    }
+  }
+
+  private final ArrayList<Result> results;
+
+  ContextReport(final ArrayList<Result> results) {
+    this.results = results;
+  }
+
+  /**
+   * @return The results of the generated packages, in the order of their names.
+   */
+  public List<Result> getResults() {
+    return Collections.unmodifiableList(results);
+  }
+
+  /**
+   * @return The budgets that were exceeded, as messages prefixed with the name of the package, or an empty list if all packages are
+   *         within their budgets.
+   */
+  public List<String> getExceeded() {
+    final ArrayList<String> exceeded = new ArrayList<>();
+    for (int i = 0, i$ = results.size(); i < i$; ++i) { // [RA]
+      final Result result = results.get(i);
+      for (int j = 0, j$ = result.exceeded.size(); j < j$; ++j) // [RA]
+        exceeded.add(result.packageName + ": " + result.exceeded.get(j));
+    }
+
+    return exceeded;
+  }
+
+  /**
+   * @return This report in JSON format.
+   */
+  public String toJson() {
+    final StringBuilder b = new StringBuilder("{\n");
+    b.append("  \"packages\": [");
+    for (int i = 0, i$ = results.size(); i < i$; ++i) { // [RA]
+      final Result result = results.get(i);
+      if (i > 0)
+        b.append(',');
+
+      b.append("\n    {\"package\": \"").append(result.packageName).append('"');
+      b.append(", \"timeMs\": ").append(result.time / 1000000);
+      b.append(", \"classes\": ").append(result.classes);
+      b.append(", \"heapBytes\": ").append(result.heap);
+      b.append(", \"exceeded\": [");
+      for (int j = 0, j$ = result.exceeded.size(); j < j$; ++j) { // [RA]
+        if (j > 0)
+          b.append(", ");
+
+        b.append('"').append(result.exceeded.get(j)).append('"');
+      }
+
+      b.append("]}");
+    }
+
+    return b.append("\n  ]\n}\n").toString();
+  }
+
+  /**
+   * @return A one-line summary of this report.
+   */
+  @Override
+  public String toString() {
+    long time = 0;
+    long classes = 0;
+    long heap = 0;
+    for (int i = 0, i$ = results.size(); i < i$; ++i) { // [RA]
+      final Result result = results.get(i);
+      time += result.time;
+      classes += result.classes;
+      heap += result.heap;
+    }
+
+    return results.size() + " packages in " + time / 1000000 + " ms, " + classes + " classes, " + heap / 1024 + " KiB (" + getExceeded().size() + " budgets exceeded)";
+  }
+}
@@ -0,0 +1,351 @@
+/* Copyright (c) 2017 OpenJAX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.openjax.jaxb.xjc;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.invoke.MethodHandle;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.UnmarshalException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+
+/**
+ * A reader of a stream of consecutive XML documents (such as a message log, or a socket feed), which reads each document as an
+ * instance of a JAXB binding class (see {@link JaxbUtil#parseAll(Class,ClassLoader,java.io.InputStream,java.nio.charset.Charset)}).
+ * <p>
+ * The stream is read by a single {@link XMLStreamReader} (with a single buffer) as the content of a synthetic root element, from
+ * which the XML declarations of the documents are removed. The documents are read by a single {@link Unmarshaller}, or by the static
+ * StAX reader of the binding class generated by the {@code -Xstax} plugin (see
+ * {@link JaxbUtil#parseAllStax(Class,java.io.InputStream,java.nio.charset.Charset)}), so that no parser, buffer or unmarshaller is
+ * set up per document. The documents must not have a document type declaration, and must be in the encoding of the stream. Text
+ * between the documents is ignored.
+ *
+ * @param <T> The type of the JAXB binding class.
+ */
+public class DocumentReader<T> implements Closeable {
+  /** A {@link Reader} of the documents of a stream as the content of a synthetic root element. */
+  private static final class Concatenation extends Reader {
+    private static final int NORMAL = 0;
+    private static final int DECLARATION = 1;
+    private static final int INSTRUCTION = 2;
+    private static final int COMMENT = 3;
+    private static final int CDATA = 4;
+
+    private final Reader in;
+    private final char[] buf = new char[8192];
+    private int pos;
+    private int limit;
+    private int state = NORMAL;
+    private String pending = "<" + ROOT + ">";
+    private int index;
+    private boolean eof;
+    private boolean closed;
+
+    private Concatenation(final Reader in) {
+      this.in = in;
+    }
+
+    // Reads the characters that are available (blocking until there is at least one), and returns false if the stream has ended
+    private boolean fill() throws IOException {
+      if (eof)
+        return false;
+
+      if (pos > 0) {
+        System.arraycopy(buf, pos, buf, 0, limit - pos);
+        limit -= pos;
+        pos = 0;
+      }
+
+      final int count = in.read(buf, limit, buf.length - limit);
+      if (count < 0) {
+        eof = true;
+        return false;
+      }
+
+      limit += count;
+      return true;
+    }
+
+    // Ensures that a character is buffered at pos, unless the stream ends first
+    private boolean ensure() throws IOException {
+      while (pos == limit && fill()); // [X]
+      return pos < limit;
+    }
+
+    // Buffers n characters at pos, unless the stream ends first, or the buffered characters are not a prefix of the specified
+    // string, so that a stream that is open (such as a socket feed) is read ahead only as far as a construct must be recognized
+    private void lookahead(final String s, final int n) throws IOException {
+      while (limit - pos < n && isPrefix(s) && fill()); // [X]
+    }
+
+    private boolean isPrefix(final String s) {
+      for (int i = 0, i$ = Math.min(limit - pos, s.length()); i < i$; ++i) // [N]
+        if (buf[pos + i] != s.charAt(i))
+          return false;
+
+      return true;
+    }
+
+    private boolean startsWith(final String s) {
+      if (limit - pos < s.length())
+        return false;
+
+      for (int i = 0, i$ = s.length(); i < i$; ++i) // [N]
+        if (buf[pos + i] != s.charAt(i))
+          return false;
+
+      return true;
+    }
+
+    @Override
+    public int read(final char[] cbuf, final int off, final int len) throws IOException {
+      int n = 0;
+      while (n < len) { // [X]
+        if (pending != null) {
+          cbuf[off + n++] = pending.charAt(index++);
+          if (index == pending.length())
+            pending = null;
+
+          continue;
+        }
+
+        // The characters that were read are returned, rather than blocking for more of a stream that is open
+        if (n > 0 && pos == limit)
+          break;
+
+        if (!ensure()) {
+          if (closed)
+            break;
+
+          closed = true;
+          pending = "</" + ROOT + ">";
+          index = 0;
+          continue;
+        }
+
+        final char ch = buf[pos];
+        if (state == NORMAL) {
+          if (ch == '<') {
+            lookahead("<![CDATA[", 9);
+            lookahead("<!--", 4);
+            lookahead("<?xml", 6);
+            if (startsWith("<?xml") && limit - pos > 5 && (buf[pos + 5] == '?' || Character.isWhitespace(buf[pos + 5]))) {
+              state = DECLARATION;
+              pos += 5;
+              continue;
+            }
+
+            if (startsWith("<![CDATA["))
+              state = CDATA;
+            else if (startsWith("<!--"))
+              state = COMMENT;
+            else if (startsWith("<?"))
+              state = INSTRUCTION;
+          }
+        }
+        else if (state == DECLARATION) {
+          lookahead("?>", 2);
+          if (startsWith("?>")) {
+            pos += 2;
+            state = NORMAL;
+          }
+          else {
+            ++pos;
+          }
+
+          continue;
+        }
+        else if (ch == (state == CDATA ? ']' : state == COMMENT ? '-' : '?')) {
+          // The remainder of the end of the construct contains no markup, and is copied in the NORMAL state
+          final String end = state == CDATA ? "]]>" : state == COMMENT ? "-->" : "?>";
+          lookahead(end, end.length());
+          if (startsWith(end))
+            state = NORMAL;
+        }
+
+        cbuf[off + n++] = ch;
+        ++pos;
+      }
+
+      return n == 0 && len > 0 ? -1 : n;
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+
+  /**
+   * A view of a {@link XMLStreamReader} over the document at its current root element, which ends at the end of the root element. The
+   * {@link Unmarshaller} reads past the end of the root element, which would block for the next document of a stream that is open.
+   */
+  private static final class Document extends StreamReaderDelegate {
+    private int depth = 1;
+    private boolean ended;
+
+    private Document(final XMLStreamReader reader) {
+      super(reader);
+    }
+
+    @Override
+    public int next() throws XMLStreamException {
+      if (depth == 0) {
+        ended = true;
+        return XMLStreamConstants.END_DOCUMENT;
+      }
+
+      final int event = super.next();
+      if (event == XMLStreamConstants.START_ELEMENT)
+        ++depth;
+      else if (event == XMLStreamConstants.END_ELEMENT)
+        --depth;
+
+      return event;
+    }
+
+    @Override
+    public int getEventType() {
+      return ended ? XMLStreamConstants.END_DOCUMENT : super.getEventType();
+    }
+
+    @Override
+    public boolean hasNext() throws XMLStreamException {
+      return depth > 0 && super.hasNext();
+    }
+  }
+
+  // The local name of the synthetic root element, of which the documents of the stream are the children
+  private static final String ROOT = "documents";
+
+  private final Class<T> cls;
+  private final ClassLoader classLoader;
+  private final Concatenation in;
+  private final XMLStreamReader reader;
+  private final MethodHandle staxReader;
+  private Unmarshaller unmarshaller;
+  private boolean end;
+  private long count;
+
+  DocumentReader(final Class<T> cls, final MethodHandle staxReader, final ClassLoader classLoader, final Reader in) throws IOException {
+    this.cls = cls;
+    this.staxReader = staxReader;
+    this.classLoader = classLoader;
+    this.in = new Concatenation(in);
+    try {
+      final XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(this.in);
+      final StringTable stringTable = JaxbUtil.getStringTable(cls);
+      this.reader = stringTable == null ? reader : stringTable.deduplicate(reader);
+      this.reader.nextTag();
+    }
+    catch (final XMLStreamException e) {
+      throw e.getNestedException() instanceof IOException ? (IOException)e.getNestedException() : new IOException(e);
+    }
+  }
+
+  /**
+   * @return The number of documents that were read.
+   */
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * Reads the next document of the stream as an instance of the JAXB binding class.
+   *
+   * @return The next document of the stream as an instance of the JAXB binding class, or {@code null} if the stream has ended.
+   * @throws IOException If an I/O error has occurred.
+   * @throws UnmarshalException If the stream is not well-formed, or if this method is unable to perform the XML to Java binding.
+   */
+  public T read() throws IOException, UnmarshalException {
+    if (end)
+      return null;
+
+    try {
+      for (int event = reader.next(); event != XMLStreamConstants.START_ELEMENT; event = reader.next()) { // [X]
+        if (event == XMLStreamConstants.END_ELEMENT || event == XMLStreamConstants.END_DOCUMENT) {
+          end = true;
+          return null;
+        }
+      }
+
+      // The document is read up to the end of its root element, so that the next document is not waited for
+      final T value;
+      if (staxReader != null) {
+        value = cls.cast(staxReader.invoke(reader));
+      }
+      else {
+        if (unmarshaller == null) {
+          unmarshaller = JAXBContext.newInstance(cls.getPackage().getName(), classLoader).createUnmarshaller();
+          final StringTable stringTable = JaxbUtil.getStringTable(cls);
+          if (stringTable != null)
+            unmarshaller.setListener(stringTable.newListener());
+        }
+
+        value = unmarshaller.unmarshal(new Document(reader), cls).getValue();
+      }
+
+      ++count;
+      return value;
+    }
+    catch (final XMLStreamException e) {
+      if (e.getNestedException() instanceof IOException)
+        throw (IOException)e.getNestedException();
+
+      throw new UnmarshalException(e);
+    }
+    catch (final UnmarshalException e) {
+      throw e;
+    }
+    catch (final IllegalArgumentException e) {
+      throw new UnmarshalException(e);
+    }
+    catch (final JAXBException e) {
+      throw new IllegalStateException(e);
+    }
+    catch (final Error | RuntimeException e) {
+      throw e;
+    }
+    catch (final Throwable t) {
+      throw new IllegalStateException(t);
+    }
+  }
+
+  /**
+   * Closes this reader, and the stream it reads.
+   *
+   * @throws IOException If an I/O error has occurred.
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      reader.close();
+    }
+    catch (final XMLStreamException e) {
+    }
+
+    in.close();
+  }
+}
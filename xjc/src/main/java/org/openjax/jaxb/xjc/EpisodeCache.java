@@ -0,0 +1,413 @@
+/* Copyright (c) 2017 OpenJAX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.openjax.jaxb.xjc;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import javax.xml.XMLConstants;
+import javax.xml.bind.JAXBException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.libj.net.URLs;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A cache of the compiled schema libraries (i.e. the namespaces, such as {@code xml.xsd}, XLink, or in-house core types, that the
+ * schemas of many compilations import), which {@link XJCompiler} compiles once into an episode and its sources, and against which it
+ * binds the later compilations that import them via {@code -b}, instead of generating their classes again.
+ * <p>
+ * A library is the closure of a schema that is imported (via {@code xs:import}) by the schemas of a compilation, in a namespace other
+ * than theirs, and whose closure does not refer back to their namespaces. An entry is the directory of the sources that XJC generated
+ * for a library, with its episode at {@code META-INF/sun-jaxb.episode}, and is addressed by a key that is the SHA-256 hash of the
+ * content of the schemas of the library, the options of the compilation, and the XJC and plugin jars. Entries are stored at
+ * {@code <dir>/<key[0..2]>/<key>}, and are never modified, so they are written atomically, and may be shared by concurrent builds.
+ * <p>
+ * The sources of the libraries are published with the sources of each compilation that binds against them, so the output of a
+ * compilation is complete. Libraries are not reused by compilations with a {@link XJCompiler.Command#getPackageName() package name},
+ * {@link XJCompiler.Command#getXJBs() bindings} or a {@link XJCompiler.Command#getCatalog() catalog}, which would generate the classes
+ * of a library differently in each compilation, or with the {@code -Xstax} plugin, whose readers and writers are generated only for
+ * classes that are compiled together.
+ */
+public class EpisodeCache {
+  private static final Logger logger = LoggerFactory.getLogger(EpisodeCache.class);
+  // The version of the inputs of the key, to be incremented when the output of equal inputs changes
+  private static final String KEY_VERSION = "1";
+  static final String EPISODE = "META-INF/sun-jaxb.episode";
+
+  private static final class Option<T> {
+    private final boolean keyed;
+    private final Function<XJCompiler.Command,T> getter;
+    private final BiConsumer<XJCompiler.Command,T> setter;
+
+    private Option(final boolean keyed, final Function<XJCompiler.Command,T> getter, final BiConsumer<XJCompiler.Command,T> setter) {
+      this.keyed = keyed;
+      this.getter = getter;
+      this.setter = setter;
+    }
+
+    private void copy(final XJCompiler.Command from, final XJCompiler.Command to) {
+      setter.accept(to, getter.apply(from));
+    }
+  }
+
+  // The options that newCommand() passes on to the compilation of a library, of which those that change the output of XJC are keyed
+  private static final Option<?>[] options = {
+    new Option<>(true, XJCompiler.Command::getSuppressWarnings, XJCompiler.Command::setSuppressWarnings),
+    new Option<>(true, XJCompiler.Command::getPrimitives, XJCompiler.Command::setPrimitives),
+    new Option<>(true, XJCompiler.Command::getBinaryContent, XJCompiler.Command::setBinaryContent),
+    new Option<>(true, XJCompiler.Command::getJavaTime, XJCompiler.Command::setJavaTime),
+    new Option<>(true, XJCompiler.Command::getReuse, XJCompiler.Command::setReuse),
+    new Option<>(true, XJCompiler.Command::getImmutable, XJCompiler.Command::setImmutable),
+    new Option<>(true, XJCompiler.Command::getNativeImage, XJCompiler.Command::setNativeImage),
+    new Option<>(true, XJCompiler.Command::getNoHeader, XJCompiler.Command::setNoHeader),
+    new Option<>(true, XJCompiler.Command::getExplicitAnnotation, XJCompiler.Command::setExplicitAnnotation),
+    new Option<>(false, XJCompiler.Command::getDisableXmlSecurity, XJCompiler.Command::setDisableXmlSecurity),
+    new Option<>(true, XJCompiler.Command::getContentForWildcard, XJCompiler.Command::setContentForWildcard),
+    new Option<>(true, XJCompiler.Command::getAutoNameResolution, XJCompiler.Command::setAutoNameResolution),
+    new Option<>(true, XJCompiler.Command::getTestClassNameAllocator, XJCompiler.Command::setTestClassNameAllocator),
+    new Option<>(false, XJCompiler.Command::getHttpProxyFile, XJCompiler.Command::setHttpProxyFile),
+    new Option<>(false, XJCompiler.Command::getHttpProxy, XJCompiler.Command::setHttpProxy),
+    new Option<>(true, XJCompiler.Command::getAddGeneratedAnnotation, XJCompiler.Command::setAddGeneratedAnnotation),
+    new Option<>(true, XJCompiler.Command::getEnableIntrospection, XJCompiler.Command::setEnableIntrospection),
+    new Option<>(true, XJCompiler.Command::getEncoding, XJCompiler.Command::setEncoding),
+    new Option<>(true, XJCompiler.Command::getExtension, XJCompiler.Command::setExtension),
+    new Option<>(false, XJCompiler.Command::getLaxSchemaValidation, XJCompiler.Command::setLaxSchemaValidation),
+    new Option<>(true, XJCompiler.Command::getNoGeneratedHeaderComments, XJCompiler.Command::setNoGeneratedHeaderComments),
+    new Option<>(true, XJCompiler.Command::getNoPackageLevelAnnotations, XJCompiler.Command::setNoPackageLevelAnnotations),
+    new Option<>(false, XJCompiler.Command::getQuiet, XJCompiler.Command::setQuiet),
+    new Option<>(true, XJCompiler.Command::getSourceType, XJCompiler.Command::setSourceType),
+    new Option<>(true, XJCompiler.Command::getTargetVersion, XJCompiler.Command::setTargetVersion),
+    new Option<>(false, XJCompiler.Command::getSchemaCache, XJCompiler.Command::setSchemaCache),
+    new Option<>(true, XJCompiler.Command::getPlugins, XJCompiler.Command::setPlugins),
+    new Option<>(false, XJCompiler.Command::getPluginIndex, XJCompiler.Command::setPluginIndex)
+  };
+
+  private static final class Schema {
+    private final String targetNamespace;
+    // The locations and namespaces of the schemas that are imported
+    private final LinkedHashMap<URI,String> imports = new LinkedHashMap<>();
+    // The locations of the schemas that are included, redefined or overridden
+    private final ArrayList<URI> includes = new ArrayList<>();
+    private final byte[] content;
+
+    private Schema(final String targetNamespace, final byte[] content) {
+      this.targetNamespace = targetNamespace;
+      this.content = content;
+    }
+  }
+
+  private final File dir;
+
+  /**
+   * Creates a new {@link EpisodeCache} in the specified directory.
+   *
+   * @param dir The directory of the cache.
+   * @throws NullPointerException If {@code dir} is null.
+   */
+  public EpisodeCache(final File dir) {
+    if (dir == null)
+      throw new NullPointerException("dir == null");
+
+    this.dir = dir;
+  }
+
+  public File getDir() {
+    return dir;
+  }
+
+  /**
+   * Returns whether the libraries imported by the schemas of the specified {@link XJCompiler.Command} can be bound via their
+   * episodes.
+   */
+  static boolean isReusable(final XJCompiler.Command command) {
+    final LinkedHashSet<URI> xjbs = command.getXJBs();
+    return command.getDestDir() != null && command.getPackageName() == null && (xjbs == null || xjbs.size() == 0) && command.getCatalog() == null && !command.getStax();
+  }
+
+  /**
+   * Returns the directories of the entries of the libraries that are imported by the specified schemas, compiling the libraries that
+   * are not in the cache with the options of the specified {@link XJCompiler.Command}.
+   *
+   * @param command The {@link XJCompiler.Command} of the compilation.
+   * @param schemas The schemas of the compilation.
+   * @param cached The local files of the cached remote schemas, by their {@link URI}.
+   * @return The directories of the entries of the libraries that are imported by the specified schemas.
+   * @throws IOException If an I/O error has occurred.
+   * @throws JAXBException If XJC has failed to compile a library.
+   */
+  ArrayList<File> get(final XJCompiler.Command command, final Collection<URI> schemas, final Map<URI,File> cached) throws IOException, JAXBException {
+    final HashMap<URI,Schema> parsed = new HashMap<>();
+    final LinkedHashMap<URI,LinkedHashSet<URI>> libraries = getLibraries(schemas, cached, parsed);
+    final ArrayList<File> entries = new ArrayList<>(libraries.size());
+    for (final Map.Entry<URI,LinkedHashSet<URI>> library : libraries.entrySet()) { // [S]
+      final File entry = toFile(getKey(command, library.getValue(), parsed));
+      if (new File(entry, EPISODE).isFile()) {
+        if (logger.isDebugEnabled())
+          logger.debug("Binding " + library.getKey() + " to " + entry.getAbsolutePath());
+      }
+      else {
+        compile(command, library.getKey(), entry);
+      }
+
+      entries.add(entry);
+    }
+
+    return entries;
+  }
+
+  File toFile(final String key) {
+    return new File(dir, key.substring(0, 2) + File.separator + key);
+  }
+
+  private static void compile(final XJCompiler.Command command, final URI library, final File entry) throws IOException, JAXBException {
+    if (logger.isInfoEnabled())
+      logger.info("Compiling library " + library + " into " + entry.getAbsolutePath());
+
+    final File parent = entry.getParentFile();
+    if (!parent.exists() && !parent.mkdirs() && !parent.exists())
+      throw new IOException("Unable to create directory " + parent.getAbsolutePath());
+
+    final File temp = Files.createTempDirectory(parent.toPath(), entry.getName()).toFile();
+    try {
+      final XJCompiler.Command libraryCommand = newCommand(command, library, temp);
+      XJCompiler.compile(libraryCommand);
+      // The manifest of the files that the ChangeAwarePublisher published is not part of the entry
+      final File manifestDir = new File(temp, ChangeAwarePublisher.MANIFEST_DIR);
+      if (manifestDir.exists())
+        XJCompiler.delete(manifestDir.toPath());
+
+      try {
+        Files.move(temp.toPath(), entry.toPath(), StandardCopyOption.ATOMIC_MOVE);
+      }
+      catch (final AtomicMoveNotSupportedException e) {
+        Files.move(temp.toPath(), entry.toPath());
+      }
+    }
+    catch (final FileAlreadyExistsException e) {
+      // A concurrent build has compiled the library
+    }
+    catch (final IOException e) {
+      // A directory cannot be moved over a non-empty directory, which is how a concurrent build that has compiled the library shows
+      if (!new File(entry, EPISODE).isFile())
+        throw e;
+    }
+    finally {
+      if (temp.exists())
+        XJCompiler.delete(temp.toPath());
+    }
+  }
+
+  private static XJCompiler.Command newCommand(final XJCompiler.Command command, final URI library, final File destDir) {
+    final XJCompiler.Command libraryCommand = new XJCompiler.Command();
+    libraryCommand.setSchemas(new LinkedHashSet<>(Collections.singleton(library)));
+    libraryCommand.setDestDir(destDir);
+    libraryCommand.setGenerateEpisode(true);
+    for (final Option<?> option : options) // [A]
+      option.copy(command, libraryCommand);
+
+    libraryCommand.getClasspath().addAll(command.getClasspath());
+    return libraryCommand;
+  }
+
+  private static String getKey(final XJCompiler.Command command, final LinkedHashSet<URI> closure, final HashMap<URI,Schema> parsed) throws IOException {
+    final MessageDigest digest = SchemaCache.newDigest();
+    XJCompiler.update(digest, KEY_VERSION);
+    for (final File entry : XJCompiler.Command.runtime) // [S]
+      XJCompiler.update(digest, entry);
+
+    for (final Option<?> option : options) // [A]
+      if (option.keyed)
+        XJCompiler.update(digest, String.valueOf(option.getter.apply(command)));
+
+    for (final File entry : command.getClasspath()) // [S]
+      XJCompiler.update(digest, entry);
+
+    // The schemas are hashed by content (rather than by location), so that copies of a library share their entry
+    for (final URI uri : closure) // [S]
+      digest.update(parsed.get(uri).content);
+
+    return SchemaCache.toHex(digest.digest());
+  }
+
+  /**
+   * Returns the closures of the libraries that are imported by the specified schemas, by the {@link URI} of the schema of each library.
+   * Of libraries that share a namespace (such as two libraries that import {@code xml.xsd}), only the larger is returned, so that no
+   * two episodes bind the same components.
+   */
+  private static LinkedHashMap<URI,LinkedHashSet<URI>> getLibraries(final Collection<URI> schemas, final Map<URI,File> cached, final HashMap<URI,Schema> parsed) throws IOException {
+    final LinkedHashMap<URI,LinkedHashSet<URI>> libraries = new LinkedHashMap<>();
+    final LinkedHashSet<URI> includes = getClosure(schemas, true, cached, parsed);
+    if (includes == null)
+      return libraries;
+
+    final HashSet<String> namespaces = getNamespaces(includes, parsed);
+    final LinkedHashSet<URI> closure = getClosure(schemas, false, cached, parsed);
+    if (closure == null)
+      return libraries;
+
+    final ArrayList<Map.Entry<URI,LinkedHashSet<URI>>> candidates = new ArrayList<>();
+    final HashSet<URI> visited = new HashSet<>();
+    for (final URI uri : closure) { // [S]
+      for (final Map.Entry<URI,String> entry : parsed.get(uri).imports.entrySet()) { // [S]
+        final URI location = entry.getKey();
+        if (namespaces.contains(entry.getValue()) || !visited.add(location))
+          continue;
+
+        // A library whose closure refers back to the namespaces of the compilation is not compiled apart
+        final LinkedHashSet<URI> library = getClosure(Collections.singleton(location), false, cached, parsed);
+        if (library != null && Collections.disjoint(getNamespaces(library, parsed), namespaces))
+          candidates.add(new AbstractMap.SimpleImmutableEntry<>(location, library));
+      }
+    }
+
+    candidates.sort(Comparator.comparingInt(e -> -e.getValue().size()));
+    final HashSet<String> bound = new HashSet<>();
+    for (final Map.Entry<URI,LinkedHashSet<URI>> candidate : candidates) { // [L]
+      final HashSet<String> libraryNamespaces = getNamespaces(candidate.getValue(), parsed);
+      if (Collections.disjoint(libraryNamespaces, bound)) {
+        bound.addAll(libraryNamespaces);
+        libraries.put(candidate.getKey(), candidate.getValue());
+      }
+      else if (logger.isDebugEnabled()) {
+        logger.debug("Not binding library " + candidate.getKey() + ", whose namespaces are bound by another library");
+      }
+    }
+
+    return libraries;
+  }
+
+  private static HashSet<String> getNamespaces(final Collection<URI> closure, final HashMap<URI,Schema> parsed) {
+    final HashSet<String> namespaces = new HashSet<>();
+    for (final URI uri : closure) // [S]
+      namespaces.add(parsed.get(uri).targetNamespace);
+
+    return namespaces;
+  }
+
+  /**
+   * Returns the closure of the specified schemas via their includes (and imports, unless {@code includesOnly}), or {@code null} if a
+   * schema of the closure cannot be read without the network.
+   */
+  private static LinkedHashSet<URI> getClosure(final Collection<URI> schemas, final boolean includesOnly, final Map<URI,File> cached, final HashMap<URI,Schema> parsed) throws IOException {
+    final LinkedHashSet<URI> visited = new LinkedHashSet<>(schemas);
+    final ArrayDeque<URI> queue = new ArrayDeque<>(schemas);
+    for (URI next; (next = queue.poll()) != null;) { // [X]
+      Schema schema = parsed.get(next);
+      if (schema == null) {
+        final File local = cached.get(next);
+        final URL url = local != null ? local.toURI().toURL() : next.toURL();
+        if (local == null && SchemaCache.isRemote(url))
+          return null;
+
+        parsed.put(next, schema = parse(next, url));
+      }
+
+      for (final URI include : schema.includes) // [L]
+        if (visited.add(include))
+          queue.add(include);
+
+      if (!includesOnly)
+        for (final URI location : schema.imports.keySet()) // [S]
+          if (visited.add(location))
+            queue.add(location);
+    }
+
+    return visited;
+  }
+
+  private static Schema parse(final URI uri, final URL url) throws IOException {
+    final byte[] content = URLs.readBytes(url);
+    final XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    try {
+      final XMLStreamReader reader = factory.createXMLStreamReader(url.toString(), new ByteArrayInputStream(content));
+      try {
+        Schema schema = null;
+        for (int depth = 0; reader.hasNext();) { // [X]
+          final int event = reader.next();
+          if (event == XMLStreamConstants.END_ELEMENT) {
+            --depth;
+          }
+          else if (event == XMLStreamConstants.START_ELEMENT) {
+            if (++depth == 1) {
+              final String targetNamespace = reader.getAttributeValue(null, "targetNamespace");
+              schema = new Schema(targetNamespace == null ? "" : targetNamespace, content);
+            }
+            else if (depth == 2) {
+              if (!XMLConstants.W3C_XML_SCHEMA_NS_URI.equals(reader.getNamespaceURI()))
+                break;
+
+              final String localName = reader.getLocalName();
+              final String location = reader.getAttributeValue(null, "schemaLocation");
+              if ("import".equals(localName)) {
+                if (location != null) {
+                  final String namespace = reader.getAttributeValue(null, "namespace");
+                  schema.imports.put(uri.resolve(location.trim()).normalize(), namespace == null ? "" : namespace);
+                }
+              }
+              else if ("include".equals(localName) || "redefine".equals(localName) || "override".equals(localName)) {
+                if (location != null)
+                  schema.includes.add(uri.resolve(location.trim()).normalize());
+              }
+              else if (!"annotation".equals(localName)) {
+                break;
+              }
+            }
+          }
+        }
+
+        if (schema == null)
+          throw new IOException(url + ": Not a schema");
+
+        return schema;
+      }
+      finally {
+        reader.close();
+      }
+    }
+    catch (final XMLStreamException e) {
+      throw new IOException(url + ": " + e.getMessage(), e);
+    }
+  }
+}
@@ -0,0 +1,211 @@
+/* Copyright (c) 2017 OpenJAX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.openjax.jaxb.xjc;
+
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.invoke.MethodHandle;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * A cache of the serialized XML of immutable sub-bindings, which the StAX writers of the {@code -Xstax} plugin (generated with
+ * {@code -Xstax-fragments}) splice into their output instead of writing the sub-bindings again.
+ * <p>
+ * Only instances of the classes with which the cache is created are cached, and only if their classes have a StAX writer. Instances
+ * are keyed by identity, or by the {@link #setKey(Function) key} of their version (for instance, the identifier and revision of a
+ * party), so that equal instances share their fragment. An instance must not change while it is cached under the same key.
+ * <p>
+ * A fragment is valid for the name of the element it was written as, and for the default namespace in scope where it is spliced: it
+ * declares its namespace only if it differs from the default namespace in scope. The cache holds at most {@link #getCapacity()
+ * capacity} fragments, and evicts the least recently used. The cache is safe for concurrent use.
+ */
+public class FragmentCache {
+  private static final class Identity {
+    private final Object value;
+
+    private Identity(final Object value) {
+      this.value = value;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      return obj instanceof Identity && ((Identity)obj).value == value;
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(value);
+    }
+  }
+
+  private static final class Fragment {
+    private final String namespace;
+    private final String localName;
+    private final String defaultNamespace;
+    private final String xml;
+
+    private Fragment(final String namespace, final String localName, final String defaultNamespace, final String xml) {
+      this.namespace = namespace;
+      this.localName = localName;
+      this.defaultNamespace = defaultNamespace;
+      this.xml = xml;
+    }
+  }
+
+  private final int capacity;
+  private final HashSet<Class<?>> classes;
+  private final LinkedHashMap<Object,Fragment> fragments;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private Function<Object,?> key = Identity::new;
+
+  /**
+   * Creates a new {@link FragmentCache} of the specified capacity, for instances of the specified classes.
+   *
+   * @param capacity The maximum number of fragments in the cache.
+   * @param classes The classes whose instances are cached.
+   * @throws IllegalArgumentException If {@code capacity} is not positive.
+   */
+  public FragmentCache(final int capacity, final Class<?> ... classes) {
+    if (capacity <= 0)
+      throw new IllegalArgumentException("capacity (" + capacity + ") must be positive");
+
+    this.capacity = capacity;
+    this.classes = new HashSet<>(Arrays.asList(classes));
+    this.fragments = new LinkedHashMap<Object,Fragment>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<Object,Fragment> eldest) {
+        return size() > FragmentCache.this.capacity;
+      }
+    };
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Sets the function that returns the key of the version of an instance, or {@code null} if the instance is not to be cached. By
+   * default, instances are keyed by identity.
+   *
+   * @param key The function that returns the key of the version of an instance.
+   * @throws NullPointerException If {@code key} is null.
+   */
+  public void setKey(final Function<Object,?> key) {
+    if (key == null)
+      throw new NullPointerException("key == null");
+
+    this.key = key;
+  }
+
+  /**
+   * @return The number of fragments that were spliced from the cache.
+   */
+  public long getHits() {
+    return hits.get();
+  }
+
+  /**
+   * @return The number of fragments that were written and added to the cache.
+   */
+  public long getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * @return The number of fragments in the cache.
+   */
+  public synchronized int size() {
+    return fragments.size();
+  }
+
+  /**
+   * Removes all fragments from the cache.
+   */
+  public synchronized void clear() {
+    fragments.clear();
+  }
+
+  /**
+   * Returns a new {@link FragmentWriter} that writes to the specified {@link Writer}, and splices the fragments of this cache.
+   *
+   * @param out The {@link Writer}.
+   * @return A new {@link FragmentWriter} that writes to the specified {@link Writer}.
+   * @throws XMLStreamException If the {@link XMLStreamWriter} cannot be created.
+   */
+  public FragmentWriter newWriter(final Writer out) throws XMLStreamException {
+    return new FragmentWriter(this, XMLOutputFactory.newInstance().createXMLStreamWriter(out), out);
+  }
+
+  /**
+   * Returns the serialized XML of the specified instance as an element of the specified namespace and local name, in the scope of the
+   * specified default namespace, or {@code null} if the instance is not cached.
+   */
+  String get(final Object value, final String namespace, final String localName, final String defaultNamespace) throws XMLStreamException {
+    if (!classes.contains(value.getClass()))
+      return null;
+
+    final MethodHandle staxWriter = JaxbUtil.staxWriters.get(value.getClass());
+    final Object k;
+    if (staxWriter == null || (k = key.apply(value)) == null)
+      return null;
+
+    Fragment fragment;
+    synchronized (this) {
+      fragment = fragments.get(k);
+    }
+
+    if (fragment != null && fragment.namespace.equals(namespace) && fragment.localName.equals(localName) && fragment.defaultNamespace.equals(defaultNamespace)) {
+      hits.incrementAndGet();
+      return fragment.xml;
+    }
+
+    // The fragment is written outside of the lock, so concurrent misses of the same key may write it more than once
+    final StringWriter out = new StringWriter();
+    final XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out);
+    if (defaultNamespace.length() > 0)
+      writer.setDefaultNamespace(defaultNamespace);
+
+    try {
+      staxWriter.invoke(writer, value, namespace, localName);
+      writer.flush();
+    }
+    catch (final Error | RuntimeException | XMLStreamException e) {
+      throw e;
+    }
+    catch (final Throwable t) {
+      throw new IllegalStateException(t);
+    }
+
+    fragment = new Fragment(namespace, localName, defaultNamespace, out.toString());
+    synchronized (this) {
+      fragments.put(k, fragment);
+    }
+
+    misses.incrementAndGet();
+    return fragment.xml;
+  }
+}
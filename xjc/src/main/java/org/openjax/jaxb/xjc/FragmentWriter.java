@@ -0,0 +1,230 @@
+/* Copyright (c) 2017 OpenJAX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.openjax.jaxb.xjc;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * An {@link XMLStreamWriter} that splices the fragments of a {@link FragmentCache} into its output. The StAX writers of the
+ * {@code -Xstax} plugin (generated with {@code -Xstax-fragments}) call {@link #write(Object,String,String)} for each nested
+ * instance, and write the instance themselves only if it is not cached.
+ */
+public final class FragmentWriter implements XMLStreamWriter {
+  private final FragmentCache cache;
+  private final XMLStreamWriter writer;
+  private final Writer out;
+
+  FragmentWriter(final FragmentCache cache, final XMLStreamWriter writer, final Writer out) {
+    this.cache = cache;
+    this.writer = writer;
+    this.out = out;
+  }
+
+  /**
+   * Splices the cached fragment of the specified instance, as an element of the specified namespace and local name, into the output.
+   *
+   * @param value The instance.
+   * @param namespace The namespace URI of the element.
+   * @param localName The local name of the element.
+   * @return {@code true} if the fragment of the instance was spliced, or {@code false} if the instance is not cached, and is to be
+   *         written by the caller.
+   * @throws XMLStreamException If an error has occurred while writing.
+   */
+  public boolean write(final Object value, final String namespace, final String localName) throws XMLStreamException {
+    final String defaultNamespace = writer.getNamespaceContext().getNamespaceURI("");
+    final String xml = cache.get(value, namespace, localName, defaultNamespace == null ? "" : defaultNamespace);
+    if (xml == null)
+      return false;
+
+    // Writing no characters closes the start tag that the writer may have left open, before the fragment is written past it
+    writer.writeCharacters("");
+    writer.flush();
+    try {
+      out.write(xml);
+    }
+    catch (final IOException e) {
+      throw new XMLStreamException(e);
+    }
+
+    return true;
+  }
+
+  @Override
+  public void writeStartElement(final String localName) throws XMLStreamException {
+    writer.writeStartElement(localName);
+  }
+
+  @Override
+  public void writeStartElement(final String namespaceURI, final String localName) throws XMLStreamException {
+    writer.writeStartElement(namespaceURI, localName);
+  }
+
+  @Override
+  public void writeStartElement(final String prefix, final String localName, final String namespaceURI) throws XMLStreamException {
+    writer.writeStartElement(prefix, localName, namespaceURI);
+  }
+
+  @Override
+  public void writeEmptyElement(final String namespaceURI, final String localName) throws XMLStreamException {
+    writer.writeEmptyElement(namespaceURI, localName);
+  }
+
+  @Override
+  public void writeEmptyElement(final String prefix, final String localName, final String namespaceURI) throws XMLStreamException {
+    writer.writeEmptyElement(prefix, localName, namespaceURI);
+  }
+
+  @Override
+  public void writeEmptyElement(final String localName) throws XMLStreamException {
+    writer.writeEmptyElement(localName);
+  }
+
+  @Override
+  public void writeEndElement() throws XMLStreamException {
+    writer.writeEndElement();
+  }
+
+  @Override
+  public void writeEndDocument() throws XMLStreamException {
+    writer.writeEndDocument();
+  }
+
+  @Override
+  public void close() throws XMLStreamException {
+    writer.close();
+  }
+
+  @Override
+  public void flush() throws XMLStreamException {
+    writer.flush();
+  }
+
+  @Override
+  public void writeAttribute(final String localName, final String value) throws XMLStreamException {
+    writer.writeAttribute(localName, value);
+  }
+
+  @Override
+  public void writeAttribute(final String prefix, final String namespaceURI, final String localName, final String value) throws XMLStreamException {
+    writer.writeAttribute(prefix, namespaceURI, localName, value);
+  }
+
+  @Override
+  public void writeAttribute(final String namespaceURI, final String localName, final String value) throws XMLStreamException {
+    writer.writeAttribute(namespaceURI, localName, value);
+  }
+
+  @Override
+  public void writeNamespace(final String prefix, final String namespaceURI) throws XMLStreamException {
+    writer.writeNamespace(prefix, namespaceURI);
+  }
+
+  @Override
+  public void writeDefaultNamespace(final String namespaceURI) throws XMLStreamException {
+    writer.writeDefaultNamespace(namespaceURI);
+  }
+
+  @Override
+  public void writeComment(final String data) throws XMLStreamException {
+    writer.writeComment(data);
+  }
+
+  @Override
+  public void writeProcessingInstruction(final String target) throws XMLStreamException {
+    writer.writeProcessingInstruction(target);
+  }
+
+  @Override
+  public void writeProcessingInstruction(final String target, final String data) throws XMLStreamException {
+    writer.writeProcessingInstruction(target, data);
+  }
+
+  @Override
+  public void writeCData(final String data) throws XMLStreamException {
+    writer.writeCData(data);
+  }
+
+  @Override
+  public void writeDTD(final String dtd) throws XMLStreamException {
+    writer.writeDTD(dtd);
+  }
+
+  @Override
+  public void writeEntityRef(final String name) throws XMLStreamException {
+    writer.writeEntityRef(name);
+  }
+
+  @Override
+  public void writeStartDocument() throws XMLStreamException {
+    writer.writeStartDocument();
+  }
+
+  @Override
+  public void writeStartDocument(final String version) throws XMLStreamException {
+    writer.writeStartDocument(version);
+  }
+
+  @Override
+  public void writeStartDocument(final String encoding, final String version) throws XMLStreamException {
+    writer.writeStartDocument(encoding, version);
+  }
+
+  @Override
+  public void writeCharacters(final String text) throws XMLStreamException {
+    writer.writeCharacters(text);
+  }
+
+  @Override
+  public void writeCharacters(final char[] text, final int start, final int len) throws XMLStreamException {
+    writer.writeCharacters(text, start, len);
+  }
+
+  @Override
+  public String getPrefix(final String uri) throws XMLStreamException {
+    return writer.getPrefix(uri);
+  }
+
+  @Override
+  public void setPrefix(final String prefix, final String uri) throws XMLStreamException {
+    writer.setPrefix(prefix, uri);
+  }
+
+  @Override
+  public void setDefaultNamespace(final String uri) throws XMLStreamException {
+    writer.setDefaultNamespace(uri);
+  }
+
+  @Override
+  public void setNamespaceContext(final NamespaceContext context) throws XMLStreamException {
+    writer.setNamespaceContext(context);
+  }
+
+  @Override
+  public NamespaceContext getNamespaceContext() {
+    return writer.getNamespaceContext();
+  }
+
+  @Override
+  public Object getProperty(final String name) {
+    return writer.getProperty(name);
+  }
+}
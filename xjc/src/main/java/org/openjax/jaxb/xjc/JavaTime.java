@@ -0,0 +1,416 @@
+/* Copyright (c) 2017 OpenJAX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.openjax.jaxb.xjc;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.OffsetTime;
+import java.time.ZoneOffset;
+
+import javax.xml.bind.annotation.adapters.XmlAdapter;
+
+/**
+ * Parsers and printers of the {@code xs:dateTime}, {@code xs:date} and {@code xs:time} lexical forms as {@code java.time} types, which
+ * the {@code -XjavaTime} plugin binds (instead of {@link javax.xml.datatype.XMLGregorianCalendar}) via the adapters of this class.
+ * <p>
+ * The lexical forms are parsed by hand, straight from the characters of the text, so that parsing allocates no more than the value
+ * itself: no {@link javax.xml.datatype.DatatypeFactory} is looked up, and no intermediate fields, calendars or
+ * {@link java.math.BigDecimal}s are created. The adapters are stateless, so the JAXB runtime shares one instance of each, and the
+ * offsets of the values are the instances cached by {@link ZoneOffset#ofTotalSeconds(int)}.
+ * <p>
+ * {@code xs:dateTime} is bound as {@link OffsetDateTime}, and {@code xs:time} as {@link OffsetTime}, which keep the timezone of each
+ * value. Values without a timezone are in the {@linkplain #DEFAULT_OFFSET default offset}, which is {@link ZoneOffset#UTC} unless the
+ * {@value #DEFAULT_OFFSET_PROPERTY} system property sets another (such as {@code +01:00}) when this class is loaded. Callers that parse
+ * the values of a document in another offset can pass it to {@link #parseDateTime(CharSequence,ZoneOffset)} and
+ * {@link #parseTime(CharSequence,ZoneOffset)}. {@code xs:date} is bound as {@link LocalDate}: a value with a timezone is the date in
+ * that timezone, and the timezone is not kept. Fractions of a second beyond nanoseconds are truncated, and {@code 24:00:00} is the
+ * start of the next day.
+ */
+public final class JavaTime {
+  /** The system property of the {@linkplain #DEFAULT_OFFSET default offset}, in the form of {@link ZoneOffset#of(String)}. */
+  public static final String DEFAULT_OFFSET_PROPERTY = "org.openjax.jaxb.xjc.JavaTime.defaultOffset";
+
+  /** The offset of the {@code xs:dateTime} and {@code xs:time} values without a timezone. */
+  public static final ZoneOffset DEFAULT_OFFSET;
+
+  static {
+    final String defaultOffset = System.getProperty(DEFAULT_OFFSET_PROPERTY);
+    DEFAULT_OFFSET = defaultOffset == null ? ZoneOffset.UTC : ZoneOffset.of(defaultOffset);
+  }
+
+  /** An {@link XmlAdapter} with which the JAXB runtime binds {@code xs:dateTime} as {@link OffsetDateTime}. */
+  public static final class DateTimeAdapter extends XmlAdapter<String,OffsetDateTime> {
+    @Override
+    public OffsetDateTime unmarshal(final String v) {
+      return v == null ? null : parseDateTime(v);
+    }
+
+    @Override
+    public String marshal(final OffsetDateTime v) {
+      return v == null ? null : print(v);
+    }
+  }
+
+  /** An {@link XmlAdapter} with which the JAXB runtime binds {@code xs:date} as {@link LocalDate}. */
+  public static final class DateAdapter extends XmlAdapter<String,LocalDate> {
+    @Override
+    public LocalDate unmarshal(final String v) {
+      return v == null ? null : parseDate(v);
+    }
+
+    @Override
+    public String marshal(final LocalDate v) {
+      return v == null ? null : print(v);
+    }
+  }
+
+  /** An {@link XmlAdapter} with which the JAXB runtime binds {@code xs:time} as {@link OffsetTime}. */
+  public static final class TimeAdapter extends XmlAdapter<String,OffsetTime> {
+    @Override
+    public OffsetTime unmarshal(final String v) {
+      return v == null ? null : parseTime(v);
+    }
+
+    @Override
+    public String marshal(final OffsetTime v) {
+      return v == null ? null : print(v);
+    }
+  }
+
+  // The cursor of a parse, which is the index of the next character of the text
+  private static final class Cursor {
+    private final CharSequence text;
+    private final int end;
+    private int index;
+
+    private Cursor(final CharSequence text) {
+      // The xs:dateTime, xs:date and xs:time types collapse their whitespace
+      int start = 0;
+      int end = text.length();
+      while (start < end && isWhitespace(text.charAt(start)))
+        ++start;
+
+      while (end > start && isWhitespace(text.charAt(end - 1)))
+        --end;
+
+      this.text = text;
+      this.index = start;
+      this.end = end;
+    }
+
+    private IllegalArgumentException invalid(final String type) {
+      return new IllegalArgumentException("Invalid " + type + ": \"" + text + "\"");
+    }
+
+    private boolean next(final char ch) {
+      if (index < end && text.charAt(index) == ch) {
+        ++index;
+        return true;
+      }
+
+      return false;
+    }
+
+    private int digits(final int min, final int max, final String type) {
+      int value = 0;
+      final int start = index;
+      for (char ch; index < end && index - start < max && (ch = text.charAt(index)) >= '0' && ch <= '9'; ++index) // [X]
+        value = value * 10 + ch - '0';
+
+      if (index - start < min)
+        throw invalid(type);
+
+      return value;
+    }
+
+    private int year(final String type) {
+      final boolean negative = next('-');
+      final int start = index;
+      final int year = digits(4, 9, type);
+      // A year of more than 4 digits has no leading zero
+      if (index - start > 4 && text.charAt(start) == '0')
+        throw invalid(type);
+
+      return negative ? -year : year;
+    }
+
+    private LocalDate date(final String type) {
+      final int year = year(type);
+      if (!next('-'))
+        throw invalid(type);
+
+      final int month = digits(2, 2, type);
+      if (!next('-'))
+        throw invalid(type);
+
+      final int day = digits(2, 2, type);
+      try {
+        return LocalDate.of(year, month, day);
+      }
+      catch (final DateTimeException e) {
+        throw new IllegalArgumentException(invalid(type).getMessage(), e);
+      }
+    }
+
+    // Returns the time, or null for 24:00:00 (which is the start of the next day)
+    private LocalTime time(final String type) {
+      final int hour = digits(2, 2, type);
+      if (!next(':'))
+        throw invalid(type);
+
+      final int minute = digits(2, 2, type);
+      if (!next(':'))
+        throw invalid(type);
+
+      final int second = digits(2, 2, type);
+      int nano = 0;
+      if (next('.')) {
+        final int start = index;
+        nano = digits(1, 9, type);
+        for (int i = index - start; i < 9; ++i) // [N]
+          nano *= 10;
+
+        // Digits beyond nanoseconds are truncated
+        while (index < end && text.charAt(index) >= '0' && text.charAt(index) <= '9')
+          ++index;
+      }
+
+      if (hour == 24) {
+        if (minute != 0 || second != 0 || nano != 0)
+          throw invalid(type);
+
+        return null;
+      }
+
+      try {
+        return LocalTime.of(hour, minute, second, nano);
+      }
+      catch (final DateTimeException e) {
+        throw new IllegalArgumentException(invalid(type).getMessage(), e);
+      }
+    }
+
+    // Returns the timezone, or the specified default offset if there is none
+    private ZoneOffset offset(final ZoneOffset defaultOffset, final String type) {
+      if (index == end)
+        return defaultOffset;
+
+      if (next('Z'))
+        return ZoneOffset.UTC;
+
+      final boolean negative;
+      if (next('-'))
+        negative = true;
+      else if (next('+'))
+        negative = false;
+      else
+        throw invalid(type);
+
+      final int hours = digits(2, 2, type);
+      if (!next(':'))
+        throw invalid(type);
+
+      final int minutes = digits(2, 2, type);
+      if (hours > 14 || minutes > 59 || hours == 14 && minutes != 0)
+        throw invalid(type);
+
+      final int seconds = (hours * 60 + minutes) * 60;
+      return ZoneOffset.ofTotalSeconds(negative ? -seconds : seconds);
+    }
+
+    private void end(final String type) {
+      if (index != end)
+        throw invalid(type);
+    }
+  }
+
+  /**
+   * Returns the {@link OffsetDateTime} of the specified {@code xs:dateTime} lexical form, which is in the
+   * {@linkplain #DEFAULT_OFFSET default offset} if it has no timezone.
+   *
+   * @param text The {@code xs:dateTime} lexical form.
+   * @return The {@link OffsetDateTime} of the specified {@code xs:dateTime} lexical form.
+   * @throws IllegalArgumentException If {@code text} is not a valid {@code xs:dateTime} lexical form.
+   */
+  public static OffsetDateTime parseDateTime(final CharSequence text) {
+    return parseDateTime(text, DEFAULT_OFFSET);
+  }
+
+  /**
+   * Returns the {@link OffsetDateTime} of the specified {@code xs:dateTime} lexical form, which is in the specified offset if it has
+   * no timezone.
+   *
+   * @param text The {@code xs:dateTime} lexical form.
+   * @param defaultOffset The offset of the value if it has no timezone.
+   * @return The {@link OffsetDateTime} of the specified {@code xs:dateTime} lexical form.
+   * @throws IllegalArgumentException If {@code text} is not a valid {@code xs:dateTime} lexical form.
+   * @throws NullPointerException If {@code defaultOffset} is null.
+   */
+  public static OffsetDateTime parseDateTime(final CharSequence text, final ZoneOffset defaultOffset) {
+    if (defaultOffset == null)
+      throw new NullPointerException("defaultOffset == null");
+
+    final Cursor cursor = new Cursor(text);
+    final LocalDate date = cursor.date("xs:dateTime");
+    if (!cursor.next('T'))
+      throw cursor.invalid("xs:dateTime");
+
+    final LocalTime time = cursor.time("xs:dateTime");
+    final ZoneOffset offset = cursor.offset(defaultOffset, "xs:dateTime");
+    cursor.end("xs:dateTime");
+    final LocalDateTime dateTime = time != null ? LocalDateTime.of(date, time) : LocalDateTime.of(date.plusDays(1), LocalTime.MIDNIGHT);
+    return OffsetDateTime.of(dateTime, offset);
+  }
+
+  /**
+   * Returns the {@link LocalDate} of the specified {@code xs:date} lexical form, which is the date in the timezone of the value (if
+   * any).
+   *
+   * @param text The {@code xs:date} lexical form.
+   * @return The {@link LocalDate} of the specified {@code xs:date} lexical form.
+   * @throws IllegalArgumentException If {@code text} is not a valid {@code xs:date} lexical form.
+   */
+  public static LocalDate parseDate(final CharSequence text) {
+    final Cursor cursor = new Cursor(text);
+    final LocalDate date = cursor.date("xs:date");
+    cursor.offset(null, "xs:date");
+    cursor.end("xs:date");
+    return date;
+  }
+
+  /**
+   * Returns the {@link OffsetTime} of the specified {@code xs:time} lexical form, which is in the {@linkplain #DEFAULT_OFFSET default
+   * offset} if it has no timezone.
+   *
+   * @param text The {@code xs:time} lexical form.
+   * @return The {@link OffsetTime} of the specified {@code xs:time} lexical form.
+   * @throws IllegalArgumentException If {@code text} is not a valid {@code xs:time} lexical form.
+   */
+  public static OffsetTime parseTime(final CharSequence text) {
+    return parseTime(text, DEFAULT_OFFSET);
+  }
+
+  /**
+   * Returns the {@link OffsetTime} of the specified {@code xs:time} lexical form, which is in the specified offset if it has no
+   * timezone.
+   *
+   * @param text The {@code xs:time} lexical form.
+   * @param defaultOffset The offset of the value if it has no timezone.
+   * @return The {@link OffsetTime} of the specified {@code xs:time} lexical form.
+   * @throws IllegalArgumentException If {@code text} is not a valid {@code xs:time} lexical form.
+   * @throws NullPointerException If {@code defaultOffset} is null.
+   */
+  public static OffsetTime parseTime(final CharSequence text, final ZoneOffset defaultOffset) {
+    if (defaultOffset == null)
+      throw new NullPointerException("defaultOffset == null");
+
+    final Cursor cursor = new Cursor(text);
+    final LocalTime time = cursor.time("xs:time");
+    final ZoneOffset offset = cursor.offset(defaultOffset, "xs:time");
+    cursor.end("xs:time");
+    return OffsetTime.of(time != null ? time : LocalTime.MIDNIGHT, offset);
+  }
+
+  /**
+   * Returns the {@code xs:dateTime} lexical form of the specified {@link OffsetDateTime}.
+   *
+   * @param value The {@link OffsetDateTime}.
+   * @return The {@code xs:dateTime} lexical form of the specified {@link OffsetDateTime}.
+   */
+  public static String print(final OffsetDateTime value) {
+    final StringBuilder b = new StringBuilder(35);
+    appendDate(b, value.getYear(), value.getMonthValue(), value.getDayOfMonth()).append('T');
+    return appendOffset(appendTime(b, value.getHour(), value.getMinute(), value.getSecond(), value.getNano()), value.getOffset()).toString();
+  }
+
+  /**
+   * Returns the {@code xs:date} lexical form of the specified {@link LocalDate}.
+   *
+   * @param value The {@link LocalDate}.
+   * @return The {@code xs:date} lexical form of the specified {@link LocalDate}.
+   */
+  public static String print(final LocalDate value) {
+    return appendDate(new StringBuilder(10), value.getYear(), value.getMonthValue(), value.getDayOfMonth()).toString();
+  }
+
+  /**
+   * Returns the {@code xs:time} lexical form of the specified {@link OffsetTime}.
+   *
+   * @param value The {@link OffsetTime}.
+   * @return The {@code xs:time} lexical form of the specified {@link OffsetTime}.
+   */
+  public static String print(final OffsetTime value) {
+    final StringBuilder b = new StringBuilder(24);
+    return appendOffset(appendTime(b, value.getHour(), value.getMinute(), value.getSecond(), value.getNano()), value.getOffset()).toString();
+  }
+
+  private static StringBuilder appendDate(final StringBuilder b, final int year, final int month, final int day) {
+    if (year < 0)
+      b.append('-');
+
+    final int abs = Math.abs(year);
+    if (abs < 1000)
+      b.append(abs < 10 ? "000" : abs < 100 ? "00" : "0");
+
+    b.append(abs).append('-');
+    return append2(append2(b, month).append('-'), day);
+  }
+
+  private static StringBuilder appendTime(final StringBuilder b, final int hour, final int minute, final int second, final int nano) {
+    append2(append2(append2(b, hour).append(':'), minute).append(':'), second);
+    if (nano != 0) {
+      // The fraction is printed without its trailing zeros
+      int digits = 9;
+      int fraction = nano;
+      for (; fraction % 10 == 0; fraction /= 10) // [X]
+        --digits;
+
+      b.append('.');
+      final int start = b.length();
+      b.setLength(start + digits);
+      for (int i = start + digits - 1; i >= start; --i, fraction /= 10) // [N]
+        b.setCharAt(i, (char)('0' + fraction % 10));
+    }
+
+    return b;
+  }
+
+  private static StringBuilder appendOffset(final StringBuilder b, final ZoneOffset offset) {
+    final int seconds = offset.getTotalSeconds();
+    if (seconds == 0)
+      return b.append('Z');
+
+    // Offsets are printed in minutes, as xs:dateTime does not have seconds of offset
+    final int minutes = Math.abs(seconds) / 60;
+    b.append(seconds < 0 ? '-' : '+');
+    return append2(append2(b, minutes / 60).append(':'), minutes % 60);
+  }
+
+  private static StringBuilder append2(final StringBuilder b, final int value) {
+    return b.append((char)('0' + value / 10)).append((char)('0' + value % 10));
+  }
+
+  private static boolean isWhitespace(final char ch) {
+    return ch == ' ' || ch == '\t' || ch == '\n' || ch == '\r';
+  }
+
+  private JavaTime() {
+  }
+}
@@ -18,12 +18,20 @@ package org.openjax.jaxb.xjc;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.StringWriter;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
+import javax.xml.bind.MarshalException;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.UnmarshalException;
 import javax.xml.bind.Unmarshaller;
@@ -35,10 +43,13 @@ import javax.xml.namespace.QName;
 import javax.xml.stream.FactoryConfigurationError;
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 
 import org.openjax.xml.sax.LoggingErrorHandler;
 import org.openjax.xml.sax.Validator;
 import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 /**
@@ -47,6 +58,86 @@ import org.xml.sax.SAXException;
 public final class JaxbUtil {
   private static final String DEFAULT = "##default";
 
+  // The static StAX readers generated by the -Xstax plugin (i.e. T.Stax.read(XMLStreamReader)), or null if absent
+  static final ClassValue<MethodHandle> staxReaders = new ClassValue<MethodHandle>() {
+    @Override
+    protected MethodHandle computeValue(final Class<?> type) {
+      try {
+        final Class<?> stax = Class.forName(type.getName() + "$Stax", true, type.getClassLoader());
+        return stax.getDeclaringClass() != type ? null : MethodHandles.publicLookup().findStatic(stax, "read", MethodType.methodType(type, XMLStreamReader.class));
+      }
+      catch (final ClassNotFoundException | IllegalAccessException | NoSuchMethodException e) {
+        return null;
+      }
+    }
+  };
+
+  // The static StAX writers generated by the -Xstax plugin (i.e. T.Stax.write(XMLStreamWriter,T,String,String)), or null if absent
+  static final ClassValue<MethodHandle> staxWriters = new ClassValue<MethodHandle>() {
+    @Override
+    protected MethodHandle computeValue(final Class<?> type) {
+      try {
+        final Class<?> stax = Class.forName(type.getName() + "$Stax", true, type.getClassLoader());
+        return stax.getDeclaringClass() != type ? null : MethodHandles.publicLookup().findStatic(stax, "write", MethodType.methodType(void.class, XMLStreamWriter.class, type, String.class, String.class));
+      }
+      catch (final ClassNotFoundException | IllegalAccessException | NoSuchMethodException e) {
+        return null;
+      }
+    }
+  };
+
+  // The static StAX readers into reset instances, generated by the -Xstax and -Xreuse plugins (i.e. (reader, value) -> {
+  // value.reset(); return T.Stax.read(reader, value); }), or null if absent
+  private static final ClassValue<MethodHandle> staxReusers = new ClassValue<MethodHandle>() {
+    @Override
+    protected MethodHandle computeValue(final Class<?> type) {
+      try {
+        final Class<?> stax = Class.forName(type.getName() + "$Stax", true, type.getClassLoader());
+        if (stax.getDeclaringClass() != type)
+          return null;
+
+        final MethodHandle read = MethodHandles.publicLookup().findStatic(stax, "read", MethodType.methodType(type, XMLStreamReader.class, type));
+        final MethodHandle reset = MethodHandles.publicLookup().findVirtual(type, "reset", MethodType.methodType(void.class));
+        return MethodHandles.foldArguments(read, MethodHandles.dropArguments(reset, 0, XMLStreamReader.class));
+      }
+      catch (final ClassNotFoundException | IllegalAccessException | NoSuchMethodException e) {
+        return null;
+      }
+    }
+  };
+
+  // The string tables with which the values of the documents parsed as instances of a binding class are deduplicated
+  private static final ConcurrentHashMap<Class<?>,StringTable> stringTables = new ConcurrentHashMap<>();
+
+  /**
+   * Sets the {@link StringTable} with which the attribute values and short text values of the documents parsed as instances of the
+   * specified binding class are deduplicated, or removes it if {@code table} is null. A table may be shared by the binding classes
+   * whose documents repeat the same values.
+   *
+   * @param cls The JAXB binding class.
+   * @param table The {@link StringTable}, or {@code null} to parse documents as instances of {@code cls} without deduplication.
+   * @throws NullPointerException If {@code cls} is null.
+   */
+  public static void setStringTable(final Class<?> cls, final StringTable table) {
+    if (table == null)
+      stringTables.remove(cls);
+    else
+      stringTables.put(cls, table);
+  }
+
+  /**
+   * Returns the {@link StringTable} with which the values of the documents parsed as instances of the specified binding class are
+   * deduplicated, or {@code null} if there is none.
+   *
+   * @param cls The JAXB binding class.
+   * @return The {@link StringTable} with which the values of the documents parsed as instances of the specified binding class are
+   *         deduplicated, or {@code null} if there is none.
+   * @throws NullPointerException If {@code cls} is null.
+   */
+  public static StringTable getStringTable(final Class<?> cls) {
+    return stringTables.get(cls);
+  }
+
   /**
    * Returns a string representation of the specified {@code binding}.
    *
@@ -82,21 +173,84 @@ public final class JaxbUtil {
       return stringWriter.toString();
     }
 
-    final XmlType xmlType = binding.getClass().getAnnotation(XmlType.class);
-    final String localName = DEFAULT.equals(xmlType.name()) ? binding.getClass().getSimpleName() : xmlType.name();
+    final JAXBElement<T> element = new JAXBElement<>(getTypeName(binding.getClass()), (Class<T>)binding.getClass(), binding);
+    marshaller.marshal(element, stringWriter);
+    return stringWriter.toString();
+  }
+
+  private static QName getTypeName(final Class<?> cls) {
+    final XmlType xmlType = cls.getAnnotation(XmlType.class);
+    final String localName = DEFAULT.equals(xmlType.name()) ? cls.getSimpleName() : xmlType.name();
     final String namespace;
     if (DEFAULT.equals(xmlType.namespace())) {
-      final XmlSchema xmlSchema = binding.getClass().getPackage().getAnnotation(XmlSchema.class);
+      final XmlSchema xmlSchema = cls.getPackage().getAnnotation(XmlSchema.class);
       namespace = xmlSchema != null ? xmlSchema.namespace() : DEFAULT;
     }
     else {
       namespace = xmlType.namespace();
     }
 
-    final QName qName = new QName(namespace, localName);
-    final JAXBElement<T> element = new JAXBElement<>(qName, (Class<T>)binding.getClass(), binding);
-    marshaller.marshal(element, stringWriter);
-    return stringWriter.toString();
+    return new QName(namespace, localName);
+  }
+
+  /**
+   * Returns a string representation of the specified {@code binding}, in which the nested instances that are cached in the specified
+   * {@link FragmentCache} are spliced from the cache instead of being written again.
+   * <p>
+   * If the class of {@code binding} has a static StAX writer generated by the {@code -Xstax} plugin, the binding is written with it,
+   * without formatting. (The nested instances are spliced only if the writers were generated with {@code -Xstax-fragments}.)
+   * Otherwise, the binding is marshalled by the JAXB runtime, as by {@link #toXmlString(Object)}, without the cache.
+   *
+   * @param <T> The type of specified {@code binding}.
+   * @param binding The JAXB binding.
+   * @param cache The {@link FragmentCache}.
+   * @return A string representation of the specified {@code binding}.
+   * @throws JAXBException If the binding cannot be written or marshalled.
+   * @throws NullPointerException If {@code binding} or {@code cache} is null.
+   */
+  public static <T> String toXmlString(final T binding, final FragmentCache cache) throws JAXBException {
+    final Class<?> cls = binding.getClass();
+    final MethodHandle staxWriter = staxWriters.get(cls);
+    if (staxWriter == null)
+      return toXmlString(binding);
+
+    final XmlRootElement xmlRootElement = cls.getAnnotation(XmlRootElement.class);
+    final QName name;
+    if (xmlRootElement == null) {
+      name = getTypeName(cls);
+    }
+    else {
+      final String namespace;
+      if (DEFAULT.equals(xmlRootElement.namespace())) {
+        final XmlSchema xmlSchema = cls.getPackage().getAnnotation(XmlSchema.class);
+        namespace = xmlSchema != null ? xmlSchema.namespace() : "";
+      }
+      else {
+        namespace = xmlRootElement.namespace();
+      }
+
+      // The default name of a root element is the name of its class, decapitalized as by java.beans.Introspector.decapitalize()
+      final String simpleName = cls.getSimpleName();
+      final String localName = !DEFAULT.equals(xmlRootElement.name()) ? xmlRootElement.name() : simpleName.length() > 1 && Character.isUpperCase(simpleName.charAt(1)) ? simpleName : Character.toLowerCase(simpleName.charAt(0)) + simpleName.substring(1);
+      name = new QName(namespace, localName);
+    }
+
+    final StringWriter out = new StringWriter();
+    try {
+      final FragmentWriter writer = cache.newWriter(out);
+      staxWriter.invoke(writer, binding, name.getNamespaceURI(), name.getLocalPart());
+      writer.flush();
+      return out.toString();
+    }
+    catch (final XMLStreamException e) {
+      throw new MarshalException(e);
+    }
+    catch (final Error | RuntimeException e) {
+      throw e;
+    }
+    catch (final Throwable t) {
+      throw new IllegalStateException(t);
+    }
   }
 
   /**
@@ -181,7 +335,9 @@ public final class JaxbUtil {
   }
 
   /**
-   * Parses an XML document at the specified {@code url} as an instance of a JAXB binding class {@code cls}.
+   * Parses an XML document at the specified {@code url} as an instance of a JAXB binding class {@code cls}. The document is
+   * unmarshalled by the JAXB runtime (see {@link #parseStax(Class,URL,ErrorHandler,boolean,ParseLimits)} to read it with the static
+   * StAX reader generated by the {@code -Xstax} plugin instead).
    *
    * @param <T> The type of the specified binding class {@code cls}.
    * @param cls The JAXB binding class.
@@ -195,28 +351,308 @@ public final class JaxbUtil {
    *           method is unable to perform the XML to Java binding.
    */
   public static <T> T parse(final Class<T> cls, final ClassLoader classLoader, final URL url, final ErrorHandler errorHandler, final boolean validate) throws IOException, UnmarshalException {
+    return parse(cls, classLoader, url, errorHandler, validate, null);
+  }
+
+  /**
+   * Parses an XML document at the specified {@code url} as an instance of a JAXB binding class {@code cls}, within the specified
+   * {@link ParseLimits}.
+   *
+   * @param <T> The generic type of specified binding class {@code cls}.
+   * @param cls The JAXB binding class.
+   * @param url The location of the XML document to parse.
+   * @param validate If {@code true}, the XML document at {@code url} will first be validated.
+   * @param limits The {@link ParseLimits} within which the XML document is to be parsed, or {@code null} for no limits.
+   * @return An XML document at the specified {@code url} as an instance of a JAXB binding class {@code cls}.
+   * @throws IOException If an I/O error has occurred.
+   * @throws ParseLimitException If the XML document exceeds a limit of the specified {@link ParseLimits}.
+   * @throws UnmarshalException If {@code validate} is set to true, and validation of the XML document at {@code url} fails; or if
+   *           this method is unable to perform the XML to Java binding.
+   */
+  public static <T> T parse(final Class<T> cls, final URL url, final boolean validate, final ParseLimits limits) throws IOException, UnmarshalException {
+    return parse(cls, Thread.currentThread().getContextClassLoader(), url, new LoggingErrorHandler(), validate, limits);
+  }
+
+  /**
+   * Parses an XML document at the specified {@code url} as an instance of a JAXB binding class {@code cls}, within the specified
+   * {@link ParseLimits}.
+   * <p>
+   * The document is unmarshalled by the JAXB runtime. The limits are enforced as the document is read (and validated), and the first
+   * limit to be exceeded aborts the parsing with a {@link ParseLimitException}.
+   * If a {@link StringTable} is {@linkplain #setStringTable(Class,StringTable) set} for {@code cls}, the values of the document are
+   * deduplicated with it.
+   *
+   * @param <T> The type of the specified binding class {@code cls}.
+   * @param cls The JAXB binding class.
+   * @param classLoader Class loader used to locate the implementation classes.
+   * @param url The location of the XML document to parse.
+   * @param errorHandler The {@link ErrorHandler} for SAX validation.
+   * @param validate If {@code true}, the XML document at {@code url} will first be validated.
+   * @param limits The {@link ParseLimits} within which the XML document is to be parsed, or {@code null} for no limits.
+   * @return An XML document at the specified {@code url} as an instance of a JAXB binding class {@code cls}.
+   * @throws IOException If an I/O error has occurred.
+   * @throws ParseLimitException If the XML document exceeds a limit of the specified {@link ParseLimits}.
+   * @throws UnmarshalException If {@code validate} is true, and validation of the XML document at {@code url} fails; or if this
+   *           method is unable to perform the XML to Java binding.
+   */
+  public static <T> T parse(final Class<T> cls, final ClassLoader classLoader, final URL url, final ErrorHandler errorHandler, final boolean validate, final ParseLimits limits) throws IOException, UnmarshalException {
+    return parse(cls, null, null, classLoader, url, errorHandler, validate, limits);
+  }
+
+  /**
+   * Parses an XML document at the specified {@code url} as an instance of a JAXB binding class {@code cls}, with the static StAX
+   * reader of {@code cls} generated by the {@code -Xstax} plugin.
+   *
+   * @param <T> The type of the specified binding class {@code cls}.
+   * @param cls The JAXB binding class.
+   * @param url The location of the XML document to parse.
+   * @return An XML document at the specified {@code url} as an instance of a JAXB binding class {@code cls}.
+   * @throws IOException If an I/O error has occurred.
+   * @throws UnmarshalException If this method is unable to perform the XML to Java binding.
+   * @throws IllegalArgumentException If {@code cls} has no static StAX reader.
+   * @see #parseStax(Class,URL,ErrorHandler,boolean,ParseLimits)
+   */
+  public static <T> T parseStax(final Class<T> cls, final URL url) throws IOException, UnmarshalException {
+    return parseStax(cls, url, new LoggingErrorHandler(), false, null);
+  }
+
+  /**
+   * Parses an XML document at the specified {@code url} as an instance of a JAXB binding class {@code cls}, within the specified
+   * {@link ParseLimits}, with the static StAX reader of {@code cls} generated by the {@code -Xstax} plugin.
+   * <p>
+   * The reader binds the documents that are valid against the schema of {@code cls} as the JAXB runtime does (see
+   * {@link #parse(Class,ClassLoader,URL,ErrorHandler,boolean,ParseLimits)}), without reflection. It differs from the JAXB runtime on
+   * invalid documents: a value that cannot be converted to the type of its property (such as a value of an enumeration that is not
+   * one of its constants, or a malformed number in the text of an element) aborts the parsing with an {@link UnmarshalException},
+   * whereas the JAXB runtime leaves the property unset. The limits and the {@link StringTable} of {@code cls} are applied as by
+   * {@link #parse(Class,ClassLoader,URL,ErrorHandler,boolean,ParseLimits)}.
+   *
+   * @param <T> The type of the specified binding class {@code cls}.
+   * @param cls The JAXB binding class.
+   * @param url The location of the XML document to parse.
+   * @param errorHandler The {@link ErrorHandler} for SAX validation.
+   * @param validate If {@code true}, the XML document at {@code url} will first be validated.
+   * @param limits The {@link ParseLimits} within which the XML document is to be parsed, or {@code null} for no limits.
+   * @return An XML document at the specified {@code url} as an instance of a JAXB binding class {@code cls}.
+   * @throws IOException If an I/O error has occurred.
+   * @throws ParseLimitException If the XML document exceeds a limit of the specified {@link ParseLimits}.
+   * @throws UnmarshalException If {@code validate} is true, and validation of the XML document at {@code url} fails; or if this
+   *           method is unable to perform the XML to Java binding.
+   * @throws IllegalArgumentException If {@code cls} has no static StAX reader.
+   */
+  public static <T> T parseStax(final Class<T> cls, final URL url, final ErrorHandler errorHandler, final boolean validate, final ParseLimits limits) throws IOException, UnmarshalException {
+    final MethodHandle staxReader = staxReaders.get(cls);
+    if (staxReader == null)
+      throw new IllegalArgumentException(cls.getName() + " has no static StAX reader generated by the -Xstax plugin");
+
+    return parse(cls, staxReader, null, null, url, errorHandler, validate, limits);
+  }
+
+  /**
+   * Parses an XML document at the specified {@code url} into the specified instance of a JAXB binding class, which is reset first.
+   *
+   * @param <T> The type of the specified instance.
+   * @param value The instance of the JAXB binding class to parse into.
+   * @param url The location of the XML document to parse.
+   * @return The specified instance.
+   * @throws IOException If an I/O error has occurred.
+   * @throws UnmarshalException If this method is unable to perform the XML to Java binding.
+   * @throws IllegalArgumentException If the class of {@code value} cannot be parsed into.
+   * @see #parseInto(Object,ClassLoader,URL,ErrorHandler,boolean,ParseLimits)
+   */
+  public static <T> T parseInto(final T value, final URL url) throws IOException, UnmarshalException {
+    return parseInto(value, Thread.currentThread().getContextClassLoader(), url, new LoggingErrorHandler(), false, null);
+  }
+
+  /**
+   * Parses an XML document at the specified {@code url} into the specified instance of a JAXB binding class, which is reset first.
+   * <p>
+   * An instance can be parsed into if its class has a static StAX reader generated by the {@code -Xstax} plugin, and a
+   * {@code reset()} method generated by the {@code -Xreuse} plugin. The nested instances and lists of the previous document are then
+   * reused, so that parsing documents of the same shape into the same instance allocates little more than the values of their text.
+   * The document is read as by {@link #parseStax(Class,URL,ErrorHandler,boolean,ParseLimits)}.
+   *
+   * @param <T> The type of the specified instance.
+   * @param value The instance of the JAXB binding class to parse into.
+   * @param classLoader Class loader used to locate the implementation classes.
+   * @param url The location of the XML document to parse.
+   * @param errorHandler The {@link ErrorHandler} for SAX validation.
+   * @param validate If {@code true}, the XML document at {@code url} will first be validated.
+   * @param limits The {@link ParseLimits} within which the XML document is to be parsed, or {@code null} for no limits.
+   * @return The specified instance.
+   * @throws IOException If an I/O error has occurred.
+   * @throws ParseLimitException If the XML document exceeds a limit of the specified {@link ParseLimits}.
+   * @throws UnmarshalException If {@code validate} is true, and validation of the XML document at {@code url} fails; or if this
+   *           method is unable to perform the XML to Java binding.
+   * @throws IllegalArgumentException If the class of {@code value} cannot be parsed into.
+   * @throws NullPointerException If {@code value} is null.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> T parseInto(final T value, final ClassLoader classLoader, final URL url, final ErrorHandler errorHandler, final boolean validate, final ParseLimits limits) throws IOException, UnmarshalException {
+    final Class<T> cls = (Class<T>)value.getClass();
+    final MethodHandle staxReuser = staxReusers.get(cls);
+    if (staxReuser == null)
+      throw new IllegalArgumentException(cls.getName() + " has no static StAX reader and reset() method generated by the -Xstax and -Xreuse plugins");
+
+    return parse(cls, staxReuser, value, classLoader, url, errorHandler, validate, limits);
+  }
+
+  /**
+   * Returns a {@link DocumentReader} of the consecutive XML documents of the specified UTF-8 {@link InputStream}, which reads each
+   * document as an instance of a JAXB binding class {@code cls}.
+   *
+   * @param <T> The type of the specified binding class {@code cls}.
+   * @param cls The JAXB binding class.
+   * @param in The {@link InputStream} of consecutive XML documents.
+   * @return A {@link DocumentReader} of the consecutive XML documents of the specified {@link InputStream}.
+   * @throws IOException If an I/O error has occurred.
+   * @see #parseAll(Class,ClassLoader,InputStream,Charset)
+   */
+  public static <T> DocumentReader<T> parseAll(final Class<T> cls, final InputStream in) throws IOException {
+    return parseAll(cls, Thread.currentThread().getContextClassLoader(), in, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Returns a {@link DocumentReader} of the consecutive XML documents of the specified {@link InputStream} (such as a message log,
+   * or a socket feed), which reads each document as an instance of a JAXB binding class {@code cls}.
+   * <p>
+   * The documents are read with a single {@link XMLStreamReader}, and unmarshalled with a single {@link Unmarshaller} (see
+   * {@link #parseAllStax(Class,InputStream,Charset)} to read them with the static StAX reader generated by the {@code -Xstax} plugin
+   * instead). If a {@link StringTable} is {@linkplain #setStringTable(Class,StringTable) set} for {@code cls}, the values of the
+   * documents are deduplicated with it.
+   *
+   * @param <T> The type of the specified binding class {@code cls}.
+   * @param cls The JAXB binding class.
+   * @param classLoader Class loader used to locate the implementation classes.
+   * @param in The {@link InputStream} of consecutive XML documents.
+   * @param charset The {@link Charset} of the documents.
+   * @return A {@link DocumentReader} of the consecutive XML documents of the specified {@link InputStream}.
+   * @throws IOException If an I/O error has occurred.
+   * @throws NullPointerException If {@code cls}, {@code in} or {@code charset} is null.
+   */
+  public static <T> DocumentReader<T> parseAll(final Class<T> cls, final ClassLoader classLoader, final InputStream in, final Charset charset) throws IOException {
+    return new DocumentReader<>(cls, null, classLoader, new InputStreamReader(in, charset));
+  }
+
+  /**
+   * Returns a {@link DocumentReader} of the consecutive XML documents of the specified UTF-8 {@link InputStream}, which reads each
+   * document as an instance of a JAXB binding class {@code cls} with its static StAX reader generated by the {@code -Xstax} plugin.
+   *
+   * @param <T> The type of the specified binding class {@code cls}.
+   * @param cls The JAXB binding class.
+   * @param in The {@link InputStream} of consecutive XML documents.
+   * @return A {@link DocumentReader} of the consecutive XML documents of the specified {@link InputStream}.
+   * @throws IOException If an I/O error has occurred.
+   * @throws IllegalArgumentException If {@code cls} has no static StAX reader.
+   * @see #parseAllStax(Class,InputStream,Charset)
+   */
+  public static <T> DocumentReader<T> parseAllStax(final Class<T> cls, final InputStream in) throws IOException {
+    return parseAllStax(cls, in, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Returns a {@link DocumentReader} of the consecutive XML documents of the specified {@link InputStream}, which reads each document
+   * as an instance of a JAXB binding class {@code cls} with its static StAX reader generated by the {@code -Xstax} plugin, as by
+   * {@link #parseStax(Class,URL,ErrorHandler,boolean,ParseLimits)}.
+   *
+   * @param <T> The type of the specified binding class {@code cls}.
+   * @param cls The JAXB binding class.
+   * @param in The {@link InputStream} of consecutive XML documents.
+   * @param charset The {@link Charset} of the documents.
+   * @return A {@link DocumentReader} of the consecutive XML documents of the specified {@link InputStream}.
+   * @throws IOException If an I/O error has occurred.
+   * @throws IllegalArgumentException If {@code cls} has no static StAX reader.
+   * @throws NullPointerException If {@code cls}, {@code in} or {@code charset} is null.
+   */
+  public static <T> DocumentReader<T> parseAllStax(final Class<T> cls, final InputStream in, final Charset charset) throws IOException {
+    final MethodHandle staxReader = staxReaders.get(cls);
+    if (staxReader == null)
+      throw new IllegalArgumentException(cls.getName() + " has no static StAX reader generated by the -Xstax plugin");
+
+    return new DocumentReader<>(cls, staxReader, null, new InputStreamReader(in, charset));
+  }
+
+  private static <T> T parse(final Class<T> cls, final MethodHandle staxReader, final T value, final ClassLoader classLoader, final URL url, final ErrorHandler errorHandler, final boolean validate, final ParseLimits limits) throws IOException, UnmarshalException {
+    // The deadline of maxTime spans both the validation and the parsing
+    final long deadline = limits == null ? Long.MAX_VALUE : limits.getDeadline();
     if (validate) {
       try {
-        Validator.validate(url, errorHandler);
+        if (limits == null) {
+          Validator.validate(url, errorHandler);
+        }
+        else {
+          try (final InputStream in = limits.limit(url.openStream(), deadline)) {
+            Validator.validate(url, new InputSource(in), errorHandler);
+          }
+        }
+      }
+      catch (final IOException e) {
+        final ParseLimitException limit = ParseLimits.find(e);
+        if (limit != null)
+          throw limit;
+
+        throw e;
       }
       catch (final SAXException e) {
-        throw new UnmarshalException(e);
+        final ParseLimitException limit = ParseLimits.find(e);
+        throw limit != null ? limit : new UnmarshalException(e);
       }
     }
 
-    try (final InputStream in = url.openStream()) {
+    try (final InputStream in = limits == null ? url.openStream() : limits.limit(url.openStream(), deadline)) {
+      final XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(in);
+      final XMLStreamReader limited = limits == null ? reader : limits.limit(reader, deadline);
+      final StringTable stringTable = stringTables.get(cls);
+      final XMLStreamReader interned = stringTable == null ? limited : stringTable.deduplicate(limited);
+      if (staxReader != null)
+        return read(cls, staxReader, interned, value);
+
       final Unmarshaller unmarshaller = JAXBContext.newInstance(cls.getPackage().getName(), classLoader).createUnmarshaller();
-      final JAXBElement<T> element = unmarshaller.unmarshal(XMLInputFactory.newInstance().createXMLStreamReader(in), cls);
+      if (stringTable != null)
+        unmarshaller.setListener(stringTable.newListener());
+
+      final JAXBElement<T> element = unmarshaller.unmarshal(interned, cls);
       return element.getValue();
     }
-    catch (final UnmarshalException e) {
+    catch (final IOException | UnmarshalException e) {
+      final ParseLimitException limit = ParseLimits.find(e);
+      if (limit != null)
+        throw limit;
+
       throw e;
     }
     catch (final FactoryConfigurationError | JAXBException | XMLStreamException e) {
+      final ParseLimitException limit = ParseLimits.find(e);
+      if (limit != null)
+        throw limit;
+
       throw new IllegalStateException(e);
     }
   }
 
+  private static <T> T read(final Class<T> cls, final MethodHandle staxReader, final XMLStreamReader reader, final T value) throws UnmarshalException {
+    try {
+      reader.nextTag();
+      return cls.cast(value != null ? staxReader.invoke(reader, value) : staxReader.invoke(reader));
+    }
+    catch (final IllegalArgumentException | XMLStreamException e) {
+      throw new UnmarshalException(e);
+    }
+    catch (final Error | RuntimeException e) {
+      throw e;
+    }
+    catch (final Throwable t) {
+      throw new IllegalStateException(t);
+    }
+    finally {
+      try {
+        reader.close();
+      }
+      catch (final XMLStreamException e) {
+      }
+    }
+  }
+
   private JaxbUtil() {
   }
 }
\ No newline at end of file
@@ -0,0 +1,58 @@
+/* Copyright (c) 2017 OpenJAX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.openjax.jaxb.xjc;
+
+import javax.xml.bind.UnmarshalException;
+
+/**
+ * Thrown to indicate that a document exceeded a limit of the {@link ParseLimits} with which it was parsed, and that parsing was
+ * aborted.
+ */
+public class ParseLimitException extends UnmarshalException {
+  private static final long serialVersionUID = 3296185487316422316L;
+
+  private final String limit;
+  private final long max;
+
+  /**
+   * Creates a new {@link ParseLimitException} for the specified limit.
+   *
+   * @param limit The name of the limit (i.e. {@code maxBytes}, {@code maxDepth}, {@code maxElements}, {@code maxAttributes},
+   *          {@code maxTextLength} or {@code maxTime}).
+   * @param max The value of the limit.
+   * @param message The detail message.
+   */
+  public ParseLimitException(final String limit, final long max, final String message) {
+    super(message);
+    this.limit = limit;
+    this.max = max;
+  }
+
+  /**
+   * @return The name of the limit that was exceeded.
+   */
+  public String getLimit() {
+    return limit;
+  }
+
+  /**
+   * @return The value of the limit that was exceeded.
+   */
+  public long getMax() {
+    return max;
+  }
+}
@@ -0,0 +1,274 @@
+/* Copyright (c) 2017 OpenJAX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.openjax.jaxb.xjc;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+
+/**
+ * Limits of the size, shape and duration of the parsing of a document by {@link JaxbUtil}. A limit that is exceeded aborts the
+ * parsing immediately with a {@link ParseLimitException}.
+ * <ul>
+ * <li>{@code maxBytes}: The maximum number of bytes of the document.</li>
+ * <li>{@code maxDepth}: The maximum depth of nested elements.</li>
+ * <li>{@code maxElements}: The maximum number of elements.</li>
+ * <li>{@code maxAttributes}: The maximum number of attributes of an element.</li>
+ * <li>{@code maxTextLength}: The maximum length of the text between two tags, however many events the parser splits it into.</li>
+ * <li>{@code maxTime}: The maximum time of the parsing (including validation), in milliseconds.</li>
+ * </ul>
+ * All limits are unbounded by default.
+ */
+public class ParseLimits {
+  private long maxBytes = Long.MAX_VALUE;
+  private int maxDepth = Integer.MAX_VALUE;
+  private long maxElements = Long.MAX_VALUE;
+  private int maxAttributes = Integer.MAX_VALUE;
+  private int maxTextLength = Integer.MAX_VALUE;
+  private long maxTime = Long.MAX_VALUE;
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  public void setMaxBytes(final long maxBytes) {
+    this.maxBytes = maxBytes;
+  }
+
+  public int getMaxDepth() {
+    return maxDepth;
+  }
+
+  public void setMaxDepth(final int maxDepth) {
+    this.maxDepth = maxDepth;
+  }
+
+  public long getMaxElements() {
+    return maxElements;
+  }
+
+  public void setMaxElements(final long maxElements) {
+    this.maxElements = maxElements;
+  }
+
+  public int getMaxAttributes() {
+    return maxAttributes;
+  }
+
+  public void setMaxAttributes(final int maxAttributes) {
+    this.maxAttributes = maxAttributes;
+  }
+
+  public int getMaxTextLength() {
+    return maxTextLength;
+  }
+
+  public void setMaxTextLength(final int maxTextLength) {
+    this.maxTextLength = maxTextLength;
+  }
+
+  public long getMaxTime() {
+    return maxTime;
+  }
+
+  public void setMaxTime(final long maxTime) {
+    this.maxTime = maxTime;
+  }
+
+  /**
+   * @return The {@link System#nanoTime()} by which parsing that begins now must end.
+   */
+  long getDeadline() {
+    final long now = System.nanoTime();
+    return maxTime >= TimeUnit.NANOSECONDS.toMillis(Long.MAX_VALUE - now) ? Long.MAX_VALUE : now + TimeUnit.MILLISECONDS.toNanos(maxTime);
+  }
+
+  private void checkTime(final long deadline, final Location location) throws ParseLimitException {
+    if (deadline != Long.MAX_VALUE && System.nanoTime() - deadline > 0)
+      throw new ParseLimitException("maxTime", maxTime, "Parsing exceeded maxTime of " + maxTime + " ms" + at(location));
+  }
+
+  private static String at(final Location location) {
+    return location == null ? "" : " at line " + location.getLineNumber() + ", column " + location.getColumnNumber();
+  }
+
+  /**
+   * Returns an {@link InputStream} that reads the specified {@link InputStream}, and throws an {@link IOException} (caused by a
+   * {@link ParseLimitException}) when {@code maxBytes} or {@code maxTime} is exceeded.
+   *
+   * @param in The {@link InputStream}.
+   * @param deadline The {@link #getDeadline() deadline}.
+   * @return An {@link InputStream} that enforces {@code maxBytes} and {@code maxTime}.
+   */
+  InputStream limit(final InputStream in, final long deadline) {
+    return new FilterInputStream(in) {
+      private long bytes;
+
+      private int count(final int n) throws IOException {
+        try {
+          if (n > 0 && (bytes += n) > maxBytes)
+            throw new ParseLimitException("maxBytes", maxBytes, "Document exceeded maxBytes of " + maxBytes);
+
+          checkTime(deadline, null);
+          return n;
+        }
+        catch (final ParseLimitException e) {
+          throw new IOException(e.getMessage(), e);
+        }
+      }
+
+      @Override
+      public int read() throws IOException {
+        final int b = super.read();
+        if (b != -1)
+          count(1);
+
+        return b;
+      }
+
+      @Override
+      public int read(final byte[] b, final int off, final int len) throws IOException {
+        return count(super.read(b, off, len));
+      }
+
+      @Override
+      public long skip(final long n) throws IOException {
+        final long skipped = super.skip(n);
+        count((int)Math.min(skipped, Integer.MAX_VALUE));
+        return skipped;
+      }
+    };
+  }
+
+  /**
+   * Returns an {@link XMLStreamReader} that reads the specified {@link XMLStreamReader}, and throws an {@link XMLStreamException}
+   * (caused by a {@link ParseLimitException}) when {@code maxDepth}, {@code maxElements}, {@code maxAttributes},
+   * {@code maxTextLength} or {@code maxTime} is exceeded.
+   *
+   * @param reader The {@link XMLStreamReader}.
+   * @param deadline The {@link #getDeadline() deadline}.
+   * @return An {@link XMLStreamReader} that enforces the limits of the structure of the document.
+   */
+  XMLStreamReader limit(final XMLStreamReader reader, final long deadline) {
+    return new StreamReaderDelegate(reader) {
+      private int depth;
+      private long elements;
+      // The length of the text since the last start or end tag, which the parser may report in several events (split at its buffer,
+      // at entity references, at CDATA sections or around comments), but which is bound as one value
+      private long textLength;
+
+      private void check(final int event) throws XMLStreamException {
+        try {
+          checkTime(deadline, getLocation());
+          if (event == XMLStreamConstants.START_ELEMENT) {
+            textLength = 0;
+            if (++depth > maxDepth)
+              throw new ParseLimitException("maxDepth", maxDepth, "Document exceeded maxDepth of " + maxDepth + at(getLocation()));
+
+            if (++elements > maxElements)
+              throw new ParseLimitException("maxElements", maxElements, "Document exceeded maxElements of " + maxElements + at(getLocation()));
+
+            if (getAttributeCount() > maxAttributes)
+              throw new ParseLimitException("maxAttributes", maxAttributes, "Element " + getName() + " exceeded maxAttributes of " + maxAttributes + at(getLocation()));
+          }
+          else if (event == XMLStreamConstants.END_ELEMENT) {
+            textLength = 0;
+            --depth;
+          }
+          else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA || event == XMLStreamConstants.SPACE || event == XMLStreamConstants.ENTITY_REFERENCE) {
+            textLength += event == XMLStreamConstants.ENTITY_REFERENCE ? getText().length() : getTextLength();
+            if (textLength > maxTextLength)
+              throw new ParseLimitException("maxTextLength", maxTextLength, "Text exceeded maxTextLength of " + maxTextLength + at(getLocation()));
+          }
+        }
+        catch (final ParseLimitException e) {
+          throw new XMLStreamException(e.getMessage(), getLocation(), e);
+        }
+      }
+
+      @Override
+      public int next() throws XMLStreamException {
+        final int event = super.next();
+        check(event);
+        return event;
+      }
+
+      // The delegate's nextTag() and getElementText() would call next() of the underlying reader, bypassing the limits
+
+      @Override
+      public int nextTag() throws XMLStreamException {
+        int event = next();
+        while (event == XMLStreamConstants.CHARACTERS && isWhiteSpace() || event == XMLStreamConstants.CDATA && isWhiteSpace() || event == XMLStreamConstants.SPACE || event == XMLStreamConstants.PROCESSING_INSTRUCTION || event == XMLStreamConstants.COMMENT)
+          event = next();
+
+        if (event != XMLStreamConstants.START_ELEMENT && event != XMLStreamConstants.END_ELEMENT)
+          throw new XMLStreamException("Expected start or end tag", getLocation());
+
+        return event;
+      }
+
+      @Override
+      public String getElementText() throws XMLStreamException {
+        if (getEventType() != XMLStreamConstants.START_ELEMENT)
+          throw new XMLStreamException("Expected start tag", getLocation());
+
+        final StringBuilder b = new StringBuilder();
+        // The length of the text is checked by next()
+        for (int event; (event = next()) != XMLStreamConstants.END_ELEMENT;) { // [X]
+          if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA || event == XMLStreamConstants.SPACE || event == XMLStreamConstants.ENTITY_REFERENCE) {
+            b.append(getText());
+          }
+          else if (event == XMLStreamConstants.START_ELEMENT) {
+            throw new XMLStreamException("Expected text, but found start tag", getLocation());
+          }
+          else if (event == XMLStreamConstants.END_DOCUMENT) {
+            throw new XMLStreamException("Unexpected end of document", getLocation());
+          }
+        }
+
+        return b.toString();
+      }
+    };
+  }
+
+  /**
+   * Returns the {@link ParseLimitException} in the chain of causes of the specified {@link Throwable}, or {@code null} if there is
+   * none.
+   *
+   * @param t The {@link Throwable}.
+   * @return The {@link ParseLimitException} in the chain of causes of the specified {@link Throwable}, or {@code null}.
+   */
+  static ParseLimitException find(Throwable t) {
+    for (int i = 0; t != null && i < 16; ++i) { // [N]
+      if (t instanceof ParseLimitException)
+        return (ParseLimitException)t;
+
+      final Throwable cause = t instanceof XMLStreamException ? ((XMLStreamException)t).getNestedException() : t instanceof JAXBException ? ((JAXBException)t).getLinkedException() : null;
+      t = cause != null ? cause : t.getCause();
+    }
+
+    return null;
+  }
+}
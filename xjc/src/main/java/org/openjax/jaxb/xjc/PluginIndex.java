@@ -0,0 +1,240 @@
+/* Copyright (c) 2017 OpenJAX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.openjax.jaxb.xjc;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.tools.xjc.Plugin;
+
+/**
+ * An index of the XJC plugins that are provided by classpath entries, which maps each entry to the option names (without the
+ * leading {@code -}) of the plugins it declares in {@code META-INF/services/com.sun.tools.xjc.Plugin}.
+ * <p>
+ * Resolving the option name of a plugin requires its class to be loaded and instantiated (with the classpath of which the entry is part,
+ * so that the plugin can depend on the other entries), so the index is cached in memory and, optionally, in a file. An entry is stamped
+ * with the size and modification time of the jar (or of the service file of a directory), and is resolved again only when its stamp
+ * changes. An entry of which a plugin cannot be resolved is not cached, so that it is resolved again with the next classpath.
+ */
+public class PluginIndex {
+  private static final Logger logger = LoggerFactory.getLogger(PluginIndex.class);
+  static final String SERVICE = "META-INF/services/" + Plugin.class.getName();
+  private static final ConcurrentHashMap<String,String> memory = new ConcurrentHashMap<>();
+
+  private final File file;
+  private final Properties index = new Properties();
+  private boolean dirty;
+
+  /**
+   * Creates a new {@link PluginIndex} that is persisted in the specified file.
+   *
+   * @param file The file in which the index is persisted, or {@code null} if the index is to be cached in memory only.
+   * @throws IOException If an I/O error has occurred while reading the file.
+   */
+  public PluginIndex(final File file) throws IOException {
+    this.file = file;
+    index.putAll(memory);
+    if (file != null && file.exists()) {
+      try (final InputStream in = Files.newInputStream(file.toPath())) {
+        index.load(in);
+      }
+    }
+  }
+
+  /**
+   * Returns the option names (without the leading {@code -}) of the XJC plugins declared by the specified classpath entry, of which
+   * the classes depend on no other entry.
+   *
+   * @param entry The classpath entry (a jar or a directory).
+   * @return The option names of the XJC plugins declared by the specified classpath entry.
+   * @throws IOException If an I/O error has occurred.
+   */
+  public String[] getOptions(final File entry) throws IOException {
+    return getOptions(entry, Collections.singleton(entry));
+  }
+
+  private String[] getOptions(final File entry, final Collection<File> classpath) throws IOException {
+    final String key = entry.getAbsolutePath();
+    final String stamp = stamp(entry);
+    final String value = index.getProperty(key);
+    if (value != null && value.startsWith(stamp)) {
+      final String options = value.substring(stamp.length());
+      return options.isEmpty() ? new String[0] : options.split(",");
+    }
+
+    final ArrayList<String> options = new ArrayList<>();
+    if (!resolve(entry, classpath, readProviders(entry), options))
+      return options.toArray(new String[options.size()]);
+
+    final StringBuilder b = new StringBuilder(stamp);
+    for (int i = 0, i$ = options.size(); i < i$; ++i) { // [RA]
+      if (i > 0)
+        b.append(',');
+
+      b.append(options.get(i));
+    }
+
+    index.setProperty(key, b.toString());
+    memory.put(key, b.toString());
+    dirty = true;
+    return options.toArray(new String[options.size()]);
+  }
+
+  /**
+   * Returns the first entry of the specified classpath that declares the XJC plugin with the specified option name, or {@code null}
+   * if no such entry exists.
+   *
+   * @param classpath The classpath.
+   * @param option The option name (without the leading {@code -}).
+   * @return The first entry of the specified classpath that declares the XJC plugin with the specified option name, or {@code null}
+   *         if no such entry exists.
+   * @throws IOException If an I/O error has occurred.
+   */
+  public File find(final Collection<File> classpath, final String option) throws IOException {
+    for (final File entry : classpath) // [C]
+      for (final String name : getOptions(entry, classpath)) // [A]
+        if (name.equals(option))
+          return entry;
+
+    return null;
+  }
+
+  /**
+   * Writes this index to its file, if it has changed.
+   *
+   * @throws IOException If an I/O error has occurred.
+   */
+  public void save() throws IOException {
+    if (file == null || !dirty)
+      return;
+
+    final File parent = file.getAbsoluteFile().getParentFile();
+    if (!parent.exists() && !parent.mkdirs() && !parent.exists())
+      throw new IOException("Unable to create directory: " + parent.getAbsolutePath());
+
+    final Path temp = Files.createTempFile(parent.toPath(), file.getName(), ".tmp");
+    try {
+      try (final OutputStream out = Files.newOutputStream(temp)) {
+        index.store(out, null);
+      }
+
+      try {
+        Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      }
+      catch (final AtomicMoveNotSupportedException e) {
+        Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+    finally {
+      Files.deleteIfExists(temp);
+    }
+
+    dirty = false;
+  }
+
+  private static String stamp(final File entry) {
+    final File stamped = entry.isDirectory() ? new File(entry, SERVICE) : entry;
+    return stamped.length() + ":" + stamped.lastModified() + ":";
+  }
+
+  private static ArrayList<String> readProviders(final File entry) throws IOException {
+    final ArrayList<String> providers = new ArrayList<>();
+    if (entry.isDirectory()) {
+      final File service = new File(entry, SERVICE);
+      if (service.exists())
+        try (final InputStream in = Files.newInputStream(service.toPath())) {
+          readProviders(in, providers);
+        }
+    }
+    else if (entry.isFile()) {
+      try (final ZipFile zip = new ZipFile(entry)) {
+        final ZipEntry service = zip.getEntry(SERVICE);
+        if (service != null)
+          try (final InputStream in = zip.getInputStream(service)) {
+            readProviders(in, providers);
+          }
+      }
+      catch (final IOException e) {
+        if (logger.isDebugEnabled())
+          logger.debug("Unable to read " + entry.getAbsolutePath() + ": " + e.getMessage());
+      }
+    }
+
+    return providers;
+  }
+
+  private static void readProviders(final InputStream in, final ArrayList<String> providers) throws IOException {
+    final BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    for (String line; (line = reader.readLine()) != null;) { // [X]
+      final int comment = line.indexOf('#');
+      final String provider = (comment == -1 ? line : line.substring(0, comment)).trim();
+      if (provider.length() > 0)
+        providers.add(provider);
+    }
+  }
+
+  // Adds the option names of the specified providers of the entry to the options, and returns false if a provider cannot be resolved
+  private static boolean resolve(final File entry, final Collection<File> classpath, final ArrayList<String> providers, final ArrayList<String> options) throws IOException {
+    if (providers.size() == 0)
+      return true;
+
+    // The entry precedes the rest of the classpath, on which the classes of its plugins may depend
+    final ArrayList<URL> urls = new ArrayList<>(classpath.size() + 1);
+    urls.add(entry.toURI().toURL());
+    for (final File file : classpath) // [C]
+      if (!file.equals(entry))
+        urls.add(file.toURI().toURL());
+
+    boolean resolved = true;
+    try (final URLClassLoader classLoader = new URLClassLoader(urls.toArray(new URL[urls.size()]), PluginIndex.class.getClassLoader())) {
+      for (int i = 0, i$ = providers.size(); i < i$; ++i) { // [RA]
+        final String provider = providers.get(i);
+        try {
+          options.add(((Plugin)Class.forName(provider, false, classLoader).getDeclaredConstructor().newInstance()).getOptionName());
+        }
+        catch (final Exception | LinkageError e) {
+          resolved = false;
+          if (logger.isWarnEnabled())
+            logger.warn("Unable to resolve XJC plugin " + provider + " in " + entry.getAbsolutePath() + ": " + e);
+        }
+      }
+    }
+
+    return resolved;
+  }
+}
@@ -0,0 +1,461 @@
+/* Copyright (c) 2017 OpenJAX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.openjax.jaxb.xjc;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.libj.net.URLs;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A persistent on-disk cache of remote ({@code http} and {@code https}) schemas.
+ * <p>
+ * Each cached document is stored at a path that mirrors its URL (i.e. {@code <dir>/<scheme>/<host>/<path>}), so that relative
+ * {@code schemaLocation} references between cached documents resolve to their cached neighbors. A {@code .meta} file alongside each
+ * document records the {@code ETag}, {@code Last-Modified}, and SHA-256 checksum of its content. A cached document is served without
+ * contacting the server for {@link #getMaxAge() maxAge} milliseconds after it was last validated, after which it is revalidated with a
+ * conditional request. The checksum of a cached document is verified each time it is served, and a document that fails verification
+ * is fetched again.
+ * <p>
+ * In {@link #getOffline() offline} mode, documents are served from the cache only.
+ */
+public class SchemaCache {
+  private static final Logger logger = LoggerFactory.getLogger(SchemaCache.class);
+  private static final long DEFAULT_MAX_AGE = 24 * 60 * 60 * 1000;
+  private static final int MAX_REDIRECTS = 5;
+  private static final String META = ".meta";
+
+  /**
+   * Returns whether the specified {@code url} refers to a remote resource that is subject to caching.
+   *
+   * @param url The {@link URL}.
+   * @return Whether the specified {@code url} refers to a remote resource that is subject to caching.
+   */
+  public static boolean isRemote(final URL url) {
+    return "http".equals(url.getProtocol()) || "https".equals(url.getProtocol());
+  }
+
+  private final File dir;
+  private final ConcurrentHashMap<String,File> validated = new ConcurrentHashMap<>();
+  private boolean offline;
+  private long maxAge = DEFAULT_MAX_AGE;
+
+  /**
+   * Creates a new {@link SchemaCache} in the specified directory.
+   *
+   * @param dir The directory of the cache.
+   * @throws NullPointerException If {@code dir} is null.
+   */
+  public SchemaCache(final File dir) {
+    if (dir == null)
+      throw new NullPointerException("dir == null");
+
+    this.dir = dir;
+  }
+
+  public File getDir() {
+    return dir;
+  }
+
+  public boolean getOffline() {
+    return offline;
+  }
+
+  public void setOffline(final boolean offline) {
+    this.offline = offline;
+  }
+
+  public long getMaxAge() {
+    return maxAge;
+  }
+
+  public void setMaxAge(final long maxAge) {
+    this.maxAge = maxAge;
+  }
+
+  /**
+   * Returns the cached file of the document at the specified remote {@code url}, fetching or revalidating it if necessary.
+   *
+   * @param url The {@link URL} of the remote document.
+   * @return The cached file of the document at the specified remote {@code url}.
+   * @throws IOException If the document is not cached and cannot be fetched, or if an I/O error has occurred.
+   * @throws IllegalArgumentException If the specified {@code url} is not {@linkplain #isRemote(URL) remote}.
+   */
+  public File get(final URL url) throws IOException {
+    if (!isRemote(url))
+      throw new IllegalArgumentException("Not a remote URL: " + url);
+
+    final String key = url.toString();
+    final File file = validated.get(key);
+    if (file != null)
+      return file;
+
+    final File cached = toFile(url);
+    final File metaFile = new File(cached.getPath() + META);
+    final Properties meta = verify(cached, metaFile);
+    if (meta != null && (offline || System.currentTimeMillis() - Long.parseLong(meta.getProperty("validated", "0")) < maxAge)) {
+      validated.put(key, cached);
+      return cached;
+    }
+
+    if (offline)
+      throw new IOException("Offline, and not cached: " + url);
+
+    try {
+      fetch(url, cached, metaFile, meta);
+    }
+    catch (final IOException e) {
+      if (meta == null)
+        throw e;
+
+      if (logger.isWarnEnabled())
+        logger.warn("Unable to revalidate " + url + ", using cached copy: " + e.getMessage());
+    }
+
+    validated.put(key, cached);
+    return cached;
+  }
+
+  /**
+   * Fetches the schema at the specified {@code uri} and, transitively, the schemas referenced by its {@code xs:import},
+   * {@code xs:include}, {@code xs:redefine} and {@code xs:override} declarations, and returns the map of the remote schemas that were
+   * encountered to their cached files. Local schemas are read in place, so that their remote references are cached as well.
+   *
+   * @param uri The {@link URI} of the schema.
+   * @return The map of the remote schemas referenced from the schema at the specified {@code uri} (including itself) to their cached
+   *         files.
+   * @throws IOException If a remote schema is not cached and cannot be fetched, or if an I/O error has occurred.
+   */
+  public LinkedHashMap<URI,File> prefetch(final URI uri) throws IOException {
+    final LinkedHashMap<URI,File> resolved = new LinkedHashMap<>();
+    final HashSet<URI> visited = new HashSet<>();
+    final ArrayDeque<URI> queue = new ArrayDeque<>();
+    visited.add(uri);
+    queue.add(uri);
+    for (URI next; (next = queue.poll()) != null;) { // [X]
+      final URL url = next.toURL();
+      final URL source;
+      if (isRemote(url)) {
+        final File file = get(url);
+        resolved.put(next, file);
+        source = file.toURI().toURL();
+      }
+      else {
+        source = url;
+      }
+
+      for (final String location : getSchemaLocations(source)) { // [L]
+        final URI ref = next.resolve(location.trim()).normalize();
+        if (visited.add(ref))
+          queue.add(ref);
+      }
+    }
+
+    return resolved;
+  }
+
+  File toFile(final URL url) throws IOException {
+    final String path;
+    try {
+      path = url.toURI().normalize().getPath();
+    }
+    catch (final URISyntaxException e) {
+      throw new IOException(e);
+    }
+
+    if (path.contains("/../"))
+      throw new IOException("Illegal path: " + url);
+
+    final StringBuilder b = new StringBuilder(url.getProtocol()).append('/').append(url.getHost());
+    if (url.getPort() != -1)
+      b.append('_').append(url.getPort());
+
+    if (path.length() == 0 || path.charAt(0) != '/')
+      b.append('/');
+
+    b.append(path);
+    if (b.charAt(b.length() - 1) == '/')
+      b.append("index");
+
+    if (url.getQuery() != null)
+      b.append('_').append(Integer.toHexString(url.getQuery().hashCode()));
+
+    return new File(dir, b.toString().replace('/', File.separatorChar));
+  }
+
+  private static Properties verify(final File file, final File metaFile) throws IOException {
+    if (!file.exists() || !metaFile.exists())
+      return null;
+
+    final Properties meta = new Properties();
+    try (final InputStream in = new FileInputStream(metaFile)) {
+      meta.load(in);
+    }
+
+    final String sha256 = meta.getProperty("sha256");
+    if (sha256 != null) {
+      final MessageDigest digest = newDigest();
+      try (final DigestInputStream in = new DigestInputStream(new FileInputStream(file), digest)) {
+        final byte[] buf = new byte[8192];
+        while (in.read(buf) != -1);
+      }
+
+      if (sha256.equals(toHex(digest.digest())))
+        return meta;
+    }
+
+    if (logger.isWarnEnabled())
+      logger.warn("Checksum mismatch for cached " + file.getAbsolutePath());
+
+    return null;
+  }
+
+  private static void fetch(URL url, final File file, final File metaFile, final Properties meta) throws IOException {
+    for (int redirects = 0;; ++redirects) { // [N]
+      final HttpURLConnection connection = (HttpURLConnection)url.openConnection();
+      try {
+        connection.setInstanceFollowRedirects(false);
+        if (meta != null) {
+          final String etag = meta.getProperty("etag");
+          if (etag != null)
+            connection.setRequestProperty("If-None-Match", etag);
+
+          final String lastModified = meta.getProperty("lastModified");
+          if (lastModified != null)
+            connection.setRequestProperty("If-Modified-Since", lastModified);
+        }
+
+        final int code = connection.getResponseCode();
+        if (code == HttpURLConnection.HTTP_NOT_MODIFIED && meta != null) {
+          meta.setProperty("validated", String.valueOf(System.currentTimeMillis()));
+          store(meta, metaFile);
+          return;
+        }
+
+        if (code == HttpURLConnection.HTTP_MOVED_PERM || code == HttpURLConnection.HTTP_MOVED_TEMP || code == HttpURLConnection.HTTP_SEE_OTHER || code == 307 || code == 308) {
+          final String location = connection.getHeaderField("Location");
+          if (location == null || redirects == MAX_REDIRECTS)
+            throw new IOException("Unable to follow redirect (" + code + ") from " + url);
+
+          url = new URL(url, location);
+          continue;
+        }
+
+        if (code != HttpURLConnection.HTTP_OK)
+          throw new IOException("Server returned " + code + " for " + url);
+
+        final File parent = file.getParentFile();
+        if (!parent.exists() && !parent.mkdirs() && !parent.exists())
+          throw new IOException("Unable to create directory: " + parent.getAbsolutePath());
+
+        final Path temp = Files.createTempFile(parent.toPath(), file.getName(), ".tmp");
+        final MessageDigest digest = newDigest();
+        try (final InputStream in = new DigestInputStream(connection.getInputStream(), digest)) {
+          Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+          move(temp, file.toPath());
+        }
+        finally {
+          Files.deleteIfExists(temp);
+        }
+
+        final Properties update = new Properties();
+        update.setProperty("url", url.toString());
+        update.setProperty("sha256", toHex(digest.digest()));
+        update.setProperty("validated", String.valueOf(System.currentTimeMillis()));
+        final String etag = connection.getHeaderField("ETag");
+        if (etag != null)
+          update.setProperty("etag", etag);
+
+        final String lastModified = connection.getHeaderField("Last-Modified");
+        if (lastModified != null)
+          update.setProperty("lastModified", lastModified);
+
+        store(update, metaFile);
+        return;
+      }
+      finally {
+        connection.disconnect();
+      }
+    }
+  }
+
+  private static void store(final Properties meta, final File metaFile) throws IOException {
+    final Path temp = Files.createTempFile(metaFile.getParentFile().toPath(), metaFile.getName(), ".tmp");
+    try {
+      try (final OutputStream out = Files.newOutputStream(temp)) {
+        meta.store(out, null);
+      }
+
+      move(temp, metaFile.toPath());
+    }
+    finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  private static void move(final Path source, final Path target) throws IOException {
+    try {
+      Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    catch (final AtomicMoveNotSupportedException e) {
+      Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /**
+   * Returns the {@code schemaLocation} values of the {@code xs:import}, {@code xs:include}, {@code xs:redefine} and
+   * {@code xs:override} declarations of the schema at the specified {@code url}. Reading stops at the first top-level declaration that
+   * is not one of these (or {@code xs:annotation}), since these declarations must precede all others.
+   *
+   * @param url The {@link URL} of the schema.
+   * @return The {@code schemaLocation} values of the schema at the specified {@code url}.
+   * @throws IOException If an I/O error has occurred, or if the schema is not well-formed.
+   */
+  static ArrayList<String> getSchemaLocations(final URL url) throws IOException {
+    final ArrayList<String> locations = new ArrayList<>();
+    final XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    try (final InputStream in = url.openStream()) {
+      final XMLStreamReader reader = factory.createXMLStreamReader(url.toString(), in);
+      try {
+        for (int depth = 0; reader.hasNext();) { // [X]
+          final int event = reader.next();
+          if (event == XMLStreamConstants.END_ELEMENT) {
+            --depth;
+          }
+          else if (event == XMLStreamConstants.START_ELEMENT) {
+            if (++depth == 2) {
+              if (!XMLConstants.W3C_XML_SCHEMA_NS_URI.equals(reader.getNamespaceURI()))
+                break;
+
+              final String localName = reader.getLocalName();
+              if ("import".equals(localName) || "include".equals(localName) || "redefine".equals(localName) || "override".equals(localName)) {
+                final String location = reader.getAttributeValue(null, "schemaLocation");
+                if (location != null)
+                  locations.add(location);
+              }
+              else if (!"annotation".equals(localName)) {
+                break;
+              }
+            }
+          }
+        }
+      }
+      finally {
+        reader.close();
+      }
+    }
+    catch (final XMLStreamException e) {
+      throw new IOException(url + ": " + e.getMessage(), e);
+    }
+
+    return locations;
+  }
+
+  /**
+   * Updates the specified digest with the content of the schema at the specified {@link URL} and, transitively, of the schemas
+   * referenced by its {@code xs:import}, {@code xs:include}, {@code xs:redefine} and {@code xs:override} declarations, so that the
+   * digest changes if any schema of the set changes.
+   *
+   * @param digest The {@link MessageDigest}.
+   * @param url The {@link URL} of the schema.
+   * @throws IOException If a schema of the set cannot be read.
+   */
+  public static void update(final MessageDigest digest, final URL url) throws IOException {
+    final URI uri;
+    try {
+      uri = url.toURI().normalize();
+    }
+    catch (final URISyntaxException e) {
+      throw new IOException(e);
+    }
+
+    final HashSet<URI> visited = new HashSet<>();
+    final ArrayDeque<URI> queue = new ArrayDeque<>();
+    visited.add(uri);
+    queue.add(uri);
+    for (URI next; (next = queue.poll()) != null;) { // [X]
+      final URL source = next.toURL();
+      digest.update(URLs.readBytes(source));
+      digest.update((byte)0);
+      for (final String location : getSchemaLocations(source)) { // [L]
+        final URI ref = next.resolve(location.trim()).normalize();
+        if (visited.add(ref))
+          queue.add(ref);
+      }
+    }
+  }
+
+  /**
+   * Returns a new SHA-256 {@link MessageDigest}, by which the entries of the caches of this module are keyed.
+   *
+   * @return A new SHA-256 {@link MessageDigest}.
+   */
+  public static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    }
+    catch (final NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Returns the lowercase hexadecimal representation of the specified bytes.
+   *
+   * @param bytes The bytes.
+   * @return The lowercase hexadecimal representation of the specified bytes.
+   */
+  public static String toHex(final byte[] bytes) {
+    final char[] chars = new char[bytes.length * 2];
+    for (int i = 0, j = 0; i < bytes.length; ++i) { // [A]
+      chars[j++] = Character.forDigit((bytes[i] >> 4) & 0xf, 16);
+      chars[j++] = Character.forDigit(bytes[i] & 0xf, 16);
+    }
+
+    return new String(chars);
+  }
+}
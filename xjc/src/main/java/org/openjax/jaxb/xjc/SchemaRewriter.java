@@ -0,0 +1,195 @@
+/* Copyright (c) 2017 OpenJAX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.openjax.jaxb.xjc;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartDocument;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+import org.libj.net.URIs;
+
+/**
+ * Rewrites XSD 1.1 schemas to XSD 1.0 schemas that XJC can compile, by streaming their StAX events to temporary files:
+ * <ul>
+ * <li>The {@code xs:assert} and {@code xs:assertion} declarations (which are not supported by XSD 1.0) are removed.</li>
+ * <li>The {@code schemaLocation} attributes are resolved against the URI of the schema, and the locations of the schemas that are
+ * rewritten are replaced with the locations of their temporary files.</li>
+ * <li>The {@code DOCTYPE} declaration is removed, and the document is written in UTF-8.</li>
+ * </ul>
+ * The specified schemas are rewritten, as are the local (and cached remote) schemas they transitively import, include, redefine or
+ * override. The schemas are rewritten in parallel, each in constant memory.
+ */
+final class SchemaRewriter {
+  private static final QName SCHEMA_LOCATION = new QName("schemaLocation");
+
+  /**
+   * Rewrites the specified schemas, and the schemas they transitively reference, to temporary files.
+   *
+   * @param schemas The URIs of the schemas.
+   * @param cached The map of remote schemas to their cached files.
+   * @return The map of the URIs of the rewritten schemas to their temporary files, in the order they were encountered.
+   * @throws IOException If an I/O error has occurred.
+   */
+  static LinkedHashMap<URI,File> rewrite(final Collection<URI> schemas, final Map<URI,File> cached) throws IOException {
+    final LinkedHashMap<URI,File> files = new LinkedHashMap<>();
+    final ArrayDeque<URI> queue = new ArrayDeque<>(schemas);
+    try {
+      for (URI next; (next = queue.poll()) != null;) { // [X]
+        if (files.containsKey(next))
+          continue;
+
+        files.put(next, File.createTempFile(URIs.getName(next), ""));
+        final URL source = getSource(next, cached, schemas.contains(next));
+        if (source != null)
+          for (final String location : SchemaCache.getSchemaLocations(source)) // [L]
+            queue.add(next.resolve(location.trim()).normalize());
+      }
+
+      // Remote schemas that are neither specified nor cached are resolved by XJC
+      for (final Iterator<Map.Entry<URI,File>> i = files.entrySet().iterator(); i.hasNext();) { // [I]
+        final Map.Entry<URI,File> entry = i.next();
+        if (getSource(entry.getKey(), cached, schemas.contains(entry.getKey())) == null) {
+          Files.delete(entry.getValue().toPath());
+          i.remove();
+        }
+      }
+
+      new ArrayList<>(files.entrySet()).parallelStream().forEach(entry -> {
+        try {
+          rewrite(entry.getKey(), getSource(entry.getKey(), cached, true), entry.getValue(), files);
+        }
+        catch (final IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+
+      return files;
+    }
+    catch (final IOException | RuntimeException e) {
+      for (final File file : files.values()) // [C]
+        file.delete();
+
+      if (e instanceof UncheckedIOException)
+        throw ((UncheckedIOException)e).getCause();
+
+      throw e;
+    }
+  }
+
+  private static URL getSource(final URI uri, final Map<URI,File> cached, final boolean specified) throws IOException {
+    final File file = cached.get(uri);
+    if (file != null)
+      return file.toURI().toURL();
+
+    final URL url = uri.toURL();
+    return specified || !SchemaCache.isRemote(url) ? url : null;
+  }
+
+  private static void rewrite(final URI uri, final URL source, final File target, final Map<URI,File> files) throws IOException {
+    final XMLEventFactory eventFactory = XMLEventFactory.newInstance();
+    final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+    inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    try (
+      final InputStream in = source.openStream();
+      final OutputStream out = Files.newOutputStream(target.toPath());
+    ) {
+      final XMLEventReader reader = inputFactory.createXMLEventReader(uri.toString(), in);
+      final XMLEventWriter writer = XMLOutputFactory.newInstance().createXMLEventWriter(out, "UTF-8");
+      try {
+        for (int skip = 0; reader.hasNext();) { // [X]
+          final XMLEvent event = reader.nextEvent();
+          if (skip > 0) {
+            if (event.isStartElement())
+              ++skip;
+            else if (event.isEndElement())
+              --skip;
+          }
+          else if (event.getEventType() == XMLStreamConstants.DTD) {
+            continue;
+          }
+          else if (event.isStartDocument()) {
+            final StartDocument startDocument = (StartDocument)event;
+            writer.add(eventFactory.createStartDocument("UTF-8", startDocument.getVersion() != null ? startDocument.getVersion() : "1.0"));
+          }
+          else if (event.isStartElement()) {
+            final StartElement element = event.asStartElement();
+            final QName name = element.getName();
+            if (XMLConstants.W3C_XML_SCHEMA_NS_URI.equals(name.getNamespaceURI()) && ("assert".equals(name.getLocalPart()) || "assertion".equals(name.getLocalPart())))
+              skip = 1;
+            else
+              writer.add(element.getAttributeByName(SCHEMA_LOCATION) == null ? element : rewrite(eventFactory, uri, element, files));
+          }
+          else {
+            writer.add(event);
+          }
+        }
+
+        writer.flush();
+      }
+      finally {
+        writer.close();
+        reader.close();
+      }
+    }
+    catch (final XMLStreamException e) {
+      throw new IOException(uri + ": " + e.getMessage(), e);
+    }
+  }
+
+  private static StartElement rewrite(final XMLEventFactory eventFactory, final URI uri, final StartElement element, final Map<URI,File> files) {
+    final ArrayList<Attribute> attributes = new ArrayList<>();
+    for (final Iterator<?> i = element.getAttributes(); i.hasNext();) { // [I]
+      final Attribute attribute = (Attribute)i.next();
+      if (!SCHEMA_LOCATION.equals(attribute.getName())) {
+        attributes.add(attribute);
+      }
+      else {
+        final URI location = uri.resolve(attribute.getValue().trim()).normalize();
+        final File file = files.get(location);
+        attributes.add(eventFactory.createAttribute(SCHEMA_LOCATION, file != null ? file.toURI().toString() : location.toString()));
+      }
+    }
+
+    return eventFactory.createStartElement(element.getName(), attributes.iterator(), element.getNamespaces());
+  }
+}
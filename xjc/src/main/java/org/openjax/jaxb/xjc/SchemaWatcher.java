@@ -0,0 +1,203 @@
+/* Copyright (c) 2017 OpenJAX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.openjax.jaxb.xjc;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import javax.xml.bind.JAXBException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches the local schemas and bindings of a {@link XJCompiler.Command} (and the local schemas they transitively import or include)
+ * with a {@link WatchService}, and compiles the command again when any of them changes.
+ * <p>
+ * Changes are debounced for {@link #getDelay() delay} milliseconds, so that the files that are saved together are compiled once. The
+ * state of the compiler (i.e. the plugin index, and the schema and build caches of the command) is kept warm between compilations,
+ * and only the generated files whose content changed are written to the output directory, so that only the classes of the affected
+ * schema components are recompiled downstream.
+ */
+public class SchemaWatcher implements Closeable {
+  private static final Logger logger = LoggerFactory.getLogger(SchemaWatcher.class);
+  private static final long DEFAULT_DELAY = 200;
+
+  private final XJCompiler.Command command;
+  private final Consumer<CompileReport> listener;
+  private final WatchService watchService;
+  private final HashMap<Path,WatchKey> keys = new HashMap<>();
+  private final HashSet<Path> files = new HashSet<>();
+  private long delay = DEFAULT_DELAY;
+
+  /**
+   * Creates a new {@link SchemaWatcher} for the specified {@link XJCompiler.Command}.
+   *
+   * @param command The {@link XJCompiler.Command}.
+   * @param listener The {@link Consumer} of the {@link CompileReport} of each compilation.
+   * @throws IOException If an I/O error has occurred.
+   * @throws NullPointerException If {@code command} or {@code listener} is null.
+   */
+  public SchemaWatcher(final XJCompiler.Command command, final Consumer<CompileReport> listener) throws IOException {
+    if (command == null)
+      throw new NullPointerException("command == null");
+
+    if (listener == null)
+      throw new NullPointerException("listener == null");
+
+    this.command = command;
+    this.listener = listener;
+    this.watchService = FileSystems.getDefault().newWatchService();
+  }
+
+  public long getDelay() {
+    return delay;
+  }
+
+  public void setDelay(final long delay) {
+    this.delay = delay;
+  }
+
+  /**
+   * Registers the directories of the local schemas and bindings of the command, and of the local schemas they transitively import or
+   * include. Directories that are no longer referenced are unregistered.
+   */
+  private void register() throws IOException {
+    files.clear();
+    final HashSet<URI> visited = new HashSet<>(command.getSchemas());
+    final ArrayDeque<URI> queue = new ArrayDeque<>(command.getSchemas());
+    for (URI next; (next = queue.poll()) != null;) { // [X]
+      final URL url = next.toURL();
+      if (!"file".equals(url.getProtocol()))
+        continue;
+
+      files.add(new File(next).toPath().toAbsolutePath().normalize());
+      try {
+        for (final String location : SchemaCache.getSchemaLocations(url)) { // [L]
+          final URI ref = next.resolve(location.trim()).normalize();
+          if (visited.add(ref))
+            queue.add(ref);
+        }
+      }
+      catch (final IOException e) {
+        // A schema that is being edited may not be well-formed, and is compiled (and reported) when it is saved again
+        if (logger.isDebugEnabled())
+          logger.debug(e.getMessage());
+      }
+    }
+
+    final LinkedHashSet<URI> xjbs = command.getXJBs();
+    if (xjbs != null)
+      for (final URI xjb : xjbs) // [S]
+        if ("file".equals(xjb.getScheme()))
+          files.add(new File(xjb).toPath().toAbsolutePath().normalize());
+
+    final HashSet<Path> dirs = new HashSet<>();
+    for (final Path file : files) // [S]
+      dirs.add(file.getParent());
+
+    keys.keySet().removeIf(dir -> {
+      if (dirs.contains(dir))
+        return false;
+
+      keys.get(dir).cancel();
+      return true;
+    });
+
+    for (final Path dir : dirs) // [S]
+      if (!keys.containsKey(dir))
+        keys.put(dir, dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE));
+  }
+
+  /**
+   * Returns whether the specified {@link WatchKey} has an event for a watched file, and resets the key.
+   */
+  private boolean poll(final WatchKey key) {
+    boolean changed = false;
+    for (final WatchEvent<?> event : key.pollEvents()) { // [L]
+      if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+        changed = true;
+      else if (files.contains(((Path)key.watchable()).resolve((Path)event.context()).toAbsolutePath().normalize()))
+        changed = true;
+    }
+
+    key.reset();
+    return changed;
+  }
+
+  private void compile() {
+    try {
+      listener.accept(XJCompiler.compile(command));
+    }
+    catch (final IOException | JAXBException | RuntimeException e) {
+      if (logger.isErrorEnabled())
+        logger.error("XJC failed: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Watches the schemas and bindings of the command, and compiles the command whenever any of them changes. This method blocks until
+   * this watcher is {@linkplain #close() closed}, or the current thread is interrupted.
+   *
+   * @throws IOException If an I/O error has occurred while registering the directories of the schemas and bindings.
+   */
+  public void watch() throws IOException {
+    register();
+    if (logger.isInfoEnabled())
+      logger.info("Watching " + files.size() + " files in " + keys.size() + " directories");
+
+    try {
+      while (true) {
+        boolean changed = poll(watchService.take());
+        // Events that follow within the delay are coalesced into the same compilation
+        for (WatchKey key; (key = watchService.poll(delay, TimeUnit.MILLISECONDS)) != null;) // [X]
+          changed |= poll(key);
+
+        if (changed) {
+          compile();
+          register();
+        }
+      }
+    }
+    catch (final ClosedWatchServiceException e) {
+    }
+    catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    watchService.close();
+  }
+}
@@ -0,0 +1,225 @@
+/* Copyright (c) 2017 OpenJAX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.openjax.jaxb.xjc;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ListIterator;
+
+import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+
+/**
+ * A bounded table of strings, with which {@link JaxbUtil} deduplicates the repeated attribute and short text values of the documents
+ * it parses (see {@link JaxbUtil#setStringTable(Class,StringTable)}).
+ * <p>
+ * The table is a direct-mapped cache: each string is stored in the slot of its hash code, replacing the string that was there. The
+ * table therefore never grows beyond its capacity, and a lookup never allocates (or, for a value given as characters, allocates only
+ * when the value is not in the table). The table is safe for concurrent use without locking: as strings are immutable, a race between
+ * threads at most replaces a string that another thread would have found.
+ */
+public class StringTable {
+  // The fields of the binding classes that can hold strings, i.e. the instance fields of type String or List
+  private static final ClassValue<Field[]> stringFields = new ClassValue<Field[]>() {
+    @Override
+    protected Field[] computeValue(final Class<?> type) {
+      final ArrayList<Field> fields = new ArrayList<>();
+      for (Class<?> cls = type; cls != null && cls != Object.class; cls = cls.getSuperclass()) { // [X]
+        for (final Field field : cls.getDeclaredFields()) { // [A]
+          if (!Modifier.isStatic(field.getModifiers()) && (field.getType() == String.class || field.getType() == List.class)) {
+            field.setAccessible(true);
+            fields.add(field);
+          }
+        }
+      }
+
+      return fields.toArray(new Field[fields.size()]);
+    }
+  };
+
+  private final String[] table;
+  private final int mask;
+  private final int maxLength;
+
+  /**
+   * Creates a new {@link StringTable} of 4096 slots, for values of at most 64 characters.
+   */
+  public StringTable() {
+    this(4096, 64);
+  }
+
+  /**
+   * Creates a new {@link StringTable} with the specified capacity, for values of the specified maximum length.
+   *
+   * @param capacity The number of slots of the table, which is rounded up to a power of 2.
+   * @param maxLength The maximum length of the values to deduplicate. Longer values are seldom repeated, and are not deduplicated.
+   * @throws IllegalArgumentException If {@code capacity} is not positive, or greater than {@code 1 << 30}.
+   */
+  public StringTable(final int capacity, final int maxLength) {
+    if (capacity <= 0 || capacity > 1 << 30)
+      throw new IllegalArgumentException("capacity (" + capacity + ") must be between 1 and 2^30");
+
+    final int size = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+    this.table = new String[size];
+    this.mask = size - 1;
+    this.maxLength = maxLength;
+  }
+
+  /**
+   * @return The maximum length of the values that are deduplicated.
+   */
+  public int getMaxLength() {
+    return maxLength;
+  }
+
+  private int index(final int hash) {
+    return (hash ^ hash >>> 16) & mask;
+  }
+
+  /**
+   * Returns the string in this table that is equal to the specified value, or the specified value (which is then added to this
+   * table) if there is none.
+   *
+   * @param value The value.
+   * @return The string in this table that is equal to the specified value, or the specified value.
+   */
+  public String intern(final String value) {
+    if (value == null || value.length() > maxLength)
+      return value;
+
+    final int index = index(value.hashCode());
+    final String string = table[index];
+    if (value.equals(string))
+      return string;
+
+    table[index] = value;
+    return value;
+  }
+
+  /**
+   * Returns the string in this table that is equal to the specified characters, or a new string of the characters (which is then
+   * added to this table) if there is none.
+   *
+   * @param chars The array of characters.
+   * @param start The index of the first character of the value.
+   * @param length The length of the value.
+   * @return The string in this table that is equal to the specified characters, or a new string of the characters.
+   */
+  public String intern(final char[] chars, final int start, final int length) {
+    if (length > maxLength)
+      return new String(chars, start, length);
+
+    // The hash code is computed as by String.hashCode(), so that values given as strings and as characters share their slots
+    int hash = 0;
+    for (int i = start, i$ = start + length; i < i$; ++i) // [A]
+      hash = 31 * hash + chars[i];
+
+    final int index = index(hash);
+    final String string = table[index];
+    if (string != null && string.length() == length && equals(string, chars, start))
+      return string;
+
+    final String value = new String(chars, start, length);
+    table[index] = value;
+    return value;
+  }
+
+  private static boolean equals(final String string, final char[] chars, final int start) {
+    for (int i = 0, i$ = string.length(); i < i$; ++i) // [N]
+      if (string.charAt(i) != chars[start + i])
+        return false;
+
+    return true;
+  }
+
+  /**
+   * Returns an {@link XMLStreamReader} that reads the specified {@link XMLStreamReader}, and deduplicates its attribute values and the
+   * text of its elements with this table.
+   * <p>
+   * The JAXB runtime reads text as characters (rather than strings), so only the attribute values of the documents that it
+   * unmarshals are deduplicated by the reader (see {@link #newListener()}). The StAX readers of the {@code -Xstax} plugin read text as
+   * strings, so both are deduplicated.
+   *
+   * @param reader The {@link XMLStreamReader}.
+   * @return An {@link XMLStreamReader} that deduplicates the values it reads with this table.
+   */
+  XMLStreamReader deduplicate(final XMLStreamReader reader) {
+    return new StreamReaderDelegate(reader) {
+      @Override
+      public String getAttributeValue(final int index) {
+        return intern(super.getAttributeValue(index));
+      }
+
+      @Override
+      public String getAttributeValue(final String namespaceURI, final String localName) {
+        return intern(super.getAttributeValue(namespaceURI, localName));
+      }
+
+      @Override
+      public String getElementText() throws XMLStreamException {
+        return intern(super.getElementText());
+      }
+
+      @Override
+      public String getText() {
+        final int event = getEventType();
+        return event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA || event == XMLStreamConstants.SPACE ? intern(getTextCharacters(), getTextStart(), getTextLength()) : super.getText();
+      }
+    };
+  }
+
+  /**
+   * Returns an {@link Unmarshaller.Listener} that deduplicates the values of the {@link String} fields, and the strings of the
+   * {@link ArrayList} fields, of each instance that the JAXB runtime has unmarshalled with this table. The text of the elements is
+   * thereby deduplicated after it has been unmarshalled, so that the retained strings are shared, though each is still allocated.
+   *
+   * @return An {@link Unmarshaller.Listener} that deduplicates the strings of the unmarshalled instances with this table.
+   */
+  Unmarshaller.Listener newListener() {
+    return new Unmarshaller.Listener() {
+      @Override
+      public void afterUnmarshal(final Object target, final Object parent) {
+        try {
+          for (final Field field : stringFields.get(target.getClass())) { // [A]
+            final Object value = field.get(target);
+            if (value instanceof String) {
+              field.set(target, intern((String)value));
+            }
+            else if (value instanceof ArrayList) {
+              // The strings of the list are replaced by equal strings, so the type of its elements is kept
+              @SuppressWarnings("unchecked")
+              final ArrayList<Object> list = (ArrayList<Object>)value;
+              for (final ListIterator<Object> i = list.listIterator(); i.hasNext();) { // [I]
+                final Object item = i.next();
+                if (item instanceof String)
+                  i.set(intern((String)item));
+              }
+            }
+          }
+        }
+        catch (final IllegalAccessException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    };
+  }
+}
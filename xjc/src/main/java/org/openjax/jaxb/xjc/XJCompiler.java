@@ -17,24 +17,40 @@
 package org.openjax.jaxb.xjc;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FilterOutputStream;
 import java.io.IOException;
-import java.io.RandomAccessFile;
-import java.io.UncheckedIOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
 import java.security.Permission;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
 
 import javax.activation.DataSource;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
-import javax.xml.transform.TransformerException;
+import javax.xml.namespace.QName;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.LogFactory;
@@ -44,10 +60,16 @@ import org.jvnet.jaxb2_commons.plugin.annotate.AnnotatePlugin;
 import org.libj.exec.Processes;
 import org.libj.net.URIs;
 import org.libj.net.URLs;
-import org.libj.util.ClassLoaders;
 import org.libj.util.CollectionUtil;
-import org.libj.util.function.Throwing;
-import org.openjax.xml.transform.Transformer;
+import org.openjax.jaxb.xjc.plugin.BinaryContentPlugin;
+import org.openjax.jaxb.xjc.plugin.ImmutablePlugin;
+import org.openjax.jaxb.xjc.plugin.JavaTimePlugin;
+import org.openjax.jaxb.xjc.plugin.NativeImagePlugin;
+import org.openjax.jaxb.xjc.plugin.PrunePlugin;
+import org.openjax.jaxb.xjc.plugin.PrimitivesPlugin;
+import org.openjax.jaxb.xjc.plugin.ReusePlugin;
+import org.openjax.jaxb.xjc.plugin.StaxPlugin;
+import org.openjax.jaxb.xjc.plugin.SuppressWarningsPlugin;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -64,10 +86,65 @@ public final class XJCompiler {
     private boolean debug;
 
     /**
-     * If true, the @SuppressWarnings annotation will be added to all generated classes
+     * If true, the @SuppressWarnings annotation will be added to all generated classes by the {@code -XsuppressWarnings} plugin.
      */
     private boolean suppressWarnings = true;
 
+    /**
+     * If true, bounded integers and numeric lists will be generated as primitive types and primitive arrays by the {@code -Xprimitives}
+     * plugin.
+     */
+    private boolean primitives;
+
+    /**
+     * If true, {@code xs:base64Binary} properties will be generated as {@link BinaryContent} (held off the heap, and streamed by the
+     * StAX readers and writers of the {@code -Xstax} plugin) by the {@code -XbinaryContent} plugin.
+     */
+    private boolean binaryContent;
+
+    /**
+     * If true, {@code xs:dateTime}, {@code xs:date} and {@code xs:time} properties will be generated as {@code java.time} types
+     * (parsed straight from the text by {@link JavaTime}, instead of as {@code XMLGregorianCalendar}) by the {@code -XjavaTime} plugin.
+     */
+    private boolean javaTime;
+
+    /**
+     * If true, a static StAX reader and writer will be generated for each supported class by the {@code -Xstax} plugin, with which
+     * {@link JaxbUtil#parseStax(Class,java.net.URL)} reads documents instead of the JAXB runtime.
+     */
+    private boolean stax;
+
+    /**
+     * If true, the StAX writers of the {@code -Xstax} plugin will splice the cached fragments of nested instances when writing to a
+     * {@link FragmentWriter} (see {@link JaxbUtil#toXmlString(Object,FragmentCache)}).
+     */
+    private boolean fragments;
+
+    /**
+     * If true, a {@code reset()} method will be generated for each supported class by the {@code -Xreuse} plugin, so that instances
+     * (and their nested instances and lists) can be reused across unmarshals with {@link JaxbUtil#parseInto(Object,java.net.URL)}.
+     */
+    private boolean reuse;
+
+    /**
+     * If true, immutable classes with builders, unmodifiable lists, {@code equals} and a cached {@code hashCode} will be generated by
+     * the {@code -Ximmutable} plugin.
+     */
+    private boolean immutable;
+
+    /**
+     * If true, a {@code jaxb.index}, and GraalVM native-image {@code reflect-config.json} and {@code resource-config.json} (in
+     * {@code META-INF/native-image/<package path>}) will be generated for each package by the {@code -XnativeImage} plugin.
+     */
+    private boolean nativeImage;
+
+    /**
+     * The root elements of the generated classes. If not empty, only the classes, enums and elements that are reachable from these
+     * elements will be generated by the {@code -Xprune} plugin. An element without a namespace matches the global elements of its
+     * local name in any namespace.
+     */
+    private LinkedHashSet<QName> rootElements;
+
     /** Generated files will be in read-only mode. */
     private boolean readOnly;
 
@@ -114,7 +191,9 @@ public final class XJCompiler {
     // TR9401, XCatalog, and OASIS XML Catalog format.
     private File catalog;
 
-    // Removes all files from the output directory before running XJC.
+    // If true, changed files are overwritten and files that are no longer
+    // generated are removed from the output directory. If false, files that
+    // already exist in the output directory are left untouched.
     private boolean overwrite = true;
 
     // Corresponding XJC parameter: enableIntrospection.
@@ -287,24 +366,72 @@ public final class XJCompiler {
     // </configuration>
     private LinkedHashSet<URI> xjbs;
 
-    private final LinkedHashSet<File> classpath;
+    // Persistent cache of remote schemas. If set, remote schemas and the remote
+    // schemas they import or include (transitively) are fetched through the
+    // cache, and XJC resolves them to the cached files via a catalog.
+    private SchemaCache schemaCache;
+
+    // Content-addressed cache of the output of XJC. If set, the output of a
+    // compilation whose normalized inputs are equal to those of a previous
+    // compilation is unpacked from the cache, instead of running XJC.
+    private BuildCache buildCache;
 
-    private static final Class<?>[] classes = {MaskingClassLoader.class, JAXBContext.class, AnnotatePlugin.class, AbstractParameterizablePlugin.class, LogFactory.class, XAnnotationParser.class, Node.class, DataSource.class, StringUtils.class};
+    // Cache of the compiled schema libraries that the schemas import. If set,
+    // the libraries are compiled once into an episode and its sources, and are
+    // bound via the episode (rather than generated again) by later compilations.
+    private EpisodeCache episodeCache;
 
-    public Command() {
-      classpath = new LinkedHashSet<>();
+    // Catalog entries that are resolved in addition to the entries of the
+    // catalog file. The entries are written into a single catalog in the OASIS
+    // XML Catalog format, which is supported by the resolvers of all JDKs.
+    private CatalogIndex catalogIndex;
+
+    // Options (without the leading '-', i.e. "Xname") of additional XJC plugins
+    // to activate.
+    // The jars that declare these plugins are located on the classpath via the
+    // PluginIndex, and the classpath is added to the classpath of the XJC JVM.
+    private LinkedHashSet<String> plugins;
+
+    // File in which the PluginIndex is persisted across builds.
+    private File pluginIndex;
+
+    // Entries of the classpath of the user's classes, which are passed to XJC
+    // via its -classpath option. If an active plugin is declared by one of the
+    // entries, all entries (which include the dependencies of the plugin) are
+    // added to the classpath of the XJC JVM.
+    private final LinkedHashSet<File> classpath = new LinkedHashSet<>();
+
+    private static final Class<?>[] classes = {MaskingClassLoader.class, JAXBContext.class, AnnotatePlugin.class, AbstractParameterizablePlugin.class, LogFactory.class, XAnnotationParser.class, Node.class, DataSource.class, StringUtils.class, SuppressWarningsPlugin.class, PrimitivesPlugin.class, BinaryContentPlugin.class, JavaTimePlugin.class, ReusePlugin.class, StaxPlugin.class, ImmutablePlugin.class, NativeImagePlugin.class, PrunePlugin.class};
+
+    // Runtime dependencies of the classes above that are not referenced at compile time, and may be absent.
+    private static final String[] optionalClasses = {"org.apache.commons.beanutils.BeanUtils", "org.apache.commons.collections.FastHashMap", "org.slf4j.LoggerFactory", "com.sun.org.apache.xml.internal.resolver.CatalogManager"};
+
+    // Classpath of the XJC JVM: the jars of XJC and of the bundled plugins, which replaces the entire classpath of this JVM.
+    static final LinkedHashSet<File> runtime = new LinkedHashSet<>();
+
+    static {
       try {
         for (final Class<?> cls : classes) // [A]
-          if (cls.getProtectionDomain().getCodeSource() != null)
-            classpath.add(new File(cls.getProtectionDomain().getCodeSource().getLocation().toURI()));
+          addCodeSource(runtime, cls);
 
-        Collections.addAll(classpath, ClassLoaders.getClassPath());
+        for (final String className : optionalClasses) { // [A]
+          try {
+            addCodeSource(runtime, Class.forName(className, false, XJCompiler.class.getClassLoader()));
+          }
+          catch (final ClassNotFoundException | LinkageError e) {
+          }
+        }
       }
       catch (final URISyntaxException e) {
-        throw new IllegalStateException(e);
+        throw new ExceptionInInitializerError(e);
       }
     }
 
+    private static void addCodeSource(final LinkedHashSet<File> classpath, final Class<?> cls) throws URISyntaxException {
+      if (cls.getProtectionDomain().getCodeSource() != null && cls.getProtectionDomain().getCodeSource().getLocation() != null)
+        classpath.add(new File(cls.getProtectionDomain().getCodeSource().getLocation().toURI()));
+    }
+
     public boolean getDebug() {
       return debug;
     }
@@ -321,6 +448,78 @@ public final class XJCompiler {
       this.suppressWarnings = suppressWarnings;
     }
 
+    public boolean getPrimitives() {
+      return primitives;
+    }
+
+    public void setPrimitives(final boolean primitives) {
+      this.primitives = primitives;
+    }
+
+    public boolean getBinaryContent() {
+      return binaryContent;
+    }
+
+    public void setBinaryContent(final boolean binaryContent) {
+      this.binaryContent = binaryContent;
+    }
+
+    public boolean getJavaTime() {
+      return javaTime;
+    }
+
+    public void setJavaTime(final boolean javaTime) {
+      this.javaTime = javaTime;
+    }
+
+    public boolean getStax() {
+      return stax;
+    }
+
+    public void setStax(final boolean stax) {
+      this.stax = stax;
+    }
+
+    public boolean getFragments() {
+      return fragments;
+    }
+
+    public void setFragments(final boolean fragments) {
+      this.fragments = fragments;
+    }
+
+    public boolean getReuse() {
+      return reuse;
+    }
+
+    public void setReuse(final boolean reuse) {
+      this.reuse = reuse;
+    }
+
+    public boolean getImmutable() {
+      return immutable;
+    }
+
+    public void setImmutable(final boolean immutable) {
+      this.immutable = immutable;
+    }
+
+    public boolean getNativeImage() {
+      return nativeImage;
+    }
+
+    public void setNativeImage(final boolean nativeImage) {
+      this.nativeImage = nativeImage;
+    }
+
+    public LinkedHashSet<QName> getRootElements() {
+      return rootElements;
+    }
+
+    public void setRootElements(final LinkedHashSet<QName> rootElements) {
+      this.rootElements = rootElements;
+    }
+
     public boolean getReadOnly() {
       return readOnly;
     }
@@ -545,6 +744,54 @@ public final class XJCompiler {
       this.xjbs = xjbs;
     }
 
+    public SchemaCache getSchemaCache() {
+      return schemaCache;
+    }
+
+    public void setSchemaCache(final SchemaCache schemaCache) {
+      this.schemaCache = schemaCache;
+    }
+
+    public BuildCache getBuildCache() {
+      return buildCache;
+    }
+
+    public void setBuildCache(final BuildCache buildCache) {
+      this.buildCache = buildCache;
+    }
+
+    public EpisodeCache getEpisodeCache() {
+      return episodeCache;
+    }
+
+    public void setEpisodeCache(final EpisodeCache episodeCache) {
+      this.episodeCache = episodeCache;
+    }
+
+    public CatalogIndex getCatalogIndex() {
+      return catalogIndex;
+    }
+
+    public void setCatalogIndex(final CatalogIndex catalogIndex) {
+      this.catalogIndex = catalogIndex;
+    }
+
+    public LinkedHashSet<String> getPlugins() {
+      return plugins;
+    }
+
+    public void setPlugins(final LinkedHashSet<String> plugins) {
+      this.plugins = plugins;
+    }
+
+    public File getPluginIndex() {
+      return pluginIndex;
+    }
+
+    public void setPluginIndex(final File pluginIndex) {
+      this.pluginIndex = pluginIndex;
+    }
+
     public LinkedHashSet<File> getClasspath() {
       return classpath;
     }
@@ -562,32 +809,132 @@ public final class XJCompiler {
   // FIXME: Embedded mode breaks in jaxdb/sqlx when calling:
   // FIXME: mvn org.openjax.jaxb:jaxb-maven-plugin:0.8.1-SNAPSHOT:xjc@jaxb-test-generate
   private static final boolean embedded = false;
-
-  public static void compile(final Command command) throws IOException, JAXBException {
+  // The version of the inputs of the build cache key, to be incremented when the output of equal inputs changes
+  private static final String CACHE_KEY_VERSION = "1";
+  // The hashes of the contents of the files of the classpath, by their path, size and time of modification
+  private static final ConcurrentHashMap<String,byte[]> fileHashes = new ConcurrentHashMap<>();
+
+  /**
+   * Compiles the schemas of the specified {@link Command}.
+   *
+   * @param command The {@link Command}.
+   * @return The {@link CompileReport} of the phases of the compilation.
+   * @throws IOException If an I/O error has occurred.
+   * @throws JAXBException If XJC has failed.
+   */
+  public static CompileReport compile(final Command command) throws IOException, JAXBException {
+    final CompileReport report = new CompileReport();
     final LinkedHashSet<URI> schemas = command.getSchemas();
     if (schemas == null || schemas.size() == 0)
-      return;
+      return report;
+
+    // The temporary files and the staging directory are deleted, and the report is ended, whether or not the compilation succeeds
+    final ArrayList<File> tempFiles = new ArrayList<>();
+    try {
+      compile(command, schemas, report, tempFiles);
+    }
+    finally {
+      report.end();
+      for (int i = 0, i$ = tempFiles.size(); i < i$; ++i) { // [RA]
+        final File tempFile = tempFiles.get(i);
+        if (tempFile.isDirectory())
+          delete(tempFile.toPath());
+        else
+          tempFile.delete();
+      }
+    }
 
+    if (logger.isDebugEnabled())
+      logger.debug("XJC report:\n" + report.toJson());
+
+    return report;
+  }
+
+  private static void compile(final Command command, final LinkedHashSet<URI> schemas, final CompileReport report, final ArrayList<File> tempFiles) throws IOException, JAXBException {
+    report.begin("classpath");
     final ArrayList<String> args = new ArrayList<>();
-    final LinkedHashSet<File> classpath = command.classpath;
-    if (classpath.size() > 0) {
-      args.add("-cp");
-      final StringBuilder cp = new StringBuilder();
-      for (final File path : classpath) // [S]
-        cp.append(File.pathSeparator).append(path.getAbsolutePath());
+    final LinkedHashSet<String> plugins = new LinkedHashSet<>();
+    plugins.add("Xannotate");
+    if (command.getSuppressWarnings())
+      plugins.add("XsuppressWarnings");
+
+    if (command.getPrimitives())
+      plugins.add("Xprimitives");
+
+    // The -XbinaryContent plugin precedes -Xstax and -Ximmutable, which generate code for the types of the properties it retypes
+    if (command.getBinaryContent())
+      plugins.add("XbinaryContent");
 
-      args.add(cp.substring(1));
+    // The -XjavaTime plugin precedes -Xstax and -Ximmutable as well
+    if (command.getJavaTime())
+      plugins.add("XjavaTime");
+
+    // The -Xreuse plugin precedes -Xstax, whose readers reuse the nested instances it sets aside
+    if (command.getReuse())
+      plugins.add("Xreuse");
+
+    if (command.getStax())
+      plugins.add("Xstax");
+
+    if (command.getImmutable())
+      plugins.add("Ximmutable");
+
+    if (command.getNativeImage())
+      plugins.add("XnativeImage");
+
+    final boolean prune = command.getRootElements() != null && command.getRootElements().size() > 0;
+    if (prune)
+      plugins.add("Xprune");
+
+    if (command.getPlugins() != null)
+      plugins.addAll(command.getPlugins());
+
+    // The classpath of the XJC JVM is pruned to the jars of XJC and of the bundled plugins (unless a plugin from the
+    // user's classpath is active), and the user's classpath is passed to XJC (which does not scan it for plugins) via
+    // its -classpath option
+    final ArrayList<String> classpathArgs = new ArrayList<>();
+    final LinkedHashSet<File> classpath = getClasspath(command, plugins);
+    if (!embedded) {
+      classpathArgs.add("-cp");
+      classpathArgs.add(toPath(classpath));
+      classpathArgs.add(XJCFacade.class.getName());
     }
 
-    if (!embedded)
-      args.add(XJCFacade.class.getName());
+    if (command.getClasspath().size() > 0) {
+      classpathArgs.add("-classpath");
+      classpathArgs.add(toPath(command.getClasspath()));
+    }
+
+    if (!embedded && isArgFileSupported()) {
+      final File argFile = File.createTempFile("xjc", ".args");
+      tempFiles.add(argFile);
+      final StringBuilder b = new StringBuilder();
+      for (int i = 0, i$ = classpathArgs.size(); i < i$; ++i) // [RA]
+        b.append(quote(classpathArgs.get(i))).append('\n');
+
+      Files.write(argFile.toPath(), b.toString().getBytes(StandardCharsets.UTF_8));
+      args.add("@" + argFile.getAbsolutePath());
+    }
+    else {
+      args.addAll(classpathArgs);
+    }
+
+    // The arguments that follow the classpath are the inputs of the build cache key
+    final int options = args.size();
+    for (final String plugin : plugins) // [S]
+      args.add("-" + plugin);
+
+    if (prune)
+      for (final QName rootElement : command.getRootElements()) // [S]
+        args.add(PrunePlugin.ROOT + rootElement);
 
-    args.add("-Xannotate");
+    if (command.getStax() && command.getFragments())
+      args.add(StaxPlugin.FRAGMENTS);
 
     if (command.getDebug())
       args.add("-debug");
 
-    if (command.getReadOnly())
+    if (command.getReadOnly() && command.getDestDir() == null)
       args.add("-readOnly");
 
     if (command.getNoHeader())
@@ -621,11 +968,39 @@ public final class XJCompiler {
     if (command.getAddGeneratedAnnotation())
       args.add("-mark-generated");
 
-    if (command.getCatalog() != null) {
-      System.setProperty("xml.catalog.ignoreMissing", "true");
-      // args.add(1, "-Dxml.catalog.ignoreMissing");
-      args.add("-catalog");
-      args.add(command.getCatalog().toURI().toString());
+    report.begin("catalog");
+    final LinkedHashMap<URI,File> cached = new LinkedHashMap<>();
+    if (command.getSchemaCache() != null)
+      for (final URI schema : schemas) // [S]
+        cached.putAll(command.getSchemaCache().prefetch(schema));
+
+    final CatalogIndex index = new CatalogIndex();
+    for (final Map.Entry<URI,File> entry : cached.entrySet()) // [S]
+      index.put(CatalogIndex.Type.SYSTEM, entry.getKey().toString(), entry.getValue().toURI().toString());
+
+    if (command.getCatalogIndex() != null)
+      index.copyTo(command.getCatalogIndex());
+
+    // The catalog resolver of XJC is configured by a system property, which is set in the XJC JVM (rather
+    // than in this JVM), so that concurrent compilations do not depend on or mutate process-global state
+    final boolean ignoreMissingCatalogs = command.getCatalog() != null || !index.isEmpty();
+    final HashSet<String> derived = new HashSet<>();
+    if (ignoreMissingCatalogs) {
+      if (command.getCatalog() != null) {
+        args.add("-catalog");
+        args.add(command.getCatalog().toURI().toString());
+      }
+
+      if (!index.isEmpty()) {
+        final File catalog = File.createTempFile("catalog", ".xml");
+        tempFiles.add(catalog);
+        final byte[] xml = index.toXml().getBytes(StandardCharsets.UTF_8);
+        Files.write(catalog.toPath(), xml);
+        report.add(cached.size(), xml.length);
+        args.add("-catalog");
+        args.add(catalog.getAbsolutePath());
+        derived.add(catalog.getAbsolutePath());
+      }
     }
 
     if (command.getEnableIntrospection())
@@ -667,42 +1042,39 @@ public final class XJCompiler {
       args.add(command.getPackageName());
     }
 
+    // XJC writes every file it generates, so it is directed to a staging directory, from which
+    // only the new or changed files are published to destDir by the ChangeAwarePublisher
+    final File stagingDir;
     if (command.getDestDir() != null) {
-      args.add("-d");
-      args.add(command.getDestDir().getAbsolutePath());
-
-      if (!command.getDestDir().exists() && !command.getDestDir().mkdirs())
+      if (!command.getDestDir().exists() && !command.getDestDir().mkdirs() && !command.getDestDir().exists())
         throw new JAXBException("Unable to create output directory " + command.getDestDir().getAbsolutePath());
 
-      // FIXME: This does not work because the files that are written are only known by xjc, so I cannot
-      // FIXME: stop this generator from overwriting them if overwrite=false
-      // else if (command.isOverwrite()) {
-      // for (final File file : command.getDestDir().listFiles()) // [?]
-      // Files.walk(file.toPath()).map(Path::toFile).filter(a ->
-      // a.getName().endsWith(".java")).sorted((o1, o2) ->
-      // o2.compareTo(o1)).forEach(File::delete);
-      // }
-    }
-
-    final ArrayList<File> tempFiles = new ArrayList<>();
-    try {
-      final URL xsd11to10 = Thread.currentThread().getContextClassLoader().getResource("xsd-1.1-to-1.0.xsl");
-      for (final URI schema : schemas) { // [S]
-        final File file = File.createTempFile(URIs.getName(schema), "");
-        args.add(file.getAbsolutePath());
-        tempFiles.add(file);
-        Transformer.transform(xsd11to10, schema.toURL(), file);
-      }
+      stagingDir = Files.createTempDirectory("xjc").toFile();
+      tempFiles.add(stagingDir);
+      args.add("-d");
+      args.add(stagingDir.getAbsolutePath());
     }
-    catch (final IOException e) {
-      throw new UncheckedIOException(e);
+    else {
+      stagingDir = null;
     }
-    catch (final TransformerException e) {
-      throw new RuntimeException(e);
+
+    // The schemas, and the schemas they reference, are rewritten from XSD 1.1 to XSD 1.0
+    report.begin("transform");
+    final LinkedHashMap<URI,File> rewritten = SchemaRewriter.rewrite(schemas, cached);
+    tempFiles.addAll(rewritten.values());
+    report.setSchemas(Math.max(rewritten.size(), cached.size()));
+    for (final URI schema : schemas) { // [S]
+      final File file = rewritten.get(schema);
+      args.add(file.getAbsolutePath());
+      derived.add(file.getAbsolutePath());
     }
 
+    for (final File file : rewritten.values()) // [C]
+      report.add(1, file.length());
+
     final LinkedHashSet<URI> xjbs = command.getXJBs();
     if (xjbs != null && xjbs.size() > 0) {
+      report.setBindings(xjbs.size());
       for (final URI xjb : xjbs) { // [S]
         args.add("-b");
         if (URIs.isLocalFile(xjb)) {
@@ -717,9 +1089,30 @@ public final class XJCompiler {
       }
     }
 
+    // The libraries that the schemas import are bound via the episodes of their entries in the episode cache, and their
+    // sources are published with the sources of this compilation
+    final ArrayList<File> libraries;
+    if (command.getEpisodeCache() != null && EpisodeCache.isReusable(command)) {
+      report.begin("episodes");
+      libraries = command.getEpisodeCache().get(command, schemas, cached);
+      // Episodes bind the components of the libraries via schema component designators, which are a vendor extension of XJC
+      if (libraries.size() > 0 && !command.getExtension())
+        args.add("-extension");
+
+      for (final File library : libraries) { // [L]
+        args.add("-b");
+        args.add(new File(library, EpisodeCache.EPISODE).getAbsolutePath());
+      }
+    }
+    else {
+      libraries = null;
+    }
+
     if (command.getGenerateEpisode()) {
-      final File metaInfDir = new File(command.getDestDir(), "META-INF" + File.separator + "sun-jaxb.episode");
-      if (!metaInfDir.getParentFile().mkdirs())
+      // Without a destDir, XJC generates into the working directory, and the episode goes there too
+      final File outDir = stagingDir != null ? stagingDir : new File("").getAbsoluteFile();
+      final File metaInfDir = new File(outDir, "META-INF" + File.separator + "sun-jaxb.episode");
+      if (!metaInfDir.getParentFile().mkdirs() && !metaInfDir.getParentFile().exists())
         throw new JAXBException("Unable to create output directory: " + metaInfDir.getParentFile().getAbsolutePath());
 
       args.add("-episode");
@@ -745,6 +1138,16 @@ public final class XJCompiler {
 
         final String line = buffer.toString();
         buffer.setLength(0);
+        // The progress messages of XJC delimit its phases (unless -quiet)
+        if ("parsing a schema...".equals(line))
+          report.begin("parse");
+        else if ("compiling a schema...".equals(line))
+          report.begin("generate");
+        else if (line.startsWith(PrunePlugin.MESSAGE))
+          report.setPruned(Integer.parseInt(line.substring(PrunePlugin.MESSAGE.length()).trim()));
+        else if (line.startsWith("[ERROR] ") || line.startsWith("[WARNING] "))
+          report.addDiagnostic(line);
+
         if (line.startsWith("[ERROR] "))
           if (logger.isErrorEnabled()) {
             logger.error(line.substring(8));
@@ -757,28 +1160,59 @@ public final class XJCompiler {
       }
     };
 
+    final BuildCache buildCache = stagingDir == null ? null : command.getBuildCache();
+    final String cacheKey;
+    if (buildCache != null) {
+      report.begin("cache");
+      cacheKey = getCacheKey(args, options, classpath, command.getClasspath(), derived, stagingDir, schemas, cached);
+    }
+    else {
+      cacheKey = null;
+    }
+
     final MySecurityManager securityManager = new MySecurityManager(System.getSecurityManager());
     try {
-      if (embedded) {
-        System.setSecurityManager(securityManager);
+      if (cacheKey != null && buildCache.get(cacheKey, stagingDir)) {
+        report.setCacheHit(true);
+      }
+      else if (embedded) {
+        // The embedded mode mutates process-global state, so embedded compilations are serialized
+        synchronized (XJCompiler.class) {
+          System.setSecurityManager(securityManager);
+
+          System.setProperty("com.sun.tools.xjc.XJCFacade.nohack", "true");
+          if (ignoreMissingCatalogs)
+            System.setProperty("xml.catalog.ignoreMissing", "true");
 
-        System.setProperty("com.sun.tools.xjc.XJCFacade.nohack", "true");
-        System.setProperty("com.sun.tools.xjc.Options.findServices", "true");
-        XJCFacade.main(args.toArray(new String[args.size()]));
+          XJCFacade.main(args.toArray(new String[args.size()]));
+        }
       }
       else {
-        addJavaArgs(args, false);
+        addJavaArgs(args, false, ignoreMissingCatalogs);
+        report.begin("fork");
         final int exitCode = Processes.forkSync(null, out, out, true, null, null, args.toArray(new String[args.size()]));
         if (exitCode != 0)
-          throw new JAXBException("xjc finished with code: " + exitCode + "\n" + CollectionUtil.toString(args, " "));
+          throw new JAXBException("xjc finished with code: " + exitCode + "\n" + CollectionUtil.toString(report.getDiagnostics(), "\n") + "\n" + CollectionUtil.toString(args, " "));
       }
 
-      if (command.getSuppressWarnings()) {
-        Files.walk(command.getDestDir().toPath()).filter(p -> p.getFileName().toString().endsWith(".java")).map(Path::toFile).forEach(Throwing.rethrow(XJCompiler::insertSuppressWarnings));
+      if (cacheKey != null && !report.getCacheHit()) {
+        try {
+          buildCache.put(cacheKey, stagingDir);
+        }
+        catch (final IOException e) {
+          if (logger.isWarnEnabled())
+            logger.warn("Unable to store " + cacheKey + " in the build cache: " + e.getMessage());
+        }
       }
 
-      for (int i = 0, i$ = tempFiles.size(); i < i$; ++i) // [RA]
-        tempFiles.get(i).delete();
+      if (libraries != null)
+        for (final File library : libraries) // [L]
+          copyLibrary(library, stagingDir);
+
+      if (stagingDir != null) {
+        report.begin("publish");
+        publish(command, stagingDir, report);
+      }
     }
     catch (final IOException | JAXBException e) {
       throw e;
@@ -789,64 +1223,273 @@ public final class XJCompiler {
 
       securityManager.disable();
       if (((ExitPolicyException)t).exitCode != 0) {
-        throw new JAXBException(CollectionUtil.toString(embedded ? addJavaArgs(args, true) : args, " "));
+        throw new JAXBException(CollectionUtil.toString(embedded ? addJavaArgs(args, true, ignoreMissingCatalogs) : args, " "));
       }
     }
   }
 
-  private static void insertSuppressWarnings(final File file) throws IOException {
-    final String insert = "@" + SuppressWarnings.class.getName() + "(\"all\")\n";
-    final String find1 = "public class";
-    final String find2 = "public abstract class";
-    final byte[] b1 = insert.getBytes();
-    final byte[] b2 = new byte[b1.length];
-
-    try (final RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
-      for (String line; (line = raf.readLine()) != null;) { // [ST]
-        if (line.regionMatches(0, insert, 0, insert.length() - 1))
-          return;
+  /**
+   * Compiles the specified {@link Command}s concurrently, on a pool of as many threads as there are available processors.
+   *
+   * @param commands The {@link Command}s.
+   * @return The {@link BatchReport} of the compilations.
+   * @throws InterruptedException If the current thread was interrupted while waiting for the compilations.
+   * @see #compileAll(Collection,int)
+   */
+  public static BatchReport compileAll(final Collection<Command> commands) throws InterruptedException {
+    return compileAll(commands, Runtime.getRuntime().availableProcessors());
+  }
 
-        if (line.startsWith(find1) || line.startsWith(find2)) {
-          int l1 = b1.length;
-          long p = raf.getFilePointer() - line.length() - 1;
-          raf.seek(p);
-          while (true) {
-            final int l2 = raf.read(b2);
-            raf.seek(p);
-            if (l1 == -1)
-              return;
-
-            raf.write(b1, 0, l1);
-            if (l1 < b1.length)
-              return;
-
-            p = raf.getFilePointer();
-            l1 = raf.read(b1);
-            raf.seek(p);
-            if (l2 == -1)
-              return;
-
-            raf.write(b2, 0, l2);
-            if (l2 < b2.length)
-              return;
-
-            p = raf.getFilePointer();
+  /**
+   * Compiles the specified {@link Command}s concurrently, on a pool of at most {@code parallelism} threads. A failure of a command
+   * does not affect the other commands: it is reported in the {@link BatchReport.Result} of the command, as are the diagnostics of
+   * XJC for the command. The commands share the in-memory state of the compiler, i.e. the {@link PluginIndex} of the classpath entries,
+   * and the validated documents of a {@link SchemaCache} instance that is set on more than one command.
+   *
+   * @param commands The {@link Command}s.
+   * @param parallelism The maximum number of concurrent compilations.
+   * @return The {@link BatchReport} of the compilations, with the results in the order of the specified commands.
+   * @throws InterruptedException If the current thread was interrupted while waiting for the compilations.
+   * @throws IllegalArgumentException If {@code parallelism} is less than 1.
+   */
+  public static BatchReport compileAll(final Collection<Command> commands, final int parallelism) throws InterruptedException {
+    if (parallelism < 1)
+      throw new IllegalArgumentException("parallelism (" + parallelism + ") < 1");
+
+    final long start = System.nanoTime();
+    final ArrayList<Future<BatchReport.Result>> futures = new ArrayList<>(commands.size());
+    final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, commands.size())));
+    try {
+      for (final Command command : commands) { // [C]
+        futures.add(executor.submit(() -> {
+          final long begin = System.nanoTime();
+          try {
+            return new BatchReport.Result(command, compile(command), null, System.nanoTime() - begin);
+          }
+          catch (final IOException | JAXBException | RuntimeException e) {
+            return new BatchReport.Result(command, null, e, System.nanoTime() - begin);
           }
+        }));
+      }
+
+      final ArrayList<BatchReport.Result> results = new ArrayList<>(futures.size());
+      for (int i = 0, i$ = futures.size(); i < i$; ++i) { // [RA]
+        try {
+          results.add(futures.get(i).get());
+        }
+        catch (final ExecutionException e) {
+          final Throwable cause = e.getCause();
+          if (cause instanceof Error)
+            throw (Error)cause;
+
+          throw new IllegalStateException(cause);
         }
       }
+
+      final BatchReport report = new BatchReport(results, System.nanoTime() - start);
+      if (logger.isDebugEnabled())
+        logger.debug("XJC batch report:\n" + report.toJson());
+
+      return report;
+    }
+    finally {
+      executor.shutdownNow();
     }
   }
 
-  private static ArrayList<String> addJavaArgs(final ArrayList<String> args, final boolean addClassPath) {
+  private static LinkedHashSet<File> getClasspath(final Command command, final LinkedHashSet<String> plugins) throws IOException, JAXBException {
+    final LinkedHashSet<File> classpath = new LinkedHashSet<>(Command.runtime);
+    final PluginIndex index = new PluginIndex(command.getPluginIndex());
+    boolean external = false;
+    for (final String plugin : plugins) { // [S]
+      if (index.find(Command.runtime, plugin) == null) {
+        if (index.find(command.getClasspath(), plugin) == null)
+          throw new JAXBException("XJC plugin -" + plugin + " was not found on the classpath");
+
+        external = true;
+      }
+    }
+
+    index.save();
+    // The dependencies of a plugin from the user's classpath are not known, so the classpath is not pruned
+    if (external)
+      classpath.addAll(command.getClasspath());
+
+    return classpath;
+  }
+
+  /**
+   * Returns the build cache key of a compilation, which is the SHA-256 hash of its normalized inputs. Paths that are specific to the
+   * workspace are excluded: the classpath is represented by the names and contents of its entries, the arguments that are files by their
+   * content, and the schemas by the content of the schemas they transitively import or include (and by the URI of remote schemas).
+   */
+  private static String getCacheKey(final ArrayList<String> args, final int options, final LinkedHashSet<File> classpath, final LinkedHashSet<File> userClasspath, final HashSet<String> derived, final File stagingDir, final LinkedHashSet<URI> schemas, final LinkedHashMap<URI,File> cached) throws IOException {
+    final MessageDigest digest = SchemaCache.newDigest();
+    update(digest, CACHE_KEY_VERSION);
+    for (final File entry : classpath) // [S]
+      update(digest, entry);
+
+    update(digest, "-classpath");
+    for (final File entry : userClasspath) // [S]
+      update(digest, entry);
+
+    final String staging = stagingDir.getAbsolutePath();
+    for (int i = options, i$ = args.size(); i < i$; ++i) { // [RA]
+      final String arg = args.get(i);
+      if (derived.contains(arg)) {
+        update(digest, "<derived>");
+      }
+      else if (arg.startsWith(staging)) {
+        update(digest, arg.substring(staging.length()).replace(File.separatorChar, '/'));
+      }
+      else {
+        final File file = arg.startsWith("file:") ? new File(URI.create(arg)) : new File(arg);
+        if (file.isFile())
+          digest.update(Files.readAllBytes(file.toPath()));
+        else
+          update(digest, arg);
+      }
+    }
+
+    final HashSet<URI> visited = new HashSet<>(schemas);
+    final ArrayDeque<URI> queue = new ArrayDeque<>(schemas);
+    for (URI next; (next = queue.poll()) != null;) { // [X]
+      final File local = cached.get(next);
+      final URL url = local != null ? local.toURI().toURL() : next.toURL();
+      if (local != null || SchemaCache.isRemote(url)) {
+        update(digest, next.toString());
+        if (local == null)
+          continue;
+      }
+
+      digest.update(URLs.readBytes(url));
+      for (final String location : SchemaCache.getSchemaLocations(url)) { // [L]
+        final URI ref = next.resolve(location.trim()).normalize();
+        if (visited.add(ref))
+          queue.add(ref);
+      }
+    }
+
+    return SchemaCache.toHex(digest.digest());
+  }
+
+  static void update(final MessageDigest digest, final String value) {
+    digest.update(value.getBytes(StandardCharsets.UTF_8));
+    digest.update((byte)0);
+  }
+
+  /**
+   * Updates the specified digest with the name and the content of the specified classpath entry, so that a jar or directory whose
+   * content has changed without a change of its name (such as a rebuilt {@code SNAPSHOT}) changes the digest. The hashes of the files
+   * are kept by their path, size and time of modification, so that each file is read once.
+   */
+  static void update(final MessageDigest digest, final File entry) throws IOException {
+    update(digest, entry.getName());
+    if (entry.isFile()) {
+      digest.update(hash(entry));
+    }
+    else if (entry.isDirectory()) {
+      final Path root = entry.toPath();
+      try (final Stream<Path> paths = Files.walk(root)) {
+        for (final Iterator<Path> i = paths.filter(Files::isRegularFile).sorted().iterator(); i.hasNext();) { // [I]
+          final Path path = i.next();
+          update(digest, root.relativize(path).toString().replace(File.separatorChar, '/'));
+          digest.update(hash(path.toFile()));
+        }
+      }
+    }
+  }
+
+  private static byte[] hash(final File file) throws IOException {
+    final String key = file.getAbsolutePath() + ':' + file.length() + ':' + file.lastModified();
+    byte[] hash = fileHashes.get(key);
+    if (hash == null) {
+      final MessageDigest digest = SchemaCache.newDigest();
+      final byte[] buffer = new byte[8192];
+      try (final InputStream in = new FileInputStream(file)) {
+        for (int len; (len = in.read(buffer)) != -1;) // [X]
+          digest.update(buffer, 0, len);
+      }
+
+      fileHashes.put(key, hash = digest.digest());
+    }
+
+    return hash;
+  }
+
+  static String toPath(final LinkedHashSet<File> classpath) {
+    final StringBuilder b = new StringBuilder();
+    for (final File entry : classpath) // [S]
+      b.append(File.pathSeparatorChar).append(entry.getAbsolutePath());
+
+    return b.length() == 0 ? "" : b.substring(1);
+  }
+
+  private static boolean isArgFileSupported() {
+    // Java @argfiles are supported as of JDK 9
+    return !System.getProperty("java.specification.version").startsWith("1.");
+  }
+
+  private static String quote(final String arg) {
+    return "\"" + arg.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+  }
+
+  private static void publish(final Command command, final File stagingDir, final CompileReport report) throws IOException {
+    // The manifest is named by the SHA-256 hash of the schemas, so that the compilations into one destDir keep their own manifests
+    final MessageDigest digest = SchemaCache.newDigest();
+    for (final URI schema : command.getSchemas()) // [S]
+      update(digest, schema.toString());
+
+    final ChangeAwarePublisher writer = new ChangeAwarePublisher(command.getDestDir(), SchemaCache.toHex(digest.digest()) + ".lst", command.getOverwrite(), command.getReadOnly());
+    final Path root = stagingDir.toPath();
+    try (final Stream<Path> paths = Files.walk(root)) {
+      for (final Iterator<Path> i = paths.filter(Files::isRegularFile).iterator(); i.hasNext();) { // [I]
+        final Path path = i.next();
+        writer.publish(root.relativize(path).toString().replace(File.separatorChar, '/'), path.toFile());
+      }
+    }
+
+    writer.close();
+    report.add(writer.getWritten(), writer.getBytes());
+    report.setFiles(writer.getWritten(), writer.getUnchanged(), writer.getDeleted(), writer.getBytes());
+    if (logger.isDebugEnabled())
+      logger.debug("Wrote " + writer.getWritten() + " files, skipped " + writer.getUnchanged() + " unchanged files, deleted " + writer.getDeleted() + " stale files in " + command.getDestDir().getAbsolutePath());
+  }
+
+  private static void copyLibrary(final File library, final File stagingDir) throws IOException {
+    final Path root = library.toPath();
+    final Path target = stagingDir.toPath();
+    try (final Stream<Path> paths = Files.walk(root)) {
+      for (final Iterator<Path> i = paths.filter(Files::isRegularFile).iterator(); i.hasNext();) { // [I]
+        final Path path = i.next();
+        final String name = root.relativize(path).toString().replace(File.separatorChar, '/');
+        if (!EpisodeCache.EPISODE.equals(name)) {
+          final Path file = target.resolve(root.relativize(path));
+          Files.createDirectories(file.getParent());
+          Files.copy(path, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+      }
+    }
+  }
+
+  static void delete(final Path dir) throws IOException {
+    try (final Stream<Path> paths = Files.walk(dir)) {
+      paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+  }
+
+  private static ArrayList<String> addJavaArgs(final ArrayList<String> args, final boolean addClassPath, final boolean ignoreMissingCatalogs) {
     args.add(0, "-Dcom.sun.tools.xjc.XJCFacade.nohack=true");
-    args.add(1, "-Dcom.sun.tools.xjc.Options.findServices=true");
+    if (ignoreMissingCatalogs)
+      args.add(0, "-Dxml.catalog.ignoreMissing=true");
+
     if (addClassPath) {
       args.add(0, "-cp");
       args.add(1, System.getProperty("java.class.path"));
       args.add(2, XJCFacade.class.getName());
     }
 
-    args.add(0, "java");
+    args.add(0, System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
     return args;
   }
 
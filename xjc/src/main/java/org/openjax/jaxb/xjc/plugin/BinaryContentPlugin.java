@@ -0,0 +1,107 @@
+/* Copyright (c) 2017 OpenJAX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.openjax.jaxb.xjc.plugin;
+
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
+
+import org.openjax.jaxb.xjc.BinaryContent;
+import org.xml.sax.ErrorHandler;
+
+import com.sun.codemodel.JAnnotationUse;
+import com.sun.codemodel.JClass;
+import com.sun.codemodel.JDefinedClass;
+import com.sun.codemodel.JFieldVar;
+import com.sun.codemodel.JMethod;
+import com.sun.codemodel.JType;
+import com.sun.tools.xjc.Options;
+import com.sun.tools.xjc.Plugin;
+import com.sun.tools.xjc.model.CElementPropertyInfo;
+import com.sun.tools.xjc.model.CPropertyInfo;
+import com.sun.tools.xjc.model.CValuePropertyInfo;
+import com.sun.tools.xjc.outline.ClassOutline;
+import com.sun.tools.xjc.outline.Outline;
+
+/**
+ * XJC plugin that generates the {@code xs:base64Binary} element and simple content properties as {@link BinaryContent} (instead of
+ * {@code byte[]}), which holds the content off the heap, in a direct buffer or a spill file.
+ * <p>
+ * The static StAX readers and writers of the {@code -Xstax} plugin decode and encode the content as a stream, so that the heap used by
+ * the content is independent of its size. The JAXB runtime binds the content via {@link BinaryContent.Adapter}, which decodes it into
+ * a {@code byte[]} first. The generated code depends on this module. This plugin must precede {@code -Xstax} and {@code -Ximmutable}.
+ * <p>
+ * Lists of binary content, {@code xs:hexBinary} and binary content with an expected MIME type are left untouched.
+ */
+public class BinaryContentPlugin extends Plugin {
+  @Override
+  public String getOptionName() {
+    return "XbinaryContent";
+  }
+
+  @Override
+  public String getUsage() {
+    return "  -XbinaryContent    :  generate xs:base64Binary properties as BinaryContent held off the heap";
+  }
+
+  /**
+   * Returns whether the specified type is {@link BinaryContent}.
+   *
+   * @param type The type.
+   * @return Whether the specified type is {@link BinaryContent}.
+   */
+  static boolean isBinaryContent(final JType type) {
+    return BinaryContent.class.getName().equals(type.fullName());
+  }
+
+  @Override
+  public boolean run(final Outline outline, final Options options, final ErrorHandler errorHandler) {
+    final JClass binaryContent = outline.getCodeModel().ref(BinaryContent.class);
+    final JClass adapter = outline.getCodeModel().ref(BinaryContent.Adapter.class);
+    for (final ClassOutline classOutline : outline.getClasses()) { // [C]
+      final JDefinedClass cls = classOutline.implClass;
+      for (final CPropertyInfo property : classOutline.target.getProperties()) { // [L]
+        if (property.isCollection() || !(property instanceof CElementPropertyInfo || property instanceof CValuePropertyInfo))
+          continue;
+
+        // xs:hexBinary is bound to byte[] as well, but with an XmlJavaTypeAdapter
+        final JFieldVar field = cls.fields().get(property.getName(false));
+        if (field == null || !"byte[]".equals(field.type().fullName()) || hasAdapter(field))
+          continue;
+
+        final String name = property.getName(true);
+        final JMethod getter = cls.getMethod("get" + name, new JType[0]);
+        final JMethod setter = cls.getMethod("set" + name, new JType[] {field.type()});
+        if (getter == null || setter == null)
+          continue;
+
+        field.type(binaryContent);
+        field.annotate(XmlJavaTypeAdapter.class).param("value", adapter);
+        getter.type(binaryContent);
+        setter.listParams()[0].type(binaryContent);
+      }
+    }
+
+    return true;
+  }
+
+  static boolean hasAdapter(final JFieldVar field) {
+    for (final JAnnotationUse annotation : field.annotations()) // [C]
+      if (XmlJavaTypeAdapter.class.getName().equals(annotation.getAnnotationClass().fullName()))
+        return true;
+
+    return false;
+  }
+}
@@ -0,0 +1,361 @@
+/* Copyright (c) 2017 OpenJAX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.openjax.jaxb.xjc.plugin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+
+import javax.xml.bind.Unmarshaller;
+
+import org.xml.sax.ErrorHandler;
+
+import com.sun.codemodel.JBlock;
+import com.sun.codemodel.JClass;
+import com.sun.codemodel.JClassAlreadyExistsException;
+import com.sun.codemodel.JCodeModel;
+import com.sun.codemodel.JDefinedClass;
+import com.sun.codemodel.JExpr;
+import com.sun.codemodel.JExpression;
+import com.sun.codemodel.JFieldRef;
+import com.sun.codemodel.JFieldVar;
+import com.sun.codemodel.JMethod;
+import com.sun.codemodel.JMod;
+import com.sun.codemodel.JOp;
+import com.sun.codemodel.JType;
+import com.sun.codemodel.JVar;
+import com.sun.tools.xjc.Options;
+import com.sun.tools.xjc.Plugin;
+import com.sun.tools.xjc.model.CClassInfo;
+import com.sun.tools.xjc.model.CPropertyInfo;
+import com.sun.tools.xjc.outline.ClassOutline;
+import com.sun.tools.xjc.outline.Outline;
+
+/**
+ * XJC plugin that generates immutable classes:
+ * <ul>
+ * <li>Setters are removed, and the getters of lists return unmodifiable lists (and the getters of arrays return copies).</li>
+ * <li>A nested {@code Builder} class, with {@code with} (and, for lists, {@code add}) methods, is created by {@code builder()} or
+ * {@code toBuilder()}. Builders are generated for concrete classes without subclasses, and set the fields of superclasses as well.</li>
+ * <li>{@code equals(Object)} and {@code hashCode()} are generated, and the hash code is computed once: when the instance is built or
+ * unmarshalled (or, if read by a StAX reader of the {@code -Xstax} plugin, when first requested).</li>
+ * </ul>
+ * Fields are left non-final, because the JAXB runtime sets them after construction. Instances are therefore immutable once they are
+ * built or unmarshalled, and can be shared across threads when safely published (e.g. via a concurrent cache).
+ * <p>
+ * Classes with fields that are not properties (such as the map of {@code xs:anyAttribute}), or that extend a class that is not
+ * generated, are left untouched, along with the other classes of their hierarchy.
+ */
+public class ImmutablePlugin extends Plugin {
+  private static final String BUILDER = "Builder";
+  private static final String HASH_CODE = "hashCode";
+
+  @Override
+  public String getOptionName() {
+    return "Ximmutable";
+  }
+
+  @Override
+  public String getUsage() {
+    return "  -Ximmutable        :  generate immutable classes with builders, equals and cached hashCode";
+  }
+
+  @Override
+  public boolean run(final Outline outline, final Options options, final ErrorHandler errorHandler) {
+    final HashMap<ClassOutline,Boolean> supported = new HashMap<>();
+    for (final ClassOutline classOutline : outline.getClasses()) // [C]
+      supported.put(classOutline, isSupported(outline, classOutline));
+
+    // A hierarchy is supported only as a whole, as the equals and hashCode of a class would otherwise ignore the fields of its
+    // subclasses, or the subclasses would inherit setters
+    for (boolean changed = true; changed;) { // [X]
+      changed = false;
+      for (final ClassOutline classOutline : outline.getClasses()) { // [C]
+        final CClassInfo base = classOutline.target.getBaseClass();
+        final ClassOutline baseOutline = base == null ? null : outline.getClazz(base);
+        if (baseOutline != null && supported.get(baseOutline) != supported.get(classOutline)) {
+          supported.put(baseOutline, false);
+          supported.put(classOutline, false);
+          changed = true;
+        }
+      }
+    }
+
+    for (final ClassOutline classOutline : outline.getClasses()) // [C]
+      if (supported.get(classOutline))
+        generate(outline.getCodeModel(), classOutline, getChain(outline, classOutline));
+
+    return true;
+  }
+
+  private static boolean isSupported(final Outline outline, final ClassOutline classOutline) {
+    final JDefinedClass cls = classOutline.implClass;
+    final CClassInfo base = classOutline.target.getBaseClass();
+    if (base == null ? !Object.class.getName().equals(cls._extends().fullName()) : outline.getClazz(base) == null)
+      return false;
+
+    if (BUILDER.equals(cls.name()) || cls.fields().containsKey(HASH_CODE))
+      return false;
+
+    for (final Iterator<JDefinedClass> i = cls.classes(); i.hasNext();) // [I]
+      if (BUILDER.equals(i.next().name()))
+        return false;
+
+    // Fields that are not properties (such as the map of xs:anyAttribute) cannot be made immutable
+    final HashSet<JFieldVar> fields = new HashSet<>(getFields(classOutline));
+    for (final JFieldVar field : cls.fields().values()) // [C]
+      if ((field.mods().getValue() & JMod.STATIC) == 0 && !fields.contains(field))
+        return false;
+
+    return true;
+  }
+
+  /**
+   * Returns the outlines of the specified class and of its generated superclasses, starting from the root of the hierarchy.
+   */
+  private static ArrayList<ClassOutline> getChain(final Outline outline, ClassOutline classOutline) {
+    final ArrayList<ClassOutline> chain = new ArrayList<>();
+    do
+      chain.add(0, classOutline);
+    while (classOutline.target.getBaseClass() != null && (classOutline = outline.getClazz(classOutline.target.getBaseClass())) != null);
+    return chain;
+  }
+
+  private static List<JFieldVar> getFields(final ClassOutline classOutline) {
+    final List<CPropertyInfo> properties = classOutline.target.getProperties();
+    final ArrayList<JFieldVar> fields = new ArrayList<>(properties.size());
+    for (final CPropertyInfo property : properties) { // [L]
+      final JFieldVar field = classOutline.implClass.fields().get(property.getName(false));
+      if (field != null)
+        fields.add(field);
+    }
+
+    return fields;
+  }
+
+  private static boolean isList(final JType type) {
+    return type instanceof JClass && List.class.getName().equals(((JClass)type).erasure().fullName()) && ((JClass)type).getTypeParameters().size() == 1;
+  }
+
+  private static String capitalize(final String name) {
+    return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+  }
+
+  private static void generate(final JCodeModel codeModel, final ClassOutline classOutline, final ArrayList<ClassOutline> chain) {
+    final JDefinedClass cls = classOutline.implClass;
+    final List<JFieldVar> fields = getFields(classOutline);
+    final boolean isRoot = chain.size() == 1;
+
+    // Remove the setters, and replace the getters of lists and arrays
+    for (final CPropertyInfo property : classOutline.target.getProperties()) { // [L]
+      final JFieldVar field = cls.fields().get(property.getName(false));
+      if (field == null)
+        continue;
+
+      final String name = property.getName(true);
+      for (final Iterator<JMethod> i = cls.methods().iterator(); i.hasNext();) { // [I]
+        final JMethod method = i.next();
+        if (method.name().equals("set" + name) && method.params().size() == 1)
+          i.remove();
+      }
+
+      final JType type = field.type();
+      if (!isList(type) && !type.isArray())
+        continue;
+
+      final JMethod getter = cls.getMethod("get" + name, new JType[0]);
+      if (getter == null)
+        continue;
+
+      cls.methods().remove(getter);
+      final JMethod get = cls.method(JMod.PUBLIC, type, "get" + name);
+      if (type.isArray()) {
+        get.javadoc().append("Gets a copy of the value of the " + field.name() + " property.");
+        get.javadoc().addReturn().append("A copy of the value of the " + field.name() + " property.");
+        get.body()._return(JOp.cond(field.eq(JExpr._null()), JExpr._null(), JExpr.invoke(field, "clone")));
+      }
+      else {
+        get.javadoc().append("Gets the value of the " + field.name() + " property, as an unmodifiable list.");
+        get.javadoc().addReturn().append("The value of the " + field.name() + " property, as an unmodifiable list.");
+        final JClass collections = codeModel.ref(Collections.class);
+        get.body()._return(JOp.cond(field.eq(JExpr._null()), collections.staticInvoke("emptyList"), collections.staticInvoke("unmodifiableList").arg(field)));
+      }
+    }
+
+    generateEquals(codeModel, cls, fields, isRoot);
+    generateHashCode(codeModel, cls, fields, isRoot);
+    // A static builder() of a subclass would hide that of its superclass with an incompatible type, so only leaf classes have builders
+    if (!classOutline.target.isAbstract() && !classOutline.target.hasSubClasses())
+      generateBuilder(codeModel, cls, chain);
+  }
+
+  private static void generateEquals(final JCodeModel codeModel, final JDefinedClass cls, final List<JFieldVar> fields, final boolean isRoot) {
+    final JMethod equals = cls.method(JMod.PUBLIC, codeModel.BOOLEAN, "equals");
+    equals.annotate(Override.class);
+    final JVar obj = equals.param(JMod.FINAL, Object.class, "obj");
+    final JBlock body = equals.body();
+    if (isRoot) {
+      body._if(obj.eq(JExpr._this()))._then()._return(JExpr.TRUE);
+      body._if(obj.eq(JExpr._null()).cor(JExpr.invoke("getClass").ne(obj.invoke("getClass"))).cor(JExpr.invoke(HASH_CODE).ne(obj.invoke(HASH_CODE))))._then()._return(JExpr.FALSE);
+    }
+    else {
+      body._if(JExpr._super().invoke("equals").arg(obj).not())._then()._return(JExpr.FALSE);
+    }
+
+    if (fields.size() == 0) {
+      body._return(JExpr.TRUE);
+      return;
+    }
+
+    final JVar that = body.decl(JMod.FINAL, cls, "that", JExpr.cast(cls, obj));
+    JExpression expression = null;
+    for (final JFieldVar field : fields) { // [L]
+      final JExpression test = equals(codeModel, field.type(), JExpr._this().ref(field), that.ref(field));
+      expression = expression == null ? test : expression.cand(test);
+    }
+
+    body._return(expression);
+  }
+
+  private static JExpression equals(final JCodeModel codeModel, final JType type, final JExpression a, final JExpression b) {
+    if (type.isArray())
+      return codeModel.ref(Arrays.class).staticInvoke("equals").arg(a).arg(b);
+
+    if (type == codeModel.FLOAT || type == codeModel.DOUBLE)
+      return type.boxify().staticInvoke("compare").arg(a).arg(b).eq(JExpr.lit(0));
+
+    if (type.isPrimitive())
+      return a.eq(b);
+
+    return codeModel.ref(Objects.class).staticInvoke("equals").arg(a).arg(b);
+  }
+
+  private static void generateHashCode(final JCodeModel codeModel, final JDefinedClass cls, final List<JFieldVar> fields, final boolean isRoot) {
+    // protected int hash(): computes the hash code of the fields of this class (and of its superclasses)
+    final JMethod hash = cls.method(JMod.PROTECTED, codeModel.INT, "hash");
+    if (!isRoot)
+      hash.annotate(Override.class);
+
+    final JBlock body = hash.body();
+    final JVar result = body.decl(codeModel.INT, "hash", isRoot ? JExpr.lit(1) : JExpr._super().invoke("hash"));
+    for (final JFieldVar field : fields) { // [L]
+      final JType type = field.type();
+      final JExpression value = JExpr._this().ref(field);
+      final JExpression code = type.isArray() ? codeModel.ref(Arrays.class).staticInvoke(HASH_CODE).arg(value) : type.isPrimitive() ? type.boxify().staticInvoke(HASH_CODE).arg(value) : codeModel.ref(Objects.class).staticInvoke(HASH_CODE).arg(value);
+      body.assign(result, JExpr.lit(31).mul(result).plus(code));
+    }
+
+    body._return(result);
+    if (!isRoot)
+      return;
+
+    // The hash code is cached in a transient field, which is not bound by the JAXB runtime
+    final JFieldVar cache = cls.field(JMod.PRIVATE | JMod.TRANSIENT, codeModel.INT, HASH_CODE);
+
+    final JMethod hashCode = cls.method(JMod.PUBLIC, codeModel.INT, HASH_CODE);
+    hashCode.annotate(Override.class);
+    final JVar h = hashCode.body().decl(codeModel.INT, "h", cache);
+    hashCode.body()._if(h.eq(JExpr.lit(0)))._then().assign(cache, JExpr.assign(h, JExpr.invoke(hash)));
+    hashCode.body()._return(h);
+
+    // Invoked by the JAXB runtime after the instance is unmarshalled
+    final JMethod afterUnmarshal = cls.method(JMod.PRIVATE, codeModel.VOID, "afterUnmarshal");
+    afterUnmarshal.param(JMod.FINAL, Unmarshaller.class, "unmarshaller");
+    afterUnmarshal.param(JMod.FINAL, Object.class, "parent");
+    afterUnmarshal.body().invoke(hashCode);
+  }
+
+  private static void generateBuilder(final JCodeModel codeModel, final JDefinedClass cls, final ArrayList<ClassOutline> chain) {
+    final JDefinedClass builder;
+    try {
+      builder = cls._class(JMod.PUBLIC | JMod.STATIC | JMod.FINAL, BUILDER);
+    }
+    catch (final JClassAlreadyExistsException e) {
+      return;
+    }
+
+    builder.javadoc().append("Builder of immutable instances of {@link " + cls.name() + "}.");
+    builder.constructor(JMod.PRIVATE);
+
+    final JMethod build = builder.method(JMod.PUBLIC, cls, "build");
+    build.javadoc().append("Returns a new instance of {@link " + cls.name() + "} with the values of this builder.");
+    build.javadoc().addReturn().append("A new instance of {@link " + cls.name() + "} with the values of this builder.");
+    final JVar instance = build.body().decl(JMod.FINAL, cls, "value", JExpr._new(cls));
+
+    final JMethod toBuilder = cls.method(JMod.PUBLIC, builder, "toBuilder");
+    toBuilder.javadoc().append("Returns a new {@link " + BUILDER + "} with the values of this instance.");
+    toBuilder.javadoc().addReturn().append("A new {@link " + BUILDER + "} with the values of this instance.");
+    final JVar copy = toBuilder.body().decl(JMod.FINAL, builder, "builder", JExpr._new(builder));
+
+    for (final ClassOutline classOutline : chain) { // [L]
+      for (final JFieldVar field : getFields(classOutline)) { // [L]
+        final JType type = field.type();
+        final String name = field.name();
+        final JFieldVar builderField = builder.field(JMod.PRIVATE, type, name);
+        // Fields are referenced via "this", as their names may coincide with those of the parameters and variables
+        final JFieldRef builderRef = JExpr._this().ref(builderField);
+        final JFieldRef fieldRef = JExpr._this().ref(field);
+        final JMethod with = builder.method(JMod.PUBLIC, builder, "with" + capitalize(name));
+        with.javadoc().append("Sets the value of the " + name + " property.");
+        if (isList(type)) {
+          final JClass itemType = ((JClass)type).getTypeParameters().get(0);
+          final JClass arrayListType = codeModel.ref(ArrayList.class).narrow(itemType);
+          final JVar values = with.param(JMod.FINAL, codeModel.ref(Collection.class).narrow(itemType.wildcard()), "values");
+          with.javadoc().addParam(values).append("The values of the " + name + " property.");
+          with.body().assign(builderRef, JOp.cond(values.eq(JExpr._null()), JExpr._null(), JExpr._new(arrayListType).arg(values)));
+
+          final JMethod add = builder.method(JMod.PUBLIC, builder, "add" + capitalize(name));
+          final JVar value = add.param(JMod.FINAL, itemType, "value");
+          add.javadoc().append("Adds a value to the " + name + " property.");
+          add.javadoc().addParam(value).append("The value to add.");
+          add.javadoc().addReturn().append("This builder.");
+          add.body()._if(builderRef.eq(JExpr._null()))._then().assign(builderRef, JExpr._new(arrayListType));
+          add.body().add(builderRef.invoke("add").arg(value));
+          add.body()._return(JExpr._this());
+
+          build.body().assign(instance.ref(field), JOp.cond(builderRef.eq(JExpr._null()), JExpr._null(), JExpr._new(arrayListType).arg(builderRef)));
+          toBuilder.body().assign(copy.ref(builderField), JOp.cond(fieldRef.eq(JExpr._null()), JExpr._null(), JExpr._new(arrayListType).arg(fieldRef)));
+        }
+        else {
+          final JVar value = with.param(JMod.FINAL, type, "value");
+          with.javadoc().addParam(value).append("The value of the " + name + " property.");
+          with.body().assign(builderRef, type.isArray() ? JOp.cond(value.eq(JExpr._null()), JExpr._null(), JExpr.invoke(value, "clone")) : value);
+          build.body().assign(instance.ref(field), type.isArray() ? JOp.cond(builderRef.eq(JExpr._null()), JExpr._null(), builderRef.invoke("clone")) : builderRef);
+          toBuilder.body().assign(copy.ref(builderField), fieldRef);
+        }
+
+        with.javadoc().addReturn().append("This builder.");
+        with.body()._return(JExpr._this());
+      }
+    }
+
+    build.body().invoke(instance, HASH_CODE);
+    build.body()._return(instance);
+    toBuilder.body()._return(copy);
+
+    final JMethod create = cls.method(JMod.PUBLIC | JMod.STATIC, builder, "builder");
+    create.javadoc().append("Returns a new {@link " + BUILDER + "} of immutable instances of {@link " + cls.name() + "}.");
+    create.javadoc().addReturn().append("A new {@link " + BUILDER + "} of immutable instances of {@link " + cls.name() + "}.");
+    create.body()._return(JExpr._new(builder));
+  }
+}
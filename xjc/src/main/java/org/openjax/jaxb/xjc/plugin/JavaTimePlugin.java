@@ -0,0 +1,184 @@
+/* Copyright (c) 2017 OpenJAX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.openjax.jaxb.xjc.plugin;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.OffsetTime;
+import java.util.HashMap;
+
+import javax.xml.XMLConstants;
+import javax.xml.bind.annotation.adapters.XmlAdapter;
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
+import javax.xml.datatype.XMLGregorianCalendar;
+import javax.xml.namespace.QName;
+
+import org.openjax.jaxb.xjc.JavaTime;
+import org.xml.sax.ErrorHandler;
+
+import com.sun.codemodel.JCodeModel;
+import com.sun.codemodel.JDefinedClass;
+import com.sun.codemodel.JExpression;
+import com.sun.codemodel.JFieldVar;
+import com.sun.codemodel.JMethod;
+import com.sun.codemodel.JType;
+import com.sun.tools.xjc.Options;
+import com.sun.tools.xjc.Plugin;
+import com.sun.tools.xjc.model.CAttributePropertyInfo;
+import com.sun.tools.xjc.model.CBuiltinLeafInfo;
+import com.sun.tools.xjc.model.CElementPropertyInfo;
+import com.sun.tools.xjc.model.CPropertyInfo;
+import com.sun.tools.xjc.model.CTypeRef;
+import com.sun.tools.xjc.model.CValuePropertyInfo;
+import com.sun.tools.xjc.outline.ClassOutline;
+import com.sun.tools.xjc.outline.Outline;
+
+/**
+ * XJC plugin that generates the {@code xs:dateTime}, {@code xs:date} and {@code xs:time} properties as {@link OffsetDateTime},
+ * {@link LocalDate} and {@link OffsetTime} (instead of {@link XMLGregorianCalendar}), which are parsed straight from the text by
+ * {@link JavaTime}, without the lookups of {@link javax.xml.datatype.DatatypeFactory} and the allocations of
+ * {@link XMLGregorianCalendar}.
+ * <p>
+ * The JAXB runtime binds the properties via the adapters of {@link JavaTime}, and the static StAX readers and writers of the
+ * {@code -Xstax} plugin parse and print them via {@link JavaTime} directly. The generated code depends on this module. This plugin
+ * must precede {@code -Xstax} and {@code -Ximmutable}.
+ * <p>
+ * The {@code xs:dateTime} and {@code xs:time} values without a timezone are in the {@linkplain JavaTime#DEFAULT_OFFSET default offset},
+ * and the {@code xs:date} values with a timezone are the dates in their timezone (see {@link JavaTime}).
+ * <p>
+ * Lists of temporal values, and the other temporal types (such as {@code xs:gYear}), are left untouched.
+ */
+public class JavaTimePlugin extends Plugin {
+  private static final class Binding {
+    private final Class<?> type;
+    private final Class<? extends XmlAdapter<String,?>> adapter;
+    private final String parse;
+
+    private Binding(final Class<?> type, final Class<? extends XmlAdapter<String,?>> adapter, final String parse) {
+      this.type = type;
+      this.adapter = adapter;
+      this.parse = parse;
+    }
+  }
+
+  private static final HashMap<String,Binding> bindings = new HashMap<>();
+  private static final HashMap<String,Binding> types = new HashMap<>();
+
+  static {
+    bindings.put("dateTime", new Binding(OffsetDateTime.class, JavaTime.DateTimeAdapter.class, "parseDateTime"));
+    bindings.put("date", new Binding(LocalDate.class, JavaTime.DateAdapter.class, "parseDate"));
+    bindings.put("time", new Binding(OffsetTime.class, JavaTime.TimeAdapter.class, "parseTime"));
+    for (final Binding binding : bindings.values()) // [C]
+      types.put(binding.type.getName(), binding);
+  }
+
+  @Override
+  public String getOptionName() {
+    return "XjavaTime";
+  }
+
+  @Override
+  public String getUsage() {
+    return "  -XjavaTime         :  generate xs:dateTime, xs:date and xs:time properties as java.time types";
+  }
+
+  /**
+   * Returns whether the specified type is a {@code java.time} type of this plugin.
+   *
+   * @param type The type.
+   * @return Whether the specified type is a {@code java.time} type of this plugin.
+   */
+  static boolean isJavaTime(final JType type) {
+    return types.containsKey(type.fullName());
+  }
+
+  /**
+   * Returns the expression that parses the specified text as the specified {@code java.time} type of this plugin.
+   */
+  static JExpression parse(final JCodeModel codeModel, final JType type, final JExpression text) {
+    return codeModel.ref(JavaTime.class).staticInvoke(types.get(type.fullName()).parse).arg(text);
+  }
+
+  /**
+   * Returns the expression that prints the specified value of a {@code java.time} type of this plugin.
+   */
+  static JExpression print(final JCodeModel codeModel, final JExpression value) {
+    return codeModel.ref(JavaTime.class).staticInvoke("print").arg(value);
+  }
+
+  @Override
+  public boolean run(final Outline outline, final Options options, final ErrorHandler errorHandler) {
+    final JCodeModel codeModel = outline.getCodeModel();
+    for (final ClassOutline classOutline : outline.getClasses()) { // [C]
+      final JDefinedClass cls = classOutline.implClass;
+      for (final CPropertyInfo property : classOutline.target.getProperties()) { // [L]
+        if (property.isCollection())
+          continue;
+
+        final QName typeName = getTypeName(property);
+        final Binding binding = typeName == null || !XMLConstants.W3C_XML_SCHEMA_NS_URI.equals(typeName.getNamespaceURI()) ? null : bindings.get(typeName.getLocalPart());
+        if (binding == null)
+          continue;
+
+        final JFieldVar field = cls.fields().get(property.getName(false));
+        if (field == null || !XMLGregorianCalendar.class.getName().equals(field.type().fullName()) || BinaryContentPlugin.hasAdapter(field))
+          continue;
+
+        final String name = property.getName(true);
+        final JMethod getter = cls.getMethod("get" + name, new JType[0]);
+        final JMethod setter = cls.getMethod("set" + name, new JType[] {field.type()});
+        if (getter == null || setter == null)
+          continue;
+
+        final JType type = codeModel.ref(binding.type);
+        field.type(type);
+        field.annotate(XmlJavaTypeAdapter.class).param("value", codeModel.ref(binding.adapter));
+        getter.type(type);
+        setter.listParams()[0].type(type);
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Returns the name of the schema type of the specified property, if it is bound to {@link XMLGregorianCalendar}, or else
+   * {@code null}.
+   */
+  private static QName getTypeName(final CPropertyInfo property) {
+    if (property instanceof CElementPropertyInfo) {
+      final CElementPropertyInfo elementInfo = (CElementPropertyInfo)property;
+      if (elementInfo.getTypes().size() != 1)
+        return null;
+
+      final CTypeRef typeRef = elementInfo.getTypes().get(0);
+      return typeRef.getTarget() == CBuiltinLeafInfo.CALENDAR ? typeRef.getTypeName() : null;
+    }
+
+    if (property instanceof CAttributePropertyInfo) {
+      final CAttributePropertyInfo attributeInfo = (CAttributePropertyInfo)property;
+      return attributeInfo.getTarget() == CBuiltinLeafInfo.CALENDAR ? attributeInfo.getSchemaType() : null;
+    }
+
+    if (property instanceof CValuePropertyInfo) {
+      final CValuePropertyInfo valueInfo = (CValuePropertyInfo)property;
+      return valueInfo.getTarget() == CBuiltinLeafInfo.CALENDAR ? valueInfo.getSchemaType() : null;
+    }
+
+    return null;
+  }
+}
@@ -0,0 +1,130 @@
+/* Copyright (c) 2017 OpenJAX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.openjax.jaxb.xjc.plugin;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.TreeSet;
+
+import org.xml.sax.ErrorHandler;
+
+import com.sun.codemodel.JCodeModel;
+import com.sun.codemodel.JDefinedClass;
+import com.sun.codemodel.JPackage;
+import com.sun.codemodel.fmt.JTextFile;
+import com.sun.tools.xjc.Options;
+import com.sun.tools.xjc.Plugin;
+import com.sun.tools.xjc.outline.Outline;
+
+/**
+ * XJC plugin that generates, for each package of generated classes:
+ * <ul>
+ * <li>{@code jaxb.index}, which lists the classes of the package, so that a {@code JAXBContext} can be created for the package without
+ * {@code ObjectFactory}.</li>
+ * <li>{@code META-INF/native-image/<package path>/reflect-config.json}, which registers the generated classes (and
+ * {@code package-info}) for reflection by the JAXB runtime in a GraalVM native image.</li>
+ * <li>{@code META-INF/native-image/<package path>/resource-config.json}, which includes {@code jaxb.index} in the native image.</li>
+ * </ul>
+ * The files are written to the output directory, alongside the generated sources.
+ */
+public class NativeImagePlugin extends Plugin {
+  private static final String META_INF = "META-INF.native-image.";
+
+  @Override
+  public String getOptionName() {
+    return "XnativeImage";
+  }
+
+  @Override
+  public String getUsage() {
+    return "  -XnativeImage      :  generate jaxb.index and GraalVM native-image reflection and resource configuration";
+  }
+
+  @Override
+  public boolean run(final Outline outline, final Options options, final ErrorHandler errorHandler) {
+    final JCodeModel codeModel = outline.getCodeModel();
+    // The packages are copied, as packages for the configuration files are created while iterating
+    final ArrayList<JPackage> packages = new ArrayList<>();
+    for (final Iterator<JPackage> i = codeModel.packages(); i.hasNext();) // [I]
+      packages.add(i.next());
+
+    for (final JPackage pkg : packages) { // [L]
+      if (pkg.name().startsWith(META_INF))
+        continue;
+
+      final TreeSet<String> topLevel = new TreeSet<>();
+      final TreeSet<String> classes = new TreeSet<>();
+      for (final Iterator<JDefinedClass> i = pkg.classes(); i.hasNext();) { // [I]
+        final JDefinedClass cls = i.next();
+        if (!"ObjectFactory".equals(cls.name()))
+          topLevel.add(cls.name());
+
+        addClasses(cls, classes);
+      }
+
+      if (classes.size() == 0)
+        continue;
+
+      if (options.packageLevelAnnotations)
+        classes.add(pkg.isUnnamed() ? "package-info" : pkg.name() + ".package-info");
+
+      final StringBuilder index = new StringBuilder();
+      for (final String name : topLevel) // [S]
+        index.append(name).append('\n');
+
+      addTextFile(pkg, "jaxb.index", index.toString());
+
+      final StringBuilder reflect = new StringBuilder("[");
+      for (final String name : classes) { // [S]
+        if (reflect.length() > 1)
+          reflect.append(',');
+
+        reflect.append("\n  {\n    \"name\": \"").append(name).append("\",\n");
+        reflect.append("    \"allDeclaredConstructors\": true,\n");
+        reflect.append("    \"allPublicConstructors\": true,\n");
+        reflect.append("    \"allDeclaredMethods\": true,\n");
+        reflect.append("    \"allPublicMethods\": true,\n");
+        reflect.append("    \"allDeclaredFields\": true,\n");
+        reflect.append("    \"allPublicFields\": true\n  }");
+      }
+
+      reflect.append("\n]\n");
+
+      final String dir = pkg.isUnnamed() ? "" : pkg.name().replace('.', '/') + "/";
+      final String resource = "{\n  \"resources\": {\n    \"includes\": [\n      {\"pattern\": \"\\\\Q" + dir + "jaxb.index\\\\E\"}\n    ]\n  }\n}\n";
+
+      // The code model writes the resource files of a package to the directory of the package name
+      final JPackage metaInf = codeModel._package(META_INF + (pkg.isUnnamed() ? "unnamed" : pkg.name()));
+      addTextFile(metaInf, "reflect-config.json", reflect.toString());
+      addTextFile(metaInf, "resource-config.json", resource);
+    }
+
+    return true;
+  }
+
+  private static void addClasses(final JDefinedClass cls, final TreeSet<String> classes) {
+    classes.add(cls.binaryName());
+    for (final Iterator<JDefinedClass> i = cls.classes(); i.hasNext();) // [I]
+      addClasses(i.next(), classes);
+  }
+
+  private static void addTextFile(final JPackage pkg, final String name, final String contents) {
+    final JTextFile file = new JTextFile(name);
+    file.setContents(contents);
+    pkg.addResourceFile(file);
+  }
+}
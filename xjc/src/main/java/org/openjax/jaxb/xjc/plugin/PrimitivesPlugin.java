@@ -0,0 +1,361 @@
+/* Copyright (c) 2017 OpenJAX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.openjax.jaxb.xjc.plugin;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.XMLConstants;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.namespace.QName;
+
+import org.xml.sax.ErrorHandler;
+
+import com.sun.codemodel.JAnnotationUse;
+import com.sun.codemodel.JAnnotationValue;
+import com.sun.codemodel.JClass;
+import com.sun.codemodel.JCodeModel;
+import com.sun.codemodel.JDefinedClass;
+import com.sun.codemodel.JExpr;
+import com.sun.codemodel.JFieldVar;
+import com.sun.codemodel.JMethod;
+import com.sun.codemodel.JMod;
+import com.sun.codemodel.JPrimitiveType;
+import com.sun.codemodel.JType;
+import com.sun.codemodel.JVar;
+import com.sun.tools.xjc.Options;
+import com.sun.tools.xjc.Plugin;
+import com.sun.tools.xjc.model.CAttributePropertyInfo;
+import com.sun.tools.xjc.model.CElementPropertyInfo;
+import com.sun.tools.xjc.model.CPropertyInfo;
+import com.sun.tools.xjc.model.CValuePropertyInfo;
+import com.sun.tools.xjc.outline.ClassOutline;
+import com.sun.tools.xjc.outline.FieldOutline;
+import com.sun.tools.xjc.outline.Outline;
+import com.sun.xml.xsom.XSAttributeUse;
+import com.sun.xml.xsom.XSComplexType;
+import com.sun.xml.xsom.XSComponent;
+import com.sun.xml.xsom.XSElementDecl;
+import com.sun.xml.xsom.XSFacet;
+import com.sun.xml.xsom.XSParticle;
+import com.sun.xml.xsom.XSSimpleType;
+import com.sun.xml.xsom.XSTerm;
+import com.sun.xml.xsom.XSType;
+
+/**
+ * XJC plugin that specializes numeric properties to primitive types:
+ * <ul>
+ * <li>A {@code BigInteger} or {@code Long} property whose simple type is proven by its facets (or by the built-in type it derives from)
+ * to fit in {@code int} or {@code long} is generated as {@code int} or {@code long} (or {@code Integer} or {@code Long}, if the
+ * property is optional).</li>
+ * <li>An {@code xs:list} of numbers (or booleans), which XJC generates as a {@code List} of boxed values, is generated as a primitive
+ * array, with a getter and a setter.</li>
+ * </ul>
+ * The JAXB runtime binds {@code int}, {@code long} and arrays of primitives (with {@code @XmlList}) natively, so no
+ * {@code XmlAdapter} is necessary. Properties with a default value are left untouched.
+ */
+public class PrimitivesPlugin extends Plugin {
+  private static final BigInteger INT_MIN = BigInteger.valueOf(Integer.MIN_VALUE);
+  private static final BigInteger INT_MAX = BigInteger.valueOf(Integer.MAX_VALUE);
+  private static final BigInteger LONG_MIN = BigInteger.valueOf(Long.MIN_VALUE);
+  private static final BigInteger LONG_MAX = BigInteger.valueOf(Long.MAX_VALUE);
+
+  // The value ranges of the built-in integer types (null signifies an unbounded end)
+  private static final HashMap<String,BigInteger[]> builtins = new HashMap<>();
+
+  static {
+    builtins.put("integer", new BigInteger[] {null, null});
+    builtins.put("nonPositiveInteger", new BigInteger[] {null, BigInteger.ZERO});
+    builtins.put("negativeInteger", new BigInteger[] {null, BigInteger.ONE.negate()});
+    builtins.put("nonNegativeInteger", new BigInteger[] {BigInteger.ZERO, null});
+    builtins.put("positiveInteger", new BigInteger[] {BigInteger.ONE, null});
+    builtins.put("long", new BigInteger[] {LONG_MIN, LONG_MAX});
+    builtins.put("int", new BigInteger[] {INT_MIN, INT_MAX});
+    builtins.put("short", new BigInteger[] {BigInteger.valueOf(Short.MIN_VALUE), BigInteger.valueOf(Short.MAX_VALUE)});
+    builtins.put("byte", new BigInteger[] {BigInteger.valueOf(Byte.MIN_VALUE), BigInteger.valueOf(Byte.MAX_VALUE)});
+    builtins.put("unsignedLong", new BigInteger[] {BigInteger.ZERO, new BigInteger("18446744073709551615")});
+    builtins.put("unsignedInt", new BigInteger[] {BigInteger.ZERO, BigInteger.valueOf(4294967295L)});
+    builtins.put("unsignedShort", new BigInteger[] {BigInteger.ZERO, BigInteger.valueOf(65535)});
+    builtins.put("unsignedByte", new BigInteger[] {BigInteger.ZERO, BigInteger.valueOf(255)});
+  }
+
+  @Override
+  public String getOptionName() {
+    return "Xprimitives";
+  }
+
+  @Override
+  public String getUsage() {
+    return "  -Xprimitives       :  generate primitive types for bounded integers and primitive arrays for numeric lists";
+  }
+
+  @Override
+  public boolean run(final Outline outline, final Options options, final ErrorHandler errorHandler) {
+    final JCodeModel codeModel = outline.getCodeModel();
+    for (final ClassOutline classOutline : outline.getClasses()) { // [C]
+      for (final FieldOutline fieldOutline : classOutline.getDeclaredFields()) { // [A]
+        final CPropertyInfo property = fieldOutline.getPropertyInfo();
+        final JFieldVar field = classOutline.implClass.fields().get(property.getName(false));
+        if (field == null || hasDefaultValue(property))
+          continue;
+
+        final XSSimpleType simpleType = getSimpleType(property.getSchemaComponent());
+        if (simpleType == null)
+          continue;
+
+        if (property.isCollection()) {
+          if (simpleType.isList())
+            toArray(codeModel, classOutline.implClass, property, field, simpleType.asList().getItemType());
+        }
+        else if (!simpleType.isList()) {
+          final JPrimitiveType primitive = narrow(codeModel, field.type(), simpleType);
+          if (primitive != null)
+            retype(classOutline.implClass, property, field, isRequired(property) ? primitive : primitive.boxify());
+        }
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Replaces the {@code List} of boxed values of the specified {@code xs:list} property with a primitive array.
+   */
+  private static void toArray(final JCodeModel codeModel, final JDefinedClass cls, final CPropertyInfo property, final JFieldVar field, final XSSimpleType itemType) {
+    if (!(field.type() instanceof JClass))
+      return;
+
+    final JClass listType = (JClass)field.type();
+    if (listType.getTypeParameters().size() != 1)
+      return;
+
+    final JType itemClass = listType.getTypeParameters().get(0);
+    JPrimitiveType primitive = narrow(codeModel, itemClass, itemType);
+    if (primitive == null) {
+      primitive = itemClass.unboxify() instanceof JPrimitiveType ? (JPrimitiveType)itemClass.unboxify() : null;
+      if (primitive == null)
+        return;
+    }
+
+    final String name = property.getName(true);
+    final JMethod getter = cls.getMethod("get" + name, new JType[0]);
+    if (getter == null)
+      return;
+
+    final JType arrayType = primitive.array();
+    field.type(arrayType);
+    field.init(null);
+    // @XmlElement(type = <boxed item type>.class) does not apply to a primitive array, so the annotation is recreated without it
+    if (property instanceof CElementPropertyInfo) {
+      for (final JAnnotationUse annotation : new ArrayList<>(field.annotations())) { // [L]
+        final Map<String,JAnnotationValue> members = annotation.getAnnotationMembers();
+        if (XmlElement.class.getName().equals(annotation.getAnnotationClass().fullName()) && members.containsKey("type")) {
+          final CElementPropertyInfo elementProperty = (CElementPropertyInfo)property;
+          final QName tagName = elementProperty.getTypes().get(0).getTagName();
+          field.removeAnnotation(annotation);
+          final JAnnotationUse xmlElement = field.annotate(XmlElement.class);
+          if (members.containsKey("name"))
+            xmlElement.param("name", tagName.getLocalPart());
+
+          if (members.containsKey("namespace"))
+            xmlElement.param("namespace", tagName.getNamespaceURI());
+
+          if (members.containsKey("required"))
+            xmlElement.param("required", elementProperty.isRequired());
+
+          if (members.containsKey("nillable"))
+            xmlElement.param("nillable", elementProperty.getTypes().get(0).isNillable());
+        }
+      }
+    }
+
+    cls.methods().remove(getter);
+
+    final JMethod get = cls.method(JMod.PUBLIC, arrayType, "get" + name);
+    get.javadoc().append("Gets the value of the " + field.name() + " property.");
+    get.javadoc().addReturn().append("The value of the " + field.name() + " property.");
+    get.body()._return(field);
+
+    final JMethod set = cls.method(JMod.PUBLIC, codeModel.VOID, "set" + name);
+    final JVar value = set.param(arrayType, "value");
+    set.javadoc().append("Sets the value of the " + field.name() + " property.");
+    set.javadoc().addParam(value).append("The value of the " + field.name() + " property.");
+    set.body().assign(JExpr._this().ref(field), value);
+  }
+
+  /**
+   * Changes the type of the specified scalar property, and of its getter and setter.
+   */
+  private static void retype(final JDefinedClass cls, final CPropertyInfo property, final JFieldVar field, final JType type) {
+    final String name = property.getName(true);
+    final JType oldType = field.type();
+    final JMethod getter = cls.getMethod("get" + name, new JType[0]);
+    final JMethod setter = cls.getMethod("set" + name, new JType[] {oldType});
+    if (getter == null || setter == null)
+      return;
+
+    field.type(type);
+    getter.type(type);
+    setter.listParams()[0].type(type);
+  }
+
+  /**
+   * Returns the primitive type to which the specified integer type can be narrowed, given the value range of the specified simple type,
+   * or {@code null} if the type cannot be narrowed.
+   */
+  private static JPrimitiveType narrow(final JCodeModel codeModel, final JType type, final XSSimpleType simpleType) {
+    final String name = type.fullName();
+    final boolean isBigInteger = BigInteger.class.getName().equals(name);
+    if (!isBigInteger && !Long.class.getName().equals(name) && !"long".equals(name))
+      return null;
+
+    final BigInteger[] range = getRange(simpleType);
+    if (range == null || range[0] == null || range[1] == null)
+      return null;
+
+    if (range[0].compareTo(INT_MIN) >= 0 && range[1].compareTo(INT_MAX) <= 0)
+      return codeModel.INT;
+
+    if (isBigInteger && range[0].compareTo(LONG_MIN) >= 0 && range[1].compareTo(LONG_MAX) <= 0)
+      return codeModel.LONG;
+
+    return null;
+  }
+
+  /**
+   * Returns the value range of the specified simple type, as determined by the built-in integer type from which it derives and by the
+   * facets of its restrictions, or {@code null} if the type does not derive from {@code xs:integer}.
+   */
+  static BigInteger[] getRange(final XSSimpleType simpleType) {
+    BigInteger[] range = null;
+    for (XSType type = simpleType; range == null && type.isSimpleType() && type != type.getBaseType(); type = type.getBaseType()) // [X]
+      if (XMLConstants.W3C_XML_SCHEMA_NS_URI.equals(type.getTargetNamespace()) && (range = builtins.get(type.getName())) != null)
+        range = range.clone();
+
+    if (range == null)
+      return null;
+
+    // XSSimpleType.getFacet(String) returns the effective (i.e. most derived) facet of the given name
+    range[0] = max(range[0], getBound(simpleType, XSFacet.FACET_MININCLUSIVE), getBound(simpleType, XSFacet.FACET_MINEXCLUSIVE));
+    range[1] = min(range[1], getBound(simpleType, XSFacet.FACET_MAXINCLUSIVE), getBound(simpleType, XSFacet.FACET_MAXEXCLUSIVE));
+    final XSFacet totalDigits = simpleType.getFacet(XSFacet.FACET_TOTALDIGITS);
+    if (totalDigits != null) {
+      final BigInteger bound = BigInteger.TEN.pow(Integer.parseInt(totalDigits.getValue().value.trim())).subtract(BigInteger.ONE);
+      range[0] = max(range[0], bound.negate());
+      range[1] = min(range[1], bound);
+    }
+
+    return range;
+  }
+
+  private static BigInteger getBound(final XSSimpleType simpleType, final String facetName) {
+    final XSFacet facet = simpleType.getFacet(facetName);
+    if (facet == null)
+      return null;
+
+    final BigDecimal value;
+    try {
+      value = new BigDecimal(facet.getValue().value.trim());
+    }
+    catch (final NumberFormatException e) {
+      return null;
+    }
+
+    final BigInteger floor = value.setScale(0, RoundingMode.FLOOR).toBigInteger();
+    final BigInteger ceiling = value.setScale(0, RoundingMode.CEILING).toBigInteger();
+    if (XSFacet.FACET_MININCLUSIVE.equals(facetName))
+      return ceiling;
+
+    if (XSFacet.FACET_MINEXCLUSIVE.equals(facetName))
+      return floor.add(BigInteger.ONE);
+
+    if (XSFacet.FACET_MAXINCLUSIVE.equals(facetName))
+      return floor;
+
+    return ceiling.subtract(BigInteger.ONE);
+  }
+
+  private static BigInteger max(final BigInteger ... values) {
+    BigInteger max = null;
+    for (final BigInteger value : values) // [A]
+      if (value != null && (max == null || value.compareTo(max) > 0))
+        max = value;
+
+    return max;
+  }
+
+  private static BigInteger min(final BigInteger ... values) {
+    BigInteger min = null;
+    for (final BigInteger value : values) // [A]
+      if (value != null && (min == null || value.compareTo(min) < 0))
+        min = value;
+
+    return min;
+  }
+
+  private static XSSimpleType getSimpleType(final XSComponent component) {
+    if (component instanceof XSAttributeUse)
+      return ((XSAttributeUse)component).getDecl().getType();
+
+    if (component instanceof XSParticle) {
+      final XSTerm term = ((XSParticle)component).getTerm();
+      return term.isElementDecl() ? getSimpleType(term.asElementDecl()) : null;
+    }
+
+    if (component instanceof XSElementDecl) {
+      final XSType type = ((XSElementDecl)component).getType();
+      return type.isSimpleType() ? type.asSimpleType() : null;
+    }
+
+    if (component instanceof XSComplexType)
+      return ((XSComplexType)component).getContentType().asSimpleType();
+
+    return null;
+  }
+
+  private static boolean hasDefaultValue(final CPropertyInfo property) {
+    final XSComponent component = property.getSchemaComponent();
+    if (component instanceof XSAttributeUse) {
+      final XSAttributeUse use = (XSAttributeUse)component;
+      return use.getDefaultValue() != null || use.getFixedValue() != null || use.getDecl().getDefaultValue() != null || use.getDecl().getFixedValue() != null;
+    }
+
+    final XSElementDecl element = component instanceof XSParticle && ((XSParticle)component).getTerm().isElementDecl() ? ((XSParticle)component).getTerm().asElementDecl() : component instanceof XSElementDecl ? (XSElementDecl)component : null;
+    return element != null && (element.getDefaultValue() != null || element.getFixedValue() != null);
+  }
+
+  private static boolean isRequired(final CPropertyInfo property) {
+    if (property instanceof CAttributePropertyInfo)
+      return ((CAttributePropertyInfo)property).isRequired();
+
+    if (property instanceof CElementPropertyInfo)
+      return ((CElementPropertyInfo)property).isRequired() && !((CElementPropertyInfo)property).isValueList() && !isNillable(property.getSchemaComponent());
+
+    return property instanceof CValuePropertyInfo;
+  }
+
+  private static boolean isNillable(final XSComponent component) {
+    if (component instanceof XSParticle && ((XSParticle)component).getTerm().isElementDecl())
+      return ((XSParticle)component).getTerm().asElementDecl().isNillable();
+
+    return component instanceof XSElementDecl && ((XSElementDecl)component).isNillable();
+  }
+}
@@ -0,0 +1,197 @@
+/* Copyright (c) 2017 OpenJAX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.openjax.jaxb.xjc.plugin;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+import com.sun.tools.xjc.Options;
+import com.sun.tools.xjc.Plugin;
+import com.sun.tools.xjc.model.CArrayInfo;
+import com.sun.tools.xjc.model.CClassInfo;
+import com.sun.tools.xjc.model.CClassInfoParent;
+import com.sun.tools.xjc.model.CElementInfo;
+import com.sun.tools.xjc.model.CEnumLeafInfo;
+import com.sun.tools.xjc.model.CPropertyInfo;
+import com.sun.tools.xjc.model.CTypeInfo;
+import com.sun.tools.xjc.model.Model;
+import com.sun.tools.xjc.model.nav.NClass;
+import com.sun.tools.xjc.outline.Outline;
+
+/**
+ * XJC plugin that removes the classes, enums and elements that are not reachable from a set of root elements from the model, so that
+ * they are not generated. The root elements are specified with {@code -Xprune-root={namespace}localName} (or
+ * {@code -Xprune-root=localName}, which matches the global elements of the local name in any namespace).
+ * <p>
+ * A type is reachable from a root element if it is the type of the element, or the type of a property, the base class, a subclass
+ * or the enclosing class of a reachable class. An element is reachable if it is referenced by a reachable property, or if it is a
+ * member of the substitution group of a reachable element. The number of removed classes and enums is printed as
+ * {@value #MESSAGE}{@code <count>}.
+ */
+public class PrunePlugin extends Plugin {
+  /** The prefix of the argument that specifies a root element. */
+  public static final String ROOT = "-Xprune-root=";
+
+  /** The prefix of the message that reports the number of removed classes and enums. */
+  public static final String MESSAGE = "[INFO] Pruned unreachable types: ";
+
+  private final ArrayList<QName> roots = new ArrayList<>();
+
+  @Override
+  public String getOptionName() {
+    return "Xprune";
+  }
+
+  @Override
+  public String getUsage() {
+    return "  -Xprune            :  generate only the types reachable from the root elements\n" + "  -Xprune-root={ns}name : root element to keep (repeatable)";
+  }
+
+  @Override
+  public int parseArgument(final Options opt, final String[] args, final int i) {
+    if (!args[i].startsWith(ROOT))
+      return 0;
+
+    roots.add(QName.valueOf(args[i].substring(ROOT.length())));
+    return 1;
+  }
+
+  @Override
+  public boolean run(final Outline outline, final Options options, final ErrorHandler errorHandler) {
+    return true;
+  }
+
+  private boolean isRoot(final QName name) {
+    if (name == null)
+      return false;
+
+    for (int i = 0, i$ = roots.size(); i < i$; ++i) { // [RA]
+      final QName root = roots.get(i);
+      if (root.getLocalPart().equals(name.getLocalPart()) && (root.getNamespaceURI().length() == 0 || root.getNamespaceURI().equals(name.getNamespaceURI())))
+        return true;
+    }
+
+    return false;
+  }
+
+  @Override
+  public void postProcessModel(final Model model, final ErrorHandler errorHandler) {
+    if (roots.size() == 0)
+      return;
+
+    final HashSet<CTypeInfo> reachable = new HashSet<>();
+    final ArrayDeque<CTypeInfo> queue = new ArrayDeque<>();
+    final HashMap<CElementInfo,ArrayList<CElementInfo>> substitutes = new HashMap<>();
+    for (final CElementInfo element : model.getAllElements()) { // [I]
+      if (element.getSubstitutionHead() != null)
+        substitutes.computeIfAbsent(element.getSubstitutionHead(), k -> new ArrayList<>()).add(element);
+
+      if (element.getScope() == null && isRoot(element.getElementName()))
+        add(element, reachable, queue);
+    }
+
+    for (final CClassInfo bean : model.beans().values()) // [C]
+      if (bean.isElement() && isRoot(bean.getElementName()))
+        add(bean, reachable, queue);
+
+    if (reachable.size() == 0) {
+      try {
+        errorHandler.error(new SAXParseException("None of the root elements " + roots + " is declared by the schemas", null));
+      }
+      catch (final SAXException e) {
+      }
+
+      return;
+    }
+
+    for (CTypeInfo type; (type = queue.poll()) != null;) { // [X]
+      if (type instanceof CClassInfo) {
+        final CClassInfo bean = (CClassInfo)type;
+        add(bean.getBaseClass(), reachable, queue);
+        addParent(bean.parent(), reachable, queue);
+        for (final Iterator<CClassInfo> i = bean.listSubclasses(); i.hasNext();) // [I]
+          add(i.next(), reachable, queue);
+
+        for (final CPropertyInfo property : bean.getProperties()) // [L]
+          for (final CTypeInfo ref : property.ref()) // [C]
+            add(ref, reachable, queue);
+      }
+      else if (type instanceof CElementInfo) {
+        final CElementInfo element = (CElementInfo)type;
+        add(element.getScope(), reachable, queue);
+        for (final CTypeInfo ref : element.getProperty().ref()) // [C]
+          add(ref, reachable, queue);
+
+        final ArrayList<CElementInfo> members = substitutes.get(element);
+        if (members != null)
+          for (final CElementInfo member : members) // [L]
+            add(member, reachable, queue);
+      }
+      else if (type instanceof CArrayInfo) {
+        add(((CArrayInfo)type).getItemType(), reachable, queue);
+      }
+    }
+
+    int pruned = 0;
+    for (final Iterator<CClassInfo> i = model.beans().values().iterator(); i.hasNext();) { // [I]
+      if (!reachable.contains(i.next())) {
+        i.remove();
+        ++pruned;
+      }
+    }
+
+    for (final Iterator<CEnumLeafInfo> i = model.enums().values().iterator(); i.hasNext();) { // [I]
+      if (!reachable.contains(i.next())) {
+        i.remove();
+        ++pruned;
+      }
+    }
+
+    final ArrayList<CElementInfo> elements = new ArrayList<>();
+    for (final CElementInfo element : model.getAllElements()) // [I]
+      if (!reachable.contains(element))
+        elements.add(element);
+
+    for (final CElementInfo element : elements) { // [L]
+      final Map<QName,CElementInfo> mappings = model.getElementMappings((NClass)element.getScope());
+      if (mappings != null)
+        mappings.remove(element.getElementName());
+    }
+
+    System.out.println(MESSAGE + pruned);
+  }
+
+  private static void addParent(final CClassInfoParent parent, final HashSet<CTypeInfo> reachable, final ArrayDeque<CTypeInfo> queue) {
+    if (parent instanceof CTypeInfo)
+      add((CTypeInfo)parent, reachable, queue);
+  }
+
+  private static void add(final CTypeInfo type, final HashSet<CTypeInfo> reachable, final ArrayDeque<CTypeInfo> queue) {
+    if (type != null && reachable.add(type))
+      queue.add(type);
+  }
+}
@@ -0,0 +1,232 @@
+/* Copyright (c) 2017 OpenJAX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.openjax.jaxb.xjc.plugin;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+import com.sun.codemodel.JBlock;
+import com.sun.codemodel.JClass;
+import com.sun.codemodel.JCodeModel;
+import com.sun.codemodel.JDefinedClass;
+import com.sun.codemodel.JExpr;
+import com.sun.codemodel.JFieldRef;
+import com.sun.codemodel.JFieldVar;
+import com.sun.codemodel.JMethod;
+import com.sun.codemodel.JMod;
+import com.sun.codemodel.JType;
+import com.sun.codemodel.JVar;
+import com.sun.tools.xjc.Options;
+import com.sun.tools.xjc.Plugin;
+import com.sun.tools.xjc.model.CClassInfo;
+import com.sun.tools.xjc.model.CPropertyInfo;
+import com.sun.tools.xjc.outline.ClassOutline;
+import com.sun.tools.xjc.outline.Outline;
+
+/**
+ * XJC plugin that generates classes whose instances can be reused across unmarshals:
+ * <ul>
+ * <li>A {@code reset()} method restores an instance to the state of a new instance. Lists are cleared rather than discarded, so they
+ * retain their capacity, and the maps of {@code xs:anyAttribute} are cleared.</li>
+ * <li>The nested instances of a property whose class is generated (and has no subclasses) are set aside by {@code reset()}, in a
+ * transient field that is not bound by the JAXB runtime, and are handed out again by a private {@code reuseXxx()} method, which the
+ * StAX reader of the {@code -Xstax} plugin uses instead of creating a new instance.</li>
+ * </ul>
+ * Together with {@link org.openjax.jaxb.xjc.JaxbUtil#parseInto(Object,java.net.URL)}, the steady-state unmarshalling of documents of
+ * the same shape into the same instance allocates little more than the values of its text. This plugin must precede {@code -Xstax},
+ * and is not compatible with {@code -Ximmutable}, as instances that are shared must not be reset.
+ * <p>
+ * Classes with fields that are not properties (other than the map of {@code xs:anyAttribute}), or that extend a class that is not
+ * supported, are left untouched.
+ */
+public class ReusePlugin extends Plugin {
+  private static final String RESET = "reset";
+  private static final String REUSE = "reuse";
+
+  @Override
+  public String getOptionName() {
+    return "Xreuse";
+  }
+
+  @Override
+  public String getUsage() {
+    return "  -Xreuse            :  generate reset() methods and reuse nested instances across unmarshals";
+  }
+
+  /**
+   * Returns the {@code reuseXxx()} method generated for the specified property of the specified class, or {@code null} if the nested
+   * instances of the property are not reused.
+   *
+   * @param cls The generated class.
+   * @param property The property.
+   * @return The {@code reuseXxx()} method generated for the specified property of the specified class, or {@code null}.
+   */
+  static JMethod getReuse(final JDefinedClass cls, final CPropertyInfo property) {
+    return cls.getMethod(REUSE + property.getName(true), new JType[0]);
+  }
+
+  @Override
+  public boolean run(final Outline outline, final Options options, final ErrorHandler errorHandler) throws SAXException {
+    for (final Plugin plugin : options.activePlugins) { // [L]
+      if (plugin instanceof ImmutablePlugin) {
+        errorHandler.warning(new SAXParseException("-Xreuse is ignored, as the instances of -Ximmutable must not be reset", null));
+        return true;
+      }
+    }
+
+    final HashMap<ClassOutline,Boolean> supported = new HashMap<>();
+    for (final ClassOutline classOutline : outline.getClasses()) // [C]
+      supported.put(classOutline, isSupported(outline, classOutline));
+
+    // A subclass is supported only if its superclass is, as its reset() must reset the fields of its superclass
+    for (boolean changed = true; changed;) { // [X]
+      changed = false;
+      for (final ClassOutline classOutline : outline.getClasses()) { // [C]
+        final CClassInfo base = classOutline.target.getBaseClass();
+        if (base != null && supported.get(classOutline) && !supported.get(outline.getClazz(base))) {
+          supported.put(classOutline, false);
+          changed = true;
+        }
+      }
+    }
+
+    for (final ClassOutline classOutline : outline.getClasses()) // [C]
+      if (supported.get(classOutline))
+        generate(outline, classOutline, supported);
+
+    return true;
+  }
+
+  private static boolean isSupported(final Outline outline, final ClassOutline classOutline) {
+    final JDefinedClass cls = classOutline.implClass;
+    final CClassInfo base = classOutline.target.getBaseClass();
+    if (base == null ? !Object.class.getName().equals(cls._extends().fullName()) : outline.getClazz(base) == null)
+      return false;
+
+    if (cls.getMethod(RESET, new JType[0]) != null)
+      return false;
+
+    final HashSet<String> names = new HashSet<>();
+    for (final CPropertyInfo property : classOutline.target.getProperties()) { // [L]
+      if (cls.fields().get(property.getName(false)) == null || cls.getMethod(REUSE + property.getName(true), new JType[0]) != null || cls.fields().containsKey(getSpareName(property)))
+        return false;
+
+      names.add(property.getName(false));
+    }
+
+    // Fields that are not properties can be reset only if they are maps (such as the map of xs:anyAttribute)
+    for (final JFieldVar field : cls.fields().values()) // [C]
+      if ((field.mods().getValue() & JMod.STATIC) == 0 && !names.contains(field.name()) && !isType(field.type(), Map.class))
+        return false;
+
+    return true;
+  }
+
+  private static boolean isType(final JType type, final Class<?> cls) {
+    return type instanceof JClass && cls.getName().equals(((JClass)type).erasure().fullName());
+  }
+
+  private static String getSpareName(final CPropertyInfo property) {
+    return property.getName(false) + "Spare";
+  }
+
+  /**
+   * Returns the outline of the specified type, if it is a supported class without subclasses whose instances can be reused, or
+   * {@code null} otherwise.
+   */
+  private static ClassOutline getReusable(final Outline outline, final JType type, final HashMap<ClassOutline,Boolean> supported) {
+    for (final Map.Entry<ClassOutline,Boolean> entry : supported.entrySet()) { // [S]
+      final ClassOutline classOutline = entry.getKey();
+      if (classOutline.implClass == type)
+        return entry.getValue() && !classOutline.target.isAbstract() && !classOutline.target.hasSubClasses() ? classOutline : null;
+    }
+
+    return null;
+  }
+
+  private static void generate(final Outline outline, final ClassOutline classOutline, final HashMap<ClassOutline,Boolean> supported) {
+    final JCodeModel codeModel = outline.getCodeModel();
+    final JDefinedClass cls = classOutline.implClass;
+
+    final JMethod reset = cls.method(JMod.PUBLIC, codeModel.VOID, RESET);
+    reset.javadoc().append("Resets this instance to the state of a new instance, so that it can be reused to unmarshal another document. Lists are cleared (retaining their capacity), and nested instances are set aside to be reused.");
+    final JBlock body = reset.body();
+    if (classOutline.target.getBaseClass() != null) {
+      reset.annotate(Override.class);
+      body.invoke(JExpr._super(), RESET);
+    }
+
+    final HashSet<String> names = new HashSet<>();
+    for (final CPropertyInfo property : classOutline.target.getProperties()) { // [L]
+      final JFieldVar field = cls.fields().get(property.getName(false));
+      names.add(field.name());
+      final JType type = field.type();
+      // Fields are referenced via "this", as their names may coincide with those of the variables
+      final JFieldRef ref = JExpr._this().ref(field);
+      if (type.isPrimitive()) {
+        body.assign(ref, type == codeModel.BOOLEAN ? JExpr.FALSE : JExpr.lit(0));
+      }
+      else if (isType(type, List.class) && ((JClass)type).getTypeParameters().size() == 1) {
+        final JClass itemType = ((JClass)type).getTypeParameters().get(0);
+        final JBlock block = body._if(ref.ne(JExpr._null()))._then();
+        if (getReusable(outline, itemType, supported) != null) {
+          final JClass sparesType = codeModel.ref(ArrayList.class).narrow(itemType);
+          final JFieldVar spares = cls.field(JMod.PRIVATE | JMod.TRANSIENT, sparesType, getSpareName(property));
+          final JFieldRef sparesRef = JExpr._this().ref(spares);
+          block._if(sparesRef.eq(JExpr._null()))._then().assign(sparesRef, JExpr._new(sparesType).arg(ref.invoke("size")));
+          block.add(sparesRef.invoke("addAll").arg(ref));
+
+          final JMethod reuse = cls.method(JMod.PRIVATE, itemType, REUSE + property.getName(true));
+          reuse.body()._if(sparesRef.eq(JExpr._null()).cor(sparesRef.invoke("isEmpty")))._then()._return(JExpr._new(itemType));
+          final JVar value = reuse.body().decl(JMod.FINAL, itemType, "value", sparesRef.invoke("remove").arg(sparesRef.invoke("size").minus(JExpr.lit(1))));
+          reuse.body().invoke(value, RESET);
+          reuse.body()._return(value);
+        }
+
+        block.invoke(ref, "clear");
+      }
+      else if (getReusable(outline, type, supported) != null) {
+        final JFieldVar spare = cls.field(JMod.PRIVATE | JMod.TRANSIENT, type, getSpareName(property));
+        final JFieldRef spareRef = JExpr._this().ref(spare);
+        final JBlock block = body._if(ref.ne(JExpr._null()))._then();
+        block.assign(spareRef, ref);
+        block.assign(ref, JExpr._null());
+
+        final JMethod reuse = cls.method(JMod.PRIVATE, type, REUSE + property.getName(true));
+        final JVar value = reuse.body().decl(JMod.FINAL, type, "value", spareRef);
+        reuse.body()._if(value.eq(JExpr._null()))._then()._return(JExpr._new(type));
+        reuse.body().assign(spareRef, JExpr._null());
+        reuse.body().invoke(value, RESET);
+        reuse.body()._return(value);
+      }
+      else {
+        body.assign(ref, JExpr._null());
+      }
+    }
+
+    for (final JFieldVar field : new ArrayList<>(cls.fields().values())) // [L]
+      if ((field.mods().getValue() & JMod.STATIC) == 0 && !names.contains(field.name()) && isType(field.type(), Map.class))
+        body._if(JExpr._this().ref(field).ne(JExpr._null()))._then().invoke(JExpr._this().ref(field), "clear");
+  }
+}
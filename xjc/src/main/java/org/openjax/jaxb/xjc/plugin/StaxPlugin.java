@@ -0,0 +1,578 @@
+/* Copyright (c) 2017 OpenJAX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.openjax.jaxb.xjc.plugin;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.bind.DatatypeConverter;
+import javax.xml.bind.annotation.XmlAnyAttribute;
+import javax.xml.bind.annotation.XmlAnyElement;
+import javax.xml.bind.annotation.XmlElementRef;
+import javax.xml.bind.annotation.XmlElementRefs;
+import javax.xml.bind.annotation.XmlIDREF;
+import javax.xml.bind.annotation.XmlList;
+import javax.xml.bind.annotation.XmlMixed;
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.openjax.jaxb.xjc.BinaryContent;
+import org.openjax.jaxb.xjc.FragmentWriter;
+import org.xml.sax.ErrorHandler;
+
+import com.sun.codemodel.JAnnotationUse;
+import com.sun.codemodel.JBlock;
+import com.sun.codemodel.JClass;
+import com.sun.codemodel.JClassAlreadyExistsException;
+import com.sun.codemodel.JCodeModel;
+import com.sun.codemodel.JConditional;
+import com.sun.codemodel.JDefinedClass;
+import com.sun.codemodel.JExpr;
+import com.sun.codemodel.JExpression;
+import com.sun.codemodel.JFieldVar;
+import com.sun.codemodel.JForEach;
+import com.sun.codemodel.JForLoop;
+import com.sun.codemodel.JInvocation;
+import com.sun.codemodel.JMethod;
+import com.sun.codemodel.JMod;
+import com.sun.codemodel.JOp;
+import com.sun.codemodel.JType;
+import com.sun.codemodel.JVar;
+import com.sun.tools.xjc.Options;
+import com.sun.tools.xjc.Plugin;
+import com.sun.tools.xjc.model.CAttributePropertyInfo;
+import com.sun.tools.xjc.model.CClassInfo;
+import com.sun.tools.xjc.model.CElementPropertyInfo;
+import com.sun.tools.xjc.model.CNonElement;
+import com.sun.tools.xjc.model.CPropertyInfo;
+import com.sun.tools.xjc.model.CTypeRef;
+import com.sun.tools.xjc.model.CValuePropertyInfo;
+import com.sun.tools.xjc.outline.ClassOutline;
+import com.sun.tools.xjc.outline.EnumOutline;
+import com.sun.tools.xjc.outline.Outline;
+
+/**
+ * XJC plugin that generates a static StAX reader and writer for each generated class, as a nested class named {@code Stax} with the
+ * methods:
+ * <ul>
+ * <li>{@code read(XMLStreamReader)}, which reads an instance from the reader positioned at the start of its element, and leaves the
+ * reader at the end of the element.</li>
+ * <li>{@code read(XMLStreamReader,T)}, which reads into a new (or reset) instance, and reuses the nested instances that were set aside
+ * by {@code reset()} if the class was generated by the {@code -Xreuse} plugin.</li>
+ * <li>{@code write(XMLStreamWriter,T,String,String)}, which writes an instance as an element of the given namespace and local name
+ * (and {@code write(XMLStreamWriter,T)}, if the class is bound to a root element).</li>
+ * </ul>
+ * With {@value #FRAGMENTS}, the writers offer each nested instance to a {@link FragmentWriter}, which splices the cached XML of the
+ * instance instead (see {@link org.openjax.jaxb.xjc.FragmentCache}), so that the generated code then depends on this module.
+ * The generated code reads and writes fields directly, and converts values with {@link DatatypeConverter}, so it depends on neither
+ * reflection nor the JAXB runtime. {@link org.openjax.jaxb.xjc.JaxbUtil#parseStax(Class,java.net.URL)} reads documents
+ * with the reader. The properties generated
+ * as {@link BinaryContent} by the {@code -XbinaryContent} plugin are decoded and encoded as a stream, and the properties generated as
+ * {@code java.time} types by the {@code -XjavaTime} plugin are parsed and printed by {@link org.openjax.jaxb.xjc.JavaTime}.
+ * <p>
+ * Only classes whose content the generated code can bind exactly as the JAXB runtime does are supported: classes without a base class
+ * or subclasses, with unqualified attributes, simple content, and elements of simple types, enums and supported classes. Classes with
+ * wildcards, mixed content, element references, lists, adapters, nillable elements or element default values are skipped, and are
+ * bound by the JAXB runtime.
+ */
+public class StaxPlugin extends Plugin {
+  /** The argument that makes the writers splice the fragments of a {@link org.openjax.jaxb.xjc.FragmentCache}. */
+  public static final String FRAGMENTS = "-Xstax-fragments";
+
+  private static final String NAME = "Stax";
+
+  // The suffixes of the DatatypeConverter.parseXxx and DatatypeConverter.printXxx methods, by Java type
+  private static final HashMap<String,String> converters = new HashMap<>();
+
+  // Fields with these annotations are not bound as plain values
+  private static final HashSet<String> unsupportedAnnotations = new HashSet<>();
+
+  static {
+    converters.put("boolean", "Boolean");
+    converters.put(Boolean.class.getName(), "Boolean");
+    converters.put("byte", "Byte");
+    converters.put(Byte.class.getName(), "Byte");
+    converters.put("short", "Short");
+    converters.put(Short.class.getName(), "Short");
+    converters.put("int", "Int");
+    converters.put(Integer.class.getName(), "Int");
+    converters.put("long", "Long");
+    converters.put(Long.class.getName(), "Long");
+    converters.put("float", "Float");
+    converters.put(Float.class.getName(), "Float");
+    converters.put("double", "Double");
+    converters.put(Double.class.getName(), "Double");
+    converters.put(BigInteger.class.getName(), "Integer");
+    converters.put(BigDecimal.class.getName(), "Decimal");
+    converters.put("byte[]", "Base64Binary");
+
+    for (final Class<?> annotation : new Class<?>[] {XmlAnyAttribute.class, XmlAnyElement.class, XmlElementRef.class, XmlElementRefs.class, XmlIDREF.class, XmlJavaTypeAdapter.class, XmlList.class, XmlMixed.class}) // [A]
+      unsupportedAnnotations.add(annotation.getName());
+  }
+
+  private static final int ATTRIBUTE = 0;
+  private static final int ELEMENT = 1;
+  private static final int VALUE = 2;
+
+  private static final class Property {
+    private final int kind;
+    private final QName name;
+    private final JFieldVar field;
+    private final JMethod getter;
+    private final JType type;
+    private final ClassOutline nested;
+    private final JMethod reuse;
+
+    private Property(final int kind, final QName name, final JFieldVar field, final JMethod getter, final JType type, final ClassOutline nested, final JMethod reuse) {
+      this.kind = kind;
+      this.name = name;
+      this.field = field;
+      this.getter = getter;
+      this.type = type;
+      this.nested = nested;
+      this.reuse = reuse;
+    }
+  }
+
+  private boolean fragments;
+
+  @Override
+  public String getOptionName() {
+    return "Xstax";
+  }
+
+  @Override
+  public String getUsage() {
+    return "  -Xstax             :  generate static StAX readers and writers for the generated classes\n" + "  -Xstax-fragments   :  splice the cached fragments of a FragmentWriter in the StAX writers";
+  }
+
+  @Override
+  public int parseArgument(final Options opt, final String[] args, final int i) {
+    if (!FRAGMENTS.equals(args[i]))
+      return 0;
+
+    fragments = true;
+    return 1;
+  }
+
+  @Override
+  public boolean run(final Outline outline, final Options options, final ErrorHandler errorHandler) {
+    final HashMap<JType,JType> enums = new HashMap<>();
+    for (final EnumOutline enumOutline : outline.getEnums()) { // [C]
+      final JType valueType = getEnumValueType(enumOutline.clazz);
+      if (valueType != null)
+        enums.put(enumOutline.clazz, valueType);
+    }
+
+    final LinkedHashMap<ClassOutline,ArrayList<Property>> supported = new LinkedHashMap<>();
+    for (final ClassOutline classOutline : outline.getClasses()) { // [C]
+      final ArrayList<Property> properties = getProperties(outline, classOutline, enums);
+      if (properties != null)
+        supported.put(classOutline, properties);
+    }
+
+    // A class is supported only if the classes of its element properties are supported
+    for (boolean changed = true; changed;) { // [X]
+      changed = false;
+      for (final Iterator<Map.Entry<ClassOutline,ArrayList<Property>>> i = supported.entrySet().iterator(); i.hasNext();) { // [I]
+        for (final Property property : i.next().getValue()) { // [L]
+          if (property.nested != null && !supported.containsKey(property.nested)) {
+            i.remove();
+            changed = true;
+            break;
+          }
+        }
+      }
+    }
+
+    final JCodeModel codeModel = outline.getCodeModel();
+    for (final Map.Entry<ClassOutline,ArrayList<Property>> entry : supported.entrySet()) // [S]
+      generate(codeModel, entry.getKey(), entry.getValue(), enums, fragments);
+
+    return true;
+  }
+
+  /**
+   * Returns the bindable properties of the specified class, or {@code null} if the class or any of its properties is not supported.
+   */
+  private static ArrayList<Property> getProperties(final Outline outline, final ClassOutline classOutline, final HashMap<JType,JType> enums) {
+    final CClassInfo target = classOutline.target;
+    final JDefinedClass cls = classOutline.implClass;
+    if (target.isAbstract() || target.getBaseClass() != null || target.hasSubClasses() || !Object.class.getName().equals(cls._extends().fullName()) || NAME.equals(cls.name()))
+      return null;
+
+    for (final Iterator<JDefinedClass> i = cls.classes(); i.hasNext();) // [I]
+      if (NAME.equals(i.next().name()))
+        return null;
+
+    final List<CPropertyInfo> infos = target.getProperties();
+    final ArrayList<Property> properties = new ArrayList<>(infos.size());
+    for (final CPropertyInfo info : infos) { // [L]
+      final JFieldVar field = cls.fields().get(info.getName(false));
+      if (field == null)
+        return null;
+
+      // The XmlJavaTypeAdapters of BinaryContent (of the -XbinaryContent plugin) and of the java.time types (of the -XjavaTime plugin)
+      // apply to the JAXB runtime only
+      final boolean adapted = BinaryContentPlugin.isBinaryContent(field.type()) || JavaTimePlugin.isJavaTime(field.type());
+      for (final JAnnotationUse annotation : field.annotations()) // [C]
+        if (unsupportedAnnotations.contains(annotation.getAnnotationClass().fullName()) && !(adapted && XmlJavaTypeAdapter.class.getName().equals(annotation.getAnnotationClass().fullName())))
+          return null;
+
+      final Property property;
+      if (info instanceof CAttributePropertyInfo) {
+        final QName name = ((CAttributePropertyInfo)info).getXmlName();
+        if (info.isCollection() || name.getNamespaceURI().length() > 0 || !isSimple(field.type(), enums) || BinaryContentPlugin.isBinaryContent(field.type()))
+          return null;
+
+        property = new Property(ATTRIBUTE, name, field, null, field.type(), null, null);
+      }
+      else if (info instanceof CValuePropertyInfo) {
+        if (info.isCollection() || !isSimple(field.type(), enums))
+          return null;
+
+        property = new Property(VALUE, null, field, null, field.type(), null, null);
+      }
+      else if (info instanceof CElementPropertyInfo) {
+        final CElementPropertyInfo elementInfo = (CElementPropertyInfo)info;
+        if (elementInfo.getTypes().size() != 1 || elementInfo.isValueList())
+          return null;
+
+        final CTypeRef typeRef = elementInfo.getTypes().get(0);
+        if (typeRef.isNillable() || typeRef.getDefaultValue() != null)
+          return null;
+
+        final JType type;
+        final JMethod getter;
+        if (info.isCollection()) {
+          if (!(field.type() instanceof JClass) || ((JClass)field.type()).getTypeParameters().size() != 1 || (getter = cls.getMethod("get" + info.getName(true), new JType[0])) == null)
+            return null;
+
+          type = ((JClass)field.type()).getTypeParameters().get(0);
+        }
+        else {
+          type = field.type();
+          getter = null;
+        }
+
+        final CNonElement typeInfo = typeRef.getTarget();
+        final ClassOutline nested = typeInfo instanceof CClassInfo ? outline.getClazz((CClassInfo)typeInfo) : null;
+        if (nested != null ? nested.implClass != type : !isSimple(type, enums))
+          return null;
+
+        property = new Property(ELEMENT, typeRef.getTagName(), field, getter, type, nested, nested != null ? ReusePlugin.getReuse(cls, info) : null);
+      }
+      else {
+        return null;
+      }
+
+      properties.add(property);
+    }
+
+    return properties;
+  }
+
+  private static boolean isSimple(final JType type, final HashMap<JType,JType> enums) {
+    return String.class.getName().equals(type.fullName()) || converters.containsKey(type.fullName()) || enums.containsKey(type) || BinaryContentPlugin.isBinaryContent(type) || JavaTimePlugin.isJavaTime(type);
+  }
+
+  /**
+   * Returns the expression that reads the text of the element at which the specified reader is positioned as the specified type.
+   */
+  private static JExpression readText(final JCodeModel codeModel, final JType type, final JVar reader, final HashMap<JType,JType> enums) {
+    // BinaryContent is decoded as it is read, rather than from the text of the element as a whole
+    return BinaryContentPlugin.isBinaryContent(type) ? codeModel.ref(BinaryContent.class).staticInvoke("read").arg(reader) : parse(codeModel, type, reader.invoke("getElementText"), enums);
+  }
+
+  /**
+   * Returns the invocation that writes the specified value of the specified type as text.
+   */
+  private static JInvocation writeText(final JCodeModel codeModel, final JType type, final JVar writer, final JExpression value, final HashMap<JType,JType> enums) {
+    return BinaryContentPlugin.isBinaryContent(type) ? value.invoke("write").arg(writer) : writer.invoke("writeCharacters").arg(print(codeModel, type, value, enums));
+  }
+
+  /**
+   * Returns the type of the value of the specified enum, as declared by its {@code fromValue} method, or {@code null} if the enum does
+   * not have a {@code fromValue} method and a {@code value} method of a supported type.
+   */
+  private static JType getEnumValueType(final JDefinedClass cls) {
+    for (final JMethod method : cls.methods()) { // [C]
+      if ("fromValue".equals(method.name()) && method.params().size() == 1) {
+        final JType type = method.params().get(0).type();
+        if (cls.getMethod("value", new JType[0]) != null && (String.class.getName().equals(type.fullName()) || converters.containsKey(type.fullName())))
+          return type;
+      }
+    }
+
+    return null;
+  }
+
+  private static JExpression parse(final JCodeModel codeModel, final JType type, final JExpression text, final HashMap<JType,JType> enums) {
+    final JType valueType = enums.get(type);
+    if (valueType != null)
+      return ((JClass)type).staticInvoke("fromValue").arg(parse(codeModel, valueType, text, enums));
+
+    if (JavaTimePlugin.isJavaTime(type))
+      return JavaTimePlugin.parse(codeModel, type, text);
+
+    final String converter = converters.get(type.fullName());
+    return converter == null ? text : codeModel.ref(DatatypeConverter.class).staticInvoke("parse" + converter).arg(text);
+  }
+
+  private static JExpression print(final JCodeModel codeModel, final JType type, final JExpression value, final HashMap<JType,JType> enums) {
+    final JType valueType = enums.get(type);
+    if (valueType != null)
+      return print(codeModel, valueType, value.invoke("value"), enums);
+
+    if (JavaTimePlugin.isJavaTime(type))
+      return JavaTimePlugin.print(codeModel, value);
+
+    final String converter = converters.get(type.fullName());
+    return converter == null ? value : codeModel.ref(DatatypeConverter.class).staticInvoke("print" + converter).arg(value);
+  }
+
+  private static JExpression equalsNamespace(final JVar namespace, final String uri) {
+    return uri.length() == 0 ? namespace.eq(JExpr._null()).cor(namespace.invoke("length").eq(JExpr.lit(0))) : JExpr.lit(uri).invoke("equals").arg(namespace);
+  }
+
+  private static void generate(final JCodeModel codeModel, final ClassOutline classOutline, final ArrayList<Property> properties, final HashMap<JType,JType> enums, final boolean fragments) {
+    final JDefinedClass cls = classOutline.implClass;
+    final JDefinedClass stax;
+    try {
+      stax = cls._class(JMod.PUBLIC | JMod.STATIC | JMod.FINAL, NAME);
+    }
+    catch (final JClassAlreadyExistsException e) {
+      return;
+    }
+
+    stax.javadoc().append("Static StAX reader and writer of {@link " + cls.name() + "}.");
+    stax.constructor(JMod.PRIVATE);
+
+    final JClass stringType = codeModel.ref(String.class);
+    final JClass constants = codeModel.ref(XMLStreamConstants.class);
+
+    // private static void skip(XMLStreamReader): skips the current element
+    final JMethod skip = stax.method(JMod.PRIVATE | JMod.STATIC, codeModel.VOID, "skip");
+    skip._throws(XMLStreamException.class);
+    final JVar skipReader = skip.param(JMod.FINAL, XMLStreamReader.class, "reader");
+    final JForLoop skipLoop = skip.body()._for();
+    final JVar depth = skipLoop.init(codeModel.INT, "depth", JExpr.lit(1));
+    skipLoop.test(depth.gt(JExpr.lit(0)));
+    final JVar event = skipLoop.body().decl(JMod.FINAL, codeModel.INT, "event", skipReader.invoke("next"));
+    final JConditional isStart = skipLoop.body()._if(event.eq(constants.staticRef("START_ELEMENT")));
+    isStart._then().directStatement("++" + depth.name() + ";");
+    isStart._elseif(event.eq(constants.staticRef("END_ELEMENT")))._then().directStatement("--" + depth.name() + ";");
+
+    // private static void start(XMLStreamWriter,String,String): writes a start element, and declares its namespace as the default
+    final JMethod start = stax.method(JMod.PRIVATE | JMod.STATIC, codeModel.VOID, "start");
+    start._throws(XMLStreamException.class);
+    final JVar startWriter = start.param(JMod.FINAL, XMLStreamWriter.class, "writer");
+    final JVar startNamespace = start.param(JMod.FINAL, String.class, "namespace");
+    final JVar startLocalName = start.param(JMod.FINAL, String.class, "localName");
+    final JVar defaultNamespace = start.body().decl(JMod.FINAL, stringType, "defaultNamespace", startWriter.invoke("getNamespaceContext").invoke("getNamespaceURI").arg(""));
+    start.body().add(startWriter.invoke("writeStartElement").arg("").arg(startLocalName).arg(startNamespace));
+    start.body()._if(startNamespace.invoke("equals").arg(JOp.cond(defaultNamespace.eq(JExpr._null()), JExpr.lit(""), defaultNamespace)).not())._then().add(startWriter.invoke("writeDefaultNamespace").arg(startNamespace));
+
+    // public static T read(XMLStreamReader,T): reads into a new (or, with -Xreuse, a reset) instance
+    final JMethod read = stax.method(JMod.PUBLIC | JMod.STATIC, cls, "read");
+    read._throws(XMLStreamException.class);
+    final JVar reader = read.param(JMod.FINAL, XMLStreamReader.class, "reader");
+    final JVar value = read.param(JMod.FINAL, cls, "value");
+    read.javadoc().append("Reads an instance of {@link " + cls.name() + "} from the specified reader into the specified new (or reset) instance. The reader must be positioned at the start of the element of the instance, and is left at the end of the element.");
+    read.javadoc().addParam(reader).append("The {@link XMLStreamReader}.");
+    read.javadoc().addParam(value).append("The new (or reset) instance to read into.");
+    read.javadoc().addReturn().append("The specified instance.");
+    read.javadoc().addThrows(XMLStreamException.class).append("If an error has occurred while reading.");
+
+    // public static T read(XMLStreamReader)
+    final JMethod readNew = stax.method(JMod.PUBLIC | JMod.STATIC, cls, "read");
+    readNew._throws(XMLStreamException.class);
+    final JVar readerNew = readNew.param(JMod.FINAL, XMLStreamReader.class, "reader");
+    readNew.javadoc().append("Reads an instance of {@link " + cls.name() + "} from the specified reader, which must be positioned at the start of the element of the instance, and is left at the end of the element.");
+    readNew.javadoc().addParam(readerNew).append("The {@link XMLStreamReader}.");
+    readNew.javadoc().addReturn().append("The instance that was read.");
+    readNew.javadoc().addThrows(XMLStreamException.class).append("If an error has occurred while reading.");
+    readNew.body()._return(JExpr.invoke(read).arg(readerNew).arg(JExpr._new(cls)));
+
+    // Attributes are read first, as the reader is positioned at the start element
+    JConditional attributes = null;
+    JVar attributeIndex = null;
+    JVar attributeName = null;
+    for (final Property property : properties) { // [L]
+      if (property.kind != ATTRIBUTE)
+        continue;
+
+      if (attributeName == null) {
+        final JVar count = read.body().decl(JMod.FINAL, codeModel.INT, "count", reader.invoke("getAttributeCount"));
+        final JForLoop loop = read.body()._for();
+        attributeIndex = loop.init(codeModel.INT, "i", JExpr.lit(0));
+        loop.test(attributeIndex.lt(count));
+        loop.update(JOp.incr(attributeIndex));
+        final JVar namespace = loop.body().decl(JMod.FINAL, stringType, "namespace", reader.invoke("getAttributeNamespace").arg(attributeIndex));
+        loop.body()._if(equalsNamespace(namespace, "").not())._then()._continue();
+        attributeName = loop.body().decl(JMod.FINAL, stringType, "localName", reader.invoke("getAttributeLocalName").arg(attributeIndex));
+        attributes = loop.body()._if(JExpr.lit(property.name.getLocalPart()).invoke("equals").arg(attributeName));
+      }
+      else {
+        attributes = attributes._elseif(JExpr.lit(property.name.getLocalPart()).invoke("equals").arg(attributeName));
+      }
+
+      attributes._then().assign(value.ref(property.field), parse(codeModel, property.type, reader.invoke("getAttributeValue").arg(attributeIndex), enums));
+    }
+
+    Property valueProperty = null;
+    JConditional elements = null;
+    JBlock elementBlock = null;
+    JVar elementName = null;
+    JVar elementNamespace = null;
+    for (final Property property : properties) { // [L]
+      if (property.kind == VALUE) {
+        valueProperty = property;
+      }
+      else if (property.kind == ELEMENT) {
+        if (elementName == null) {
+          elementBlock = read.body()._while(reader.invoke("nextTag").eq(constants.staticRef("START_ELEMENT"))).body();
+          elementName = elementBlock.decl(JMod.FINAL, stringType, "localName", reader.invoke("getLocalName"));
+          elementNamespace = elementBlock.decl(JMod.FINAL, stringType, "namespace", reader.invoke("getNamespaceURI"));
+        }
+
+        final JExpression test = JExpr.lit(property.name.getLocalPart()).invoke("equals").arg(elementName).cand(equalsNamespace(elementNamespace, property.name.getNamespaceURI()));
+        elements = elements == null ? elementBlock._if(test) : elements._elseif(test);
+        final JExpression item;
+        if (property.nested == null)
+          item = readText(codeModel, property.type, reader, enums);
+        else if (property.reuse != null)
+          item = property.nested.implClass.staticRef(NAME).invoke("read").arg(reader).arg(value.invoke(property.reuse));
+        else
+          item = property.nested.implClass.staticRef(NAME).invoke("read").arg(reader);
+
+        if (property.getter != null) {
+          // The list is populated via its field, as its getter may not return a modifiable list (e.g. with -Ximmutable)
+          elements._then()._if(value.ref(property.field).eq(JExpr._null()))._then().assign(value.ref(property.field), JExpr._new(codeModel.ref(ArrayList.class).narrow(property.type)));
+          elements._then().add(value.ref(property.field).invoke("add").arg(item));
+        }
+        else
+          elements._then().assign(value.ref(property.field), item);
+      }
+    }
+
+    if (valueProperty != null) {
+      read.body().assign(value.ref(valueProperty.field), readText(codeModel, valueProperty.type, reader, enums));
+    }
+    else if (elements != null) {
+      elements._else().invoke(skip).arg(reader);
+    }
+    else {
+      read.body()._while(reader.invoke("nextTag").eq(constants.staticRef("START_ELEMENT"))).body().invoke(skip).arg(reader);
+    }
+
+    read.body()._return(value);
+
+    // public static void write(XMLStreamWriter,T,String,String)
+    final JMethod write = stax.method(JMod.PUBLIC | JMod.STATIC, codeModel.VOID, "write");
+    write._throws(XMLStreamException.class);
+    final JVar writer = write.param(JMod.FINAL, XMLStreamWriter.class, "writer");
+    final JVar instance = write.param(JMod.FINAL, cls, "value");
+    final JVar namespace = write.param(JMod.FINAL, String.class, "namespace");
+    final JVar localName = write.param(JMod.FINAL, String.class, "localName");
+    write.javadoc().append("Writes the specified instance of {@link " + cls.name() + "} to the specified writer, as an element of the specified namespace and local name.");
+    write.javadoc().addParam(writer).append("The {@link XMLStreamWriter}.");
+    write.javadoc().addParam(instance).append("The instance to write.");
+    write.javadoc().addParam(namespace).append("The namespace URI of the element.");
+    write.javadoc().addParam(localName).append("The local name of the element.");
+    write.javadoc().addThrows(XMLStreamException.class).append("If an error has occurred while writing.");
+    write.body().invoke(start).arg(writer).arg(namespace).arg(localName);
+    for (final Property property : properties) { // [L]
+      if (property.kind != ATTRIBUTE)
+        continue;
+
+      final JExpression field = instance.ref(property.field);
+      ifNotNull(write.body(), property.type, field).add(writer.invoke("writeAttribute").arg(property.name.getLocalPart()).arg(print(codeModel, property.type, field, enums)));
+    }
+
+    for (final Property property : properties) { // [L]
+      if (property.kind == ATTRIBUTE)
+        continue;
+
+      final JExpression field = instance.ref(property.field);
+      if (property.kind == VALUE) {
+        ifNotNull(write.body(), property.type, field).add(writeText(codeModel, property.type, writer, field, enums));
+        continue;
+      }
+
+      final JBlock block;
+      final JExpression item;
+      if (property.getter != null) {
+        final JForEach forEach = write.body()._if(field.ne(JExpr._null()))._then().forEach(property.type, "item", field);
+        block = forEach.body();
+        item = forEach.var();
+      }
+      else {
+        block = ifNotNull(write.body(), property.type, field);
+        item = field;
+      }
+
+      if (property.nested != null) {
+        final JInvocation writeNested = property.nested.implClass.staticRef(NAME).invoke("write").arg(writer).arg(item).arg(property.name.getNamespaceURI()).arg(property.name.getLocalPart());
+        if (fragments) {
+          // The nested instance is written only if the FragmentWriter did not splice its cached fragment
+          final JClass fragmentWriter = codeModel.ref(FragmentWriter.class);
+          block._if(writer._instanceof(fragmentWriter).cand(JExpr.invoke(JExpr.cast(fragmentWriter, writer), "write").arg(item).arg(property.name.getNamespaceURI()).arg(property.name.getLocalPart())).not())._then().add(writeNested);
+        }
+        else {
+          block.add(writeNested);
+        }
+      }
+      else {
+        block.invoke(start).arg(writer).arg(property.name.getNamespaceURI()).arg(property.name.getLocalPart());
+        block.add(writeText(codeModel, property.type, writer, item, enums));
+        block.add(writer.invoke("writeEndElement"));
+      }
+    }
+
+    write.body().add(writer.invoke("writeEndElement"));
+
+    // public static void write(XMLStreamWriter,T), for classes bound to a root element
+    final QName rootName = classOutline.target.getElementName();
+    if (rootName != null) {
+      final JMethod writeRoot = stax.method(JMod.PUBLIC | JMod.STATIC, codeModel.VOID, "write");
+      writeRoot._throws(XMLStreamException.class);
+      final JVar rootWriter = writeRoot.param(JMod.FINAL, XMLStreamWriter.class, "writer");
+      final JVar rootValue = writeRoot.param(JMod.FINAL, cls, "value");
+      writeRoot.javadoc().append("Writes the specified instance of {@link " + cls.name() + "} to the specified writer, as the {@code " + rootName.getLocalPart() + "} element.");
+      writeRoot.javadoc().addParam(rootWriter).append("The {@link XMLStreamWriter}.");
+      writeRoot.javadoc().addParam(rootValue).append("The instance to write.");
+      writeRoot.javadoc().addThrows(XMLStreamException.class).append("If an error has occurred while writing.");
+      writeRoot.body().invoke(write).arg(rootWriter).arg(rootValue).arg(rootName.getNamespaceURI()).arg(rootName.getLocalPart());
+    }
+  }
+
+  private static JBlock ifNotNull(final JBlock block, final JType type, final JExpression value) {
+    return type.isPrimitive() ? block : block._if(value.ne(JExpr._null()))._then();
+  }
+}
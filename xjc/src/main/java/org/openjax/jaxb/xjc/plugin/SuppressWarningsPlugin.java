@@ -0,0 +1,57 @@
+/* Copyright (c) 2017 OpenJAX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.openjax.jaxb.xjc.plugin;
+
+import java.util.Iterator;
+
+import org.xml.sax.ErrorHandler;
+
+import com.sun.codemodel.JDefinedClass;
+import com.sun.codemodel.JPackage;
+import com.sun.tools.xjc.Options;
+import com.sun.tools.xjc.Plugin;
+import com.sun.tools.xjc.outline.Outline;
+
+/**
+ * XJC plugin that adds {@code @SuppressWarnings("all")} to every top-level class generated by XJC, including enums and the
+ * {@code ObjectFactory}. The annotation is added to the code model before it is written, so no post-processing of the generated
+ * files is necessary.
+ */
+public class SuppressWarningsPlugin extends Plugin {
+  @Override
+  public String getOptionName() {
+    return "XsuppressWarnings";
+  }
+
+  @Override
+  public String getUsage() {
+    return "  -XsuppressWarnings :  add @SuppressWarnings(\"all\") to all generated classes";
+  }
+
+  @Override
+  public boolean run(final Outline outline, final Options options, final ErrorHandler errorHandler) {
+    for (final Iterator<JPackage> packages = outline.getCodeModel().packages(); packages.hasNext();) { // [I]
+      for (final Iterator<JDefinedClass> classes = packages.next().classes(); classes.hasNext();) { // [I]
+        final JDefinedClass cls = classes.next();
+        if (!cls.isHidden())
+          cls.annotate(SuppressWarnings.class).param("value", "all");
+      }
+    }
+
+    return true;
+  }
+}
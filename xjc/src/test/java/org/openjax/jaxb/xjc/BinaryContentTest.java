@@ -0,0 +1,128 @@
+/* Copyright (c) 2018 OpenJAX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.openjax.jaxb.xjc;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.junit.Test;
+
+public class BinaryContentTest {
+  private static byte[] bytes(final int length) {
+    final byte[] bytes = new byte[length];
+    for (int i = 0; i < length; ++i) // [A]
+      bytes[i] = (byte)(i * 31 + 7);
+
+    return bytes;
+  }
+
+  private static BinaryContent read(final String xml) throws XMLStreamException {
+    final XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(xml));
+    reader.nextTag();
+    final BinaryContent content = BinaryContent.read(reader);
+    assertTrue(reader.isEndElement());
+    return content;
+  }
+
+  private static String write(final BinaryContent content) throws XMLStreamException {
+    final StringWriter out = new StringWriter();
+    final XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out);
+    content.write(writer);
+    writer.flush();
+    return out.toString();
+  }
+
+  @Test
+  public void testDirect() throws Exception {
+    for (int length = 0; length < 8; ++length) { // [N]
+      final byte[] bytes = bytes(length);
+      final String base64 = Base64.getEncoder().encodeToString(bytes);
+      try (final BinaryContent content = read("<a>\n  " + base64 + "\n</a>")) {
+        assertNull(content.getFile());
+        assertEquals(length, content.getLength());
+        assertArrayEquals(bytes, content.toByteArray());
+        assertEquals(base64, write(content));
+      }
+    }
+  }
+
+  @Test
+  public void testSpill() throws Exception {
+    final int threshold = BinaryContent.getThreshold();
+    BinaryContent.setThreshold(1000);
+    try {
+      final byte[] bytes = bytes(100000);
+      final String base64 = Base64.getMimeEncoder().encodeToString(bytes);
+      final File file;
+      try (final BinaryContent content = read("<a><![CDATA[" + base64.substring(0, 1000) + "]]>" + base64.substring(1000) + "</a>")) {
+        file = content.getFile();
+        assertNotNull(file);
+        assertTrue(file.exists());
+        assertEquals(bytes.length, content.getLength());
+        assertArrayEquals(bytes, content.toByteArray());
+
+        final ByteBuffer mapped = content.map();
+        assertEquals(bytes.length, mapped.remaining());
+        assertEquals(bytes[99999], mapped.get(99999));
+        assertEquals(Base64.getEncoder().encodeToString(bytes), write(content));
+      }
+
+      assertFalse(file.exists());
+    }
+    finally {
+      BinaryContent.setThreshold(threshold);
+    }
+  }
+
+  @Test
+  public void testAdapter() throws Exception {
+    final byte[] bytes = bytes(100);
+    final BinaryContent.Adapter adapter = new BinaryContent.Adapter();
+    try (final BinaryContent content = adapter.unmarshal(bytes)) {
+      assertTrue(Arrays.equals(bytes, adapter.marshal(content)));
+    }
+
+    try (final BinaryContent content = BinaryContent.of(new ByteArrayInputStream(bytes))) {
+      assertEquals(100, content.map().remaining());
+    }
+  }
+
+  @Test
+  public void testInvalid() throws Exception {
+    for (final String xml : new String[] {"<a>QUJ</a>", "<a>QU*D</a>", "<a>QQ==QUJD</a>", "<a>QUJD<b/></a>"}) { // [A]
+      try {
+        read(xml);
+        fail("Expected XMLStreamException: " + xml);
+      }
+      catch (final XMLStreamException e) {
+      }
+    }
+  }
+}
@@ -0,0 +1,157 @@
+/* Copyright (c) 2018 OpenJAX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.openjax.jaxb.xjc;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import javax.xml.bind.JAXBException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.libj.util.CollectionUtil;
+
+import com.sun.net.httpserver.HttpServer;
+
+public class BuildCacheTest {
+  private final File dir = new File("target/build-cache");
+
+  @Before
+  public void before() throws IOException {
+    if (dir.exists())
+      try (final Stream<Path> paths = Files.walk(dir.toPath())) {
+        paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+      }
+  }
+
+  private XJCompiler.Command newCommand(final String destDir, final BuildCache buildCache) throws URISyntaxException {
+    final XJCompiler.Command command = new XJCompiler.Command();
+    command.setSchemas(CollectionUtil.asCollection(new LinkedHashSet<>(), getClass().getResource("/test.xsd").toURI()));
+    command.setDestDir(new File(dir, destDir));
+    command.setGenerateEpisode(true);
+    command.setBuildCache(buildCache);
+    return command;
+  }
+
+  @Test
+  public void testLocal() throws IOException, JAXBException, URISyntaxException {
+    final BuildCache buildCache = new BuildCache(new File(dir, "local"));
+    final CompileReport miss = XJCompiler.compile(newCommand("a", buildCache));
+    assertFalse(miss.getCacheHit());
+
+    final CompileReport hit = XJCompiler.compile(newCommand("b", buildCache));
+    assertTrue(hit.getCacheHit());
+    assertEquals(miss.getWritten(), hit.getWritten());
+    for (final String name : new String[] {"org/openjax/xml/test/Parent.java", "META-INF/sun-jaxb.episode"}) // [A]
+      assertArrayEquals(Files.readAllBytes(new File(dir, "a/" + name).toPath()), Files.readAllBytes(new File(dir, "b/" + name).toPath()));
+
+    final XJCompiler.Command command = newCommand("c", buildCache);
+    command.setPackageName("org.openjax.xml.other");
+    assertFalse(XJCompiler.compile(command).getCacheHit());
+  }
+
+  @Test
+  public void testRemote() throws IOException, JAXBException, URISyntaxException {
+    final ConcurrentHashMap<String,byte[]> entries = new ConcurrentHashMap<>();
+    final HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/cache/", exchange -> {
+      // The JDK server does not serve a streamed request on a reused connection
+      exchange.getResponseHeaders().set("Connection", "close");
+      final String path = exchange.getRequestURI().getPath();
+      if ("PUT".equals(exchange.getRequestMethod())) {
+        entries.put(path, readAllBytes(exchange.getRequestBody()));
+        exchange.sendResponseHeaders(201, -1);
+      }
+      else {
+        final byte[] body = entries.get(path);
+        exchange.sendResponseHeaders(body == null ? 404 : 200, body == null ? -1 : body.length);
+        if (body != null)
+          try (final OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+          }
+      }
+
+      exchange.close();
+    });
+    server.start();
+    try {
+      final URL remote = new URL("http://localhost:" + server.getAddress().getPort() + "/cache/");
+      final BuildCache push = new BuildCache(new File(dir, "push"));
+      push.setRemote(remote);
+      push.setPush(true);
+      assertFalse(XJCompiler.compile(newCommand("a", push)).getCacheHit());
+      assertEquals(1, entries.size());
+
+      final BuildCache pull = new BuildCache(new File(dir, "pull"));
+      pull.setRemote(remote);
+      assertTrue(XJCompiler.compile(newCommand("b", pull)).getCacheHit());
+      assertTrue(new File(dir, "b/org/openjax/xml/test/Parent.java").exists());
+    }
+    finally {
+      server.stop(0);
+    }
+  }
+
+  private static byte[] readAllBytes(final InputStream in) throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final byte[] buffer = new byte[8192];
+    for (int n; (n = in.read(buffer)) != -1;) // [X]
+      out.write(buffer, 0, n);
+
+    return out.toByteArray();
+  }
+
+  private static byte[] digest(final File entry) throws IOException {
+    final MessageDigest digest = SchemaCache.newDigest();
+    XJCompiler.update(digest, entry);
+    return digest.digest();
+  }
+
+  @Test
+  public void testClasspathDigest() throws IOException {
+    final File a = new File(dir, "a/plugin.jar");
+    final File b = new File(dir, "b/plugin.jar");
+    final File c = new File(dir, "c/plugin.jar");
+    Files.createDirectories(a.getParentFile().toPath());
+    Files.createDirectories(b.getParentFile().toPath());
+    Files.createDirectories(c.getParentFile().toPath());
+    Files.write(a.toPath(), "1.0".getBytes());
+    Files.write(b.toPath(), "1.0".getBytes());
+    Files.write(c.toPath(), "1.1".getBytes());
+
+    // Copies of a jar in another location share their digest, but a jar that has changed without a change of its name or size does not
+    assertArrayEquals(digest(a), digest(b));
+    assertFalse(Arrays.equals(digest(a), digest(c)));
+    assertFalse(Arrays.equals(digest(a.getParentFile()), digest(c.getParentFile())));
+  }
+}
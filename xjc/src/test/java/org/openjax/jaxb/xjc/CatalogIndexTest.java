@@ -0,0 +1,34 @@
+/* Copyright (c) 2018 OpenJAX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.openjax.jaxb.xjc;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class CatalogIndexTest {
+  @Test
+  public void testTR9401() {
+    final CatalogIndex index = new CatalogIndex();
+    assertTrue(index.isEmpty());
+    index.putTR9401("PUBLIC \"urn:b\" \"file:/b.xsd\"\nREWRITE_SYSTEM \"urn:b\" \"file:/b.xsd\"\nOVERRIDE YES\n");
+    index.putTR9401("PUBLIC 'urn:b' 'file:/other.xsd'\nSYSTEM urn:c file:/c&d.xsd\n");
+    assertEquals("file:/b.xsd", index.get(CatalogIndex.Type.PUBLIC, "urn:b"));
+    assertEquals("file:/c&d.xsd", index.get(CatalogIndex.Type.SYSTEM, "urn:c"));
+    assertEquals("<catalog xmlns=\"urn:oasis:names:tc:entity:xmlns:xml:catalog\">\n  <public publicId=\"urn:b\" uri=\"file:/b.xsd\"/>\n  <system systemId=\"urn:c\" uri=\"file:/c&amp;d.xsd\"/>\n  <rewriteSystem systemIdStartString=\"urn:b\" rewritePrefix=\"file:/b.xsd\"/>\n</catalog>\n", index.toXml());
+  }
+}
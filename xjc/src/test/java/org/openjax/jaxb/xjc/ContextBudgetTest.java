@@ -0,0 +1,53 @@
+/* Copyright (c) 2018 OpenJAX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.openjax.jaxb.xjc;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+
+import org.junit.Test;
+import org.libj.util.CollectionUtil;
+
+public class ContextBudgetTest {
+  @Test
+  public void testCheck() throws Exception {
+    final XJCompiler.Command command = new XJCompiler.Command();
+    command.setSchemas(CollectionUtil.asCollection(new LinkedHashSet<>(), getClass().getResource("/stax.xsd").toURI()));
+    command.setDestDir(new File("target/generated-test-sources/context"));
+    XJCompiler.compile(command);
+
+    final ContextBudget budget = new ContextBudget();
+    final ContextReport report = budget.check(command.getDestDir(), Collections.emptySet(), new File("target/jaxb/context"));
+    assertEquals(1, report.getResults().size());
+    final ContextReport.Result result = report.getResults().get(0);
+    assertEquals("org.openjax.xml.stax", result.getPackageName());
+    assertTrue(result.getTime() > 0);
+    assertTrue(result.getClasses() > 0);
+    assertTrue(result.getHeap() > 0);
+    assertTrue(report.getExceeded().isEmpty());
+    assertTrue(report.toJson(), report.toJson().contains("\"package\": \"org.openjax.xml.stax\""));
+
+    budget.setMaxClasses(1);
+    budget.setMaxHeap(1);
+    final ContextReport exceeded = budget.check(command.getDestDir(), Collections.emptySet(), new File("target/jaxb/context"));
+    assertEquals(exceeded.getExceeded().toString(), 2, exceeded.getExceeded().size());
+    assertTrue(exceeded.getExceeded().get(0), exceeded.getExceeded().get(0).startsWith("org.openjax.xml.stax: "));
+  }
+}
@@ -0,0 +1,143 @@
+/* Copyright (c) 2018 OpenJAX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.openjax.jaxb.xjc;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.UnmarshalException;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlValue;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.junit.Test;
+
+public class DocumentReaderTest {
+  // A binding with a StAX reader, as generated by the -Xstax plugin (the generated readers are compiled and run by XJCompilerTest)
+  @XmlRootElement(name = "message")
+  @XmlAccessorType(XmlAccessType.FIELD)
+  public static class Message {
+    public static final class Stax {
+      public static Message read(final XMLStreamReader reader) throws XMLStreamException {
+        final Message value = new Message();
+        value.id = reader.getAttributeValue(null, "id");
+        final StringBuilder b = new StringBuilder();
+        while (reader.next() != XMLStreamConstants.END_ELEMENT) // [X]
+          if (reader.getEventType() == XMLStreamConstants.CHARACTERS || reader.getEventType() == XMLStreamConstants.CDATA)
+            b.append(reader.getText());
+
+        value.text = b.toString();
+        return value;
+      }
+    }
+
+    @XmlAttribute
+    private String id;
+    @XmlValue
+    private String text;
+  }
+
+  private static DocumentReader<Message> parseAll(final String xml) throws Exception {
+    return JaxbUtil.parseAllStax(Message.class, new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Test
+  public void testConcatenated() throws Exception {
+    final String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<message id=\"1\">one</message>\n" +
+      "<?xml version=\"1.0\"?><!-- <?xml version=\"1.0\"?> --><message id=\"2\"><![CDATA[<?xml version=\"1.0\"?>]]></message>" +
+      "<?xml version='1.0'?><?pi <message?><message xmlns=\"urn:x\" id=\"3\">three</message>\n";
+
+    try (final DocumentReader<Message> reader = parseAll(xml)) {
+      Message message = reader.read();
+      assertEquals("1", message.id);
+      assertEquals("one", message.text);
+
+      message = reader.read();
+      assertEquals("2", message.id);
+      assertEquals("<?xml version=\"1.0\"?>", message.text);
+
+      message = reader.read();
+      assertEquals("3", message.id);
+      assertEquals("three", message.text);
+
+      assertNull(reader.read());
+      assertNull(reader.read());
+      assertEquals(3, reader.getCount());
+    }
+  }
+
+  @Test
+  public void testEmpty() throws Exception {
+    try (final DocumentReader<Message> reader = parseAll("")) {
+      assertNull(reader.read());
+      assertEquals(0, reader.getCount());
+    }
+  }
+
+  @Test
+  public void testMalformed() throws Exception {
+    try (final DocumentReader<Message> reader = parseAll("<message id=\"1\">one</message><message id=\"2\">two</mess")) {
+      assertEquals("1", reader.read().id);
+      reader.read();
+      fail("Expected UnmarshalException");
+    }
+    catch (final UnmarshalException e) {
+    }
+  }
+
+  @Test
+  public void testOpenStream() throws Exception {
+    testOpenStream(false);
+    testOpenStream(true);
+  }
+
+  // Reads the documents of a stream that is kept open between them, as a socket feed is
+  private static void testOpenStream(final boolean stax) throws Exception {
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    // The end of the stream is written by the close of out, so out is not a resource of the try
+    final PipedOutputStream out = new PipedOutputStream();
+    try (final PipedInputStream in = new PipedInputStream(out)) {
+      out.write("<?xml version=\"1.0\"?><message id=\"1\">one</message>".getBytes(StandardCharsets.UTF_8));
+      out.flush();
+      final DocumentReader<Message> reader = executor.submit(() -> stax ? JaxbUtil.parseAllStax(Message.class, in) : JaxbUtil.parseAll(Message.class, in)).get(10, TimeUnit.SECONDS);
+      assertEquals("one", executor.submit(reader::read).get(10, TimeUnit.SECONDS).text);
+
+      out.write("<?xml version=\"1.0\"?><message id=\"2\">two</message>".getBytes(StandardCharsets.UTF_8));
+      out.flush();
+      assertEquals("two", executor.submit(reader::read).get(10, TimeUnit.SECONDS).text);
+
+      out.close();
+      assertNull(executor.submit(reader::read).get(10, TimeUnit.SECONDS));
+      assertEquals(2, reader.getCount());
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
+}
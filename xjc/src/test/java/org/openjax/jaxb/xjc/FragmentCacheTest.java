@@ -0,0 +1,114 @@
+/* Copyright (c) 2018 OpenJAX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.openjax.jaxb.xjc;
+
+import static org.junit.Assert.*;
+
+import java.io.StringWriter;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.junit.Test;
+
+public class FragmentCacheTest {
+  // A binding with a StAX writer, as generated by the -Xstax plugin (the generated writers are compiled and run by XJCompilerTest)
+  public static class Party {
+    public static final class Stax {
+      public static void write(final XMLStreamWriter writer, final Party value, final String namespace, final String localName) throws XMLStreamException {
+        final String defaultNamespace = writer.getNamespaceContext().getNamespaceURI("");
+        writer.writeStartElement("", localName, namespace);
+        if (!namespace.equals(defaultNamespace == null ? "" : defaultNamespace))
+          writer.writeDefaultNamespace(namespace);
+
+        writer.writeAttribute("id", value.id);
+        writer.writeCharacters(value.name);
+        writer.writeEndElement();
+        ++value.writes;
+      }
+    }
+
+    private final String id;
+    private final String name;
+    private int writes;
+
+    public Party(final String id, final String name) {
+      this.id = id;
+      this.name = name;
+    }
+  }
+
+  private static String write(final FragmentCache cache, final Party party, final String partyNamespace) throws XMLStreamException {
+    final StringWriter out = new StringWriter();
+    final FragmentWriter writer = cache.newWriter(out);
+    writer.writeStartElement("", "order", "urn:order");
+    writer.writeDefaultNamespace("urn:order");
+    if (!writer.write(party, partyNamespace, "party"))
+      Party.Stax.write(writer, party, partyNamespace, "party");
+
+    writer.writeStartElement("", "note", "urn:order");
+    writer.writeCharacters("a & b");
+    writer.writeEndElement();
+    writer.writeEndElement();
+    writer.flush();
+    return out.toString();
+  }
+
+  @Test
+  public void testSplice() throws Exception {
+    final FragmentCache cache = new FragmentCache(8, Party.class);
+    final Party party = new Party("p1", "Acme <Ltd>");
+    final String expected = "<order xmlns=\"urn:order\"><party id=\"p1\">Acme &lt;Ltd&gt;</party><note>a &amp; b</note></order>";
+    assertEquals(expected, write(cache, party, "urn:order"));
+    assertEquals(expected, write(cache, party, "urn:order"));
+    assertEquals(1, party.writes);
+    assertEquals(1, cache.getHits());
+    assertEquals(1, cache.getMisses());
+
+    // A fragment of another namespace than the default namespace in scope declares its namespace
+    assertEquals("<order xmlns=\"urn:order\"><party xmlns=\"\" id=\"p1\">Acme &lt;Ltd&gt;</party><note>a &amp; b</note></order>", write(cache, party, ""));
+    assertEquals(2, party.writes);
+  }
+
+  @Test
+  public void testKey() throws Exception {
+    final FragmentCache cache = new FragmentCache(1, Party.class);
+    cache.setKey(value -> ((Party)value).id);
+    final Party a = new Party("p1", "Acme");
+    final Party b = new Party("p1", "Acme");
+    write(cache, a, "urn:order");
+    write(cache, b, "urn:order");
+    assertEquals(1, a.writes);
+    assertEquals(0, b.writes);
+
+    // The cache evicts the least recently used fragment beyond its capacity
+    write(cache, new Party("p2", "Other"), "urn:order");
+    write(cache, a, "urn:order");
+    assertEquals(2, a.writes);
+    assertEquals(1, cache.size());
+  }
+
+  @Test
+  public void testUncached() throws Exception {
+    final FragmentCache cache = new FragmentCache(8);
+    final Party party = new Party("p1", "Acme");
+    write(cache, party, "urn:order");
+    write(cache, party, "urn:order");
+    assertEquals(2, party.writes);
+    assertEquals(0, cache.size());
+  }
+}
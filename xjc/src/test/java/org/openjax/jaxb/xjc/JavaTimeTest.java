@@ -0,0 +1,98 @@
+/* Copyright (c) 2018 OpenJAX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.openjax.jaxb.xjc;
+
+import static org.junit.Assert.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.OffsetTime;
+import java.time.ZoneOffset;
+
+import org.junit.Test;
+
+public class JavaTimeTest {
+  @Test
+  public void testDateTime() {
+    assertEquals(OffsetDateTime.of(2024, 2, 29, 13, 5, 9, 0, ZoneOffset.UTC), JavaTime.parseDateTime("2024-02-29T13:05:09Z"));
+    assertEquals(OffsetDateTime.of(2024, 2, 29, 13, 5, 9, 120_000_000, ZoneOffset.ofHoursMinutes(-5, -30)), JavaTime.parseDateTime(" 2024-02-29T13:05:09.12-05:30\n"));
+    assertEquals(OffsetDateTime.of(2024, 3, 1, 0, 0, 0, 0, ZoneOffset.UTC), JavaTime.parseDateTime("2024-02-29T24:00:00Z"));
+    assertEquals(OffsetDateTime.of(LocalDateTime.of(12024, 1, 1, 0, 0, 0, 123_456_789), ZoneOffset.ofHours(14)), JavaTime.parseDateTime("12024-01-01T00:00:00.1234567891+14:00"));
+
+    // Values without a timezone are in the default offset, or in the offset of the caller
+    assertEquals(OffsetDateTime.of(2024, 2, 29, 13, 5, 9, 0, JavaTime.DEFAULT_OFFSET), JavaTime.parseDateTime("2024-02-29T13:05:09"));
+    assertEquals(OffsetDateTime.of(2024, 2, 29, 13, 5, 9, 0, ZoneOffset.ofHours(1)), JavaTime.parseDateTime("2024-02-29T13:05:09", ZoneOffset.ofHours(1)));
+    assertEquals(ZoneOffset.ofHours(-8), JavaTime.parseDateTime("2024-02-29T13:05:09-08:00", ZoneOffset.ofHours(1)).getOffset());
+
+    assertEquals("2024-02-29T13:05:09Z", JavaTime.print(OffsetDateTime.of(2024, 2, 29, 13, 5, 9, 0, ZoneOffset.UTC)));
+    assertEquals("0999-12-31T00:00:00.00012-05:30", JavaTime.print(OffsetDateTime.of(999, 12, 31, 0, 0, 0, 120_000, ZoneOffset.ofHoursMinutes(-5, -30))));
+    for (final String text : new String[] {"2024-02-29T13:05:09.5+01:00", "-0044-03-15T12:00:00Z", "2024-01-01T00:00:00.000000001Z"}) // [A]
+      assertEquals(text, JavaTime.print(JavaTime.parseDateTime(text)));
+  }
+
+  @Test
+  public void testDate() {
+    assertEquals(LocalDate.of(2024, 2, 29), JavaTime.parseDate("2024-02-29"));
+    assertEquals(LocalDate.of(2024, 2, 29), JavaTime.parseDate("2024-02-29+09:00"));
+    assertEquals(LocalDate.of(2024, 2, 29), JavaTime.parseDate("2024-02-29Z"));
+    assertEquals("2024-02-29", JavaTime.print(LocalDate.of(2024, 2, 29)));
+  }
+
+  @Test
+  public void testTime() {
+    assertEquals(OffsetTime.of(LocalTime.of(8, 30), ZoneOffset.ofHours(2)), JavaTime.parseTime("08:30:00+02:00"));
+    assertEquals(OffsetTime.of(LocalTime.MIDNIGHT, ZoneOffset.UTC), JavaTime.parseTime("24:00:00Z"));
+    assertEquals(OffsetTime.of(LocalTime.of(8, 30), JavaTime.DEFAULT_OFFSET), JavaTime.parseTime("08:30:00"));
+    assertEquals(OffsetTime.of(LocalTime.of(8, 30), ZoneOffset.ofHours(2)), JavaTime.parseTime("08:30:00", ZoneOffset.ofHours(2)));
+    assertEquals("08:30:00.25+02:00", JavaTime.print(OffsetTime.of(LocalTime.of(8, 30, 0, 250_000_000), ZoneOffset.ofHours(2))));
+  }
+
+  @Test
+  public void testInvalid() {
+    for (final String text : new String[] {"", "2024-02-30T00:00:00Z", "2024-2-01T00:00:00Z", "02024-01-01T00:00:00Z", "2024-01-01T00:00Z", "2024-01-01T24:00:01Z", "2024-01-01T00:00:00+15:00", "2024-01-01T00:00:00Zulu", "2024-01-01 00:00:00Z"}) { // [A]
+      try {
+        JavaTime.parseDateTime(text);
+        fail("Expected IllegalArgumentException: " + text);
+      }
+      catch (final IllegalArgumentException e) {
+      }
+    }
+  }
+
+  @Test
+  public void testInvalidDateAndTime() {
+    for (final String text : new String[] {"2024-02-30", "2024-02-29+9:00", "2024-02-29T"}) { // [A]
+      try {
+        JavaTime.parseDate(text);
+        fail("Expected IllegalArgumentException: " + text);
+      }
+      catch (final IllegalArgumentException e) {
+      }
+    }
+
+    for (final String text : new String[] {"08:30Z", "08:30:00+"}) { // [A]
+      try {
+        JavaTime.parseTime(text);
+        fail("Expected IllegalArgumentException: " + text);
+      }
+      catch (final IllegalArgumentException e) {
+      }
+    }
+  }
+}
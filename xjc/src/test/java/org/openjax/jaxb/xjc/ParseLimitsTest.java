@@ -0,0 +1,124 @@
+/* Copyright (c) 2018 OpenJAX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.openjax.jaxb.xjc;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.junit.Test;
+
+public class ParseLimitsTest {
+  private static final String XML = "<a x=\"1\" y=\"2\"><b><c>hello</c></b><b><c>world</c></b></a>";
+
+  private static ParseLimitException parse(final ParseLimits limits, final String xml) throws Exception {
+    final long deadline = limits.getDeadline();
+    try (final InputStream in = limits.limit(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), deadline)) {
+      final XMLStreamReader reader = limits.limit(XMLInputFactory.newInstance().createXMLStreamReader(in), deadline);
+      while (reader.hasNext()) // [X]
+        reader.next();
+
+      return null;
+    }
+    catch (final Exception e) {
+      final ParseLimitException limit = ParseLimits.find(e);
+      if (limit == null)
+        throw e;
+
+      return limit;
+    }
+  }
+
+  @Test
+  public void testUnlimited() throws Exception {
+    assertNull(parse(new ParseLimits(), XML));
+  }
+
+  @Test
+  public void testDepth() throws Exception {
+    final ParseLimits limits = new ParseLimits();
+    limits.setMaxDepth(3);
+    assertNull(parse(limits, XML));
+    limits.setMaxDepth(2);
+    final ParseLimitException e = parse(limits, XML);
+    assertEquals("maxDepth", e.getLimit());
+    assertEquals(2, e.getMax());
+  }
+
+  @Test
+  public void testElements() throws Exception {
+    final ParseLimits limits = new ParseLimits();
+    limits.setMaxElements(4);
+    assertEquals("maxElements", parse(limits, XML).getLimit());
+  }
+
+  @Test
+  public void testAttributes() throws Exception {
+    final ParseLimits limits = new ParseLimits();
+    limits.setMaxAttributes(1);
+    assertEquals("maxAttributes", parse(limits, XML).getLimit());
+  }
+
+  @Test
+  public void testTextLength() throws Exception {
+    final ParseLimits limits = new ParseLimits();
+    limits.setMaxTextLength(4);
+    assertEquals("maxTextLength", parse(limits, XML).getLimit());
+
+    // A text node that the parser reports in several events is limited by its whole length
+    assertNull(parse(limits, "<a>ab<![CDATA[cd]]></a>"));
+    assertEquals("maxTextLength", parse(limits, "<a>ab<![CDATA[cd]]><!-- -->ef</a>").getLimit());
+    assertNull(parse(limits, "<a><b>abcd</b><b>abcd</b></a>"));
+
+    final XMLStreamReader reader = limits.limit(XMLInputFactory.newInstance().createXMLStreamReader(new ByteArrayInputStream("<a>hello</a>".getBytes(StandardCharsets.UTF_8))), limits.getDeadline());
+    reader.nextTag();
+    try {
+      reader.getElementText();
+      fail("Expected XMLStreamException");
+    }
+    catch (final XMLStreamException e) {
+      assertEquals("maxTextLength", ParseLimits.find(e).getLimit());
+    }
+  }
+
+  @Test
+  public void testBytes() throws Exception {
+    final StringBuilder b = new StringBuilder("<a>");
+    for (int i = 0; i < 10000; ++i) // [N]
+      b.append("<b/>");
+
+    final String xml = b.append("</a>").toString();
+    final ParseLimits limits = new ParseLimits();
+    limits.setMaxBytes(xml.length());
+    assertNull(parse(limits, xml));
+    limits.setMaxBytes(1024);
+    assertEquals("maxBytes", parse(limits, xml).getLimit());
+  }
+
+  @Test
+  public void testTime() throws Exception {
+    final ParseLimits limits = new ParseLimits();
+    limits.setMaxTime(0);
+    assertEquals("maxTime", parse(limits, XML).getLimit());
+  }
+}
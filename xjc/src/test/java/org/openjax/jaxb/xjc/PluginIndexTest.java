@@ -0,0 +1,98 @@
+/* Copyright (c) 2018 OpenJAX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+
+package org.openjax.jaxb.xjc;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+
+import javax.xml.bind.JAXBException;
+
+import org.junit.Test;
+import org.jvnet.jaxb2_commons.plugin.annotate.AnnotatePlugin;
+import org.openjax.jaxb.xjc.plugin.SuppressWarningsPlugin;
+
+public class PluginIndexTest {
+  private static File getLocation(final Class<?> cls) throws URISyntaxException {
+    return new File(cls.getProtectionDomain().getCodeSource().getLocation().toURI());
+  }
+
+  @Test
+  public void test() throws IOException, URISyntaxException {
+    final File file = new File("target/plugins.idx");
+    file.delete();
+
+    final ArrayList<File> classpath = new ArrayList<>();
+    classpath.add(getLocation(Test.class));
+    classpath.add(getLocation(AnnotatePlugin.class));
+    classpath.add(getLocation(SuppressWarningsPlugin.class));
+
+    final PluginIndex index = new PluginIndex(file);
+    assertEquals(0, index.getOptions(getLocation(Test.class)).length);
+    assertEquals(getLocation(AnnotatePlugin.class), index.find(classpath, "Xannotate"));
+    assertEquals(getLocation(SuppressWarningsPlugin.class), index.find(classpath, "XsuppressWarnings"));
+    assertNull(index.find(classpath, "Xmissing"));
+    index.save();
+    assertTrue(file.exists());
+
+    assertEquals(getLocation(AnnotatePlugin.class), new PluginIndex(file).find(classpath, "Xannotate"));
+  }
+
+  private static File compile(final String name, final String className, final String source, final LinkedHashSet<File> classpath) throws IOException, JAXBException {
+    final File sourceDir = new File("target/plugin-index/" + name + "-src");
+    final File file = new File(sourceDir, className.replace('.', '/') + ".java");
+    Files.createDirectories(file.getParentFile().toPath());
+    Files.write(file.toPath(), source.getBytes(StandardCharsets.UTF_8));
+    final File classesDir = new File("target/plugin-index/" + name);
+    ContextBudget.compile(sourceDir, classpath, classesDir);
+    return classesDir;
+  }
+
+  @Test
+  public void testDependency() throws IOException, JAXBException {
+    final LinkedHashSet<File> classpath = new LinkedHashSet<>(XJCompiler.Command.runtime);
+    final File dependency = compile("dependency", "dep.Base", "package dep;\n" +
+      "public abstract class Base extends com.sun.tools.xjc.Plugin {\n" +
+      "  @Override public String getOptionName() { return \"Xdep\"; }\n" +
+      "  @Override public String getUsage() { return \"  -Xdep\"; }\n" +
+      "  @Override public boolean run(com.sun.tools.xjc.outline.Outline outline, com.sun.tools.xjc.Options options, org.xml.sax.ErrorHandler errorHandler) { return true; }\n" +
+      "}\n", classpath);
+
+    classpath.add(dependency);
+    final File plugin = compile("plugin", "plugin.DepPlugin", "package plugin;\npublic class DepPlugin extends dep.Base {\n}\n", classpath);
+    final File service = new File(plugin, PluginIndex.SERVICE);
+    Files.createDirectories(service.getParentFile().toPath());
+    Files.write(service.toPath(), "plugin.DepPlugin\n".getBytes(StandardCharsets.UTF_8));
+
+    // The plugin cannot be resolved without its dependency, which is not cached as the absence of the plugin
+    final PluginIndex index = new PluginIndex(null);
+    assertEquals(0, index.getOptions(plugin).length);
+
+    final ArrayList<File> userClasspath = new ArrayList<>();
+    userClasspath.add(plugin);
+    userClasspath.add(dependency);
+    assertEquals(plugin, index.find(userClasspath, "Xdep"));
+    assertArrayEquals(new String[] {"Xdep"}, index.getOptions(plugin));
+  }
+}
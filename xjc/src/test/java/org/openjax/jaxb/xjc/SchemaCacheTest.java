@@ -0,0 +1,153 @@
+/* Copyright (c) 2018 OpenJAX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.openjax.jaxb.xjc;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import javax.xml.bind.JAXBException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.libj.util.CollectionUtil;
+
+import com.sun.net.httpserver.HttpServer;
+
+public class SchemaCacheTest {
+  private static final String A = "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\" xmlns:b=\"urn:b\" targetNamespace=\"urn:a\" elementFormDefault=\"qualified\">\n  <xs:import namespace=\"urn:b\" schemaLocation=\"b.xsd\"/>\n  <xs:element name=\"a\" type=\"b:b\"/>\n</xs:schema>";
+  private static final String B = "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\" targetNamespace=\"urn:b\">\n  <xs:complexType name=\"b\">\n    <xs:attribute name=\"id\" type=\"xs:string\"/>\n  </xs:complexType>\n</xs:schema>";
+
+  private final AtomicInteger requests = new AtomicInteger();
+  private final AtomicInteger notModified = new AtomicInteger();
+  private final File dir = new File("target/schema-cache");
+  private HttpServer server;
+  private URI uri;
+
+  @Before
+  public void before() throws IOException {
+    if (dir.exists())
+      try (final Stream<Path> paths = Files.walk(dir.toPath())) {
+        paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+      }
+
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/schemas/", exchange -> {
+      requests.incrementAndGet();
+      final String path = exchange.getRequestURI().getPath();
+      final byte[] body = (path.endsWith("a.xsd") ? A : path.endsWith("b.xsd") ? B : "").getBytes(StandardCharsets.UTF_8);
+      final String etag = "\"" + path.hashCode() + "\"";
+      if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+        notModified.incrementAndGet();
+        exchange.sendResponseHeaders(304, -1);
+      }
+      else {
+        exchange.getResponseHeaders().set("ETag", etag);
+        exchange.sendResponseHeaders(body.length == 0 ? 404 : 200, body.length == 0 ? -1 : body.length);
+        try (final OutputStream out = exchange.getResponseBody()) {
+          out.write(body);
+        }
+      }
+
+      exchange.close();
+    });
+    server.start();
+    uri = URI.create("http://localhost:" + server.getAddress().getPort() + "/schemas/a.xsd");
+  }
+
+  @After
+  public void after() {
+    server.stop(0);
+  }
+
+  @Test
+  public void testRevalidate() throws IOException {
+    final LinkedHashMap<URI,File> cached = new SchemaCache(dir).prefetch(uri);
+    assertEquals(2, cached.size());
+    assertEquals(2, requests.get());
+    assertEquals(B, new String(Files.readAllBytes(cached.get(uri.resolve("b.xsd")).toPath()), StandardCharsets.UTF_8));
+
+    new SchemaCache(dir).prefetch(uri);
+    assertEquals(2, requests.get());
+
+    final SchemaCache cache = new SchemaCache(dir);
+    cache.setMaxAge(0);
+    cache.prefetch(uri);
+    assertEquals(4, requests.get());
+    assertEquals(2, notModified.get());
+  }
+
+  @Test
+  public void testOffline() throws IOException, JAXBException {
+    final File b = new SchemaCache(dir).prefetch(uri).get(uri.resolve("b.xsd"));
+    server.stop(0);
+
+    final SchemaCache cache = new SchemaCache(dir);
+    cache.setOffline(true);
+    final XJCompiler.Command command = new XJCompiler.Command();
+    command.setSchemas(CollectionUtil.asCollection(new LinkedHashSet<>(), uri));
+    command.setDestDir(new File("target/generated-test-sources/schema-cache"));
+    command.setSchemaCache(cache);
+    XJCompiler.compile(command);
+    assertTrue(new File(command.getDestDir(), "b/B.java").exists());
+
+    Files.write(b.toPath(), "corrupt".getBytes());
+    try {
+      new SchemaCache(dir).prefetch(uri);
+      fail("Expected IOException");
+    }
+    catch (final IOException e) {
+    }
+  }
+
+  private static String digest(final File schema) throws IOException {
+    final MessageDigest digest = SchemaCache.newDigest();
+    SchemaCache.update(digest, schema.toURI().toURL());
+    return SchemaCache.toHex(digest.digest());
+  }
+
+  @Test
+  public void testDigest() throws IOException {
+    final File a = new File(dir, "local/a.xsd");
+    final File b = new File(dir, "local/b.xsd");
+    final File c = new File(dir, "local/c.xsd");
+    Files.createDirectories(a.getParentFile().toPath());
+    Files.write(a.toPath(), A.getBytes(StandardCharsets.UTF_8));
+    Files.write(b.toPath(), B.replace("<xs:complexType", "<xs:include schemaLocation=\"c.xsd\"/>\n  <xs:complexType").getBytes(StandardCharsets.UTF_8));
+    Files.write(c.toPath(), "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\" targetNamespace=\"urn:b\"/>".getBytes(StandardCharsets.UTF_8));
+    final String digest = digest(a);
+    assertEquals(digest, digest(a));
+
+    // An edit of a schema that is included by an imported schema changes the digest of the importing schema
+    Files.write(c.toPath(), "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\" targetNamespace=\"urn:b\">\n  <xs:element name=\"c\"/>\n</xs:schema>".getBytes(StandardCharsets.UTF_8));
+    assertNotEquals(digest, digest(a));
+  }
+}
@@ -0,0 +1,79 @@
+/* Copyright (c) 2018 OpenJAX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.openjax.jaxb.xjc;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashSet;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.libj.util.CollectionUtil;
+
+public class SchemaWatcherTest {
+  private static final String A = "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\" targetNamespace=\"urn:watch\">\n  <xs:include schemaLocation=\"b.xsd\"/>\n  <xs:element name=\"a\" type=\"xs:string\"/>\n</xs:schema>";
+  private static final String B = "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\" targetNamespace=\"urn:watch\">\n  <xs:complexType name=\"%s\">\n    <xs:attribute name=\"id\" type=\"xs:string\"/>\n  </xs:complexType>\n</xs:schema>";
+
+  @Test
+  public void testWatch() throws Exception {
+    final File dir = new File("target/watch");
+    assertTrue(dir.isDirectory() || dir.mkdirs());
+    final File a = new File(dir, "a.xsd");
+    final File b = new File(dir, "b.xsd");
+    Files.write(a.toPath(), A.getBytes(StandardCharsets.UTF_8));
+    Files.write(b.toPath(), String.format(B, "first").getBytes(StandardCharsets.UTF_8));
+
+    final XJCompiler.Command command = new XJCompiler.Command();
+    command.setSchemas(CollectionUtil.asCollection(new LinkedHashSet<>(), a.toURI()));
+    command.setDestDir(new File("target/generated-test-sources/watch"));
+    XJCompiler.compile(command);
+    assertTrue(new File(command.getDestDir(), "watch/First.java").exists());
+
+    final LinkedBlockingQueue<CompileReport> reports = new LinkedBlockingQueue<>();
+    final SchemaWatcher watcher = new SchemaWatcher(command, reports::add);
+    final Thread thread = new Thread(() -> {
+      try {
+        watcher.watch();
+      }
+      catch (final Exception e) {
+        throw new RuntimeException(e);
+      }
+    });
+    try {
+      thread.start();
+      // The included schema is changed, once the watcher has registered its directory
+      Thread.sleep(500);
+      Files.write(b.toPath(), String.format(B, "second").getBytes(StandardCharsets.UTF_8));
+
+      final CompileReport report = reports.poll(30, TimeUnit.SECONDS);
+      assertNotNull(report);
+      assertTrue(new File(command.getDestDir(), "watch/Second.java").exists());
+      assertFalse(new File(command.getDestDir(), "watch/First.java").exists());
+      assertEquals(1, report.getDeleted());
+    }
+    finally {
+      watcher.close();
+    }
+
+    thread.join(5000);
+    assertFalse(thread.isAlive());
+  }
+}
@@ -0,0 +1,99 @@
+/* Copyright (c) 2018 OpenJAX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * You should have received a copy of The MIT License (MIT) along with this
+ * program. If not, see <http://opensource.org/licenses/MIT/>.
+ */
+
+package org.openjax.jaxb.xjc;
+
+import static org.junit.Assert.*;
+
+import java.io.StringReader;
+import java.util.List;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamReader;
+
+import org.junit.Test;
+
+public class StringTableTest {
+  @XmlRootElement(name = "a")
+  @XmlAccessorType(XmlAccessType.FIELD)
+  public static class A {
+    @XmlElement(name = "b")
+    private List<String> b;
+    @XmlElement(name = "c")
+    private String c;
+  }
+
+  @Test
+  public void testIntern() {
+    final StringTable table = new StringTable(16, 8);
+    final String usd = table.intern(new String("USD"));
+    assertSame(usd, table.intern(new String("USD")));
+    assertSame(usd, table.intern("xUSDx".toCharArray(), 1, 3));
+
+    final String long$ = new String("longer than eight");
+    assertSame(long$, table.intern(long$));
+    assertNotSame(long$, table.intern(new String(long$)));
+    assertNull(table.intern(null));
+  }
+
+  @Test
+  public void testCapacity() {
+    final StringTable table = new StringTable(3, 8);
+    for (int i = 0; i < 1000; ++i) // [N]
+      assertEquals(String.valueOf(i), table.intern(String.valueOf(i)));
+
+    try {
+      new StringTable(0, 8);
+      fail("Expected IllegalArgumentException");
+    }
+    catch (final IllegalArgumentException e) {
+    }
+  }
+
+  @Test
+  public void testReader() throws Exception {
+    final StringTable table = new StringTable();
+    final XMLStreamReader reader = table.deduplicate(XMLInputFactory.newInstance().createXMLStreamReader(new StringReader("<a><b c=\"EUR\">open</b><b c=\"EUR\">open</b></a>")));
+    reader.nextTag();
+    reader.nextTag();
+    final String c = reader.getAttributeValue(0);
+    final String text = reader.getElementText();
+    reader.nextTag();
+    assertSame(c, reader.getAttributeValue(null, "c"));
+    assertSame(text, reader.getElementText());
+    assertEquals("open", text);
+  }
+
+  @Test
+  public void testListener() throws Exception {
+    final String xml = "<a><b>open</b><b>open</b><c>open</c></a>";
+    final Unmarshaller unmarshaller = JAXBContext.newInstance(A.class).createUnmarshaller();
+    final A a = (A)unmarshaller.unmarshal(new StringReader(xml));
+    assertNotSame(a.b.get(0), a.b.get(1));
+
+    unmarshaller.setListener(new StringTable().newListener());
+    final A b = (A)unmarshaller.unmarshal(new StringReader(xml));
+    assertEquals("open", b.c);
+    assertSame(b.c, b.b.get(0));
+    assertSame(b.c, b.b.get(1));
+  }
+}
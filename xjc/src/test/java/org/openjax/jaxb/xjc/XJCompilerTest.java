@@ -16,17 +16,179 @@
 
 package org.openjax.jaxb.xjc;
 
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigInteger;
 import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.OffsetTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
+import javax.xml.bind.UnmarshalException;
+import javax.xml.bind.annotation.XmlType;
+import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.transform.stream.StreamSource;
 
 import org.junit.Test;
 import org.libj.util.CollectionUtil;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
 
 public class XJCompilerTest {
+  // Compiles the sources that were generated for the specified command with the compilation of the ContextBudget, and returns a
+  // ClassLoader of the compiled classes
+  private static ClassLoader compile(final XJCompiler.Command command) throws IOException, JAXBException {
+    final File classesDir = new File(command.getDestDir().getPath() + "-classes");
+    ContextBudget.compile(command.getDestDir(), XJCompiler.Command.runtime, classesDir);
+    return new URLClassLoader(new URL[] {classesDir.toURI().toURL()}, XJCompilerTest.class.getClassLoader());
+  }
+
+  private static Object unmarshal(final Class<?> cls, final String xml) throws JAXBException {
+    return JAXBContext.newInstance(cls).createUnmarshaller().unmarshal(new StreamSource(new StringReader(xml)), cls).getValue();
+  }
+
+  private static String marshal(final Object value) throws JAXBException {
+    final StringWriter out = new StringWriter();
+    JAXBContext.newInstance(value.getClass()).createMarshaller().marshal(value, out);
+    return out.toString();
+  }
+
+  private static Object read(final Class<?> cls, final String xml) throws Exception {
+    final XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(xml));
+    reader.nextTag();
+    return cls.getClassLoader().loadClass(cls.getName() + "$Stax").getMethod("read", XMLStreamReader.class).invoke(null, reader);
+  }
+
+  // Reads the specified document as an instance of the specified root element class with the generated StAX reader and with the JAXB
+  // runtime, and asserts that the object graphs are equal, and that the documents that the generated StAX writer and the JAXB runtime
+  // write of them are equal
+  private static Object assertRoundTrip(final Class<?> cls, final String xml) throws Exception {
+    final Object expected = unmarshal(cls, xml);
+    final Object actual = read(cls, xml);
+    assertGraphEquals(cls.getSimpleName(), expected, actual);
+
+    final StringWriter written = new StringWriter();
+    final XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(written);
+    cls.getClassLoader().loadClass(cls.getName() + "$Stax").getMethod("write", XMLStreamWriter.class, cls).invoke(null, writer, actual);
+    writer.close();
+    assertXmlEquals(marshal(expected), written.toString());
+    return actual;
+  }
+
+  // Asserts that the fields of the instances of the generated classes in the specified object graphs are equal
+  private static void assertGraphEquals(final String path, final Object expected, final Object actual) throws Exception {
+    if (expected == null || actual == null) {
+      // A list field that is null is equivalent to an empty list, as the getter of the list creates it lazily
+      final Object other = expected == null ? actual : expected;
+      if (!(other instanceof List && ((List<?>)other).isEmpty()))
+        assertEquals(path, expected, actual);
+    }
+    else if (expected instanceof List) {
+      final List<?> e = (List<?>)expected;
+      final List<?> a = (List<?>)actual;
+      assertEquals(path, e.size(), a.size());
+      for (int i = 0, i$ = e.size(); i < i$; ++i) // [RA]
+        assertGraphEquals(path + "[" + i + "]", e.get(i), a.get(i));
+    }
+    else if (expected instanceof BinaryContent) {
+      assertArrayEquals(path, ((BinaryContent)expected).toByteArray(), ((BinaryContent)actual).toByteArray());
+    }
+    else if (!expected.getClass().isEnum() && expected.getClass().isAnnotationPresent(XmlType.class)) {
+      assertEquals(path, expected.getClass(), actual.getClass());
+      for (Class<?> cls = expected.getClass(); cls != Object.class; cls = cls.getSuperclass()) { // [X]
+        for (final Field field : cls.getDeclaredFields()) { // [A]
+          if (!Modifier.isStatic(field.getModifiers()) && !Modifier.isTransient(field.getModifiers())) {
+            field.setAccessible(true);
+            assertGraphEquals(path + "." + field.getName(), field.get(expected), field.get(actual));
+          }
+        }
+      }
+    }
+    else {
+      assertTrue(path + ": expected:<" + expected + "> but was:<" + actual + ">", Objects.deepEquals(expected, actual));
+    }
+  }
+
+  // Asserts that the specified documents have equal elements, attributes and text, regardless of prefixes and whitespace between elements
+  private static void assertXmlEquals(final String expected, final String actual) throws Exception {
+    final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+    factory.setNamespaceAware(true);
+    final Element e = factory.newDocumentBuilder().parse(new InputSource(new StringReader(expected))).getDocumentElement();
+    final Element a = factory.newDocumentBuilder().parse(new InputSource(new StringReader(actual))).getDocumentElement();
+    assertElementEquals(expected + "\n" + actual, e, a);
+  }
+
+  private static void assertElementEquals(final String message, final Element expected, final Element actual) {
+    assertEquals(message, expected.getNamespaceURI(), actual.getNamespaceURI());
+    assertEquals(message, expected.getLocalName(), actual.getLocalName());
+    assertEquals(message, getAttributes(expected), getAttributes(actual));
+    final ArrayList<Node> e = getContent(expected);
+    final ArrayList<Node> a = getContent(actual);
+    assertEquals(message, e.size(), a.size());
+    for (int i = 0, i$ = e.size(); i < i$; ++i) { // [RA]
+      assertEquals(message, e.get(i).getNodeType(), a.get(i).getNodeType());
+      if (e.get(i) instanceof Element)
+        assertElementEquals(message, (Element)e.get(i), (Element)a.get(i));
+      else
+        assertEquals(message, e.get(i).getNodeValue(), a.get(i).getNodeValue());
+    }
+  }
+
+  private static TreeMap<String,String> getAttributes(final Element element) {
+    final TreeMap<String,String> attributes = new TreeMap<>();
+    final NamedNodeMap map = element.getAttributes();
+    for (int i = 0, i$ = map.getLength(); i < i$; ++i) { // [N]
+      final Attr attr = (Attr)map.item(i);
+      if (!"http://www.w3.org/2000/xmlns/".equals(attr.getNamespaceURI()))
+        attributes.put("{" + (attr.getNamespaceURI() == null ? "" : attr.getNamespaceURI()) + "}" + attr.getLocalName(), attr.getValue());
+    }
+
+    return attributes;
+  }
+
+  private static ArrayList<Node> getContent(final Element element) {
+    element.normalize();
+    final ArrayList<Node> content = new ArrayList<>();
+    for (Node node = element.getFirstChild(); node != null; node = node.getNextSibling()) // [X]
+      if (node instanceof Element || node.getNodeType() == Node.TEXT_NODE && node.getNodeValue().trim().length() > 0)
+        content.add(node);
+
+    return content;
+  }
+
   @Test
   public void test() throws IOException, JAXBException, URISyntaxException {
     final XJCompiler.Command command = new XJCompiler.Command();
@@ -34,5 +196,447 @@ public class XJCompilerTest {
     command.setDestDir(new File("target/generated-test-sources/jaxb"));
     command.setExtension(true);
     XJCompiler.compile(command);
+
+    final String parent = new String(Files.readAllBytes(new File(command.getDestDir(), "org/openjax/xml/test/Parent.java").toPath()));
+    assertTrue(parent.contains("@SuppressWarnings(\"all\")"));
+  }
+
+  @Test
+  public void testXsd11() throws IOException, JAXBException, URISyntaxException {
+    final XJCompiler.Command command = new XJCompiler.Command();
+    command.setSchemas(CollectionUtil.asCollection(new LinkedHashSet<>(), getClass().getResource("/xsd11.xsd").toURI()));
+    command.setDestDir(new File("target/generated-test-sources/xsd11"));
+    final CompileReport report = XJCompiler.compile(command);
+
+    assertTrue(new File(command.getDestDir(), "org/openjax/xml/xsd11/Range.java").exists());
+    assertEquals(2, report.getSchemas());
+  }
+
+  @Test
+  public void testPrimitives() throws Exception {
+    final XJCompiler.Command command = new XJCompiler.Command();
+    command.setSchemas(CollectionUtil.asCollection(new LinkedHashSet<>(), getClass().getResource("/primitives.xsd").toURI()));
+    command.setDestDir(new File("target/generated-test-sources/primitives"));
+    command.setPrimitives(true);
+    XJCompiler.compile(command);
+
+    final String sample = new String(Files.readAllBytes(new File(command.getDestDir(), "org/openjax/xml/primitives/Sample.java").toPath()));
+    assertTrue(sample, sample.contains("protected int percent;"));
+    assertTrue(sample, sample.contains("protected BigInteger total;"));
+    assertTrue(sample, sample.contains("protected int[] values;"));
+    assertTrue(sample, sample.contains("protected Long id;"));
+    assertTrue(sample, sample.contains("protected int[] weights;"));
+    assertTrue(sample, sample.contains("public void setWeights(int[] value)"));
+
+    // The primitive and array properties are bound by the JAXB runtime
+    final Class<?> cls = compile(command).loadClass("org.openjax.xml.primitives.Sample");
+    final Object value = unmarshal(cls, "<sample xmlns='http://www.openjax.org/xml/primitives.xsd' id='4294967295' weights=' 0 50  100'><percent>42</percent><total>-123456789012345678901234567890</total><values>-1 0 2147483647</values></sample>");
+    assertEquals(4294967295L, cls.getMethod("getId").invoke(value));
+    assertArrayEquals(new int[] {0, 50, 100}, (int[])cls.getMethod("getWeights").invoke(value));
+    assertEquals(42, cls.getMethod("getPercent").invoke(value));
+    assertEquals(new BigInteger("-123456789012345678901234567890"), cls.getMethod("getTotal").invoke(value));
+    assertArrayEquals(new int[] {-1, 0, Integer.MAX_VALUE}, (int[])cls.getMethod("getValues").invoke(value));
+    assertXmlEquals("<sample xmlns='http://www.openjax.org/xml/primitives.xsd' id='4294967295' weights='0 50 100'><percent>42</percent><total>-123456789012345678901234567890</total><values>-1 0 2147483647</values></sample>", marshal(value));
+
+    final Object empty = unmarshal(cls, "<sample xmlns='http://www.openjax.org/xml/primitives.xsd'><percent>0</percent><total>0</total><values/></sample>");
+    assertNull(cls.getMethod("getId").invoke(empty));
+    assertNull(cls.getMethod("getWeights").invoke(empty));
+    assertXmlEquals("<sample xmlns='http://www.openjax.org/xml/primitives.xsd'><percent>0</percent><total>0</total><values/></sample>", marshal(empty));
+  }
+
+  private static final String ORDER = "<?xml version='1.0'?>\n<s:order xmlns:s='http://www.openjax.org/xml/stax.xsd' xmlns:x='urn:x' id='42' status='closed' x:ignored='true'>\n  <s:customer>Jane &amp; John</s:customer>\n  <s:item sku='a-1'><s:quantity> 3 </s:quantity><s:price currency='USD'>19.99</s:price></s:item>\n  <x:unknown><s:customer>nested</s:customer></x:unknown>\n  <s:item sku='b-2'><s:quantity>1</s:quantity><s:price currency='EUR'>-0.5</s:price></s:item>\n  <s:note>first</s:note><s:note><![CDATA[<second>]]></s:note>\n</s:order>";
+
+  @Test
+  public void testStax() throws Exception {
+    final XJCompiler.Command command = new XJCompiler.Command();
+    command.setSchemas(CollectionUtil.asCollection(new LinkedHashSet<>(), getClass().getResource("/stax.xsd").toURI()));
+    command.setDestDir(new File("target/generated-test-sources/stax"));
+    command.setStax(true);
+    XJCompiler.compile(command);
+
+    final String order = new String(Files.readAllBytes(new File(command.getDestDir(), "org/openjax/xml/stax/Order.java").toPath()));
+    assertTrue(order, order.contains("class Stax"));
+    assertTrue(order, order.contains("public static Order read(final XMLStreamReader reader)"));
+    assertTrue(order, order.contains("public static void write(final XMLStreamWriter writer, final Order value)"));
+    assertTrue(order, order.contains("value.item.add(Item.Stax.read(reader));"));
+
+    final String amount = new String(Files.readAllBytes(new File(command.getDestDir(), "org/openjax/xml/stax/Amount.java").toPath()));
+    assertTrue(amount, amount.contains("value.value = DatatypeConverter.parseDecimal(reader.getElementText());"));
+    assertFalse(order, order.contains("FragmentWriter"));
+
+    command.setFragments(true);
+    XJCompiler.compile(command);
+    final String fragments = new String(Files.readAllBytes(new File(command.getDestDir(), "org/openjax/xml/stax/Order.java").toPath()));
+    assertTrue(fragments, fragments.contains("((FragmentWriter) writer).write(item, \"http://www.openjax.org/xml/stax.xsd\", \"item\")"));
+
+    final String envelope = new String(Files.readAllBytes(new File(command.getDestDir(), "org/openjax/xml/stax/Envelope.java").toPath()));
+    assertFalse(envelope, envelope.contains("class Stax"));
+
+    final ClassLoader classLoader = compile(command);
+    final Class<?> cls = classLoader.loadClass("org.openjax.xml.stax.Order");
+    final Object value = assertRoundTrip(cls, ORDER);
+    assertRoundTrip(cls, "<order xmlns='http://www.openjax.org/xml/stax.xsd' id='-1'><customer/><item sku=''><quantity>0</quantity><price currency='EUR'>0</price></item></order>");
+
+    // The generated writers splice the cached fragments of the items, which are written as by the JAXB runtime
+    final FragmentCache cache = new FragmentCache(8, classLoader.loadClass("org.openjax.xml.stax.Item"));
+    assertXmlEquals(marshal(value), JaxbUtil.toXmlString(value, cache));
+    assertXmlEquals(marshal(value), JaxbUtil.toXmlString(value, cache));
+    assertEquals(2, cache.getMisses());
+    assertEquals(2, cache.getHits());
+  }
+
+  @Test
+  public void testParseStax() throws Exception {
+    final XJCompiler.Command command = new XJCompiler.Command();
+    command.setSchemas(CollectionUtil.asCollection(new LinkedHashSet<>(), getClass().getResource("/stax.xsd").toURI()));
+    command.setDestDir(new File("target/generated-test-sources/parse-stax"));
+    command.setStax(true);
+    XJCompiler.compile(command);
+
+    final ClassLoader classLoader = compile(command);
+    final Class<?> cls = classLoader.loadClass("org.openjax.xml.stax.Order");
+    final File file = new File(command.getDestDir().getPath() + "-classes", "order.xml");
+    Files.write(file.toPath(), ORDER.getBytes());
+    final URL url = file.toURI().toURL();
+    assertGraphEquals("order", JaxbUtil.parse(cls, classLoader, url, false), JaxbUtil.parseStax(cls, url));
+
+    // The documents of a stream are read alike by the JAXB runtime and by the generated reader
+    final byte[] stream = (ORDER + ORDER.replace("id='42'", "id='43'").replaceFirst("<\\?xml[^>]*>", "")).getBytes(StandardCharsets.UTF_8);
+    try (final DocumentReader<?> expected = JaxbUtil.parseAll(cls, classLoader, new ByteArrayInputStream(stream), StandardCharsets.UTF_8); final DocumentReader<?> actual = JaxbUtil.parseAllStax(cls, new ByteArrayInputStream(stream))) {
+      for (int i = 0; i < 3; ++i) // [N]
+        assertGraphEquals("order[" + i + "]", expected.read(), actual.read());
+
+      assertEquals(2, actual.getCount());
+    }
+
+    // A value that cannot be converted to the type of its property is left unset by the JAXB runtime, and aborts the generated reader
+    for (final String invalid : new String[] {"status='pending'", "<s:quantity>x</s:quantity>"}) { // [A]
+      Files.write(file.toPath(), (invalid.startsWith("status") ? ORDER.replace("status='closed'", invalid) : ORDER.replace("<s:quantity> 3 </s:quantity>", invalid)).getBytes());
+      final Object order = JaxbUtil.parse(cls, classLoader, url, false);
+      if (invalid.startsWith("status")) {
+        assertNull(cls.getMethod("getStatus").invoke(order));
+      }
+      else {
+        final Object item = ((List<?>)cls.getMethod("getItem").invoke(order)).get(0);
+        assertEquals(0, item.getClass().getMethod("getQuantity").invoke(item));
+      }
+
+      try {
+        JaxbUtil.parseStax(cls, url);
+        fail("Expected UnmarshalException: " + invalid);
+      }
+      catch (final UnmarshalException e) {
+      }
+    }
+
+    try {
+      JaxbUtil.parseStax(classLoader.loadClass("org.openjax.xml.stax.Envelope"), url);
+      fail("Expected IllegalArgumentException");
+    }
+    catch (final IllegalArgumentException e) {
+    }
+  }
+
+  @Test
+  public void testReuse() throws Exception {
+    final XJCompiler.Command command = new XJCompiler.Command();
+    command.setSchemas(CollectionUtil.asCollection(new LinkedHashSet<>(), getClass().getResource("/stax.xsd").toURI()));
+    command.setDestDir(new File("target/generated-test-sources/reuse"));
+    command.setStax(true);
+    command.setReuse(true);
+    XJCompiler.compile(command);
+
+    final String order = new String(Files.readAllBytes(new File(command.getDestDir(), "org/openjax/xml/stax/Order.java").toPath()));
+    assertTrue(order, order.contains("public void reset()"));
+    assertTrue(order, order.contains("private transient ArrayList<Item> itemSpare;"));
+    assertTrue(order, order.contains("public static Order read(final XMLStreamReader reader, final Order value)"));
+    assertTrue(order, order.contains("value.item.add(Item.Stax.read(reader, value.reuseItem()));"));
+
+    final String item = new String(Files.readAllBytes(new File(command.getDestDir(), "org/openjax/xml/stax/Item.java").toPath()));
+    assertTrue(item, item.contains("this.quantity = 0;"));
+    assertTrue(item, item.contains("value.price = Amount.Stax.read(reader, value.reusePrice());"));
+
+    final ClassLoader classLoader = compile(command);
+    final Class<?> cls = classLoader.loadClass("org.openjax.xml.stax.Order");
+    final Object value = assertRoundTrip(cls, ORDER);
+
+    // A document that is parsed into an instance replaces its previous content, and reuses its nested instances
+    final String next = "<order xmlns='http://www.openjax.org/xml/stax.xsd' id='7'><customer>Jim</customer><item sku='c-3'><quantity>2</quantity><price currency='GBP'>1</price></item></order>";
+    final File file = new File(command.getDestDir().getPath() + "-classes", "order.xml");
+    Files.write(file.toPath(), next.getBytes());
+    final ArrayList<Object> nested = new ArrayList<>((List<?>)cls.getMethod("getItem").invoke(value));
+    assertSame(value, JaxbUtil.parseInto(value, file.toURI().toURL()));
+    final Object reused = ((List<?>)cls.getMethod("getItem").invoke(value)).get(0);
+    assertTrue(nested.stream().anyMatch(i -> i == reused));
+    assertGraphEquals("order", unmarshal(cls, next), value);
+
+    try {
+      JaxbUtil.parseInto(classLoader.loadClass("org.openjax.xml.stax.Envelope").getDeclaredConstructor().newInstance(), file.toURI().toURL());
+      fail("Expected IllegalArgumentException");
+    }
+    catch (final IllegalArgumentException e) {
+    }
+  }
+
+  @Test
+  public void testBinaryContent() throws Exception {
+    final XJCompiler.Command command = new XJCompiler.Command();
+    command.setSchemas(CollectionUtil.asCollection(new LinkedHashSet<>(), getClass().getResource("/binary.xsd").toURI()));
+    command.setDestDir(new File("target/generated-test-sources/binary"));
+    command.setStax(true);
+    command.setBinaryContent(true);
+    XJCompiler.compile(command);
+
+    final String message = new String(Files.readAllBytes(new File(command.getDestDir(), "org/openjax/xml/binary/Message.java").toPath()));
+    assertTrue(message, message.contains("protected BinaryContent body;"));
+    assertTrue(message, message.contains("value.body = BinaryContent.read(reader);"));
+    assertTrue(message, message.contains("value.body.write(writer);"));
+
+    final String checksum = new String(Files.readAllBytes(new File(command.getDestDir(), "org/openjax/xml/binary/Checksum.java").toPath()));
+    assertTrue(checksum, checksum.contains("protected byte[] digest;"));
+
+    final String attachment = new String(Files.readAllBytes(new File(command.getDestDir(), "org/openjax/xml/binary/Attachment.java").toPath()));
+    assertTrue(attachment, attachment.contains("@XmlJavaTypeAdapter(BinaryContent.Adapter.class)"));
+    assertTrue(attachment, attachment.contains("value.value = BinaryContent.read(reader);"));
+    assertTrue(attachment, attachment.contains("value.value.write(writer);"));
+
+    final ClassLoader classLoader = compile(command);
+    final Class<?> cls = classLoader.loadClass("org.openjax.xml.binary.Message");
+    assertRoundTrip(cls, "<message xmlns='http://www.openjax.org/xml/binary.xsd' id='7'><body>SGVs\nbG8=</body><attachment name='a'>AAEC</attachment><attachment name='b'></attachment></message>");
+
+    // Content beyond the threshold is spilled to a file, and is written as the JAXB runtime writes it
+    final byte[] bytes = new byte[100_000];
+    for (int i = 0; i < bytes.length; ++i) // [A]
+      bytes[i] = (byte)(i * 31);
+
+    final int threshold = BinaryContent.getThreshold();
+    BinaryContent.setThreshold(1024);
+    try {
+      final Object value = assertRoundTrip(cls, "<message xmlns='http://www.openjax.org/xml/binary.xsd' id='8'><body>" + Base64.getEncoder().encodeToString(bytes) + "</body></message>");
+      final BinaryContent body = (BinaryContent)cls.getMethod("getBody").invoke(value);
+      assertNotNull(body.getFile());
+      assertArrayEquals(bytes, body.toByteArray());
+      body.close();
+    }
+    finally {
+      BinaryContent.setThreshold(threshold);
+    }
+  }
+
+  @Test
+  public void testJavaTime() throws Exception {
+    final XJCompiler.Command command = new XJCompiler.Command();
+    command.setSchemas(CollectionUtil.asCollection(new LinkedHashSet<>(), getClass().getResource("/temporal.xsd").toURI()));
+    command.setDestDir(new File("target/generated-test-sources/temporal"));
+    command.setStax(true);
+    command.setJavaTime(true);
+    XJCompiler.compile(command);
+
+    final String event = new String(Files.readAllBytes(new File(command.getDestDir(), "org/openjax/xml/temporal/Event.java").toPath()));
+    assertTrue(event, event.contains("@XmlJavaTypeAdapter(JavaTime.DateTimeAdapter.class)"));
+    assertTrue(event, event.contains("protected OffsetDateTime start;"));
+    assertTrue(event, event.contains("protected LocalDate day;"));
+    assertTrue(event, event.contains("protected OffsetTime opens;"));
+    assertTrue(event, event.contains("protected OffsetDateTime updated;"));
+    assertTrue(event, event.contains("public void setStart(OffsetDateTime value)"));
+    assertTrue(event, event.contains("value.start = JavaTime.parseDateTime(reader.getElementText());"));
+    assertTrue(event, event.contains("writer.writeAttribute(\"updated\", JavaTime.print(value.updated));"));
+
+    // Lists of temporal values, and the other temporal types, are left untouched
+    final String schedule = new String(Files.readAllBytes(new File(command.getDestDir(), "org/openjax/xml/temporal/Schedule.java").toPath()));
+    assertTrue(schedule, schedule.contains("protected XMLGregorianCalendar season;"));
+    assertTrue(schedule, schedule.contains("protected List<XMLGregorianCalendar> slot;"));
+
+    final ClassLoader classLoader = compile(command);
+    final Class<?> cls = classLoader.loadClass("org.openjax.xml.temporal.Event");
+    final Object value = assertRoundTrip(cls, "<event xmlns='http://www.openjax.org/xml/temporal.xsd' updated='2024-02-29T13:05:09.5+01:00'><start> 2024-02-29T24:00:00-05:30 </start><day>2024-02-29</day><opens>08:30:00Z</opens></event>");
+    assertEquals(OffsetDateTime.of(2024, 3, 1, 0, 0, 0, 0, ZoneOffset.ofHoursMinutes(-5, -30)), cls.getMethod("getStart").invoke(value));
+    assertEquals(LocalDate.of(2024, 2, 29), cls.getMethod("getDay").invoke(value));
+    assertEquals(OffsetTime.of(LocalTime.of(8, 30), ZoneOffset.UTC), cls.getMethod("getOpens").invoke(value));
+
+    // Values without a timezone are read in the default offset by both the generated StAX reader and the JAXB runtime
+    final Object local = assertRoundTrip(cls, "<event xmlns='http://www.openjax.org/xml/temporal.xsd'><start>2024-02-29T13:05:09</start><day>2024-02-29+09:00</day><opens>08:30:00</opens></event>");
+    assertEquals(OffsetDateTime.of(2024, 2, 29, 13, 5, 9, 0, JavaTime.DEFAULT_OFFSET), cls.getMethod("getStart").invoke(local));
+    assertEquals(LocalDate.of(2024, 2, 29), cls.getMethod("getDay").invoke(local));
+    assertEquals(OffsetTime.of(LocalTime.of(8, 30), JavaTime.DEFAULT_OFFSET), cls.getMethod("getOpens").invoke(local));
+  }
+
+  @Test
+  public void testEpisodeCache() throws IOException, JAXBException, URISyntaxException {
+    final EpisodeCache episodeCache = new EpisodeCache(Files.createTempDirectory("episodes").toFile());
+    for (final String name : new String[] {"order", "invoice"}) { // [A]
+      final XJCompiler.Command command = new XJCompiler.Command();
+      command.setSchemas(CollectionUtil.asCollection(new LinkedHashSet<>(), getClass().getResource("/episode/" + name + ".xsd").toURI()));
+      command.setDestDir(new File("target/generated-test-sources/episode-" + name));
+      command.setEpisodeCache(episodeCache);
+      XJCompiler.compile(command);
+
+      // The classes of the library are published with the classes of the compilation, which refer to them
+      assertTrue(new File(command.getDestDir(), "org/openjax/xml/core/Address.java").isFile());
+      assertTrue(new File(command.getDestDir(), "org/openjax/xml/core/Currency.java").isFile());
+      assertFalse(new File(command.getDestDir(), "META-INF/sun-jaxb.episode").exists());
+      final String source = new String(Files.readAllBytes(new File(command.getDestDir(), "org/openjax/xml/" + name + "/" + Character.toUpperCase(name.charAt(0)) + name.substring(1) + ".java").toPath()));
+      assertTrue(source, source.contains("protected Address address;"));
+    }
+
+    // The library is compiled once, and is bound via its episode by both compilations
+    final File[] prefixes = episodeCache.getDir().listFiles();
+    assertEquals(1, prefixes.length);
+    final File[] entries = prefixes[0].listFiles();
+    assertEquals(1, entries.length);
+    assertTrue(new File(entries[0], "META-INF/sun-jaxb.episode").isFile());
+  }
+
+  @Test
+  public void testImmutable() throws Exception {
+    final XJCompiler.Command command = new XJCompiler.Command();
+    command.setSchemas(CollectionUtil.asCollection(new LinkedHashSet<>(), getClass().getResource("/stax.xsd").toURI()));
+    command.setDestDir(new File("target/generated-test-sources/immutable"));
+    command.setStax(true);
+    command.setImmutable(true);
+    XJCompiler.compile(command);
+
+    final String order = new String(Files.readAllBytes(new File(command.getDestDir(), "org/openjax/xml/stax/Order.java").toPath()));
+    assertFalse(order, order.contains("public void setCustomer("));
+    assertTrue(order, order.contains("Collections.unmodifiableList(item)"));
+    assertTrue(order, order.contains("public static Order.Builder builder()"));
+    assertTrue(order, order.contains("private transient int hashCode;"));
+
+    final Class<?> cls = compile(command).loadClass("org.openjax.xml.stax.Order");
+    final Object value = assertRoundTrip(cls, ORDER);
+    assertEquals(value, unmarshal(cls, ORDER));
+    assertEquals(value.hashCode(), unmarshal(cls, ORDER).hashCode());
+
+    // The builder copies an instance, and builds a modified copy that marshals as such
+    final Object builder = cls.getMethod("toBuilder").invoke(value);
+    assertEquals(value, builder.getClass().getMethod("build").invoke(builder));
+    final Object copy = builder.getClass().getMethod("build").invoke(builder.getClass().getMethod("withCustomer", String.class).invoke(builder, "Jim"));
+    assertNotEquals(value, copy);
+    assertXmlEquals(marshal(value).replace("Jane &amp; John", "Jim"), marshal(copy));
+    try {
+      ((List<?>)cls.getMethod("getItem").invoke(value)).clear();
+      fail("Expected UnsupportedOperationException");
+    }
+    catch (final UnsupportedOperationException e) {
+    }
+  }
+
+  @Test
+  public void testNativeImage() throws IOException, JAXBException, URISyntaxException {
+    final XJCompiler.Command command = new XJCompiler.Command();
+    command.setSchemas(CollectionUtil.asCollection(new LinkedHashSet<>(), getClass().getResource("/stax.xsd").toURI()));
+    command.setDestDir(new File("target/generated-test-sources/native"));
+    command.setNativeImage(true);
+    XJCompiler.compile(command);
+
+    final String index = new String(Files.readAllBytes(new File(command.getDestDir(), "org/openjax/xml/stax/jaxb.index").toPath()));
+    assertEquals("Amount\nEnvelope\nItem\nOrder\nStatus\n", index);
+
+    final String reflect = new String(Files.readAllBytes(new File(command.getDestDir(), "META-INF/native-image/org/openjax/xml/stax/reflect-config.json").toPath()));
+    assertTrue(reflect, reflect.contains("\"name\": \"org.openjax.xml.stax.ObjectFactory\""));
+    assertTrue(reflect, reflect.contains("\"name\": \"org.openjax.xml.stax.package-info\""));
+
+    final String resource = new String(Files.readAllBytes(new File(command.getDestDir(), "META-INF/native-image/org/openjax/xml/stax/resource-config.json").toPath()));
+    assertTrue(resource, resource.contains("\\\\Qorg/openjax/xml/stax/jaxb.index\\\\E"));
+  }
+
+  @Test
+  public void testPrune() throws IOException, JAXBException, URISyntaxException {
+    final XJCompiler.Command command = new XJCompiler.Command();
+    command.setSchemas(CollectionUtil.asCollection(new LinkedHashSet<>(), getClass().getResource("/stax.xsd").toURI()));
+    command.setDestDir(new File("target/generated-test-sources/prune"));
+    command.setRootElements(CollectionUtil.asCollection(new LinkedHashSet<>(), new QName("order")));
+    final CompileReport report = XJCompiler.compile(command);
+
+    assertTrue(new File(command.getDestDir(), "org/openjax/xml/stax/Item.java").exists());
+    assertFalse(new File(command.getDestDir(), "org/openjax/xml/stax/Envelope.java").exists());
+    assertEquals(1, report.getPruned());
+  }
+
+  @Test
+  public void testConcurrent() throws Exception {
+    final File catalog = new File("target/generated-test-sources/concurrent/catalog.xml");
+    assertTrue(catalog.getParentFile().isDirectory() || catalog.getParentFile().mkdirs());
+    Files.write(catalog.toPath(), "<catalog xmlns=\"urn:oasis:names:tc:entity:xmlns:xml:catalog\"/>".getBytes());
+
+    final int threads = 4;
+    final ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      final ArrayList<Future<File>> futures = new ArrayList<>();
+      for (int i = 0; i < threads; ++i) { // [N]
+        final File destDir = new File(catalog.getParentFile(), String.valueOf(i));
+        futures.add(executor.submit(() -> {
+          final XJCompiler.Command command = new XJCompiler.Command();
+          command.setSchemas(CollectionUtil.asCollection(new LinkedHashSet<>(), getClass().getResource("/test.xsd").toURI()));
+          command.setDestDir(destDir);
+          command.setCatalog(catalog);
+          command.setPluginIndex(new File(catalog.getParentFile(), "plugins.idx"));
+          XJCompiler.compile(command);
+          return new File(destDir, "org/openjax/xml/test/Parent.java");
+        }));
+      }
+
+      final byte[] expected = Files.readAllBytes(futures.get(0).get().toPath());
+      for (int i = 1; i < threads; ++i) // [N]
+        assertArrayEquals(expected, Files.readAllBytes(futures.get(i).get().toPath()));
+    }
+    finally {
+      executor.shutdownNow();
+    }
+
+    assertNull(System.getProperty("xml.catalog.ignoreMissing"));
+  }
+
+  @Test
+  public void testCompileAll() throws Exception {
+    final ArrayList<XJCompiler.Command> commands = new ArrayList<>();
+    for (final String schema : new String[] {"/test.xsd", "/stax.xsd", "/primitives.xsd"}) { // [A]
+      final XJCompiler.Command command = new XJCompiler.Command();
+      command.setSchemas(CollectionUtil.asCollection(new LinkedHashSet<>(), getClass().getResource(schema).toURI()));
+      command.setDestDir(new File("target/generated-test-sources/batch" + schema.substring(0, schema.length() - 4)));
+      commands.add(command);
+    }
+
+    final XJCompiler.Command invalid = new XJCompiler.Command();
+    invalid.setSchemas(CollectionUtil.asCollection(new LinkedHashSet<>(), getClass().getResource("/include/xsd11-range.xsd").toURI().resolve("missing.xsd")));
+    invalid.setDestDir(new File("target/generated-test-sources/batch/invalid"));
+    commands.add(1, invalid);
+
+    final BatchReport report = XJCompiler.compileAll(commands, 2);
+    assertEquals(4, report.getResults().size());
+    assertEquals(1, report.getFailed());
+    assertSame(invalid, report.getResults().get(1).getCommand());
+    assertNotNull(report.getResults().get(1).getException());
+    assertNull(report.getResults().get(1).getReport());
+    assertTrue(new File("target/generated-test-sources/batch/stax/org/openjax/xml/stax/Order.java").exists());
+    assertTrue(report.toJson().contains("\"failed\": 1"));
+  }
+
+  @Test
+  public void testUnchanged() throws IOException, JAXBException, URISyntaxException {
+    final XJCompiler.Command command = new XJCompiler.Command();
+    command.setSchemas(CollectionUtil.asCollection(new LinkedHashSet<>(), getClass().getResource("/test.xsd").toURI()));
+    command.setDestDir(new File("target/generated-test-sources/unchanged"));
+    // The manifests of earlier runs are removed, so that the manifest of this compilation is the only one
+    if (command.getDestDir().exists())
+      XJCompiler.delete(command.getDestDir().toPath());
+
+    XJCompiler.compile(command);
+
+    final File parent = new File(command.getDestDir(), "org/openjax/xml/test/Parent.java");
+    final File stale = new File(command.getDestDir(), "org/openjax/xml/test/Stale.java");
+    final File manifest = new File(command.getDestDir(), ChangeAwarePublisher.MANIFEST_DIR).listFiles()[0];
+    Files.write(stale.toPath(), new byte[0]);
+    Files.write(manifest.toPath(), "org/openjax/xml/test/Stale.java\n".getBytes(), StandardOpenOption.APPEND);
+    assertTrue(parent.setLastModified(0));
+
+    final CompileReport report = XJCompiler.compile(command);
+    assertEquals(0, parent.lastModified());
+    assertFalse(stale.exists());
+    assertEquals(1, report.getSchemas());
+    assertEquals(0, report.getWritten());
+    assertEquals(1, report.getDeleted());
+    assertTrue(report.getUnchanged() > 0);
+    assertTrue(report.toJson().contains("\"name\": \"generate\""));
   }
 }
\ No newline at end of file